@@ -0,0 +1,400 @@
+// KiWISBenchmarkFixtures - response fixtures for benchmarks, scaled from small response samples
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openwaterfoundation.tstool.plugin.kiwis.dao.QualityCode;
+import org.openwaterfoundation.tstool.plugin.kiwis.dto.JacksonToolkit;
+import org.openwaterfoundation.tstool.plugin.kiwis.util.HttpTransport;
+import org.openwaterfoundation.tstool.plugin.kiwis.util.WebUtil;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import RTi.Util.IO.PropList;
+
+/**
+ * Response fixtures for the benchmarks.
+ * The fixtures in the 'fixtures' resource folder are small response samples shaped like the KiWIS web service responses
+ * for the time series in the test/commands/ReadKiWIS tests (same stations, data types, values, and timestamp spacing).
+ * A sample is scaled to the requested number of rows by repeating the sample rows,
+ * with timestamps continuing after the last sample timestamp so that timestamps increase,
+ * as for a long period read from the web service.
+ * Large responses are therefore created in memory when a benchmark is set up rather than being saved in the repository.
+ */
+public class KiWISBenchmarkFixtures {
+
+	/**
+	 * Value fixture for a regular interval (15Minute) time series, with timestamps at the beginning of the interval.
+	 */
+	public static final String REGULAR_VALUES = "getTimeseriesValues-SC-0042-Depth-Final_USGS-15Minute.csv";
+
+	/**
+	 * Value fixture for an irregular interval time series.
+	 */
+	public static final String IRREGULAR_VALUES = "getTimeseriesValues-SC-0042-Depth-Final_USGS-IrregSecond.csv";
+
+	/**
+	 * Value fixture for a daily time series, with timestamps at midnight at the end of the day.
+	 */
+	public static final String DAY_VALUES = "getTimeseriesValues-NW220-rhum_vais_Avg-Day.Mean-1Day.csv";
+
+	/**
+	 * Quality code fixture ('getQualityCodes' with format=json).
+	 */
+	public static final String QUALITY_CODES = "getQualityCodes.json";
+
+	/**
+	 * Time series list fixture ('getTimeseriesList' with format=objson).
+	 */
+	public static final String TIME_SERIES_LIST = "getTimeseriesList.json";
+
+	/**
+	 * Service root URI used for request URLs, which is not requested.
+	 */
+	public static final String SERVICE_ROOT_URI = "http://localhost/KiWIS/KiWIS";
+
+	/**
+	 * Formatter for KiWIS timestamps (e.g., 2022-12-30T18:00:00.000-07:00).
+	 */
+	private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+
+	/**
+	 * HTTP transport that returns the fixture for a request rather than requesting the URL,
+	 * so that JacksonToolkit and other code that reads from the transport can be benchmarked without a network.
+	 * Fixtures are matched using the 'request' query parameter.
+	 */
+	public static class FixtureHttpTransport extends HttpTransport {
+
+		/**
+		 * Responses, keyed by the 'request' query parameter.
+		 */
+		private final Map<String,byte[]> responses = new HashMap<>();
+
+		/**
+		 * Constructor.
+		 */
+		public FixtureHttpTransport () {
+			super ( 60, 60 );
+		}
+
+		/**
+		 * Add a response.
+		 * @param request the KiWIS request (e.g., "getTimeseriesValues")
+		 * @param response the response body
+		 */
+		public void addResponse ( String request, byte [] response ) {
+			this.responses.put ( request, response );
+		}
+
+		/**
+		 * Return the fixture for a request URL.
+		 * @param url URL to request
+		 * @return the response body input stream
+		 * @throws IOException if no fixture has been added for the request
+		 */
+		@Override
+		public InputStream getInputStream ( String url ) throws IOException {
+			String request = WebUtil.getUrlQueryParameter(url, "request");
+			byte [] response = (request == null) ? null : this.responses.get(request);
+			if ( response == null ) {
+				throw new IOException ( "No fixture for request \"" + url + "\"." );
+			}
+			return new ByteArrayInputStream ( response );
+		}
+	}
+
+	/**
+	 * Datastore that uses the quality codes from the fixture,
+	 * so that global data are not read from web services when values are set in a time series.
+	 */
+	public static class FixtureDataStore extends KiWISDataStore {
+
+		/**
+		 * Lookup table for the fixture quality codes.
+		 */
+		private final KiWISQualityCodeTable qualityCodeTable;
+
+		/**
+		 * Constructor.
+		 * @param qualityCodeList quality codes, typically from readQualityCodes()
+		 * @throws URISyntaxException if the service root URI is invalid (should not happen)
+		 */
+		public FixtureDataStore ( List<QualityCode> qualityCodeList ) throws URISyntaxException {
+			super ( "KiWIS-benchmark", "KiWIS benchmark fixtures", new URI(SERVICE_ROOT_URI), new PropList("KiWIS-benchmark") );
+			this.qualityCodeTable = new KiWISQualityCodeTable ( qualityCodeList );
+		}
+
+		/**
+		 * Return the lookup table for the fixture quality codes.
+		 * @return the lookup table for the fixture quality codes
+		 */
+		@Override
+		public KiWISQualityCodeTable getQualityCodeTable () {
+			return this.qualityCodeTable;
+		}
+	}
+
+	/**
+	 * Rows from a 'getTimeseriesValues' csv fixture.
+	 */
+	private static class ValueSample {
+
+		/**
+		 * KiWIS 'ts_id' from the "#ts_id;" line.
+		 */
+		String tsId = "";
+
+		/**
+		 * Columns for the rows.
+		 */
+		List<OffsetDateTime> timestamps = new ArrayList<>();
+		List<String> values = new ArrayList<>();
+		List<String> qualityCodes = new ArrayList<>();
+		List<String> interpolationTypes = new ArrayList<>();
+
+		/**
+		 * Duration between the first timestamp of the sample and the first timestamp of the repeated sample,
+		 * which is the sample period plus the last spacing.
+		 */
+		Duration repeatDuration = null;
+
+		/**
+		 * Return the timestamp for a row in the scaled response.
+		 * @param row row in the scaled response (0+)
+		 * @return the timestamp for the row
+		 */
+		OffsetDateTime getTimestamp ( int row ) {
+			int size = this.timestamps.size();
+			return this.timestamps.get(row % size).plus(this.repeatDuration.multipliedBy(row / size));
+		}
+	}
+
+	/**
+	 * Private constructor since only static methods are used.
+	 */
+	private KiWISBenchmarkFixtures () {
+	}
+
+	/**
+	 * Create a 'getTimeseriesList' response in 'objson' format with the requested number of time series.
+	 * The fixture time series are repeated, with a unique 'ts_id' and the repeat number appended to 'station_no'.
+	 * @param rows the number of time series
+	 * @return the response body
+	 * @throws IOException if the fixture cannot be read
+	 */
+	public static byte [] createTimeSeriesListJson ( int rows ) throws IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		List<ObjectNode> sample = new ArrayList<>();
+		for ( JsonNode node : mapper.readTree(readResource(TIME_SERIES_LIST)) ) {
+			sample.add ( (ObjectNode)node );
+		}
+		// Each time series is about 1000 bytes so start with a buffer that is extended as needed.
+		ByteArrayOutputStream out = new ByteArrayOutputStream ( 1024*1024 );
+		try ( JsonGenerator generator = mapper.getFactory().createGenerator(out) ) {
+			generator.writeStartArray();
+			for ( int row = 0; row < rows; row++ ) {
+				ObjectNode node = sample.get(row % sample.size());
+				int repeat = row / sample.size();
+				if ( repeat > 0 ) {
+					node = node.deepCopy();
+					// Use identifiers after the fixture identifiers.
+					node.put("ts_id", "" + (30000000 + row));
+					node.put("station_no", node.get("station_no").asText() + "-" + repeat);
+				}
+				mapper.writeTree ( generator, node );
+			}
+			generator.writeEndArray();
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Create a 'getTimeseriesValues' response in 'csv' format with the requested number of rows.
+	 * @param fixture the value fixture (e.g., IRREGULAR_VALUES)
+	 * @param rows the number of rows
+	 * @return the response body
+	 * @throws IOException if the fixture cannot be read
+	 */
+	public static byte [] createValuesCsv ( String fixture, int rows ) throws IOException {
+		ValueSample sample = readValueSample ( fixture );
+		ByteArrayOutputStream out = new ByteArrayOutputStream ( rows*48 + 128 );
+		try ( Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 65536) ) {
+			writer.write ( "#ts_id;" + sample.tsId + "\n" );
+			writer.write ( "#rows;" + rows + "\n" );
+			writer.write ( "#Timestamp;Value;Quality Code;Interpolation Type\n" );
+			int size = sample.values.size();
+			for ( int row = 0; row < rows; row++ ) {
+				int i = row % size;
+				writer.write ( TIMESTAMP_FORMATTER.format(sample.getTimestamp(row)) );
+				writer.write ( ';' );
+				writer.write ( sample.values.get(i) );
+				writer.write ( ';' );
+				writer.write ( sample.qualityCodes.get(i) );
+				writer.write ( ';' );
+				writer.write ( sample.interpolationTypes.get(i) );
+				writer.write ( '\n' );
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Create a 'getTimeseriesValues' response in 'dajson' format with the requested number of rows.
+	 * The format is similar to the following:
+	 * <pre>
+	 * [ {
+	 *   "ts_id" : "957010",
+	 *   "rows" : "1",
+	 *   "columns" : "Timestamp,Value,Quality Code,Interpolation Type",
+	 *   "data" : [ [ "2022-12-30T17:00:00.000-07:00", 78.31, 200, 102 ] ]
+	 * } ]
+	 * </pre>
+	 * @param fixture the value fixture (e.g., IRREGULAR_VALUES)
+	 * @param rows the number of rows
+	 * @return the response body
+	 * @throws IOException if the fixture cannot be read
+	 */
+	public static byte [] createValuesDajson ( String fixture, int rows ) throws IOException {
+		ValueSample sample = readValueSample ( fixture );
+		ByteArrayOutputStream out = new ByteArrayOutputStream ( rows*56 + 256 );
+		try ( Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 65536) ) {
+			writer.write ( "[ {\n" );
+			writer.write ( "  \"ts_id\" : \"" + sample.tsId + "\",\n" );
+			writer.write ( "  \"rows\" : \"" + rows + "\",\n" );
+			writer.write ( "  \"columns\" : \"Timestamp,Value,Quality Code,Interpolation Type\",\n" );
+			writer.write ( "  \"data\" : [ " );
+			int size = sample.values.size();
+			for ( int row = 0; row < rows; row++ ) {
+				int i = row % size;
+				if ( row > 0 ) {
+					writer.write ( ", " );
+				}
+				writer.write ( "[ \"" );
+				writer.write ( TIMESTAMP_FORMATTER.format(sample.getTimestamp(row)) );
+				writer.write ( "\", " );
+				writer.write ( sample.values.get(i) );
+				writer.write ( ", " );
+				writer.write ( sample.qualityCodes.get(i) );
+				writer.write ( ", " );
+				writer.write ( sample.interpolationTypes.get(i) );
+				writer.write ( " ]" );
+			}
+			writer.write ( " ]\n} ]\n" );
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Return a request URL for the fixture service root URI, similar to the datastore request URLs.
+	 * @param request the KiWIS request (e.g., "getTimeseriesValues")
+	 * @param format the response format (e.g., "csv")
+	 * @return the request URL
+	 */
+	public static String getRequestUrl ( String request, String format ) {
+		return SERVICE_ROOT_URI + "?datasource=0&service=kisters&type=queryServices&request=" + request + "&format=" + format;
+	}
+
+	/**
+	 * Read the quality codes from the fixture, using JacksonToolkit as for the datastore.
+	 * @return the quality codes
+	 * @throws IOException if the fixture cannot be read
+	 */
+	public static List<QualityCode> readQualityCodes () throws IOException {
+		FixtureHttpTransport transport = new FixtureHttpTransport();
+		transport.addResponse ( "getQualityCodes", readResource(QUALITY_CODES) );
+		return JacksonToolkit.getInstance().readListFromWebServiceUrl(transport, getRequestUrl("getQualityCodes", "json"),
+			QualityCode.class);
+	}
+
+	/**
+	 * Read a fixture from the 'fixtures' resource folder.
+	 * @param fixture the fixture file name
+	 * @return the fixture contents
+	 * @throws IOException if the fixture cannot be read
+	 */
+	public static byte [] readResource ( String fixture ) throws IOException {
+		try ( InputStream in = KiWISBenchmarkFixtures.class.getResourceAsStream("/fixtures/" + fixture) ) {
+			if ( in == null ) {
+				throw new IOException ( "Fixture \"" + fixture + "\" was not found." );
+			}
+			return in.readAllBytes();
+		}
+	}
+
+	/**
+	 * Read the rows from a 'getTimeseriesValues' csv fixture.
+	 * @param fixture the value fixture (e.g., IRREGULAR_VALUES)
+	 * @return the rows
+	 * @throws IOException if the fixture cannot be read or has fewer than two rows
+	 */
+	private static ValueSample readValueSample ( String fixture ) throws IOException {
+		ValueSample sample = new ValueSample();
+		String [] lines = new String(readResource(fixture), StandardCharsets.UTF_8).split("\n");
+		for ( String line : lines ) {
+			line = line.trim();
+			if ( line.startsWith("#ts_id;") ) {
+				sample.tsId = line.substring(7);
+			}
+			else if ( line.isEmpty() || line.startsWith("#") ) {
+				continue;
+			}
+			else {
+				String [] parts = line.split(";");
+				sample.timestamps.add ( OffsetDateTime.parse(parts[0], TIMESTAMP_FORMATTER) );
+				sample.values.add ( parts[1] );
+				sample.qualityCodes.add ( parts[2] );
+				sample.interpolationTypes.add ( parts[3] );
+			}
+		}
+		int size = sample.timestamps.size();
+		if ( size < 2 ) {
+			throw new IOException ( "Fixture \"" + fixture + "\" must have at least 2 rows." );
+		}
+		// Repeat the sample after the last spacing.
+		sample.repeatDuration = Duration.between(sample.timestamps.get(0), sample.timestamps.get(size - 1))
+			.plus(Duration.between(sample.timestamps.get(size - 2), sample.timestamps.get(size - 1)));
+		return sample;
+	}
+
+}
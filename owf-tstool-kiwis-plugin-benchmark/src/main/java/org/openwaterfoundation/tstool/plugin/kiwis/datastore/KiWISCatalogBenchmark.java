@@ -0,0 +1,98 @@
+// KiWISCatalogBenchmark - benchmark for reading the time series catalog
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openwaterfoundation.tstool.plugin.kiwis.dao.TimeSeries;
+import org.openwaterfoundation.tstool.plugin.kiwis.dto.JacksonToolkit;
+
+/**
+ * Benchmark for deserializing a 'getTimeseriesList' response in 'objson' format using JacksonToolkit,
+ * as done by readTimeSeriesCatalog() when reading the catalog.
+ * The sizes stop at 1,000,000 time series, which is larger than known systems,
+ * because the response for more time series is larger than the maximum Java array size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+public class KiWISCatalogBenchmark {
+
+	/**
+	 * Number of time series in the response.
+	 */
+	@Param({ "10000", "100000", "1000000" })
+	public int rows;
+
+	/**
+	 * Transport that returns the response.
+	 */
+	private KiWISBenchmarkFixtures.FixtureHttpTransport transport = null;
+
+	/**
+	 * Request URL.
+	 */
+	private String url = null;
+
+	/**
+	 * Create the response.
+	 * @throws IOException if the fixture cannot be read
+	 */
+	@Setup(Level.Trial)
+	public void setup () throws IOException {
+		this.transport = new KiWISBenchmarkFixtures.FixtureHttpTransport();
+		this.transport.addResponse ( "getTimeseriesList", KiWISBenchmarkFixtures.createTimeSeriesListJson(this.rows) );
+		this.url = KiWISBenchmarkFixtures.getRequestUrl ( "getTimeseriesList", "objson" );
+	}
+
+	/**
+	 * Deserialize the time series list, passing each object to a consumer.
+	 * @param blackhole used to consume each time series
+	 * @return the number of time series that were read
+	 * @throws IOException if the response cannot be read
+	 */
+	@Benchmark
+	public int readTimeSeriesList ( Blackhole blackhole ) throws IOException {
+		return JacksonToolkit.getInstance().readArrayFromWebServiceUrl(this.transport, this.url, TimeSeries.class,
+			timeSeries -> blackhole.consume(timeSeries) );
+	}
+
+}
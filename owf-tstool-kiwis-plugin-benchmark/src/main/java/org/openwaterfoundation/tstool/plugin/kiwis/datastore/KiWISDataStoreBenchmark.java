@@ -0,0 +1,183 @@
+// KiWISDataStoreBenchmark - end-to-end datastore benchmark using the KiWIS stand-in server
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openwaterfoundation.tstool.plugin.kiwis.dao.TimeSeriesCatalog;
+import org.openwaterfoundation.tstool.plugin.kiwis.server.KiWISStandInServer;
+import org.openwaterfoundation.tstool.plugin.kiwis.server.KiWISSyntheticSystem;
+
+import RTi.TS.TS;
+import RTi.Util.IO.PropList;
+import RTi.Util.Time.DateTime;
+
+/**
+ * End-to-end benchmark for KiWISDataStore, using KiWISStandInServer to respond to web service requests.
+ * Unlike the other benchmarks, this includes HTTP requests, response streaming and decompression,
+ * and the datastore logic for requests, with latency optionally added by the server to simulate a remote server.
+ * The following are benchmarked:
+ * <ul>
+ * <li>readTimeSeriesCatalog - read the catalog for all time series</li>
+ * <li>readTimeSeries - read one year of an hourly time series, including reading the catalog for the time series</li>
+ * <li>readTimeSeriesList - read 30 days of 100 hourly time series</li>
+ * </ul>
+ * The datastore caches are not used so that each invocation makes the web service requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+public class KiWISDataStoreBenchmark {
+
+	/**
+	 * Number of time series in the synthetic system.
+	 */
+	@Param({ "10000", "1000000" })
+	public int timeSeriesCount;
+
+	/**
+	 * Latency added by the server to each request, milliseconds.
+	 */
+	@Param({ "0", "20" })
+	public int latencyMs;
+
+	/**
+	 * Number of time series read by readTimeSeriesList.
+	 */
+	private static final int TIME_SERIES_LIST_SIZE = 100;
+
+	/**
+	 * Stand-in server.
+	 */
+	private KiWISStandInServer server = null;
+
+	/**
+	 * Datastore that uses the stand-in server.
+	 */
+	private KiWISDataStore dataStore = null;
+
+	/**
+	 * Time series identifier and period for readTimeSeries.
+	 */
+	private String tsid = null;
+	private DateTime readStart = null;
+	private DateTime readEnd = null;
+
+	/**
+	 * Time series identifiers and period for readTimeSeriesList.
+	 */
+	private List<String> tsidList = null;
+	private DateTime listReadStart = null;
+
+	/**
+	 * Start the server and create the datastore.
+	 * @throws Exception if the server cannot be started
+	 */
+	@Setup(Level.Trial)
+	public void setup () throws Exception {
+		KiWISSyntheticSystem system = new KiWISSyntheticSystem ( this.timeSeriesCount,
+			KiWISSyntheticSystem.getDefaultPeriodStart(), KiWISSyntheticSystem.getDefaultPeriodEnd() );
+		// Use an available port so that the benchmark does not conflict with a server that is running.
+		this.server = new KiWISStandInServer ( system, 0, 16 );
+		this.server.setLatency ( this.latencyMs, 0 );
+		this.server.start();
+
+		PropList props = new PropList("KiWIS-standin");
+		// Do not use or save the metadata cache snapshot.
+		props.set("MetadataCache", "False");
+		this.dataStore = new KiWISDataStore ( "KiWIS-standin", "KiWIS stand-in server",
+			new URI(this.server.getServiceRootURI()), props );
+
+		// Hourly time series (the "Hour.Mean" type is the second of each parameter), using the 'ts_path' parts.
+		this.tsidList = new ArrayList<>();
+		for ( int index = 1; (index < this.timeSeriesCount) && (this.tsidList.size() < TIME_SERIES_LIST_SIZE); index += 3 ) {
+			this.tsidList.add ( system.getTimeSeriesField(index, "station_no") + ".KiWIS."
+				+ system.getTimeSeriesField(index, "stationparameter_no") + "-'"
+				+ system.getTimeSeriesField(index, "ts_shortname") + "'.1Hour" );
+		}
+		this.tsid = this.tsidList.get(0);
+		this.readStart = DateTime.parse("2022-01-01 01");
+		this.readEnd = DateTime.parse("2023-01-01 00");
+		this.listReadStart = DateTime.parse("2022-12-02 01");
+	}
+
+	/**
+	 * Stop the server.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown () {
+		if ( this.server != null ) {
+			this.server.stop();
+		}
+	}
+
+	/**
+	 * Read the time series catalog for all time series.
+	 * @return the time series catalog, so that the result is not optimized away
+	 */
+	@Benchmark
+	public List<TimeSeriesCatalog> readTimeSeriesCatalog () {
+		return this.dataStore.readTimeSeriesCatalog ( "*", "*", null, null, null );
+	}
+
+	/**
+	 * Read one year of an hourly time series.
+	 * @return the time series, so that the result is not optimized away
+	 */
+	@Benchmark
+	public TS readTimeSeries () {
+		boolean readData = true;
+		return this.dataStore.readTimeSeries ( this.tsid, this.readStart, this.readEnd, readData );
+	}
+
+	/**
+	 * Read 30 days of a list of hourly time series.
+	 * @return the time series, so that the result is not optimized away
+	 */
+	@Benchmark
+	public List<TS> readTimeSeriesList () {
+		boolean readData = true;
+		return this.dataStore.readTimeSeriesList ( this.tsidList, this.listReadStart, this.readEnd, readData, null, null );
+	}
+
+}
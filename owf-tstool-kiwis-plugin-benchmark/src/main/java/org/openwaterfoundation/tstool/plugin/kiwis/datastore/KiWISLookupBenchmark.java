@@ -0,0 +1,154 @@
+// KiWISLookupBenchmark - benchmark for catalog and data flag lookups
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openwaterfoundation.tstool.plugin.kiwis.dao.QualityCode;
+
+/**
+ * Benchmark for lookups that are done for each time series in the catalog or each value:
+ * <ul>
+ * <li>convertSpacingToInterval() - called for each time series when the catalog is read</li>
+ * <li>lookupQualityCode() - searches the quality code list</li>
+ * <li>KiWISQualityCodeTable.lookup() - used by setTimeSeriesValues() to set the data flag for each value</li>
+ * </ul>
+ * Each invocation does LOOKUP_COUNT lookups, and the reported time is for one lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1)
+public class KiWISLookupBenchmark {
+
+	/**
+	 * Number of lookups for each invocation.
+	 */
+	private static final int LOOKUP_COUNT = 1024;
+
+	/**
+	 * KiWIS 'ts_spacing' values, including values that are not converted.
+	 */
+	private static final String [] TS_SPACINGS = {
+		"", "PT1M", "PT5M", "PT15M", "PT1H", "PT6H", "P1D", "P1W", "P1M", "P1Y"
+	};
+
+	/**
+	 * Datastore used for lookups.
+	 */
+	private KiWISDataStore dataStore = null;
+
+	/**
+	 * Quality codes and lookup table.
+	 */
+	private List<QualityCode> qualityCodeList = null;
+	private KiWISQualityCodeTable qualityCodeTable = null;
+
+	/**
+	 * Quality code keys to look up, as strings and integers, including keys that are not matched.
+	 */
+	private String [] qualityCodeKeys = new String[LOOKUP_COUNT];
+	private int [] qualityCodeInts = new int[LOOKUP_COUNT];
+
+	/**
+	 * 'ts_spacing' values to convert.
+	 */
+	private String [] tsSpacings = new String[LOOKUP_COUNT];
+
+	/**
+	 * Create the datastore and lookup values.
+	 * @throws Exception if the fixtures cannot be read
+	 */
+	@Setup(Level.Trial)
+	public void setup () throws Exception {
+		this.qualityCodeList = KiWISBenchmarkFixtures.readQualityCodes();
+		this.qualityCodeTable = new KiWISQualityCodeTable ( this.qualityCodeList );
+		this.dataStore = new KiWISBenchmarkFixtures.FixtureDataStore ( this.qualityCodeList );
+		List<Integer> keys = new ArrayList<>();
+		for ( QualityCode qualityCode : this.qualityCodeList ) {
+			keys.add ( qualityCode.getKey() );
+		}
+		// Unknown key.
+		keys.add ( 999 );
+		for ( int i = 0; i < LOOKUP_COUNT; i++ ) {
+			this.qualityCodeInts[i] = keys.get(i % keys.size());
+			this.qualityCodeKeys[i] = "" + this.qualityCodeInts[i];
+			this.tsSpacings[i] = TS_SPACINGS[i % TS_SPACINGS.length];
+		}
+	}
+
+	/**
+	 * Convert 'ts_spacing' to TSTool interval.
+	 * @param blackhole used to consume each interval
+	 */
+	@Benchmark
+	@OperationsPerInvocation(LOOKUP_COUNT)
+	public void convertSpacingToInterval ( Blackhole blackhole ) {
+		for ( String tsSpacing : this.tsSpacings ) {
+			blackhole.consume ( this.dataStore.convertSpacingToInterval(tsSpacing) );
+		}
+	}
+
+	/**
+	 * Look up quality codes by searching the list.
+	 * @param blackhole used to consume each quality code
+	 */
+	@Benchmark
+	@OperationsPerInvocation(LOOKUP_COUNT)
+	public void lookupQualityCode ( Blackhole blackhole ) {
+		for ( String key : this.qualityCodeKeys ) {
+			blackhole.consume ( this.dataStore.lookupQualityCode(this.qualityCodeList, key) );
+		}
+	}
+
+	/**
+	 * Look up quality codes using the lookup table.
+	 * @param blackhole used to consume each quality code
+	 */
+	@Benchmark
+	@OperationsPerInvocation(LOOKUP_COUNT)
+	public void lookupQualityCodeTable ( Blackhole blackhole ) {
+		for ( int key : this.qualityCodeInts ) {
+			blackhole.consume ( this.qualityCodeTable.lookup(key) );
+		}
+	}
+
+}
@@ -0,0 +1,163 @@
+// KiWISTimeSeriesTransferBenchmark - benchmark for setting time series values from columns
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import RTi.TS.TS;
+import RTi.TS.TSIdent;
+import RTi.TS.TSUtil;
+
+/**
+ * Benchmark for the value-transfer loop in readTimeSeries(),
+ * which sets values that have been read into columns in the time series (see KiWISDataStore.setTimeSeriesValues()).
+ * The following modes are benchmarked:
+ * <ul>
+ * <li>regular - 15Minute time series with timestamps at the beginning of the interval, which are adjusted</li>
+ * <li>irregular - IrregSecond time series</li>
+ * <li>dayshift - 1Day time series with timestamps at midnight, which are shifted to the previous day</li>
+ * </ul>
+ * The values are read once when the benchmark is set up and a new time series is created for each invocation,
+ * as done by readTimeSeries().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+public class KiWISTimeSeriesTransferBenchmark {
+
+	/**
+	 * Mode, which determines the fixture and time series interval.
+	 */
+	@Param({ "regular", "irregular", "dayshift" })
+	public String mode;
+
+	/**
+	 * Number of values.
+	 */
+	@Param({ "10000", "100000", "1000000", "10000000" })
+	public int rows;
+
+	/**
+	 * Datastore used to set the values.
+	 */
+	private KiWISDataStore dataStore = null;
+
+	/**
+	 * Values to set.
+	 */
+	private KiWISTimeSeriesValueColumns columns = null;
+
+	/**
+	 * Time series identifier and interval for the mode.
+	 */
+	private String tsid = null;
+	private int intervalBase;
+	private int intervalMult;
+
+	/**
+	 * URL for the values, set as a time series property.
+	 */
+	private String valuesUrl = null;
+
+	/**
+	 * Time series that values are set in, created for each invocation.
+	 */
+	private TS ts = null;
+
+	/**
+	 * Create the datastore and read the values for the mode.
+	 * @throws Exception if the fixtures cannot be read
+	 */
+	@Setup(Level.Trial)
+	public void setup () throws Exception {
+		String fixture = null;
+		if ( this.mode.equals("regular") ) {
+			fixture = KiWISBenchmarkFixtures.REGULAR_VALUES;
+			this.tsid = "SC-0042.KiWIS.Depth-Final_USGS.15Minute";
+		}
+		else if ( this.mode.equals("irregular") ) {
+			fixture = KiWISBenchmarkFixtures.IRREGULAR_VALUES;
+			this.tsid = "SC-0042.KiWIS.Depth-Final_USGS.IrregSecond";
+		}
+		else if ( this.mode.equals("dayshift") ) {
+			fixture = KiWISBenchmarkFixtures.DAY_VALUES;
+			this.tsid = "NW220.KiWIS.rhum_vais_Avg-'Day.Mean'.1Day";
+		}
+		else {
+			throw new IllegalArgumentException ( "Unknown mode \"" + this.mode + "\"." );
+		}
+		TSIdent tsident = TSIdent.parseIdentifier(this.tsid);
+		this.intervalBase = tsident.getIntervalBase();
+		this.intervalMult = tsident.getIntervalMult();
+		this.columns = new KiWISTimeSeriesValueColumns();
+		byte [] response = KiWISBenchmarkFixtures.createValuesCsv ( fixture, this.rows );
+		try ( KiWISTimeSeriesValueReader valueReader = new KiWISTimeSeriesValueReader(new ByteArrayInputStream(response)) ) {
+			valueReader.readColumns ( this.columns );
+		}
+		this.valuesUrl = KiWISBenchmarkFixtures.getRequestUrl ( "getTimeseriesValues", "csv" );
+		this.dataStore = new KiWISBenchmarkFixtures.FixtureDataStore ( KiWISBenchmarkFixtures.readQualityCodes() );
+	}
+
+	/**
+	 * Create a new time series, as done by readTimeSeries() before values are set.
+	 * @throws Exception if the time series cannot be created
+	 */
+	@Setup(Level.Invocation)
+	public void createTimeSeries () throws Exception {
+		this.ts = TSUtil.newTimeSeries ( this.tsid, true );
+		this.ts.setIdentifier ( this.tsid );
+	}
+
+	/**
+	 * Set the values in the time series.
+	 * @return the time series, so that the result is not optimized away
+	 * @throws Exception if the values cannot be set
+	 */
+	@Benchmark
+	public TS setTimeSeriesValues () throws Exception {
+		boolean readDayAs24Hour = false;
+		boolean read24HourAsDay = false;
+		this.dataStore.setTimeSeriesValues ( this.ts, this.intervalBase, this.intervalMult, null,
+			readDayAs24Hour, read24HourAsDay, this.columns, this.valuesUrl );
+		return this.ts;
+	}
+
+}
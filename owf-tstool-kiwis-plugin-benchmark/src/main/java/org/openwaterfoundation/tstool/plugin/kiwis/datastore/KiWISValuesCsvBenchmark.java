@@ -0,0 +1,107 @@
+// KiWISValuesCsvBenchmark - benchmark for parsing getTimeseriesValues csv responses
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openwaterfoundation.tstool.plugin.kiwis.dao.TimeSeriesValue;
+
+/**
+ * Benchmark for parsing a 'getTimeseriesValues' response in 'csv' format,
+ * which is the format used by the datastore to read time series values.
+ * The response is read from memory so that only parsing is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+public class KiWISValuesCsvBenchmark {
+
+	/**
+	 * Number of rows in the response.
+	 */
+	@Param({ "10000", "100000", "1000000", "10000000" })
+	public int rows;
+
+	/**
+	 * Response body.
+	 */
+	private byte [] response = null;
+
+	/**
+	 * Create the response.
+	 * @throws IOException if the fixture cannot be read
+	 */
+	@Setup(Level.Trial)
+	public void setup () throws IOException {
+		this.response = KiWISBenchmarkFixtures.createValuesCsv ( KiWISBenchmarkFixtures.IRREGULAR_VALUES, this.rows );
+	}
+
+	/**
+	 * Read the values into columns, as done by readTimeSeries() and readTimeSeriesList().
+	 * @return the columns, so that the result is not optimized away
+	 * @throws IOException if the response cannot be read
+	 */
+	@Benchmark
+	public KiWISTimeSeriesValueColumns readColumns () throws IOException {
+		KiWISTimeSeriesValueColumns columns = new KiWISTimeSeriesValueColumns();
+		try ( KiWISTimeSeriesValueReader valueReader = new KiWISTimeSeriesValueReader(new ByteArrayInputStream(this.response)) ) {
+			valueReader.readColumns ( columns );
+		}
+		return columns;
+	}
+
+	/**
+	 * Read the values as TimeSeriesValue objects, as done by readTimeSeriesValues().
+	 * @param blackhole used to consume each value
+	 * @throws IOException if the response cannot be read
+	 */
+	@Benchmark
+	public void readTimeSeriesValues ( Blackhole blackhole ) throws IOException {
+		try ( KiWISTimeSeriesValueReader valueReader = new KiWISTimeSeriesValueReader(new ByteArrayInputStream(this.response)) ) {
+			TimeSeriesValue timeSeriesValue;
+			while ( (timeSeriesValue = valueReader.next()) != null ) {
+				blackhole.consume ( timeSeriesValue );
+			}
+		}
+	}
+
+}
@@ -0,0 +1,107 @@
+// KiWISValuesDajsonBenchmark - benchmark for parsing getTimeseriesValues dajson responses
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openwaterfoundation.tstool.plugin.kiwis.dto.JacksonToolkit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Benchmark for parsing a 'getTimeseriesValues' response in 'dajson' format,
+ * which readTimeSeriesValues() can use instead of 'csv'.
+ * The response is parsed into a JsonNode tree using JacksonToolkit, as done by readTimeSeriesValues(),
+ * and the "data" rows are then visited, for comparison with KiWISValuesCsvBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+public class KiWISValuesDajsonBenchmark {
+
+	/**
+	 * Number of rows in the response.
+	 */
+	@Param({ "10000", "100000", "1000000", "10000000" })
+	public int rows;
+
+	/**
+	 * Transport that returns the response.
+	 */
+	private KiWISBenchmarkFixtures.FixtureHttpTransport transport = null;
+
+	/**
+	 * Request URL.
+	 */
+	private String url = null;
+
+	/**
+	 * Create the response.
+	 * @throws IOException if the fixture cannot be read
+	 */
+	@Setup(Level.Trial)
+	public void setup () throws IOException {
+		this.transport = new KiWISBenchmarkFixtures.FixtureHttpTransport();
+		this.transport.addResponse ( "getTimeseriesValues",
+			KiWISBenchmarkFixtures.createValuesDajson(KiWISBenchmarkFixtures.IRREGULAR_VALUES, this.rows) );
+		this.url = KiWISBenchmarkFixtures.getRequestUrl ( "getTimeseriesValues", "dajson" );
+	}
+
+	/**
+	 * Parse the response and visit the value rows.
+	 * @param blackhole used to consume each value
+	 * @throws IOException if the response cannot be read
+	 */
+	@Benchmark
+	public void readTimeSeriesValues ( Blackhole blackhole ) throws IOException {
+		String arrayName = null;
+		JsonNode jsonNode = JacksonToolkit.getInstance().getJsonNodeFromWebServiceUrl(this.transport, this.url, arrayName);
+		for ( JsonNode block : jsonNode ) {
+			for ( JsonNode row : block.path("data") ) {
+				blackhole.consume ( row.get(0).asText() );
+				blackhole.consume ( row.get(1).asDouble() );
+				blackhole.consume ( row.get(2).asInt() );
+				blackhole.consume ( row.get(3).asInt() );
+			}
+		}
+	}
+
+}
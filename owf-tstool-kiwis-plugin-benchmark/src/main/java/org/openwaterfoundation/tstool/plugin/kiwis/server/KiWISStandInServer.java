@@ -0,0 +1,1030 @@
+// KiWISStandInServer - local HTTP server that implements KiWIS query services using a synthetic system
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.server;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.openwaterfoundation.tstool.plugin.kiwis.datastore.KiWISBenchmarkFixtures;
+
+/**
+ * Local HTTP server that implements the KiWIS query services used by the KiWIS datastore,
+ * using a KiWISSyntheticSystem for data.
+ * The server allows KiWISDataStore to be tested and load-tested end to end, including HTTP and response parsing,
+ * without a KiWIS web service.
+ * Use the getServiceRootURI() value as the datastore 'ServiceRootURI' property.
+ * <p>
+ * The following requests are implemented:
+ * <ul>
+ * <li> getParameterList (csv, json, objson)</li>
+ * <li> getParameterTypeList (csv, json, objson)</li>
+ * <li> getQualityCodes (csv, json)</li>
+ * <li> getSiteList (csv, json, objson)</li>
+ * <li> getStationList (csv, json, objson)</li>
+ * <li> getTimeseriesList (csv, json, objson), including 'coverage' in 'returnfields'</li>
+ * <li> getTimeseriesValues (csv, dajson), including a comma-separated 'ts_id' list</li>
+ * </ul>
+ * List requests can be filtered using any returned field (e.g., 'station_no=ST00000*,ST0000100'),
+ * using comma-separated values and * wildcards.
+ * Latency can be added to each request to simulate a remote server.
+ * The values for a time series can be replaced with the rows of a fixture (see setFixtureValues()),
+ * for example to test timestamps and values that the synthetic system does not create.
+ * The server can be run from the command line using main() or started in a benchmark.
+ */
+public class KiWISStandInServer {
+
+	/**
+	 * Default port.
+	 */
+	public static final int DEFAULT_PORT = 18080;
+
+	/**
+	 * Context (path) for the service, consistent with KiWIS.
+	 */
+	public static final String CONTEXT = "/KiWIS/KiWIS";
+
+	/**
+	 * Query parameters that are used for the service and therefore are not filters.
+	 */
+	private static final Set<String> SERVICE_PARAMETERS = new HashSet<>(Arrays.asList(
+		"datasource", "format", "from", "period", "request", "returnfields", "service", "to", "type"));
+
+	/**
+	 * The 'ts_id' for the edge case values (see the 'EdgeCases' main() argument).
+	 */
+	public static final String EDGE_CASE_TS_ID = "" + KiWISSyntheticSystem.TS_ID_OFFSET;
+
+	/**
+	 * Fixture with the edge case values, which include timestamps with different offsets and fractional seconds,
+	 * missing and NaN values, and equal and decreasing timestamps.
+	 */
+	public static final String EDGE_CASE_FIXTURE = "getTimeseriesValues-edge-cases.csv";
+
+	/**
+	 * Fields that can be returned by 'getTimeseriesValues'.
+	 */
+	private static final List<String> VALUE_FIELDS = Arrays.asList(
+		"Timestamp", "Value", "Quality Code", "Interpolation Type" );
+
+	/**
+	 * Synthetic system that provides the data.
+	 */
+	private final KiWISSyntheticSystem system;
+
+	/**
+	 * HTTP server.
+	 */
+	private final HttpServer server;
+
+	/**
+	 * Executor for the HTTP server.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * JSON factory used to create generators.
+	 */
+	private final JsonFactory jsonFactory = new JsonFactory();
+
+	/**
+	 * Latency added to each request before responding, milliseconds.
+	 */
+	private volatile int latencyMs = 0;
+
+	/**
+	 * Random latency added to the latency (0 to this value), milliseconds.
+	 */
+	private volatile int latencyJitterMs = 0;
+
+	/**
+	 * Number of requests that have been received.
+	 */
+	private final AtomicLong requestCount = new AtomicLong();
+
+	/**
+	 * Fixture values that replace the synthetic values, by time series index.
+	 */
+	private final Map<Integer,FixtureValues> fixtureValuesMap = new ConcurrentHashMap<>();
+
+	/**
+	 * Values from a 'getTimeseriesValues' csv fixture.
+	 * The rows are returned as in the fixture, other than selecting the requested fields,
+	 * so that timestamps and values are not reformatted.
+	 */
+	private static class FixtureValues {
+		/**
+		 * Fields in the fixture, from the '#' header row (e.g., "#Timestamp;Value;Quality Code;Interpolation Type").
+		 */
+		private final List<String> fields = new ArrayList<>();
+
+		/**
+		 * Rows in the fixture, each with a string for each field.
+		 */
+		private final List<String[]> rows = new ArrayList<>();
+
+		/**
+		 * Timestamp for each row, seconds since 1970-01-01T00:00:00Z, used to select rows in the requested period.
+		 */
+		private final List<Long> times = new ArrayList<>();
+
+		/**
+		 * Append a row to a response, with the requested fields.
+		 * @param b StringBuilder to append to
+		 * @param row the fixture row
+		 * @param requestFields the requested fields
+		 * @param json whether to format for 'dajson' (quoted timestamp and null for missing values), otherwise 'csv'
+		 */
+		private void appendRow ( StringBuilder b, String [] row, List<String> requestFields, boolean json ) {
+			for ( int i = 0; i < requestFields.size(); i++ ) {
+				if ( i > 0 ) {
+					b.append(json ? ',' : ';');
+				}
+				int pos = this.fields.indexOf(requestFields.get(i));
+				String value = (pos < 0) ? "" : row[pos];
+				if ( !json ) {
+					b.append(value);
+				}
+				else if ( requestFields.get(i).equals("Timestamp") ) {
+					b.append('"').append(value).append('"');
+				}
+				else {
+					b.append(value.isEmpty() ? "null" : value);
+				}
+			}
+		}
+
+		/**
+		 * Return the rows in a period.
+		 * @param from start of the period (inclusive), seconds since 1970-01-01T00:00:00Z
+		 * @param to end of the period (inclusive), seconds since 1970-01-01T00:00:00Z
+		 * @return the rows in the period, in the order of the fixture
+		 */
+		private List<String[]> getRows ( long from, long to ) {
+			List<String[]> rowList = new ArrayList<>();
+			for ( int i = 0; i < this.rows.size(); i++ ) {
+				if ( (this.times.get(i) >= from) && (this.times.get(i) <= to) ) {
+					rowList.add(this.rows.get(i));
+				}
+			}
+			return rowList;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * @param system synthetic system that provides the data
+	 * @param port the port to listen on, or 0 to use an available port (see getPort())
+	 * @param threadCount number of threads used to handle requests
+	 * @throws IOException if the server cannot be created (e.g., the port is in use)
+	 */
+	public KiWISStandInServer ( KiWISSyntheticSystem system, int port, int threadCount ) throws IOException {
+		this.system = system;
+		// Only listen on the loopback address because the server is for local testing.
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.server.createContext(CONTEXT, this::handle);
+		this.executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+			Thread thread = new Thread(runnable, "KiWISStandInServer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.server.setExecutor(this.executor);
+	}
+
+	/**
+	 * Append a row to a CSV response.
+	 * @param b StringBuilder to append to
+	 * @param values values to append
+	 */
+	private void appendCsvRow ( StringBuilder b, List<String> values ) {
+		for ( int i = 0; i < values.size(); i++ ) {
+			if ( i > 0 ) {
+				b.append(';');
+			}
+			b.append(values.get(i));
+		}
+		b.append('\n');
+	}
+
+	/**
+	 * Create a filter pattern from a comma-separated query parameter value with * wildcards.
+	 * @param value query parameter value
+	 * @return pattern that matches any of the values
+	 */
+	private Pattern createFilterPattern ( String value ) {
+		StringBuilder regex = new StringBuilder();
+		for ( String part : value.split(",") ) {
+			if ( regex.length() > 0 ) {
+				regex.append('|');
+			}
+			String [] pieces = part.trim().split("\\*", -1);
+			for ( int i = 0; i < pieces.length; i++ ) {
+				if ( i > 0 ) {
+					regex.append(".*");
+				}
+				if ( !pieces[i].isEmpty() ) {
+					regex.append(Pattern.quote(pieces[i]));
+				}
+			}
+		}
+		return Pattern.compile(regex.toString());
+	}
+
+	/**
+	 * Return the number of requests that have been received.
+	 * @return the number of requests that have been received
+	 */
+	public long getRequestCount () {
+		return this.requestCount.get();
+	}
+
+	/**
+	 * Return the port that the server is listening on.
+	 * @return the port that the server is listening on
+	 */
+	public int getPort () {
+		return this.server.getAddress().getPort();
+	}
+
+	/**
+	 * Return the service root URI to use for the datastore 'ServiceRootURI' property.
+	 * @return the service root URI
+	 */
+	public String getServiceRootURI () {
+		return "http://localhost:" + getPort() + CONTEXT + "?datasource=0&service=kisters&type=queryServices";
+	}
+
+	/**
+	 * Return the object indices for the stations in a 'station_no' or 'ts_path' filter,
+	 * used to avoid checking all objects in a large system.
+	 * @param source source of the objects
+	 * @param name filter name, 'station_no' or 'ts_path'
+	 * @param value filter value, comma-separated
+	 * @return the indices of objects for the stations, or null if a station is not specified exactly (has a wildcard)
+	 */
+	private int [] getStationIndices ( ListSource source, String name, String value ) {
+		List<Integer> indexList = new ArrayList<>();
+		for ( String stationNo : value.split(",") ) {
+			if ( name.equals("ts_path") ) {
+				// The 'station_no' is the second part of the path.
+				String [] parts = stationNo.split("/");
+				stationNo = (parts.length > 1) ? parts[1] : "*";
+			}
+			if ( stationNo.indexOf('*') >= 0 ) {
+				return null;
+			}
+			int stationIndex = this.system.getStationIndex(stationNo.trim());
+			if ( stationIndex >= 0 ) {
+				int [] range = source.getStationRange(stationIndex);
+				for ( int i = range[0]; i < range[1]; i++ ) {
+					indexList.add(i);
+				}
+			}
+		}
+		return indexList.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Return the synthetic system that provides the data.
+	 * @return the synthetic system
+	 */
+	public KiWISSyntheticSystem getSystem () {
+		return this.system;
+	}
+
+	/**
+	 * Handle a request.
+	 * @param exchange the HTTP exchange
+	 * @throws IOException if there is an error writing the response
+	 */
+	private void handle ( HttpExchange exchange ) throws IOException {
+		this.requestCount.incrementAndGet();
+		try {
+			sleepLatency();
+			Map<String,String> parameters = parseQuery ( exchange.getRequestURI().getRawQuery() );
+			String request = parameters.get("request");
+			if ( request == null ) {
+				throw new IllegalArgumentException ( "The 'request' parameter is required." );
+			}
+			switch ( request.toLowerCase() ) {
+				case "getparameterlist":
+					writeList ( exchange, parameters, KiWISSyntheticSystem.PARAMETER_FIELDS,
+						KiWISSyntheticSystem.PARAMETER_FIELDS, new ListSource() {
+						public int getCount () { return system.getParameterCount(); }
+						public String getField ( int index, String field ) { return system.getParameterField(index, field); }
+						public int [] getStationRange ( int stationIndex ) {
+							int first = stationIndex*KiWISSyntheticSystem.PARAMETERS_PER_STATION;
+							return new int [] { first,
+								Math.min(first + KiWISSyntheticSystem.PARAMETERS_PER_STATION, system.getParameterCount()) };
+						}
+					});
+					break;
+				case "getparametertypelist":
+					writeList ( exchange, parameters, KiWISSyntheticSystem.PARAMETER_TYPE_FIELDS,
+						KiWISSyntheticSystem.PARAMETER_TYPE_FIELDS, new ListSource() {
+						public int getCount () { return system.getParameterTypeCount(); }
+						public String getField ( int index, String field ) { return system.getParameterTypeField(index, field); }
+					});
+					break;
+				case "getqualitycodes":
+					writeList ( exchange, parameters, KiWISSyntheticSystem.QUALITY_CODE_FIELDS,
+						KiWISSyntheticSystem.QUALITY_CODE_FIELDS, new ListSource() {
+						public int getCount () { return system.getQualityCodeCount(); }
+						public String getField ( int index, String field ) { return system.getQualityCodeField(index, field); }
+					});
+					break;
+				case "getsitelist":
+					writeList ( exchange, parameters, KiWISSyntheticSystem.SITE_FIELDS,
+						KiWISSyntheticSystem.SITE_FIELDS, new ListSource() {
+						public int getCount () { return system.getSiteCount(); }
+						public String getField ( int index, String field ) { return system.getSiteField(index, field); }
+					});
+					break;
+				case "getstationlist":
+					writeList ( exchange, parameters, KiWISSyntheticSystem.STATION_FIELDS,
+						KiWISSyntheticSystem.STATION_FIELDS, new ListSource() {
+						public int getCount () { return system.getStationCount(); }
+						public String getField ( int index, String field ) { return system.getStationField(index, field); }
+						public int [] getStationRange ( int stationIndex ) { return new int [] { stationIndex, stationIndex + 1 }; }
+					});
+					break;
+				case "gettimeserieslist":
+					writeList ( exchange, parameters, KiWISSyntheticSystem.TIME_SERIES_FIELDS,
+						KiWISSyntheticSystem.TIME_SERIES_DEFAULT_FIELDS, new ListSource() {
+						public int getCount () { return system.getTimeSeriesCount(); }
+						public String getField ( int index, String field ) { return system.getTimeSeriesField(index, field); }
+						public int [] getStationRange ( int stationIndex ) { return system.getTimeSeriesRange(stationIndex); }
+						public int getIndex ( String tsId ) { return system.getTimeSeriesIndex(tsId); }
+					});
+					break;
+				case "gettimeseriesvalues":
+					writeValues ( exchange, parameters );
+					break;
+				default:
+					throw new IllegalArgumentException ( "Request '" + request + "' is not supported." );
+			}
+		}
+		catch ( IllegalArgumentException e ) {
+			// Error in the request, which is detected before the response headers are sent.
+			byte [] bytes = ("Error: " + e.getMessage()).getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain;charset=utf-8");
+			exchange.sendResponseHeaders(400, bytes.length);
+			try ( OutputStream out = exchange.getResponseBody() ) {
+				out.write(bytes);
+			}
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			exchange.sendResponseHeaders(503, -1);
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Source of objects for a list request.
+	 */
+	private interface ListSource {
+		/**
+		 * Return the number of objects.
+		 */
+		public int getCount ();
+
+		/**
+		 * Return an object field value.
+		 */
+		public String getField ( int index, String field );
+
+		/**
+		 * Return the range of object indices (first and after last) for a station,
+		 * or null if objects cannot be selected by station.
+		 */
+		public default int [] getStationRange ( int stationIndex ) {
+			return null;
+		}
+
+		/**
+		 * Return the object index for a 'ts_id', or -2 if objects cannot be selected by 'ts_id'.
+		 */
+		public default int getIndex ( String tsId ) {
+			return -2;
+		}
+	}
+
+	/**
+	 * Open the response stream, using gzip if the client accepts it (as HttpTransport does).
+	 * @param exchange the HTTP exchange
+	 * @param contentType the response content type
+	 * @return writer for the response
+	 * @throws IOException if the response cannot be started
+	 */
+	private Writer openResponse ( HttpExchange exchange, String contentType ) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		boolean gzip = (acceptEncoding != null) && acceptEncoding.toLowerCase().contains("gzip");
+		if ( gzip ) {
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+		// Length 0 indicates a chunked response, which allows large responses to be streamed.
+		exchange.sendResponseHeaders(200, 0);
+		OutputStream out = exchange.getResponseBody();
+		if ( gzip ) {
+			// Use the fastest compression so that the server does not limit the request rate.
+			out = new GZIPOutputStream(out, 65536) {
+				{
+					this.def.setLevel(Deflater.BEST_SPEED);
+				}
+			};
+		}
+		return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 65536);
+	}
+
+	/**
+	 * Parse a 'from' or 'to' query parameter, which can be a date, date and time,
+	 * or date and time with offset (e.g., 2022-01-01, 2022-01-01 00:00, 2022-01-01T00:00:00-07:00).
+	 * If an offset is not specified, the system offset is used.
+	 * @param name parameter name, used in messages
+	 * @param value parameter value
+	 * @return the time as seconds since 1970-01-01T00:00:00Z
+	 */
+	private long parseDateTime ( String name, String value ) {
+		ZoneOffset offset = ZoneOffset.ofTotalSeconds(this.system.getUtcOffset());
+		String s = value.trim().replace(' ', 'T');
+		try {
+			if ( s.length() == 10 ) {
+				return LocalDate.parse(s).atStartOfDay().toEpochSecond(offset);
+			}
+			else {
+				return OffsetDateTime.parse(s, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toEpochSecond();
+			}
+		}
+		catch ( DateTimeParseException e ) {
+			// Try without the offset below.
+		}
+		try {
+			return LocalDateTime.parse(s).toEpochSecond(offset);
+		}
+		catch ( DateTimeParseException e ) {
+			throw new IllegalArgumentException ( "Invalid '" + name + "' value '" + value + "'." );
+		}
+	}
+
+	/**
+	 * Parse a 'period' query parameter (e.g., P1D, PT6H, P1Y), returning the length in seconds.
+	 * Days are 86400 seconds, consistent with the synthetic system not having daylight saving time.
+	 * @param value parameter value
+	 * @return the period length, seconds
+	 */
+	private long parsePeriod ( String value ) {
+		try {
+			int pos = value.indexOf('T');
+			long seconds = 0;
+			if ( pos < 0 ) {
+				pos = value.length();
+			}
+			if ( pos > 1 ) {
+				// Date part, using an approximate length for years and months.
+				Period period = Period.parse(value.substring(0, pos));
+				seconds += (period.getYears()*365L + period.getMonths()*30L + period.getDays())*86400L;
+			}
+			if ( pos < value.length() ) {
+				seconds += Duration.parse("P" + value.substring(pos)).getSeconds();
+			}
+			return seconds;
+		}
+		catch ( DateTimeParseException e ) {
+			throw new IllegalArgumentException ( "Invalid 'period' value '" + value + "'." );
+		}
+	}
+
+	/**
+	 * Parse the query string into a map, with lowercase parameter names and decoded values.
+	 * @param query the raw (encoded) query string
+	 * @return map of query parameters, in the order of the query string
+	 */
+	private Map<String,String> parseQuery ( String query ) {
+		Map<String,String> parameters = new LinkedHashMap<>();
+		if ( query == null ) {
+			return parameters;
+		}
+		for ( String pair : query.split("&") ) {
+			if ( pair.isEmpty() ) {
+				continue;
+			}
+			int pos = pair.indexOf('=');
+			String name = (pos < 0) ? pair : pair.substring(0, pos);
+			String value = (pos < 0) ? "" : pair.substring(pos + 1);
+			parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8).toLowerCase(),
+				URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return parameters;
+	}
+
+	/**
+	 * Parse 'returnfields', expanding 'coverage' to 'from' and 'to'.
+	 * @param parameters query parameters
+	 * @param allFields all fields that can be returned
+	 * @param defaultFields fields that are returned if 'returnfields' is not specified
+	 * @return the fields to return
+	 */
+	private List<String> parseReturnFields ( Map<String,String> parameters, String [] allFields, String [] defaultFields ) {
+		String returnFields = parameters.get("returnfields");
+		if ( (returnFields == null) || returnFields.trim().isEmpty() ) {
+			return Arrays.asList(defaultFields);
+		}
+		List<String> allFieldList = Arrays.asList(allFields);
+		List<String> fields = new ArrayList<>();
+		for ( String field : returnFields.split(",") ) {
+			field = field.trim();
+			if ( field.equals("coverage") && allFieldList.contains("from") ) {
+				fields.add("from");
+				fields.add("to");
+			}
+			else if ( allFieldList.contains(field) ) {
+				fields.add(field);
+			}
+			else {
+				throw new IllegalArgumentException ( "Unknown field '" + field + "' in 'returnfields'." );
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Set the latency that is added to each request, to simulate a remote server.
+	 * @param latencyMs latency, milliseconds
+	 * @param latencyJitterMs additional random latency (0 to this value), milliseconds
+	 */
+	public void setLatency ( int latencyMs, int latencyJitterMs ) {
+		this.latencyMs = Math.max(0, latencyMs);
+		this.latencyJitterMs = Math.max(0, latencyJitterMs);
+	}
+
+	/**
+	 * Replace the values for a time series with the rows of a 'getTimeseriesValues' csv fixture.
+	 * Rows are returned in the order of the fixture if the timestamp is in the requested period.
+	 * @param tsId the 'ts_id' of the time series
+	 * @param fixture the fixture file name in the 'fixtures' resource folder
+	 * @throws IOException if the fixture cannot be read
+	 */
+	public void setFixtureValues ( String tsId, String fixture ) throws IOException {
+		int index = this.system.getTimeSeriesIndex(tsId);
+		if ( index < 0 ) {
+			throw new IllegalArgumentException ( "No time series with 'ts_id' " + tsId + "." );
+		}
+		FixtureValues fixtureValues = new FixtureValues();
+		for ( String line : new String(KiWISBenchmarkFixtures.readResource(fixture), StandardCharsets.UTF_8).split("\n") ) {
+			line = line.trim();
+			if ( line.startsWith("#ts_id;") || line.startsWith("#rows;") || line.isEmpty() ) {
+				continue;
+			}
+			else if ( line.startsWith("#") ) {
+				fixtureValues.fields.addAll(Arrays.asList(line.substring(1).split(";")));
+			}
+			else {
+				String [] row = line.split(";", -1);
+				int timestampPos = fixtureValues.fields.indexOf("Timestamp");
+				if ( (timestampPos < 0) || (row.length != fixtureValues.fields.size()) ) {
+					throw new IOException ( "Fixture \"" + fixture + "\" row does not match the fields: " + line );
+				}
+				try {
+					fixtureValues.times.add(OffsetDateTime.parse(row[timestampPos]).toEpochSecond());
+				}
+				catch ( DateTimeParseException e ) {
+					throw new IOException ( "Fixture \"" + fixture + "\" has an invalid timestamp: " + line, e );
+				}
+				fixtureValues.rows.add(row);
+			}
+		}
+		this.fixtureValuesMap.put(index, fixtureValues);
+	}
+
+	/**
+	 * Sleep for the configured latency.
+	 * @throws InterruptedException if interrupted
+	 */
+	private void sleepLatency () throws InterruptedException {
+		int sleepMs = this.latencyMs;
+		if ( this.latencyJitterMs > 0 ) {
+			sleepMs += ThreadLocalRandom.current().nextInt(this.latencyJitterMs + 1);
+		}
+		if ( sleepMs > 0 ) {
+			Thread.sleep(sleepMs);
+		}
+	}
+
+	/**
+	 * Start the server.
+	 */
+	public void start () {
+		this.server.start();
+	}
+
+	/**
+	 * Stop the server, waiting up to 1 second for requests to complete.
+	 */
+	public void stop () {
+		this.server.stop(1);
+		this.executor.shutdownNow();
+	}
+
+	/**
+	 * Write the response for a list request, such as 'getTimeseriesList'.
+	 * @param exchange the HTTP exchange
+	 * @param parameters query parameters
+	 * @param allFields all fields that can be returned and used as filters
+	 * @param defaultFields fields that are returned if 'returnfields' is not specified
+	 * @param source source of the objects
+	 * @throws IOException if there is an error writing the response
+	 */
+	private void writeList ( HttpExchange exchange, Map<String,String> parameters, String [] allFields,
+		String [] defaultFields, ListSource source ) throws IOException {
+		String format = parameters.getOrDefault("format", "json");
+		if ( !format.equals("csv") && !format.equals("json") && !format.equals("objson") ) {
+			throw new IllegalArgumentException ( "Format '" + format + "' is not supported for the request." );
+		}
+		List<String> fields = parseReturnFields ( parameters, allFields, defaultFields );
+		boolean qualityCodes = (allFields == KiWISSyntheticSystem.QUALITY_CODE_FIELDS);
+
+		// Determine the filters and the range of objects to check:
+		// - an exact 'ts_id' list, or 'station_no' or 'ts_path' with exact stations, limits the objects that are checked,
+		//   which is important for large systems
+		List<String> allFieldList = Arrays.asList(allFields);
+		List<String> filterFields = new ArrayList<>();
+		List<Pattern> filterPatterns = new ArrayList<>();
+		int [] indices = null;
+		for ( Map.Entry<String,String> parameter : parameters.entrySet() ) {
+			String name = parameter.getKey();
+			String value = parameter.getValue();
+			if ( SERVICE_PARAMETERS.contains(name) ) {
+				continue;
+			}
+			if ( !allFieldList.contains(name) ) {
+				throw new IllegalArgumentException ( "Unknown query parameter '" + name + "'." );
+			}
+			if ( value.trim().equals("*") ) {
+				// Matches all objects (e.g., 'station_no=*' is used to read the full catalog).
+				continue;
+			}
+			filterFields.add(name);
+			filterPatterns.add(createFilterPattern(value));
+			if ( indices == null ) {
+				if ( name.equals("ts_id") && (value.indexOf('*') < 0) && (source.getIndex("") != -2) ) {
+					indices = Arrays.stream(value.split(",")).mapToInt(source::getIndex).filter(i -> i >= 0).toArray();
+				}
+				else if ( (name.equals("station_no") || name.equals("ts_path")) && (source.getStationRange(0) != null) ) {
+					indices = getStationIndices ( source, name, value );
+				}
+			}
+		}
+		int count = (indices == null) ? source.getCount() : indices.length;
+
+		try ( Writer writer = openResponse(exchange,
+			format.equals("csv") ? "text/csv;charset=utf-8" : "application/json;charset=utf-8") ) {
+			JsonGenerator generator = null;
+			StringBuilder b = new StringBuilder();
+			if ( format.equals("csv") ) {
+				appendCsvRow ( b, fields );
+				writer.write(b.toString());
+			}
+			else {
+				generator = this.jsonFactory.createGenerator(writer);
+				generator.writeStartArray();
+				if ( format.equals("json") && !qualityCodes ) {
+					// The first row contains the field names.
+					generator.writeStartArray();
+					for ( String field : fields ) {
+						generator.writeString(field);
+					}
+					generator.writeEndArray();
+				}
+			}
+			List<String> values = new ArrayList<>(fields.size());
+			for ( int i = 0; i < count; i++ ) {
+				int index = (indices == null) ? i : indices[i];
+				boolean matched = true;
+				for ( int iFilter = 0; iFilter < filterFields.size(); iFilter++ ) {
+					if ( !filterPatterns.get(iFilter).matcher(source.getField(index, filterFields.get(iFilter))).matches() ) {
+						matched = false;
+						break;
+					}
+				}
+				if ( !matched ) {
+					continue;
+				}
+				values.clear();
+				for ( String field : fields ) {
+					values.add(source.getField(index, field));
+				}
+				if ( format.equals("csv") ) {
+					b.setLength(0);
+					appendCsvRow ( b, values );
+					writer.write(b.toString());
+				}
+				else if ( format.equals("objson") || qualityCodes ) {
+					generator.writeStartObject();
+					for ( int iField = 0; iField < fields.size(); iField++ ) {
+						if ( qualityCodes && fields.get(iField).equals("key") ) {
+							// KiWIS returns the quality code key as a number.
+							generator.writeNumberField("key", Integer.parseInt(values.get(iField)));
+						}
+						else {
+							generator.writeStringField(fields.get(iField), values.get(iField));
+						}
+					}
+					generator.writeEndObject();
+				}
+				else {
+					generator.writeStartArray();
+					for ( String value : values ) {
+						generator.writeString(value);
+					}
+					generator.writeEndArray();
+				}
+			}
+			if ( generator != null ) {
+				generator.writeEndArray();
+				generator.flush();
+			}
+		}
+	}
+
+	/**
+	 * Write the response for a 'getTimeseriesValues' request.
+	 * @param exchange the HTTP exchange
+	 * @param parameters query parameters
+	 * @throws IOException if there is an error writing the response
+	 */
+	private void writeValues ( HttpExchange exchange, Map<String,String> parameters ) throws IOException {
+		String format = parameters.getOrDefault("format", "dajson");
+		if ( !format.equals("csv") && !format.equals("dajson") ) {
+			throw new IllegalArgumentException ( "Format '" + format + "' is not supported for 'getTimeseriesValues'." );
+		}
+		String tsIds = parameters.get("ts_id");
+		if ( (tsIds == null) || tsIds.trim().isEmpty() ) {
+			throw new IllegalArgumentException ( "The 'ts_id' parameter is required." );
+		}
+		String [] tsIdParts = tsIds.split(",");
+		int [] indices = new int[tsIdParts.length];
+		for ( int i = 0; i < tsIdParts.length; i++ ) {
+			indices[i] = this.system.getTimeSeriesIndex(tsIdParts[i]);
+			if ( indices[i] < 0 ) {
+				throw new IllegalArgumentException ( "No time series with 'ts_id' " + tsIdParts[i].trim() + "." );
+			}
+		}
+		List<String> fields = new ArrayList<>();
+		String returnFields = parameters.get("returnfields");
+		for ( String field : ((returnFields == null) ? "Timestamp,Value" : returnFields).split(",") ) {
+			if ( !VALUE_FIELDS.contains(field.trim()) ) {
+				throw new IllegalArgumentException ( "Unknown field '" + field + "' in 'returnfields'." );
+			}
+			fields.add(field.trim());
+		}
+
+		// Determine the period, consistent with KiWIS:
+		// - 'period=complete' returns all values
+		// - 'from' and 'to' can be used with 'period' to specify the period
+		// - if no period is specified, values for the last day are returned
+		long from;
+		long to;
+		String fromString = parameters.get("from");
+		String toString = parameters.get("to");
+		String period = parameters.get("period");
+		if ( "complete".equalsIgnoreCase(period) ) {
+			from = Long.MIN_VALUE/2;
+			to = Long.MAX_VALUE/2;
+		}
+		else {
+			from = (fromString == null) ? Long.MIN_VALUE : parseDateTime("from", fromString);
+			to = (toString == null) ? Long.MIN_VALUE : parseDateTime("to", toString);
+			long periodSeconds = (period == null) ? 86400 : parsePeriod(period);
+			if ( (from == Long.MIN_VALUE) && (to == Long.MIN_VALUE) ) {
+				long [] coverage = this.system.getCoverage(indices[0]);
+				to = (coverage == null) ? Long.MAX_VALUE/2 : coverage[1];
+				from = to - periodSeconds;
+			}
+			else if ( from == Long.MIN_VALUE ) {
+				from = to - periodSeconds;
+			}
+			else if ( to == Long.MIN_VALUE ) {
+				to = (period == null) ? Long.MAX_VALUE/2 : from + periodSeconds;
+			}
+		}
+
+		int timestampPos = fields.indexOf("Timestamp");
+		int valuePos = fields.indexOf("Value");
+		int qualityPos = fields.indexOf("Quality Code");
+		int interpolationPos = fields.indexOf("Interpolation Type");
+		final long fromFinal = from;
+		final long toFinal = to;
+		try ( Writer writer = openResponse(exchange,
+			format.equals("csv") ? "text/csv;charset=utf-8" : "application/json;charset=utf-8") ) {
+			StringBuilder b = new StringBuilder(128);
+			if ( format.equals("csv") ) {
+				for ( int index : indices ) {
+					FixtureValues fixtureValues = this.fixtureValuesMap.get(index);
+					List<String[]> fixtureRows = (fixtureValues == null) ? null : fixtureValues.getRows(fromFinal, toFinal);
+					int rows = (fixtureRows == null) ? this.system.getValueCount(index, fromFinal, toFinal) : fixtureRows.size();
+					writer.write("#ts_id;" + (KiWISSyntheticSystem.TS_ID_OFFSET + index) + "\n");
+					writer.write("#rows;" + rows + "\n");
+					writer.write("#" + String.join(";", fields) + "\n");
+					if ( fixtureRows != null ) {
+						for ( String [] row : fixtureRows ) {
+							b.setLength(0);
+							fixtureValues.appendRow ( b, row, fields, false );
+							b.append('\n');
+							writer.write(b.toString());
+						}
+						continue;
+					}
+					this.system.visitValues(index, fromFinal, toFinal, (time, value, qualityCode, interpolationType) -> {
+						b.setLength(0);
+						for ( int i = 0; i < fields.size(); i++ ) {
+							if ( i > 0 ) {
+								b.append(';');
+							}
+							if ( i == timestampPos ) {
+								this.system.appendTimestamp(b, time);
+							}
+							else if ( i == valuePos ) {
+								KiWISSyntheticSystem.appendValue(b, value);
+							}
+							else if ( i == qualityPos ) {
+								b.append(qualityCode);
+							}
+							else if ( i == interpolationPos ) {
+								b.append(interpolationType);
+							}
+						}
+						b.append('\n');
+						writer.write(b.toString());
+					});
+				}
+			}
+			else {
+				// Format the JSON directly because it is simple and the values are formatted consistent with KiWIS.
+				writer.write("[");
+				for ( int iTs = 0; iTs < indices.length; iTs++ ) {
+					int index = indices[iTs];
+					FixtureValues fixtureValues = this.fixtureValuesMap.get(index);
+					List<String[]> fixtureRows = (fixtureValues == null) ? null : fixtureValues.getRows(fromFinal, toFinal);
+					int rows = (fixtureRows == null) ? this.system.getValueCount(index, fromFinal, toFinal) : fixtureRows.size();
+					writer.write((iTs == 0 ? "" : ",") + "{\"ts_id\":\"" + (KiWISSyntheticSystem.TS_ID_OFFSET + index)
+						+ "\",\"rows\":\"" + rows + "\",\"columns\":\"" + String.join(",", fields) + "\",\"data\":[");
+					if ( fixtureRows != null ) {
+						for ( int iRow = 0; iRow < fixtureRows.size(); iRow++ ) {
+							b.setLength(0);
+							b.append(iRow == 0 ? "[" : ",[");
+							fixtureValues.appendRow ( b, fixtureRows.get(iRow), fields, true );
+							b.append(']');
+							writer.write(b.toString());
+						}
+						writer.write("]}");
+						continue;
+					}
+					boolean [] first = { true };
+					this.system.visitValues(index, fromFinal, toFinal, (time, value, qualityCode, interpolationType) -> {
+						b.setLength(0);
+						b.append(first[0] ? "[" : ",[");
+						first[0] = false;
+						for ( int i = 0; i < fields.size(); i++ ) {
+							if ( i > 0 ) {
+								b.append(',');
+							}
+							if ( i == timestampPos ) {
+								b.append('"');
+								this.system.appendTimestamp(b, time);
+								b.append('"');
+							}
+							else if ( i == valuePos ) {
+								KiWISSyntheticSystem.appendValue(b, value);
+							}
+							else if ( i == qualityPos ) {
+								b.append(qualityCode);
+							}
+							else if ( i == interpolationPos ) {
+								b.append(interpolationType);
+							}
+						}
+						b.append(']');
+						writer.write(b.toString());
+					});
+					writer.write("]}");
+				}
+				writer.write("]");
+			}
+		}
+	}
+
+	/**
+	 * Run the server from the command line, using Name=Value arguments:
+	 * <ul>
+	 * <li> Port - port to listen on (default is 18080)</li>
+	 * <li> TimeSeriesCount - number of time series (default is 10000)</li>
+	 * <li> PeriodStart, PeriodEnd - period for values, as ISO date/time with offset
+	 *      (default is 2013-01-01T00:00-07:00 to 2023-01-01T00:00-07:00)</li>
+	 * <li> LatencyMs - latency added to each request, milliseconds (default is 0)</li>
+	 * <li> LatencyJitterMs - random latency added to each request, milliseconds (default is 0)</li>
+	 * <li> Threads - number of threads to handle requests (default is 16)</li>
+	 * <li> EdgeCases - if True, replace the values for EDGE_CASE_TS_ID with EDGE_CASE_FIXTURE (default is False)</li>
+	 * </ul>
+	 * @param args command line arguments
+	 * @throws Exception if the server cannot be started
+	 */
+	public static void main ( String [] args ) throws Exception {
+		Map<String,String> props = new LinkedHashMap<>();
+		for ( String arg : args ) {
+			int pos = arg.indexOf('=');
+			if ( pos <= 0 ) {
+				System.err.println("Arguments must be Name=Value: " + arg);
+				System.exit(1);
+			}
+			props.put(arg.substring(0, pos), arg.substring(pos + 1));
+		}
+		int port = Integer.parseInt(props.getOrDefault("Port", "" + DEFAULT_PORT));
+		int timeSeriesCount = Integer.parseInt(props.getOrDefault("TimeSeriesCount", "10000"));
+		OffsetDateTime periodStart = props.containsKey("PeriodStart") ?
+			OffsetDateTime.parse(props.get("PeriodStart")) : KiWISSyntheticSystem.getDefaultPeriodStart();
+		OffsetDateTime periodEnd = props.containsKey("PeriodEnd") ?
+			OffsetDateTime.parse(props.get("PeriodEnd")) : KiWISSyntheticSystem.getDefaultPeriodEnd();
+		int threads = Integer.parseInt(props.getOrDefault("Threads", "16"));
+
+		KiWISSyntheticSystem system = new KiWISSyntheticSystem(timeSeriesCount, periodStart, periodEnd);
+		KiWISStandInServer server = new KiWISStandInServer(system, port, threads);
+		server.setLatency(Integer.parseInt(props.getOrDefault("LatencyMs", "0")),
+			Integer.parseInt(props.getOrDefault("LatencyJitterMs", "0")));
+		boolean edgeCases = props.getOrDefault("EdgeCases", "False").equalsIgnoreCase("True");
+		if ( edgeCases ) {
+			server.setFixtureValues(EDGE_CASE_TS_ID, EDGE_CASE_FIXTURE);
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+		server.start();
+		System.out.println("KiWIS stand-in server with " + timeSeriesCount + " time series ("
+			+ system.getStationCount() + " stations, period " + periodStart + " to " + periodEnd + ").");
+		if ( edgeCases ) {
+			System.out.println("Values for ts_id " + EDGE_CASE_TS_ID + " are from fixture " + EDGE_CASE_FIXTURE + ".");
+		}
+		System.out.println("ServiceRootURI = \"" + server.getServiceRootURI() + "\"");
+		System.out.println("Press Ctrl-C to stop.");
+		// The server threads are daemon threads so wait here until the JVM is stopped.
+		Thread.currentThread().join();
+	}
+
+}
@@ -0,0 +1,812 @@
+// KiWISSyntheticSystem - deterministic synthetic KiWIS system for the stand-in server
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.server;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Deterministic synthetic KiWIS system, used by KiWISStandInServer to respond to requests.
+ * The system contains sites, stations, parameters (station parameters), and time series,
+ * which are computed from their index rather than being saved in memory,
+ * so that large systems (e.g., 1,000,000 time series) can be simulated without a large heap.
+ * Each station has PARAMETERS_PER_STATION parameters, and each parameter has a time series for each time series type
+ * (irregular "Cmd.Final", hourly "Hour.Mean", and daily "Day.Mean").
+ * <p>
+ * Time series values are computed from the time series index and timestamp, with seasonal and daily cycles and noise.
+ * The same request therefore always returns the same response, and values for overlapping periods are the same
+ * regardless of how a period is split into requests.
+ * All time series have values for the system period, using the time zone offset of the period start.
+ */
+public class KiWISSyntheticSystem {
+
+	/**
+	 * Maximum number of time series.
+	 */
+	public static final int MAX_TIME_SERIES_COUNT = 10000000;
+
+	/**
+	 * Number of parameters for each station.
+	 */
+	public static final int PARAMETERS_PER_STATION = 2;
+
+	/**
+	 * Number of sites, which stations are distributed across.
+	 */
+	public static final int SITE_COUNT = 10;
+
+	/**
+	 * Offset added to the time series index to create the 'ts_id', similar in magnitude to real systems.
+	 */
+	public static final int TS_ID_OFFSET = 1000000;
+
+	/**
+	 * Offset added to the station index to create the 'station_id'.
+	 */
+	private static final int STATION_ID_OFFSET = 10000;
+
+	/**
+	 * Spacing of the grid for irregular time series values, seconds.
+	 * A value is included for about 3/4 of the grid timestamps.
+	 */
+	private static final int IRREGULAR_GRID_SECONDS = 300;
+
+	/**
+	 * Number of seconds in a day and year, used for the value cycles.
+	 */
+	private static final int DAY_SECONDS = 86400;
+	private static final double YEAR_SECONDS = 365.25*DAY_SECONDS;
+
+	/**
+	 * Values within this many seconds before the end of the period are "Provisional" rather than "Approved".
+	 */
+	private static final long PROVISIONAL_SECONDS = 30L*DAY_SECONDS;
+
+	/**
+	 * Quality code keys, consistent with the 'getQualityCodes' response.
+	 */
+	public static final int QUALITY_CODE_APPROVED = 40;
+	public static final int QUALITY_CODE_PROVISIONAL = 80;
+	public static final int QUALITY_CODE_UNCHECKED = 200;
+
+	/**
+	 * Quality codes as: key, code, description, color.
+	 */
+	private static final String [][] QUALITY_CODES = {
+		{ "" + QUALITY_CODE_APPROVED, "Approved", "Data approved for publication", "rgba(46, 139, 87, 1.0)" },
+		{ "" + QUALITY_CODE_PROVISIONAL, "Provisional", "Provisional data subject to revision", "rgba(255, 165, 0, 1.0)" },
+		{ "" + QUALITY_CODE_UNCHECKED, "Unchecked", "Data have not been checked", "rgba(128, 128, 128, 1.0)" },
+		{ "255", "Missing", "Missing data", "rgba(255, 0, 0, 1.0)" }
+	};
+
+	/**
+	 * Parameter definition, used to create station parameters and values.
+	 */
+	private static class ParameterDefinition {
+		final String no;
+		final String name;
+		final String longName;
+		final String typeId;
+		final String typeName;
+		final String unitName;
+		final String unitSymbol;
+		// Value = base + annual cycle + daily cycle + noise, limited to the minimum.
+		final double base;
+		final double annualAmplitude;
+		final double dailyAmplitude;
+		final double noise;
+		final double min;
+
+		ParameterDefinition ( String no, String name, String longName, String typeId, String typeName,
+			String unitName, String unitSymbol, double base, double annualAmplitude, double dailyAmplitude,
+			double noise, double min ) {
+			this.no = no;
+			this.name = name;
+			this.longName = longName;
+			this.typeId = typeId;
+			this.typeName = typeName;
+			this.unitName = unitName;
+			this.unitSymbol = unitSymbol;
+			this.base = base;
+			this.annualAmplitude = annualAmplitude;
+			this.dailyAmplitude = dailyAmplitude;
+			this.noise = noise;
+			this.min = min;
+		}
+	}
+
+	/**
+	 * Parameters, which are also the parameter types.
+	 */
+	private static final ParameterDefinition [] PARAMETERS = {
+		new ParameterDefinition ( "Depth", "Depth", "Depth", "2014", "Depth", "meter", "m",
+			3.0, 1.0, 0.05, 0.02, 0.0 ),
+		new ParameterDefinition ( "Q", "Q", "Discharge", "2021", "Q", "cubic feet per second", "cfs",
+			50.0, 40.0, 5.0, 2.0, 0.0 ),
+		new ParameterDefinition ( "WTemp", "WTemp", "Water Temperature", "2030", "WaterTemperature", "degree Celsius", "degC",
+			10.0, 8.0, 2.0, 0.2, 0.0 ),
+		new ParameterDefinition ( "ATemp", "temp_vais_Avg", "Air Temperature", "2031", "AirTemperature", "degree Celsius", "degC",
+			10.0, 12.0, 6.0, 1.0, -40.0 ),
+		new ParameterDefinition ( "RH", "rhum_vais_Avg", "Relative Humidity", "2020", "RelativeHumidity", "percent", "%",
+			55.0, 15.0, 15.0, 5.0, 0.0 ),
+		new ParameterDefinition ( "Precip", "Precip", "Precipitation", "2040", "Precipitation", "inch", "in",
+			0.0, 0.02, 0.0, 0.05, 0.0 )
+	};
+
+	/**
+	 * Time series type definition.
+	 */
+	private static class TimeSeriesType {
+		final String shortName;
+		final String spacing;
+		final int spacingSeconds;
+		final int interpolationType;
+
+		TimeSeriesType ( String shortName, String spacing, int spacingSeconds, int interpolationType ) {
+			this.shortName = shortName;
+			this.spacing = spacing;
+			this.spacingSeconds = spacingSeconds;
+			this.interpolationType = interpolationType;
+		}
+	}
+
+	/**
+	 * Time series types, one time series of each type for each parameter:
+	 * - irregular (empty 'ts_spacing') with linear interpolation
+	 * - hourly and daily with the timestamp at the end of the interval (constant since previous timestamp)
+	 */
+	private static final TimeSeriesType [] TIME_SERIES_TYPES = {
+		new TimeSeriesType ( "Cmd.Final", "", 0, 102 ),
+		new TimeSeriesType ( "Hour.Mean", "PT1H", 3600, 104 ),
+		new TimeSeriesType ( "Day.Mean", "P1D", DAY_SECONDS, 104 )
+	};
+
+	/**
+	 * Fields for each object type, in the order returned if the request does not specify 'returnfields'.
+	 */
+	public static final String [] PARAMETER_FIELDS = {
+		"station_no", "station_id", "station_name", "stationparameter_name", "stationparameter_no",
+		"stationparameter_longname", "parametertype_id", "parametertype_name"
+	};
+	public static final String [] PARAMETER_TYPE_FIELDS = { "parametertype_id", "parametertype_name" };
+	public static final String [] QUALITY_CODE_FIELDS = { "key", "code", "description", "color" };
+	public static final String [] SITE_FIELDS = { "site_no", "site_id", "site_name" };
+	public static final String [] STATION_FIELDS = {
+		"station_no", "station_id", "station_name", "station_latitude", "station_longitude", "site_no", "site_id", "site_name"
+	};
+	public static final String [] TIME_SERIES_FIELDS = {
+		"catchment_id", "catchment_name", "catchment_no",
+		"parametertype_id", "parametertype_name",
+		"site_id", "site_name", "site_no",
+		"station_id", "station_longitude", "station_longname", "station_latitude", "station_name", "station_no",
+		"stationparameter_longname", "stationparameter_name", "stationparameter_no",
+		"ts_id", "ts_name", "ts_path", "ts_shortname", "ts_spacing", "ts_type_id", "ts_type_name",
+		"ts_unitname", "ts_unitsymbol", "ts_unitname_abs", "ts_unitsymbol_abs",
+		"from", "to"
+	};
+
+	/**
+	 * Default fields returned for 'getTimeseriesList' if 'returnfields' is not specified, consistent with KiWIS.
+	 */
+	public static final String [] TIME_SERIES_DEFAULT_FIELDS = {
+		"station_name", "station_no", "station_id", "ts_id", "ts_name", "parametertype_id", "parametertype_name"
+	};
+
+	/**
+	 * Number of time series.
+	 */
+	private final int timeSeriesCount;
+
+	/**
+	 * Period for values, as seconds since 1970-01-01T00:00:00Z.
+	 */
+	private final long periodStart;
+	private final long periodEnd;
+
+	/**
+	 * Time zone offset for timestamps, seconds.
+	 */
+	private final int utcOffset;
+
+	/**
+	 * Constructor.
+	 * @param timeSeriesCount number of time series (1 to MAX_TIME_SERIES_COUNT)
+	 * @param periodStart start of the period for values, which also determines the time zone offset for timestamps
+	 * @param periodEnd end of the period for values
+	 */
+	public KiWISSyntheticSystem ( int timeSeriesCount, OffsetDateTime periodStart, OffsetDateTime periodEnd ) {
+		if ( (timeSeriesCount < 1) || (timeSeriesCount > MAX_TIME_SERIES_COUNT) ) {
+			throw new IllegalArgumentException ( "Time series count (" + timeSeriesCount + ") must be 1 to "
+				+ MAX_TIME_SERIES_COUNT + "." );
+		}
+		if ( !periodEnd.isAfter(periodStart) ) {
+			throw new IllegalArgumentException ( "Period end (" + periodEnd + ") must be after period start ("
+				+ periodStart + ")." );
+		}
+		this.timeSeriesCount = timeSeriesCount;
+		this.periodStart = periodStart.toEpochSecond();
+		this.periodEnd = periodEnd.toEpochSecond();
+		this.utcOffset = periodStart.getOffset().getTotalSeconds();
+	}
+
+	/**
+	 * Return the first grid timestamp for a time series that is at or after a time.
+	 * @param type time series type
+	 * @param time time, seconds since 1970-01-01T00:00:00Z
+	 * @return the first grid timestamp at or after the time
+	 */
+	private long ceilingGridTime ( TimeSeriesType type, long time ) {
+		int spacing = getGridSeconds ( type );
+		// Grid times are aligned with local time (e.g., daily values are at local midnight).
+		long local = time + this.utcOffset;
+		long remainder = Math.floorMod(local, (long)spacing);
+		if ( remainder != 0 ) {
+			local += spacing - remainder;
+		}
+		return local - this.utcOffset;
+	}
+
+	/**
+	 * Return the last grid timestamp for a time series that is at or before a time.
+	 * @param type time series type
+	 * @param time time, seconds since 1970-01-01T00:00:00Z
+	 * @return the last grid timestamp at or before the time
+	 */
+	private long floorGridTime ( TimeSeriesType type, long time ) {
+		int spacing = getGridSeconds ( type );
+		long local = time + this.utcOffset;
+		return local - Math.floorMod(local, (long)spacing) - this.utcOffset;
+	}
+
+	/**
+	 * Return the coverage (first and last value timestamp) for a time series.
+	 * @param index time series index
+	 * @return the coverage as seconds since 1970-01-01T00:00:00Z, or null if the time series has no values
+	 */
+	public long [] getCoverage ( int index ) {
+		TimeSeriesType type = getTimeSeriesType ( index );
+		int spacing = getGridSeconds ( type );
+		long first = ceilingGridTime ( type, this.periodStart );
+		long last = floorGridTime ( type, this.periodEnd );
+		while ( (first <= last) && !isValueTime(index, type, first) ) {
+			first += spacing;
+		}
+		while ( (last >= first) && !isValueTime(index, type, last) ) {
+			last -= spacing;
+		}
+		if ( first > last ) {
+			return null;
+		}
+		return new long [] { first, last };
+	}
+
+	/**
+	 * Return the spacing of grid timestamps for a time series type, seconds.
+	 * @param type time series type
+	 * @return the spacing of grid timestamps
+	 */
+	private int getGridSeconds ( TimeSeriesType type ) {
+		return (type.spacingSeconds == 0) ? IRREGULAR_GRID_SECONDS : type.spacingSeconds;
+	}
+
+	/**
+	 * Return the number of parameters (station parameters).
+	 * @return the number of parameters
+	 */
+	public int getParameterCount () {
+		return (this.timeSeriesCount + TIME_SERIES_TYPES.length - 1)/TIME_SERIES_TYPES.length;
+	}
+
+	/**
+	 * Return a parameter (station parameter) field.
+	 * @param index parameter index
+	 * @param field field name
+	 * @return the field value, or null if the field is not known
+	 */
+	public String getParameterField ( int index, String field ) {
+		if ( field.startsWith("station_") ) {
+			return getStationField ( index/PARAMETERS_PER_STATION, field );
+		}
+		ParameterDefinition parameter = getParameterDefinition ( index );
+		switch ( field ) {
+			case "parametertype_id": return parameter.typeId;
+			case "parametertype_name": return parameter.typeName;
+			case "stationparameter_longname": return parameter.longName;
+			case "stationparameter_name": return parameter.name;
+			case "stationparameter_no": return parameter.no;
+			default: return null;
+		}
+	}
+
+	/**
+	 * Return the parameter definition for a parameter index.
+	 * Stations have different combinations of parameters.
+	 * @param index parameter index
+	 * @return the parameter definition
+	 */
+	private ParameterDefinition getParameterDefinition ( int index ) {
+		int stationIndex = index/PARAMETERS_PER_STATION;
+		int slot = index % PARAMETERS_PER_STATION;
+		// The offset between slots is 1 to PARAMETERS.length - 1 so that a station does not have the same parameter twice.
+		int slotOffset = 1 + (stationIndex/PARAMETERS.length) % (PARAMETERS.length - 1);
+		return PARAMETERS[(stationIndex + slot*slotOffset) % PARAMETERS.length];
+	}
+
+	/**
+	 * Return the number of parameter types.
+	 * @return the number of parameter types
+	 */
+	public int getParameterTypeCount () {
+		return PARAMETERS.length;
+	}
+
+	/**
+	 * Return a parameter type field.
+	 * @param index parameter type index
+	 * @param field field name
+	 * @return the field value, or null if the field is not known
+	 */
+	public String getParameterTypeField ( int index, String field ) {
+		switch ( field ) {
+			case "parametertype_id": return PARAMETERS[index].typeId;
+			case "parametertype_name": return PARAMETERS[index].typeName;
+			default: return null;
+		}
+	}
+
+	/**
+	 * Return the number of quality codes.
+	 * @return the number of quality codes
+	 */
+	public int getQualityCodeCount () {
+		return QUALITY_CODES.length;
+	}
+
+	/**
+	 * Return a quality code field.
+	 * @param index quality code index
+	 * @param field field name
+	 * @return the field value, or null if the field is not known
+	 */
+	public String getQualityCodeField ( int index, String field ) {
+		for ( int i = 0; i < QUALITY_CODE_FIELDS.length; i++ ) {
+			if ( QUALITY_CODE_FIELDS[i].equals(field) ) {
+				return QUALITY_CODES[index][i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Return the number of sites.
+	 * @return the number of sites
+	 */
+	public int getSiteCount () {
+		return Math.min(SITE_COUNT, getStationCount());
+	}
+
+	/**
+	 * Return a site field.
+	 * @param index site index
+	 * @param field field name
+	 * @return the field value, or null if the field is not known
+	 */
+	public String getSiteField ( int index, String field ) {
+		switch ( field ) {
+			case "site_id": return "" + (index + 1);
+			case "site_name": return "Synthetic Site " + (index + 1);
+			case "site_no": return "SITE" + formatNumber(index + 1, 2);
+			default: return null;
+		}
+	}
+
+	/**
+	 * Return the number of stations.
+	 * @return the number of stations
+	 */
+	public int getStationCount () {
+		return (getParameterCount() + PARAMETERS_PER_STATION - 1)/PARAMETERS_PER_STATION;
+	}
+
+	/**
+	 * Return a station field.
+	 * @param index station index
+	 * @param field field name
+	 * @return the field value, or null if the field is not known
+	 */
+	public String getStationField ( int index, String field ) {
+		if ( field.startsWith("site_") ) {
+			return getSiteField ( index % SITE_COUNT, field );
+		}
+		switch ( field ) {
+			case "station_id": return "" + (STATION_ID_OFFSET + index);
+			// Locations are on a grid in Colorado.
+			case "station_latitude":
+				StringBuilder latitude = new StringBuilder();
+				appendValue ( latitude, 37.0 + (index % 400)*0.01 );
+				return latitude.toString();
+			case "station_longitude":
+				StringBuilder longitude = new StringBuilder();
+				appendValue ( longitude, -109.0 + ((index/400) % 700)*0.01 );
+				return longitude.toString();
+			case "station_longname": return "Synthetic Station " + (index + 1);
+			case "station_name": return "Station " + (index + 1);
+			case "station_no": return getStationNo ( index );
+			default: return null;
+		}
+	}
+
+	/**
+	 * Return the station index for a 'station_no'.
+	 * @param stationNo the 'station_no'
+	 * @return the station index, or -1 if not matched
+	 */
+	public int getStationIndex ( String stationNo ) {
+		if ( (stationNo.length() != 9) || !stationNo.startsWith("ST") ) {
+			return -1;
+		}
+		try {
+			int index = Integer.parseInt(stationNo.substring(2));
+			if ( (index < getStationCount()) && stationNo.equals(getStationNo(index)) ) {
+				return index;
+			}
+		}
+		catch ( NumberFormatException e ) {
+		}
+		return -1;
+	}
+
+	/**
+	 * Return the 'station_no' for a station.
+	 * @param index station index
+	 * @return the 'station_no'
+	 */
+	private String getStationNo ( int index ) {
+		return "ST" + formatNumber(index, 7);
+	}
+
+	/**
+	 * Return the number of time series.
+	 * @return the number of time series
+	 */
+	public int getTimeSeriesCount () {
+		return this.timeSeriesCount;
+	}
+
+	/**
+	 * Return a time series field.
+	 * The "from" and "to" fields are the coverage, which is returned for the "coverage" field in KiWIS.
+	 * @param index time series index
+	 * @param field field name
+	 * @return the field value, or null if the field is not known
+	 */
+	public String getTimeSeriesField ( int index, String field ) {
+		int parameterIndex = index/TIME_SERIES_TYPES.length;
+		if ( field.startsWith("station_") || field.startsWith("site_") ) {
+			return getStationField ( parameterIndex/PARAMETERS_PER_STATION, field );
+		}
+		TimeSeriesType type = getTimeSeriesType ( index );
+		ParameterDefinition parameter = getParameterDefinition ( parameterIndex );
+		// Each site is a catchment.
+		int siteIndex = (parameterIndex/PARAMETERS_PER_STATION) % SITE_COUNT;
+		switch ( field ) {
+			case "catchment_id": return "" + (siteIndex + 1);
+			case "catchment_name": return "Synthetic Catchment " + (siteIndex + 1);
+			case "catchment_no": return "CATCH" + formatNumber(siteIndex + 1, 2);
+			case "parametertype_id":
+			case "parametertype_name":
+			case "stationparameter_longname":
+			case "stationparameter_name":
+			case "stationparameter_no":
+				return getParameterField ( parameterIndex, field );
+			case "ts_id": return "" + (TS_ID_OFFSET + index);
+			case "ts_name":
+			case "ts_shortname":
+				return type.shortName;
+			case "ts_path":
+				return getStationField(parameterIndex/PARAMETERS_PER_STATION, "site_no") + "/"
+					+ getStationNo(parameterIndex/PARAMETERS_PER_STATION) + "/" + parameter.no + "/" + type.shortName;
+			case "ts_spacing": return type.spacing;
+			case "ts_type_id": return "1";
+			case "ts_type_name": return "Normal";
+			case "ts_unitname":
+			case "ts_unitname_abs":
+				return parameter.unitName;
+			case "ts_unitsymbol":
+			case "ts_unitsymbol_abs":
+				return parameter.unitSymbol;
+			case "from":
+			case "to":
+				long [] coverage = getCoverage ( index );
+				if ( coverage == null ) {
+					return "";
+				}
+				return formatTimestamp ( field.equals("from") ? coverage[0] : coverage[1] );
+			default: return null;
+		}
+	}
+
+	/**
+	 * Return the time series index for a 'ts_id'.
+	 * @param tsId the 'ts_id'
+	 * @return the time series index, or -1 if not matched
+	 */
+	public int getTimeSeriesIndex ( String tsId ) {
+		try {
+			long index = Long.parseLong(tsId.trim()) - TS_ID_OFFSET;
+			if ( (index >= 0) && (index < this.timeSeriesCount) ) {
+				return (int)index;
+			}
+		}
+		catch ( NumberFormatException e ) {
+		}
+		return -1;
+	}
+
+	/**
+	 * Return the range of time series indices for a station.
+	 * @param stationIndex station index
+	 * @return the first time series index and the index after the last time series for the station
+	 */
+	public int [] getTimeSeriesRange ( int stationIndex ) {
+		int seriesPerStation = PARAMETERS_PER_STATION*TIME_SERIES_TYPES.length;
+		int first = stationIndex*seriesPerStation;
+		return new int [] { first, Math.min(first + seriesPerStation, this.timeSeriesCount) };
+	}
+
+	/**
+	 * Return the time series type for a time series index.
+	 * @param index time series index
+	 * @return the time series type
+	 */
+	private TimeSeriesType getTimeSeriesType ( int index ) {
+		return TIME_SERIES_TYPES[index % TIME_SERIES_TYPES.length];
+	}
+
+	/**
+	 * Return the time zone offset for timestamps, seconds.
+	 * @return the time zone offset for timestamps
+	 */
+	public int getUtcOffset () {
+		return this.utcOffset;
+	}
+
+	/**
+	 * Return the number of values for a time series in a period.
+	 * @param index time series index
+	 * @param from start of the period (inclusive), seconds since 1970-01-01T00:00:00Z
+	 * @param to end of the period (inclusive), seconds since 1970-01-01T00:00:00Z
+	 * @return the number of values
+	 */
+	public int getValueCount ( int index, long from, long to ) {
+		TimeSeriesType type = getTimeSeriesType ( index );
+		long first = ceilingGridTime ( type, Math.max(from, this.periodStart) );
+		long last = floorGridTime ( type, Math.min(to, this.periodEnd) );
+		if ( first > last ) {
+			return 0;
+		}
+		int spacing = getGridSeconds ( type );
+		if ( type.spacingSeconds > 0 ) {
+			return (int)((last - first)/spacing + 1);
+		}
+		int count = 0;
+		for ( long time = first; time <= last; time += spacing ) {
+			if ( isValueTime(index, type, time) ) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Return a hash for a time series and time, used for deterministic noise and irregular timestamps.
+	 * @param index time series index
+	 * @param time time, seconds since 1970-01-01T00:00:00Z
+	 * @return a hash with bits that are well distributed
+	 */
+	private static long hash ( int index, long time ) {
+		// SplitMix64 finalizer.
+		long z = index*0x9E3779B97F4A7C15L + time;
+		z = (z ^ (z >>> 30))*0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27))*0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Indicate whether a grid time has a value, which is always true for regular interval time series.
+	 * @param index time series index
+	 * @param type time series type
+	 * @param time grid time, seconds since 1970-01-01T00:00:00Z
+	 * @return true if the time has a value
+	 */
+	private boolean isValueTime ( int index, TimeSeriesType type, long time ) {
+		return (type.spacingSeconds > 0) || ((hash(index, time) & 3) != 0);
+	}
+
+	/**
+	 * Format a number with leading zeros, which is faster than String.format() for the large number of calls.
+	 * @param number the number (not negative)
+	 * @param width the minimum width
+	 * @return the formatted number
+	 */
+	private static String formatNumber ( int number, int width ) {
+		String s = Integer.toString(number);
+		if ( s.length() >= width ) {
+			return s;
+		}
+		StringBuilder b = new StringBuilder(width);
+		for ( int i = s.length(); i < width; i++ ) {
+			b.append('0');
+		}
+		return b.append(s).toString();
+	}
+
+	/**
+	 * Format a timestamp consistent with KiWIS (e.g., 2022-12-30T18:00:00.000-07:00).
+	 * @param time time, seconds since 1970-01-01T00:00:00Z
+	 * @return the formatted timestamp
+	 */
+	public String formatTimestamp ( long time ) {
+		StringBuilder b = new StringBuilder(29);
+		appendTimestamp ( b, time );
+		return b.toString();
+	}
+
+	/**
+	 * Append a timestamp consistent with KiWIS (e.g., 2022-12-30T18:00:00.000-07:00).
+	 * The timestamp is formatted without creating java.time objects because it is called for each value.
+	 * @param b the StringBuilder to append to
+	 * @param time time, seconds since 1970-01-01T00:00:00Z
+	 */
+	public void appendTimestamp ( StringBuilder b, long time ) {
+		long local = time + this.utcOffset;
+		long days = Math.floorDiv(local, (long)DAY_SECONDS);
+		int seconds = (int)Math.floorMod(local, (long)DAY_SECONDS);
+		// Convert days since 1970-01-01 to year, month, day (civil from days algorithm).
+		long z = days + 719468;
+		long era = Math.floorDiv(z, 146097);
+		long doe = z - era*146097;
+		long yoe = (doe - doe/1460 + doe/36524 - doe/146096)/365;
+		long doy = doe - (365*yoe + yoe/4 - yoe/100);
+		long mp = (5*doy + 2)/153;
+		int day = (int)(doy - (153*mp + 2)/5 + 1);
+		int month = (int)(mp < 10 ? mp + 3 : mp - 9);
+		long year = yoe + era*400 + (month <= 2 ? 1 : 0);
+		b.append(year).append('-');
+		append2 ( b, month );
+		b.append('-');
+		append2 ( b, day );
+		b.append('T');
+		append2 ( b, seconds/3600 );
+		b.append(':');
+		append2 ( b, (seconds/60) % 60 );
+		b.append(':');
+		append2 ( b, seconds % 60 );
+		b.append(".000");
+		b.append(ZoneOffset.ofTotalSeconds(this.utcOffset).getId());
+	}
+
+	/**
+	 * Append a number with two digits.
+	 * @param b the StringBuilder to append to
+	 * @param value the value (0 to 99)
+	 */
+	private static void append2 ( StringBuilder b, int value ) {
+		b.append((char)('0' + value/10));
+		b.append((char)('0' + value % 10));
+	}
+
+	/**
+	 * Append a value with up to two digits after the decimal point, without trailing zeros, consistent with KiWIS.
+	 * @param b the StringBuilder to append to
+	 * @param value the value
+	 */
+	public static void appendValue ( StringBuilder b, double value ) {
+		long hundredths = Math.round(value*100.0);
+		if ( hundredths < 0 ) {
+			b.append('-');
+			hundredths = -hundredths;
+		}
+		b.append(hundredths/100);
+		int fraction = (int)(hundredths % 100);
+		if ( fraction != 0 ) {
+			b.append('.');
+			b.append((char)('0' + fraction/10));
+			if ( (fraction % 10) != 0 ) {
+				b.append((char)('0' + fraction % 10));
+			}
+		}
+	}
+
+	/**
+	 * Visit the values for a time series in a period.
+	 * @param index time series index
+	 * @param from start of the period (inclusive), seconds since 1970-01-01T00:00:00Z
+	 * @param to end of the period (inclusive), seconds since 1970-01-01T00:00:00Z
+	 * @param visitor the visitor that is called for each value
+	 * @throws java.io.IOException if the visitor throws an exception
+	 */
+	public void visitValues ( int index, long from, long to, ValueVisitor visitor ) throws java.io.IOException {
+		TimeSeriesType type = getTimeSeriesType ( index );
+		ParameterDefinition parameter = getParameterDefinition ( index/TIME_SERIES_TYPES.length );
+		long first = ceilingGridTime ( type, Math.max(from, this.periodStart) );
+		long last = floorGridTime ( type, Math.min(to, this.periodEnd) );
+		int spacing = getGridSeconds ( type );
+		long provisionalStart = this.periodEnd - PROVISIONAL_SECONDS;
+		// Each station has a different phase and offset from the parameter base.
+		double phase = (hash(index, 0) & 0xFFFF)/65536.0*0.1;
+		double offset = parameter.base*0.2*((hash(index, 1) & 0xFFFF)/65536.0 - 0.5);
+		for ( long time = first; time <= last; time += spacing ) {
+			long h = hash ( index, time );
+			if ( (type.spacingSeconds == 0) && ((h & 3) == 0) ) {
+				// Irregular time series do not have a value at this time.
+				continue;
+			}
+			double yearFraction = (time % (long)YEAR_SECONDS)/YEAR_SECONDS;
+			double dayFraction = Math.floorMod(time + this.utcOffset, (long)DAY_SECONDS)/(double)DAY_SECONDS;
+			double value = parameter.base + offset
+				+ parameter.annualAmplitude*Math.sin(2.0*Math.PI*(yearFraction - 0.3 + phase))
+				+ parameter.dailyAmplitude*Math.sin(2.0*Math.PI*(dayFraction - 0.375))
+				+ parameter.noise*(((h >>> 16) & 0xFFFF)/65536.0*2.0 - 1.0);
+			value = Math.max(parameter.min, value);
+			int qualityCode = (time >= provisionalStart) ? QUALITY_CODE_PROVISIONAL : QUALITY_CODE_APPROVED;
+			if ( ((h >>> 32) % 500) == 0 ) {
+				qualityCode = QUALITY_CODE_UNCHECKED;
+			}
+			visitor.visitValue ( time, value, qualityCode, type.interpolationType );
+		}
+	}
+
+	/**
+	 * Visitor for time series values.
+	 */
+	public interface ValueVisitor {
+		/**
+		 * Visit a value.
+		 * @param time the value timestamp, seconds since 1970-01-01T00:00:00Z
+		 * @param value the value
+		 * @param qualityCode the quality code key
+		 * @param interpolationType the interpolation type
+		 * @throws java.io.IOException if the value cannot be written
+		 */
+		public void visitValue ( long time, double value, int qualityCode, int interpolationType ) throws java.io.IOException;
+	}
+
+	/**
+	 * Return the default period end, which is fixed so that responses do not change over time.
+	 * @return the default period end
+	 */
+	public static OffsetDateTime getDefaultPeriodEnd () {
+		return OffsetDateTime.of(2023, 1, 1, 0, 0, 0, 0, ZoneOffset.ofHours(-7));
+	}
+
+	/**
+	 * Return the default period start, which is 10 years before the default period end.
+	 * @return the default period start
+	 */
+	public static OffsetDateTime getDefaultPeriodStart () {
+		return getDefaultPeriodEnd().minusYears(10);
+	}
+
+}
@@ -0,0 +1,363 @@
+// KiWISStatistics_Command - This class initializes, checks, and runs the KiWISStatistics() command.
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JFrame;
+
+import org.openwaterfoundation.tstool.plugin.kiwis.datastore.KiWISDataStore;
+import org.openwaterfoundation.tstool.plugin.kiwis.datastore.KiWISMetrics;
+
+import riverside.datastore.DataStore;
+import rti.tscommandprocessor.core.TSCommandProcessor;
+import rti.tscommandprocessor.core.TSCommandProcessorUtil;
+import RTi.Util.IO.AbstractCommand;
+import RTi.Util.IO.Command;
+import RTi.Util.IO.CommandDiscoverable;
+import RTi.Util.IO.CommandException;
+import RTi.Util.IO.CommandLogRecord;
+import RTi.Util.IO.CommandPhaseType;
+import RTi.Util.IO.CommandProcessor;
+import RTi.Util.IO.CommandStatus;
+import RTi.Util.IO.CommandStatusType;
+import RTi.Util.IO.CommandWarningException;
+import RTi.Util.IO.InvalidCommandParameterException;
+import RTi.Util.IO.ObjectListProvider;
+import RTi.Util.IO.PropList;
+import RTi.Util.Message.Message;
+import RTi.Util.Message.MessageUtil;
+import RTi.Util.Table.DataTable;
+import RTi.Util.Table.TableField;
+import RTi.Util.Table.TableRecord;
+
+/**
+This class initializes, checks, and runs the KiWISStatistics() command,
+which creates a table of web service request and time series read statistics for a KiWIS datastore.
+*/
+public class KiWISStatistics_Command extends AbstractCommand
+implements Command, CommandDiscoverable, ObjectListProvider
+{
+
+/**
+Data values for boolean parameters.
+*/
+protected String _False = "False";
+protected String _True = "True";
+
+/**
+The table that is created in discovery mode.
+*/
+private DataTable __discoveryTable = null;
+
+/**
+Constructor.
+*/
+public KiWISStatistics_Command () {
+	super();
+	setCommandName ( "KiWISStatistics" );
+}
+
+/**
+Check the command parameter for valid values, combination, etc.
+@param parameters The parameters for the command.
+@param command_tag an indicator to be used when printing messages, to allow a cross-reference to the original commands.
+@param warning_level The warning level to use when printing parse warnings
+(recommended is 2 for initialization, and 1 for interactive command editor dialogs).
+*/
+public void checkCommandParameters ( PropList parameters, String command_tag, int warning_level )
+throws InvalidCommandParameterException {
+	String warning = "";
+    String message;
+
+    CommandStatus status = getCommandStatus();
+    status.clearLog(CommandPhaseType.INITIALIZATION);
+
+    String DataStore = parameters.getValue ( "DataStore" );
+    String TableID = parameters.getValue ( "TableID" );
+    String Reset = parameters.getValue ( "Reset" );
+
+	if ( (DataStore == null) || DataStore.isEmpty() ) {
+        message = "The datastore must be specified.";
+		warning += "\n" + message;
+        status.addToLog ( CommandPhaseType.INITIALIZATION,
+            new CommandLogRecord(CommandStatusType.FAILURE,
+                message, "Specify the datastore." ) );
+	}
+
+	if ( (TableID == null) || TableID.isEmpty() ) {
+        message = "The table identifier must be specified.";
+		warning += "\n" + message;
+        status.addToLog ( CommandPhaseType.INITIALIZATION,
+            new CommandLogRecord(CommandStatusType.FAILURE,
+                message, "Specify the table identifier." ) );
+	}
+
+	if ( (Reset != null) && !Reset.equals("") &&
+		!Reset.equalsIgnoreCase(_False) && !Reset.equalsIgnoreCase(_True) ) {
+        message = "The Reset parameter value is invalid.";
+		warning += "\n" + message;
+        status.addToLog ( CommandPhaseType.INITIALIZATION,
+            new CommandLogRecord(CommandStatusType.FAILURE,
+                message, "Specify " + _False + " (default) or " + _True ) );
+	}
+
+    // Check for invalid parameters.
+    List<String> validList = new ArrayList<>();
+    validList.add ( "DataStore" );
+    validList.add ( "TableID" );
+    validList.add ( "Reset" );
+    warning = TSCommandProcessorUtil.validateParameterNames ( validList, this, warning );
+
+	if ( warning.length() > 0 ) {
+		Message.printWarning ( warning_level,
+		MessageUtil.formatMessageTag(command_tag,warning_level),
+		warning );
+		throw new InvalidCommandParameterException ( warning );
+	}
+
+    status.refreshPhaseSeverity(CommandPhaseType.INITIALIZATION,CommandStatusType.SUCCESS);
+}
+
+/**
+Create the statistics table, with no records.
+@param tableID the table identifier
+@return the new table
+*/
+private DataTable createTable ( String tableID ) {
+	List<TableField> fieldList = new ArrayList<>();
+	fieldList.add ( new TableField(TableField.DATA_TYPE_STRING, "DataStore", -1, -1) );
+	fieldList.add ( new TableField(TableField.DATA_TYPE_STRING, "Category", -1, -1) );
+	fieldList.add ( new TableField(TableField.DATA_TYPE_STRING, "Statistic", -1, -1) );
+	fieldList.add ( new TableField(TableField.DATA_TYPE_DOUBLE, "Value", -1, 3) );
+	fieldList.add ( new TableField(TableField.DATA_TYPE_STRING, "Units", -1, -1) );
+	DataTable table = new DataTable ( fieldList );
+	table.setTableID ( tableID );
+	return table;
+}
+
+/**
+Edit the command.
+@param parent The parent JFrame to which the command dialog will belong.
+@return true if the command was edited (e.g., "OK" was pressed), and false if not (e.g., "Cancel" was pressed.
+*/
+public boolean editCommand ( JFrame parent ) {
+	// The command will be modified if changed.
+	return (new KiWISStatistics_JDialog ( parent, this )).ok();
+}
+
+/**
+Return the table that is read by this class when run in discovery mode.
+*/
+private DataTable getDiscoveryTable() {
+    return __discoveryTable;
+}
+
+/**
+Return the list of data objects created by this object in discovery mode.
+The following classes can be requested:  DataTable
+*/
+@SuppressWarnings("unchecked")
+public <T> List<T> getObjectList ( Class<T> c ) {
+    DataTable table = getDiscoveryTable();
+    if ( (table != null) && (c == table.getClass()) ) {
+        List<T> v = new ArrayList<>();
+        v.add ( (T)table );
+        return v;
+    }
+    return null;
+}
+
+// parseCommand is in parent class.
+
+/**
+Run the command.
+@param command_number Command number in sequence.
+@exception CommandWarningException Thrown if non-fatal warnings occur (the command could produce some results).
+@exception CommandException Thrown if fatal warnings occur (the command could not produce output).
+*/
+public void runCommand ( int command_number )
+throws InvalidCommandParameterException, CommandWarningException, CommandException {
+    runCommandInternal ( command_number, CommandPhaseType.RUN );
+}
+
+/**
+Run the command in discovery mode.
+@param command_number Command number in sequence.
+@exception CommandWarningException Thrown if non-fatal warnings occur (the command could produce some results).
+@exception CommandException Thrown if fatal warnings occur (the command could not produce output).
+*/
+public void runCommandDiscovery ( int command_number )
+throws InvalidCommandParameterException, CommandWarningException, CommandException {
+    runCommandInternal ( command_number, CommandPhaseType.DISCOVERY );
+}
+
+/**
+Run the command.
+@param command_number Number of command in sequence.
+@exception CommandWarningException Thrown if non-fatal warnings occur (the command could produce some results).
+@exception CommandException Thrown if fatal warnings occur (the command could not produce output).
+*/
+private void runCommandInternal ( int command_number, CommandPhaseType commandPhase )
+throws InvalidCommandParameterException, CommandWarningException, CommandException {
+	String routine = getClass().getSimpleName() + ".runCommandInternal", message;
+	int warning_level = 2;
+	String command_tag = "" + command_number;
+	int warning_count = 0;
+
+	PropList parameters = getCommandParameters();
+	CommandProcessor processor = getCommandProcessor();
+    CommandStatus status = getCommandStatus();
+    status.clearLog(commandPhase);
+
+    Boolean clearStatus = Boolean.TRUE; // Default.
+    try {
+    	Object o = processor.getPropContents("CommandsShouldClearRunStatus");
+    	if ( o != null ) {
+    		clearStatus = (Boolean)o;
+    	}
+    }
+    catch ( Exception e ) {
+    	// Should not happen.
+    }
+    if ( clearStatus ) {
+		status.clearLog(commandPhase);
+	}
+
+    if ( commandPhase == CommandPhaseType.DISCOVERY ) {
+        setDiscoveryTable ( null );
+    }
+
+	String DataStore = parameters.getValue ( "DataStore" );
+	String TableID = parameters.getValue ( "TableID" );
+	if ( commandPhase == CommandPhaseType.RUN ) {
+	    TableID = TSCommandProcessorUtil.expandParameterValue(processor, this, TableID);
+	}
+	String Reset = parameters.getValue ( "Reset" );
+	boolean reset = false; // Default
+	if ( (Reset != null) && Reset.equalsIgnoreCase(_True) ) {
+		reset = true;
+	}
+
+	try {
+		DataTable table = createTable ( TableID );
+		if ( commandPhase == CommandPhaseType.RUN ) {
+	        KiWISDataStore dataStore = null;
+			if ( (DataStore != null) && !DataStore.equals("") ) {
+			    DataStore dataStore0 = ((TSCommandProcessor)processor).getDataStoreForName( DataStore, KiWISDataStore.class );
+		        if ( dataStore0 != null ) {
+					dataStore = (KiWISDataStore)dataStore0;
+		        }
+		    }
+			if ( dataStore == null ) {
+	            message = "Cannot get KiWISDataStore for \"" + DataStore + "\".";
+	            Message.printWarning ( 2, routine, message );
+	            status.addToLog ( commandPhase,
+	                new CommandLogRecord(CommandStatusType.FAILURE,
+	                    message, "Verify that a KiWISDataStore datastore is properly configured." ) );
+	            throw new RuntimeException ( message );
+	        }
+			// Add a record for each statistic.
+			for ( KiWISMetrics.Statistic statistic : dataStore.getStatistics() ) {
+				TableRecord rec = new TableRecord();
+				rec.addFieldValue ( dataStore.getName() );
+				rec.addFieldValue ( statistic.getCategory() );
+				rec.addFieldValue ( statistic.getName() );
+				rec.addFieldValue ( Double.valueOf(statistic.getValue()) );
+				rec.addFieldValue ( statistic.getUnits() );
+				table.addRecord ( rec );
+			}
+			if ( reset ) {
+				// Reset the request statistics so that the next command only includes later requests.
+				dataStore.getMetrics().reset();
+			}
+
+			// Set the table in the processor.
+			PropList request_params = new PropList ( "" );
+			request_params.setUsingObject ( "Table", table );
+			try {
+				processor.processRequest( "SetTable", request_params);
+			}
+			catch ( Exception e ) {
+				message = "Error requesting SetTable(Table=...) from processor.";
+				Message.printWarning(warning_level,
+					MessageUtil.formatMessageTag( command_tag, ++warning_count),
+					routine, message );
+				status.addToLog ( commandPhase,
+					new CommandLogRecord(CommandStatusType.FAILURE,
+						message, "Report problem to software support." ) );
+			}
+		}
+		else if ( commandPhase == CommandPhaseType.DISCOVERY ) {
+			// Create an empty table so that the table identifier is available to other commands.
+			setDiscoveryTable ( table );
+		}
+	}
+	catch ( Exception e ) {
+		Message.printWarning ( 3, routine, e );
+		message = "Unexpected error creating the KiWIS statistics table (" + e + ").";
+		Message.printWarning ( warning_level,
+		MessageUtil.formatMessageTag(command_tag, ++warning_count),
+		routine, message );
+        status.addToLog ( commandPhase,
+            new CommandLogRecord(CommandStatusType.FAILURE,
+               message, "Report the problem to software support - also see the log file." ) );
+		throw new CommandException ( message );
+	}
+
+	// Throw CommandWarningException in case of problems.
+	if ( warning_count > 0 ) {
+		message = "There were " + warning_count + " warnings processing the command.";
+		Message.printWarning ( warning_level,
+			MessageUtil.formatMessageTag(
+				command_tag, ++warning_count ),
+			routine, message );
+		throw new CommandWarningException ( message );
+	}
+
+    status.refreshPhaseSeverity(commandPhase,CommandStatusType.SUCCESS);
+}
+
+/**
+Set the table that is read by this class in discovery mode.
+*/
+private void setDiscoveryTable ( DataTable table ) {
+    __discoveryTable = table;
+}
+
+/**
+Return the string representation of the command.
+@param parameters parameters to include in the command
+@return the string representation of the command
+*/
+public String toString ( PropList parameters ) {
+	String [] parameterOrder = {
+    	"DataStore",
+    	"TableID",
+    	"Reset"
+	};
+	return this.toString(parameters, parameterOrder);
+}
+
+}
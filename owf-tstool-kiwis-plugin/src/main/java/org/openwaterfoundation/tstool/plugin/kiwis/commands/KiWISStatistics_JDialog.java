@@ -0,0 +1,421 @@
+// KiWISStatistics_JDialog - editor for the KiWISStatistics() command.
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.commands;
+
+import java.awt.FlowLayout;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.event.WindowEvent;
+import java.awt.event.WindowListener;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSeparator;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.SwingConstants;
+
+import org.openwaterfoundation.tstool.plugin.kiwis.datastore.KiWISDataStore;
+
+import riverside.datastore.DataStore;
+import rti.tscommandprocessor.core.TSCommandProcessor;
+import RTi.Util.GUI.JGUIUtil;
+import RTi.Util.GUI.SimpleJButton;
+import RTi.Util.GUI.SimpleJComboBox;
+import RTi.Util.Help.HelpViewer;
+import RTi.Util.IO.CommandProcessor;
+import RTi.Util.IO.PropList;
+import RTi.Util.Message.Message;
+
+/**
+Editor for the KiWISStatistics() command.
+*/
+@SuppressWarnings("serial")
+public class KiWISStatistics_JDialog extends JDialog
+implements ActionListener, ItemListener, KeyListener, WindowListener
+{
+private SimpleJButton __cancel_JButton = null;
+private SimpleJButton __ok_JButton = null;
+private SimpleJButton __help_JButton = null;
+private KiWISStatistics_Command __command = null;
+private SimpleJComboBox __DataStore_JComboBox = null;
+private JTextField __TableID_JTextField = null;
+private SimpleJComboBox __Reset_JComboBox = null;
+private JTextArea __command_JTextArea = null;
+private boolean __error_wait = false; // Is there an error to be cleared up?
+private boolean __first_time = true;
+private boolean __ok = false; // Was OK pressed when closing the dialog?
+
+/**
+Command editor constructor.
+@param parent JFrame class instantiating this class.
+@param command Command to edit.
+*/
+public KiWISStatistics_JDialog ( JFrame parent, KiWISStatistics_Command command ) {
+	super(parent, true);
+	initialize ( parent, command );
+}
+
+/**
+Responds to ActionEvents.
+@param event ActionEvent object
+*/
+public void actionPerformed( ActionEvent event ) {
+    Object o = event.getSource();
+
+    if ( o == __cancel_JButton ) {
+        response ( false );
+    }
+	else if ( o == __help_JButton ) {
+		HelpViewer.getInstance().showHelp("command", "KiWISStatistics",
+			"https://software.openwaterfoundation.org/tstool-kiwis-plugin/latest/doc-user");
+	}
+    else if ( o == __ok_JButton ) {
+        refresh ();
+        checkInput ();
+        if ( !__error_wait ) {
+            response ( true );
+        }
+    }
+    else {
+        // ComboBoxes.
+        refresh();
+    }
+}
+
+/**
+Check the input.  If errors exist, warn the user and set the __error_wait flag
+to true.  This should be called before response() is allowed to complete.
+*/
+private void checkInput () {
+    // Put together a list of parameters to check.
+	PropList props = new PropList ( "" );
+	__error_wait = false;
+    String DataStore = __DataStore_JComboBox.getSelected();
+    if ( DataStore.length() > 0 ) {
+        props.set ( "DataStore", DataStore );
+    }
+	String TableID = __TableID_JTextField.getText().trim();
+	if ( TableID.length() > 0 ) {
+		props.set ( "TableID", TableID );
+	}
+	String Reset = __Reset_JComboBox.getSelected();
+	if ( Reset.length() > 0 ) {
+		props.set ( "Reset", Reset );
+	}
+	try {
+	    // This will warn the user.
+		__command.checkCommandParameters ( props, null, 1 );
+	}
+	catch ( Exception e ) {
+		// The warning would have been printed in the check code.
+		__error_wait = true;
+	}
+}
+
+/**
+Commit the edits to the command.  In this case the command parameters have
+already been checked and no errors were detected.
+*/
+private void commitEdits () {
+	String DataStore = __DataStore_JComboBox.getSelected();
+    __command.setCommandParameter ( "DataStore", DataStore );
+	String TableID = __TableID_JTextField.getText().trim();
+	__command.setCommandParameter ( "TableID", TableID );
+	String Reset = __Reset_JComboBox.getSelected();
+	__command.setCommandParameter ( "Reset", Reset );
+}
+
+/**
+Instantiates the GUI components.
+@param parent JFrame class instantiating this class.
+@param command Command to edit.
+*/
+private void initialize ( JFrame parent, KiWISStatistics_Command command ) {
+	__command = command;
+	CommandProcessor processor = __command.getCommandProcessor();
+	addWindowListener( this );
+    Insets insetsTLBR = new Insets(2,2,2,2);
+
+	JPanel main_JPanel = new JPanel();
+	main_JPanel.setLayout( new GridBagLayout() );
+	getContentPane().add ( "North", main_JPanel );
+	int y = -1;
+
+    JGUIUtil.addComponent(main_JPanel, new JLabel (
+    	"Create a table containing statistics for the web service requests made by a KiWIS datastore."),
+        0, ++y, 7, 1, 0, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.WEST);
+   	JGUIUtil.addComponent(main_JPanel, new JLabel (
+		"Statistics include request counts, errors, retries, bytes received, request time percentiles, and values per second," ),
+		0, ++y, 7, 1, 0, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.WEST);
+   	JGUIUtil.addComponent(main_JPanel, new JLabel (
+		"for each request type, and statistics for the value cache, request coalescing, and concurrency limit." ),
+		0, ++y, 7, 1, 0, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.WEST);
+   	JGUIUtil.addComponent(main_JPanel, new JLabel (
+		"Statistics are accumulated since the datastore was opened or the statistics were last reset." ),
+		0, ++y, 7, 1, 0, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.WEST);
+
+    JGUIUtil.addComponent(main_JPanel, new JSeparator(SwingConstants.HORIZONTAL),
+        0, ++y, 7, 1, 0, 0, insetsTLBR, GridBagConstraints.HORIZONTAL, GridBagConstraints.WEST);
+
+    JGUIUtil.addComponent(main_JPanel, new JLabel ( "KiWIS datastore:"),
+        0, ++y, 1, 1, 0, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.EAST);
+    __DataStore_JComboBox = new SimpleJComboBox ( false );
+    TSCommandProcessor tsProcessor = (TSCommandProcessor)processor;
+    List<DataStore> dataStoreList = tsProcessor.getDataStoresByType( KiWISDataStore.class );
+    // Datastore is required, so no blank
+    List<String> datastoreChoices = new ArrayList<>();
+    for ( DataStore dataStore: dataStoreList ) {
+    	datastoreChoices.add ( dataStore.getName() );
+    }
+    __DataStore_JComboBox.setData(datastoreChoices);
+    if ( datastoreChoices.size() > 0 ) {
+    	__DataStore_JComboBox.select ( 0 );
+    }
+    __DataStore_JComboBox.addItemListener ( this );
+    JGUIUtil.addComponent(main_JPanel, __DataStore_JComboBox,
+        1, y, 2, 1, 1, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.WEST);
+    JGUIUtil.addComponent(main_JPanel, new JLabel("Required - KiWIS datastore."),
+        3, y, 4, 1, 0, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.WEST);
+
+    JGUIUtil.addComponent(main_JPanel, new JLabel ( "Table ID:"),
+        0, ++y, 1, 1, 0, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.EAST);
+    __TableID_JTextField = new JTextField ( "", 20 );
+    __TableID_JTextField.setToolTipText("Identifier for the table that is created, can use ${Property}.");
+    __TableID_JTextField.addKeyListener ( this );
+    JGUIUtil.addComponent(main_JPanel, __TableID_JTextField,
+        1, y, 2, 1, 1, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.WEST);
+    JGUIUtil.addComponent(main_JPanel, new JLabel ( "Required - identifier for the output table."),
+        3, y, 4, 1, 0, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.WEST);
+
+    JGUIUtil.addComponent(main_JPanel, new JLabel ( "Reset:"),
+		0, ++y, 1, 1, 0, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.EAST);
+    List<String> Reset_List = new ArrayList<>( 3 );
+	Reset_List.add ( "" );
+	Reset_List.add ( __command._False );
+	Reset_List.add ( __command._True );
+	__Reset_JComboBox = new SimpleJComboBox ( false );
+	__Reset_JComboBox.setToolTipText("Reset the request statistics after creating the table.");
+	__Reset_JComboBox.setData ( Reset_List);
+	__Reset_JComboBox.select ( 0 );
+	__Reset_JComboBox.addActionListener ( this );
+    JGUIUtil.addComponent(main_JPanel, __Reset_JComboBox,
+		1, y, 2, 1, 1, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.WEST);
+    JGUIUtil.addComponent(main_JPanel, new JLabel (
+		"Optional - reset request statistics after creating the table (default=" + __command._False + ")."),
+		3, y, 4, 1, 0, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.WEST);
+
+    JGUIUtil.addComponent(main_JPanel, new JLabel ( "Command:"),
+		0, ++y, 1, 1, 0, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.EAST);
+	__command_JTextArea = new JTextArea (4,50);
+	__command_JTextArea.setLineWrap ( true );
+	__command_JTextArea.setWrapStyleWord ( true );
+	__command_JTextArea.setEditable ( false );
+	JGUIUtil.addComponent(main_JPanel, new JScrollPane(__command_JTextArea),
+		1, y, 6, 1, 1, 0, insetsTLBR, GridBagConstraints.BOTH, GridBagConstraints.WEST);
+
+	// Refresh the contents.
+	refresh ();
+
+	// South Panel: North
+	JPanel button_JPanel = new JPanel();
+	button_JPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
+        JGUIUtil.addComponent(main_JPanel, button_JPanel,
+		0, ++y, 8, 1, 1, 0, insetsTLBR, GridBagConstraints.HORIZONTAL, GridBagConstraints.CENTER);
+
+	__ok_JButton = new SimpleJButton("OK", this);
+	__ok_JButton.setToolTipText("Save changes to command");
+	button_JPanel.add ( __ok_JButton );
+	__cancel_JButton = new SimpleJButton( "Cancel", this);
+	button_JPanel.add ( __cancel_JButton );
+	__cancel_JButton.setToolTipText("Cancel without saving changes to command");
+	button_JPanel.add ( __help_JButton = new SimpleJButton("Help", this) );
+	__help_JButton.setToolTipText("Show command documentation in web browser");
+
+	setTitle ( "Edit " + __command.getCommandName() + " Command" );
+
+    pack();
+    JGUIUtil.center( this );
+	refresh();
+	setResizable ( false );
+    super.setVisible( true );
+}
+
+/**
+Respond to ItemEvents.
+*/
+public void itemStateChanged ( ItemEvent event ) {
+    refresh();
+}
+
+/**
+Respond to KeyEvents.
+*/
+public void keyPressed ( KeyEvent event ) {
+	refresh();
+}
+
+/**
+Need this to properly capture key events, especially deletes.
+*/
+public void keyReleased ( KeyEvent event ) {
+	refresh();
+}
+
+public void keyTyped ( KeyEvent event ) {
+}
+
+/**
+Indicate if the user pressed OK (cancel otherwise).
+@return true if the edits were committed, false if the user canceled.
+*/
+public boolean ok () {
+	return __ok;
+}
+
+/**
+Refresh the command string from the dialog contents.
+*/
+private void refresh () {
+	String routine = getClass().getSimpleName() + ".refresh";
+	__error_wait = false;
+	String DataStore = "";
+	String TableID = "";
+	String Reset = "";
+	PropList props = null;
+	if ( __first_time ) {
+		__first_time = false;
+		// Get the parameters from the command.
+		props = __command.getCommandParameters();
+	    DataStore = props.getValue ( "DataStore" );
+	    TableID = props.getValue ( "TableID" );
+	    Reset = props.getValue ( "Reset" );
+        // The data store list is set up in initialize() but is selected here.
+        if ( JGUIUtil.isSimpleJComboBoxItem(__DataStore_JComboBox, DataStore, JGUIUtil.NONE, null, null ) ) {
+            __DataStore_JComboBox.select ( DataStore );
+        }
+        else {
+            if ( (DataStore == null) || DataStore.equals("") ) {
+                // New command...select the default.
+                if ( __DataStore_JComboBox.getItemCount() > 0 ) {
+                	__DataStore_JComboBox.select ( 0 );
+                }
+            }
+            else {
+                // Bad user command.
+                Message.printWarning ( 1, routine, "Existing command references an invalid\n"+
+                  "DataStore parameter \"" + DataStore + "\".  Select a\ndifferent value or Cancel." );
+            }
+        }
+	    if ( TableID != null ) {
+		    __TableID_JTextField.setText ( TableID );
+	    }
+		if ( JGUIUtil.isSimpleJComboBoxItem(__Reset_JComboBox, Reset, JGUIUtil.NONE, null, null ) ) {
+			__Reset_JComboBox.select ( Reset );
+		}
+		else {
+            if ( (Reset == null) || Reset.equals("") ) {
+				// New command...select the default.
+				__Reset_JComboBox.select ( 0 );
+			}
+			else {
+				// Bad user command.
+				Message.printWarning ( 1, routine, "Existing command references an invalid\n"+
+				"Reset parameter \"" + Reset + "\".  Select a\ndifferent value or Cancel." );
+				__error_wait = true;
+			}
+		}
+	}
+	// Regardless, reset the command from the fields.
+	DataStore = __DataStore_JComboBox.getSelected();
+	if ( DataStore == null ) {
+		DataStore = "";
+	}
+	TableID = __TableID_JTextField.getText().trim();
+	Reset = __Reset_JComboBox.getSelected();
+	props = new PropList ( __command.getCommandName() );
+	props.add ( "DataStore=" + DataStore );
+	props.add ( "TableID=" + TableID );
+	props.add ( "Reset=" + Reset );
+	__command_JTextArea.setText( __command.toString ( props ).trim() );
+}
+
+/**
+React to the user response.
+@param ok if false, then the edit is canceled.  If true, the edit is committed
+and the dialog is closed.
+*/
+private void response ( boolean ok ) {
+	__ok = ok;	// Save to be returned by ok().
+	if ( ok ) {
+		// Commit the changes.
+		commitEdits ();
+		if ( __error_wait ) {
+			// Not ready to close.
+			return;
+		}
+	}
+	// Now close out...
+	setVisible( false );
+	dispose();
+}
+
+/**
+Responds to WindowEvents.
+@param event WindowEvent object
+*/
+public void windowClosing( WindowEvent event ) {
+	response ( false );
+}
+
+public void windowActivated( WindowEvent evt ) {
+}
+
+public void windowClosed( WindowEvent evt ) {
+}
+
+public void windowDeactivated( WindowEvent evt ) {
+}
+
+public void windowDeiconified( WindowEvent evt ) {
+}
+
+public void windowIconified( WindowEvent evt ) {
+}
+
+public void windowOpened( WindowEvent evt ) {
+}
+
+}
@@ -25,6 +25,12 @@ package org.openwaterfoundation.tstool.plugin.kiwis.commands;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.swing.JFrame;
 
@@ -116,6 +122,7 @@ throws InvalidCommandParameterException {
     String IrregularInterval = parameters.getValue ( "IrregularInterval" );
     String Read24HourAsDay = parameters.getValue ( "Read24HourAsDay" );
     String ReadDayAs24Hour = parameters.getValue ( "ReadDayAs24Hour" );
+    String MaxConcurrency = parameters.getValue ( "MaxConcurrency" );
     String Debug = parameters.getValue ( "Debug" );
     String InputFiltersCheck = parameters.getValue ( "InputFiltersCheck" ); // Passed in from the editor, not an actual parameter.
     String Where1 = parameters.getValue ( "Where1" );
@@ -211,6 +218,16 @@ throws InvalidCommandParameterException {
                    message, "Specify one of IrregularInterval, Read24HourAsDay=True, or ReadDayAs24Hour=True."));
 	}
 
+	if ( (MaxConcurrency != null) && !MaxConcurrency.isEmpty() && (MaxConcurrency.indexOf("${") < 0) ) {
+		if ( !StringUtil.isInteger(MaxConcurrency) || (Integer.parseInt(MaxConcurrency) < 1) ) {
+			message = "The MaxConcurrency parameter value (" + MaxConcurrency + ") is invalid.";
+			warning += "\n" + message;
+			status.addToLog ( CommandPhaseType.INITIALIZATION,
+				new CommandLogRecord(CommandStatusType.FAILURE,
+					message, "Specify an integer 1 or larger." ) );
+		}
+	}
+
 	if ( (Debug != null) && !Debug.equals("") &&
 		!Debug.equalsIgnoreCase(_False) && !Debug.equalsIgnoreCase(_True) ) {
         message = "The Debug parameter value is invalid.";
@@ -317,6 +334,7 @@ throws InvalidCommandParameterException {
     validList.add ( "Read24HourAsDay" );
     validList.add ( "ReadDayAs24Hour" );
     validList.add ( "Timezone" );
+    validList.add ( "MaxConcurrency" );
     validList.add ( "Debug" );
     warning = TSCommandProcessorUtil.validateParameterNames ( validList, this, warning );
 
@@ -497,6 +515,23 @@ throws InvalidCommandParameterException, CommandWarningException, CommandExcepti
     	readDayAs24Hour = true;
     }
 	String Timezone = parameters.getValue ("Timezone" );
+	String MaxConcurrency = parameters.getValue ("MaxConcurrency" );
+	MaxConcurrency = TSCommandProcessorUtil.expandParameterValue(getCommandProcessor(), this, MaxConcurrency);
+	Integer maxConcurrencyReq = null; // Default is from the datastore.
+	if ( (MaxConcurrency != null) && !MaxConcurrency.isEmpty() ) {
+		// Check the value after expanding properties, which is not checked in checkCommandParameters().
+		if ( StringUtil.isInteger(MaxConcurrency) && (Integer.parseInt(MaxConcurrency) >= 1) ) {
+			maxConcurrencyReq = Integer.valueOf(MaxConcurrency);
+		}
+		else {
+			message = "The MaxConcurrency parameter value (" + MaxConcurrency + ") is invalid.";
+			Message.printWarning ( warning_level,
+				MessageUtil.formatMessageTag(command_tag,++warning_count), routine, message );
+			status.addToLog ( commandPhase,
+				new CommandLogRecord(CommandStatusType.FAILURE,
+					message, "Specify an integer 1 or larger, or a property that has such a value." ) );
+		}
+	}
 	String Debug = parameters.getValue ("Debug" );
 	boolean debug = false; // Default
 	if ( (Debug != null) && Debug.equalsIgnoreCase(_True) ) {
@@ -745,18 +780,12 @@ throws InvalidCommandParameterException, CommandWarningException, CommandExcepti
 				Message.printStatus ( 2, "", "Reading " + size + " time series..." );
 
 				String tsidentString = null; // TSIdent string.
-				TS ts; // Time series to read.
 				TimeSeriesCatalog tsCatalog;
 				HashMap<String,Object> readProperties = createReadProperties ( Timezone, debug, IrregularInterval,
 					read24HourAsDay, readDayAs24Hour );
+				// First create the list of time series identifiers so that the time series can be read in batches.
+				List<String> tsidentStringList = new ArrayList<>(size);
 				for ( int i = 0; i < size; i++ ) {
-					// Check to see if reading time series should be canceled because the command has been canceled.
-					if ( tsprocessor.getCancelProcessingRequested() ) {
-						// The user has requested that command processing should be canceled.
-						// Check here in this command because a very large query could take a long time before a single command finishes.
-						Message.printStatus(2, routine, "Cancel processing based on user request.");
-						break;
-					}
 					// List in order of likelihood to improve performance.
 					tsidentString = null; // Do this in case there is no active match.
 					tsCatalog = (TimeSeriesCatalog)tsCatalogList.get(i);
@@ -795,32 +824,119 @@ throws InvalidCommandParameterException, CommandWarningException, CommandExcepti
 						+ ".KiWIS"
 						+ "." + dataType
 						+ "." + interval;
-		            // Update the progress.
-					message = "Reading KiWIS web service time series " + (i + 1) + " of " + size + " \"" + tsidentString + "\"";
-	                notifyCommandProgressListeners ( i, size, (float)-1.0, message );
-					try {
-					    ts = dataStore.readTimeSeries (
-							tsidentString,
-							InputStart_DateTime,
-							InputEnd_DateTime, readData, readProperties );
-						// Add the time series to the temporary list.  It will be further processed below.
-		                if ( (ts != null) && (Alias != null) && !Alias.equals("") ) {
-		                    ts.setAlias ( TSCommandProcessorUtil.expandTimeSeriesMetadataString(
-		                        processor, ts, Alias, status, commandPhase) );
-		                }
-		                // Allow null to be added here.
-						tslist.add ( ts );
+					tsidentStringList.add(tsidentString);
+				}
+
+				// Read the time series in batches:
+				// - the datastore reads the data values for each batch with one request
+				// - batches are read concurrently by up to MaxConcurrency threads
+				// - batch results are processed in catalog order regardless of the order that batches complete
+				int maxConcurrency = dataStore.getMaxConcurrency();
+				if ( maxConcurrencyReq != null ) {
+					maxConcurrency = maxConcurrencyReq;
+				}
+				int batchSize = dataStore.getValuesBatchSize();
+				if ( maxConcurrency > 1 ) {
+					// Use smaller batches if necessary so that each thread has work to do.
+					batchSize = Math.max(1, Math.min(batchSize, (size + maxConcurrency - 1)/maxConcurrency));
+				}
+				int batchCount = (size + batchSize - 1)/batchSize;
+				Message.printStatus ( 2, routine, "Reading " + size + " time series in " + batchCount
+					+ " batches using up to " + maxConcurrency + " concurrent requests." );
+				// Copies of variables for use in the threads.
+				final KiWISDataStore batchDataStore = dataStore;
+				final List<TimeSeriesCatalog> batchTsCatalogList = tsCatalogList;
+				final DateTime batchReadStart = InputStart_DateTime;
+				final DateTime batchReadEnd = InputEnd_DateTime;
+				final boolean batchReadData = readData;
+				final String threadName = "KiWIS-" + dataStore.getName() + "-ReadKiWIS";
+				ExecutorService executor = Executors.newFixedThreadPool ( Math.min(maxConcurrency, batchCount), runnable -> {
+					Thread thread = new Thread ( runnable, threadName );
+					thread.setDaemon ( true );
+					return thread;
+				});
+				try {
+					List<Future<List<TS>>> batchFutureList = new ArrayList<>(batchCount);
+					List<List<String>> batchProblemsList = new ArrayList<>(batchCount);
+					for ( int iStart = 0; iStart < size; iStart += batchSize ) {
+						List<String> batchTsidList = tsidentStringList.subList(iStart, Math.min(iStart + batchSize, size));
+						// The catalog is passed so that the datastore does not need to look up each time series.
+						List<TimeSeriesCatalog> batchTsCatalogSubList = batchTsCatalogList.subList(iStart, Math.min(iStart + batchSize, size));
+						List<String> problems = new ArrayList<>();
+						batchProblemsList.add ( problems );
+						batchFutureList.add ( executor.submit ( () -> {
+							if ( tsprocessor.getCancelProcessingRequested() ) {
+								// Don't start reading if processing has been canceled.
+								return null;
+							}
+							return batchDataStore.readTimeSeriesList (
+								batchTsidList, batchTsCatalogSubList, batchReadStart, batchReadEnd, batchReadData, readProperties, problems );
+						}));
 					}
-					catch ( Exception e ) {
-						message = "Unexpected error reading KiWIS web service time series \"" + tsidentString + "\" (" + e + ").";
-						Message.printWarning ( 2, routine, message );
-						Message.printWarning ( 2, routine, e );
-						++warning_count;
-	                    status.addToLog ( commandPhase,
-	                        new CommandLogRecord(CommandStatusType.FAILURE,
-	                           message, "Report the problem to software support - also see the log file." ) );
+					boolean canceled = false;
+					for ( int iBatch = 0; (iBatch < batchCount) && !canceled; iBatch++ ) {
+						int iStart = iBatch*batchSize;
+						int iEnd = Math.min(iStart + batchSize, size);
+			            // Update the progress.
+						message = "Reading KiWIS web service time series " + (iStart + 1) + " to " + iEnd + " of " + size;
+		                notifyCommandProgressListeners ( iStart, size, (float)-1.0, message );
+						List<String> problems = batchProblemsList.get(iBatch);
+						List<TS> batchTsList = null;
+						// Wait for the batch, checking periodically whether reading should be canceled
+						// because the command has been canceled.
+						// Check here in this command because a very large query could take a long time before a single command finishes.
+						while ( true ) {
+							if ( tsprocessor.getCancelProcessingRequested() ) {
+								// The user has requested that command processing should be canceled.
+								Message.printStatus(2, routine, "Cancel processing based on user request.");
+								canceled = true;
+								break;
+							}
+							try {
+								batchTsList = batchFutureList.get(iBatch).get(1, TimeUnit.SECONDS);
+								break;
+							}
+							catch ( TimeoutException e ) {
+								// Batch is still being read so check for cancel and wait again.
+							}
+							catch ( ExecutionException e ) {
+								Message.printWarning ( 3, routine, e.getCause() );
+								problems.add ( "Error reading time series " + (iStart + 1) + " to " + iEnd
+									+ " (" + e.getCause() + ")." );
+								break;
+							}
+						}
+						if ( canceled ) {
+							break;
+						}
+						if ( batchTsList != null ) {
+							for ( TS ts : batchTsList ) {
+								if ( ts == null ) {
+									// Problem is added below.
+									continue;
+								}
+								// Add the time series to the temporary list.  It will be further processed below.
+				                if ( (Alias != null) && !Alias.equals("") ) {
+				                    ts.setAlias ( TSCommandProcessorUtil.expandTimeSeriesMetadataString(
+				                        processor, ts, Alias, status, commandPhase) );
+				                }
+								tslist.add ( ts );
+							}
+						}
+						for ( String problem : problems ) {
+							message = "Unexpected error reading KiWIS web service time series: " + problem;
+							Message.printWarning ( 2, routine, message );
+							++warning_count;
+		                    status.addToLog ( commandPhase,
+		                        new CommandLogRecord(CommandStatusType.FAILURE,
+		                           message, "Report the problem to software support - also see the log file." ) );
+						}
 					}
 				}
+				finally {
+					// Stop any batch reads that are still running, for example if processing was canceled.
+					executor.shutdownNow();
+				}
 			}
 		}
 
@@ -941,6 +1057,7 @@ public String toString ( PropList parameters ) {
 		"Read24HourAsDay",
 		"ReadDayAs24Hour",
     	"Timezone",
+		"MaxConcurrency",
 		"Debug",
 	};
 
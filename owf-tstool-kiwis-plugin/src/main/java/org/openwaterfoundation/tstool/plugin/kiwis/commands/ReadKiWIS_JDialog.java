@@ -98,6 +98,7 @@ private JTextField __TSID_JTextField;
 private JTextField __InputStart_JTextField;
 private JTextField __InputEnd_JTextField;
 //private JTextField __Timezone_JTextField;
+private JTextField __MaxConcurrency_JTextField;
 private SimpleJComboBox	__Debug_JComboBox;
 
 private JTextArea __command_JTextArea = null;
@@ -371,6 +372,10 @@ private void checkInput () {
 		props.set ( "Timezone", Timezone );
 	}
 	*/
+	String MaxConcurrency = __MaxConcurrency_JTextField.getText().trim();
+	if ( MaxConcurrency.length() > 0 ) {
+		props.set ( "MaxConcurrency", MaxConcurrency );
+	}
 	String Debug = __Debug_JComboBox.getSelected();
 	if ( Debug.length() > 0 ) {
 		props.set ( "Debug", Debug );
@@ -429,6 +434,8 @@ private void commitEdits () {
 	__command.setCommandParameter (	"ReadDayAs24Hour", ReadDayAs24Hour );
 	//String Timezone = __Timezone_JTextField.getText().trim();
 	//__command.setCommandParameter ( "Timezone", Timezone );
+	String MaxConcurrency = __MaxConcurrency_JTextField.getText().trim();
+	__command.setCommandParameter ( "MaxConcurrency", MaxConcurrency );
 	String Debug = __Debug_JComboBox.getSelected();
 	__command.setCommandParameter (	"Debug", Debug );
 }
@@ -846,6 +853,16 @@ private void initialize ( JFrame parent, ReadKiWIS_Command command ) {
         3, y, 2, 1, 0, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.WEST);
         */
 
+    JGUIUtil.addComponent(main_JPanel, new JLabel ( "Maximum concurrency:"),
+        0, ++y, 1, 1, 0, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.EAST);
+    __MaxConcurrency_JTextField = new JTextField ( "", 10 );
+    __MaxConcurrency_JTextField.setToolTipText("Maximum number of concurrent web service requests when reading multiple time series.");
+    __MaxConcurrency_JTextField.addKeyListener ( this );
+    JGUIUtil.addComponent(main_JPanel, __MaxConcurrency_JTextField,
+        1, y, 2, 1, 1, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.WEST);
+    JGUIUtil.addComponent(main_JPanel, new JLabel ( "Optional - concurrent requests for multiple time series (default=datastore MaxConcurrency)."),
+        3, y, 2, 1, 0, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.WEST);
+
     JGUIUtil.addComponent(main_JPanel, new JLabel ( "Debug:"),
 		0, ++y, 1, 1, 0, 0, insetsTLBR, GridBagConstraints.NONE, GridBagConstraints.EAST);
     List<String> Debug_List = new ArrayList<>( 3 );
@@ -1146,6 +1163,7 @@ private void refresh () {
 	String Read24HourAsDay = "";
 	String ReadDayAs24Hour = "";
 	//String Timezone = "";
+	String MaxConcurrency = "";
 	String Debug = "";
 	PropList props = null;
 	if ( __first_time ) {
@@ -1165,6 +1183,7 @@ private void refresh () {
 		Read24HourAsDay = props.getValue ( "Read24HourAsDay" );
 		ReadDayAs24Hour = props.getValue ( "ReadDayAs24Hour" );
 		//Timezone = props.getValue ( "Timezone" );
+		MaxConcurrency = props.getValue ( "MaxConcurrency" );
 		Debug = props.getValue ( "Debug" );
         // The data store list is set up in initialize() but is selected here.
         if ( JGUIUtil.isSimpleJComboBoxItem(__DataStore_JComboBox, DataStore, JGUIUtil.NONE, null, null ) ) {
@@ -1380,6 +1399,9 @@ private void refresh () {
             	__ReadDayAs24Hour_JComboBox.select (0);
             }
         }
+		if ( MaxConcurrency != null ) {
+			__MaxConcurrency_JTextField.setText ( MaxConcurrency );
+		}
 	    if ( JGUIUtil.isSimpleJComboBoxItem( __Debug_JComboBox, Debug, JGUIUtil.NONE, null, null ) ) {
             //__Debug_JComboBox.select (index[0] );
             __Debug_JComboBox.select (Debug);
@@ -1488,6 +1510,8 @@ private void refresh () {
 	props.add ( "ReadDayAs24Hour=" + ReadDayAs24Hour );
 	//Timezone = __Timezone_JTextField.getText().trim();
 	//props.add ( "Timezone=" + Timezone );
+	MaxConcurrency = __MaxConcurrency_JTextField.getText().trim();
+	props.add ( "MaxConcurrency=" + MaxConcurrency );
 	Debug = __Debug_JComboBox.getSelected();
 	props.add ( "Debug=" + Debug );
 	__command_JTextArea.setText( __command.toString ( props ).trim() );
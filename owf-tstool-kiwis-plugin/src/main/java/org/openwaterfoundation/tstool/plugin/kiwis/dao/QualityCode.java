@@ -87,6 +87,38 @@ public class QualityCode {
 		return this.key;
 	}
 	
+	/**
+	 * Set the code.
+	 * @param code the code
+	 */
+	public void setCode ( String code ) {
+		this.code = code;
+	}
+
+	/**
+	 * Set the color.
+	 * @param color the color
+	 */
+	public void setColor ( String color ) {
+		this.color = color;
+	}
+
+	/**
+	 * Set the quality code description.
+	 * @param description the quality code description
+	 */
+	public void setDescription ( String description ) {
+		this.description = description;
+	}
+
+	/**
+	 * Set the key.
+	 * @param key the key
+	 */
+	public void setKey ( Integer key ) {
+		this.key = key;
+	}
+
 	/**
 	 * Return a string representation of the object, useful for troubleshooting.
 	 */
@@ -78,5 +78,29 @@ public class Site {
 	public String getSiteNo () {
 		return this.siteNo;
 	}
+
+	/**
+	 * Set the site identifier.
+	 * @param siteId the site identifier
+	 */
+	public void setSiteId ( String siteId ) {
+		this.siteId = siteId;
+	}
+
+	/**
+	 * Set the site name.
+	 * @param siteName the site name
+	 */
+	public void setSiteName ( String siteName ) {
+		this.siteName = siteName;
+	}
+
+	/**
+	 * Set the site number.
+	 * @param siteNo the site number
+	 */
+	public void setSiteNo ( String siteNo ) {
+		this.siteNo = siteNo;
+	}
 	
 }
@@ -105,4 +105,44 @@ public class Station {
 	public String getStationNo () {
 		return this.stationNo;
 	}
+
+	/**
+	 * Set the station identifier.
+	 * @param stationId the station identifier
+	 */
+	public void setStationId ( String stationId ) {
+		this.stationId = stationId;
+	}
+
+	/**
+	 * Set the station latitude.
+	 * @param stationLatitude the station latitude
+	 */
+	public void setStationLatitude ( String stationLatitude ) {
+		this.stationLatitude = stationLatitude;
+	}
+
+	/**
+	 * Set the station longitude.
+	 * @param stationLongitude the station longitude
+	 */
+	public void setStationLongitude ( String stationLongitude ) {
+		this.stationLongitude = stationLongitude;
+	}
+
+	/**
+	 * Set the station name.
+	 * @param stationName the station name
+	 */
+	public void setStationName ( String stationName ) {
+		this.stationName = stationName;
+	}
+
+	/**
+	 * Set the station number.
+	 * @param stationNo the station number
+	 */
+	public void setStationNo ( String stationNo ) {
+		this.stationNo = stationNo;
+	}
 }
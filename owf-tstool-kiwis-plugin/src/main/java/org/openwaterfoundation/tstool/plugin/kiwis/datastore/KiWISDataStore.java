@@ -22,18 +22,30 @@ NoticeEnd */
 
 package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
 
+import java.io.File;
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import org.openwaterfoundation.tstool.plugin.kiwis.PluginMeta;
 import org.openwaterfoundation.tstool.plugin.kiwis.dao.InterpolationType;
@@ -49,6 +61,10 @@ import org.openwaterfoundation.tstool.plugin.kiwis.ui.KiWIS_TimeSeries_CellRende
 import org.openwaterfoundation.tstool.plugin.kiwis.ui.KiWIS_TimeSeries_InputFilter_JPanel;
 import org.openwaterfoundation.tstool.plugin.kiwis.ui.KiWIS_TimeSeries_TableModel;
 import org.openwaterfoundation.tstool.plugin.kiwis.dto.JacksonToolkit;
+import org.openwaterfoundation.tstool.plugin.kiwis.util.AimdConcurrencyLimiter;
+import org.openwaterfoundation.tstool.plugin.kiwis.util.HttpRecording;
+import org.openwaterfoundation.tstool.plugin.kiwis.util.HttpTransport;
+import org.openwaterfoundation.tstool.plugin.kiwis.util.KiWISTimeSeriesEvent;
 import org.openwaterfoundation.tstool.plugin.kiwis.util.WebUtil;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -60,7 +76,6 @@ import RTi.Util.GUI.InputFilter;
 import RTi.Util.GUI.InputFilter_JPanel;
 import RTi.Util.GUI.JWorksheet_AbstractExcelCellRenderer;
 import RTi.Util.GUI.JWorksheet_AbstractRowTableModel;
-import RTi.Util.IO.IOUtil;
 import RTi.Util.IO.PropList;
 import RTi.Util.IO.RequirementCheck;
 import RTi.Util.Message.Message;
@@ -83,48 +98,180 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 	//private final String COMMON_REQUEST_PARAMETERS = "?service=kisters&type=queryServices&datasource=0";
 	private final String COMMON_REQUEST_PARAMETERS = "";
 
+	/**
+	 * Number of intervals to allocate for regular interval time series when the first value is read,
+	 * and minimum number of intervals to extend the period when values are read beyond the allocated period.
+	 */
+	private static final int ALLOCATE_INTERVAL_COUNT = 1000;
+
+	/**
+	 * Number of times to try reading a window of time series values (see ValuesWindowDays),
+	 * so that a window that fails can be retried without reading the full period again.
+	 */
+	private static final int VALUES_WINDOW_READ_ATTEMPTS = 2;
+
 	/**
 	 * Properties for the plugin, used to help with application integration.
 	 */
 	Map<String,Object> pluginProperties = new LinkedHashMap<>();
 	
 	/**
-	 * Global quality codes.
+	 * Global quality codes:
+	 * - volatile because the global data may be refreshed in a background thread
+	 */
+	volatile List<QualityCode> qualityCodeList = new ArrayList<>();
+
+	/**
+	 * Lookup table for the global quality codes, used to set time series data flags,
+	 * determined when the qualityCodeList is read.
 	 */
-	List<QualityCode> qualityCodeList = new ArrayList<>();
+	volatile KiWISQualityCodeTable qualityCodeTable = new KiWISQualityCodeTable(new ArrayList<>());
 	
 	/**
 	 * Global site list.
 	 */
-	List<Site> siteList = new ArrayList<>();
+	volatile List<Site> siteList = new ArrayList<>();
 	
 	/**
 	 * Global station list.
 	 */
-	List<Station> stationList = new ArrayList<>();
+	volatile List<Station> stationList = new ArrayList<>();
 	
 	/**
 	 * Global time series catalog, used to streamline creating lists for UI choices.
 	 */
-	List<TimeSeriesCatalog> tscatalogList = new ArrayList<>();
-
-	/**
-	 * Global location ID list, used to streamline creating lists for UI choices,
-	 * determined when the tscatalogList is read.
-	 */
-	List<String> locIdList = new ArrayList<>();
+	volatile List<TimeSeriesCatalog> tscatalogList = new ArrayList<>();
 
 	/**
-	 * Global time series short name list, used to streamline creating lists for UI choices,
-	 * determined when the tscatalogList is read.
+	 * Index of the global time series catalog, used to look up time series without web service requests
+	 * and to streamline creating lists for UI choices, determined when the tscatalogList is read.
 	 */
-	List<String> tsShortNameList = new ArrayList<>();
+	volatile KiWISTimeSeriesCatalogIndex tscatalogIndex = new KiWISTimeSeriesCatalogIndex(new ArrayList<>());
 	
 	/**
 	 * Global debug option for datastore, used for development and troubleshooting.
 	 */
 	private boolean debug = false;
 
+	/**
+	 * Whether the global data snapshot file is used to initialize global data (MetadataCache configuration property).
+	 */
+	private boolean metadataCache = true;
+
+	/**
+	 * Time to live for the global data snapshot file, seconds (MetadataCacheTTL configuration property).
+	 * If the snapshot is older than this, the snapshot is used and the global data are refreshed in the background.
+	 * The default is one day so that the global data are not refreshed every time TSTool starts.
+	 * Zero means always refresh in the background.
+	 */
+	private long metadataCacheTTL = 86400;
+
+	/**
+	 * Whether global data are read when the datastore is created (ReadGlobalData=Startup configuration property),
+	 * or when the global data are first used (ReadGlobalData=OnDemand, default).
+	 * In either case the global data are read in a background thread so that the constructor does not block.
+	 */
+	private boolean readGlobalDataAtStartup = false;
+
+	/**
+	 * HTTP transport used for all web service requests, so that connections are reused.
+	 */
+	private HttpTransport httpTransport = null;
+
+	/**
+	 * Coalesces identical requests that are in progress at the same time, so that concurrent reads
+	 * of the same time series or catalog make one request.
+	 */
+	private final KiWISRequestCoalescer requestCoalescer = new KiWISRequestCoalescer();
+
+	/**
+	 * Statistics for web service requests and transferring values into time series,
+	 * listed with the KiWISStatistics command.
+	 */
+	private final KiWISMetrics metrics = new KiWISMetrics();
+
+	/**
+	 * Timeout to connect to the web service, seconds (ConnectTimeout configuration property).
+	 */
+	private int connectTimeout = 60;
+
+	/**
+	 * Timeout to receive the web service response, seconds (ReadTimeout configuration property).
+	 */
+	private int readTimeout = 300;
+
+	/**
+	 * Maximum number of time series to read in one 'getTimeseriesValues' request when reading multiple time series
+	 * (ValuesBatchSize configuration property).
+	 */
+	private int valuesBatchSize = 100;
+
+	/**
+	 * Default maximum number of concurrent requests when reading multiple time series
+	 * (MaxConcurrency configuration property), can be overridden by the ReadKiWIS(MaxConcurrency) parameter.
+	 */
+	private int maxConcurrency = 4;
+
+	/**
+	 * Minimum number of concurrent requests (MinConcurrency configuration property),
+	 * used as the lower bound for the adaptive concurrency limit.
+	 */
+	private int minConcurrency = 1;
+
+	/**
+	 * Adaptive limit on concurrent requests for all requests made by the datastore,
+	 * between MinConcurrency and MaxConcurrency.
+	 */
+	private AimdConcurrencyLimiter concurrencyLimiter = null;
+
+	/**
+	 * Number of days in each window when reading a long period of time series values
+	 * (ValuesWindowDays configuration property).
+	 * If greater than zero, the period is split into windows that are read concurrently, up to MaxConcurrency.
+	 * If zero (default), the period is read with one request.
+	 */
+	private int valuesWindowDays = 0;
+
+	/**
+	 * Time series values retained for delta reads (DeltaRead configuration property),
+	 * or null if delta reads are not enabled (default).
+	 */
+	private KiWISDeltaReadCache deltaReadCache = null;
+
+	/**
+	 * Local persistent store of time series values (ValueStore configuration property),
+	 * or null if the store is not enabled (default).
+	 */
+	private KiWISValueStore valueStore = null;
+
+	/**
+	 * Whether the datastore is offline (Offline configuration property),
+	 * in which case web service requests are not made and data are read from the value store
+	 * and the global data snapshot.
+	 */
+	private boolean offline = false;
+
+	/**
+	 * In-memory cache of compressed time series values (ValueCacheMB configuration property),
+	 * or null if the cache is not enabled (default).
+	 */
+	private KiWISValueCache valueCache = null;
+
+	/**
+	 * Whether reading global data has been started, used to start reading only once.
+	 */
+	private final AtomicBoolean globalDataReadStarted = new AtomicBoolean(false);
+
+	/**
+	 * Futures that are completed when each global dataset is available (whether or not the read was successful).
+	 * Methods that use the global data wait on the corresponding future.
+	 * The location ID and time series short name lists are available when the time series catalog is available.
+	 */
+	private final CompletableFuture<Void> qualityCodeListReady = new CompletableFuture<>();
+	private final CompletableFuture<Void> siteListReady = new CompletableFuture<>();
+	private final CompletableFuture<Void> stationListReady = new CompletableFuture<>();
+	private final CompletableFuture<Void> tscatalogListReady = new CompletableFuture<>();
+
 	/**
 	Constructor for web service.
 	@param name identifier for the data store
@@ -139,6 +286,184 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 			Message.printStatus(2, routine, "Datastore \"" + name + "\" - detected Debug=true");
 			this.debug = true;
 		}
+		prop = props.getValue("MetadataCache");
+		if ( (prop != null) && prop.equalsIgnoreCase("false") ) {
+			this.metadataCache = false;
+		}
+		prop = props.getValue("MetadataCacheTTL");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.metadataCacheTTL = Long.parseLong(prop.trim());
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - MetadataCacheTTL (" + prop
+					+ ") is invalid - using default of " + this.metadataCacheTTL + " seconds.");
+			}
+		}
+		prop = props.getValue("ConnectTimeout");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.connectTimeout = Integer.parseInt(prop.trim());
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - ConnectTimeout (" + prop
+					+ ") is invalid - using default of " + this.connectTimeout + " seconds.");
+			}
+		}
+		prop = props.getValue("ReadTimeout");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.readTimeout = Integer.parseInt(prop.trim());
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - ReadTimeout (" + prop
+					+ ") is invalid - using default of " + this.readTimeout + " seconds.");
+			}
+		}
+		this.httpTransport = new HttpTransport ( this.connectTimeout, this.readTimeout );
+		this.httpTransport.setRequestListener ( this.metrics );
+		prop = props.getValue("ValuesBatchSize");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.valuesBatchSize = Integer.parseInt(prop.trim());
+				if ( this.valuesBatchSize < 1 ) {
+					this.valuesBatchSize = 1;
+				}
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - ValuesBatchSize (" + prop
+					+ ") is invalid - using default of " + this.valuesBatchSize + ".");
+			}
+		}
+		prop = props.getValue("MaxConcurrency");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.maxConcurrency = Integer.parseInt(prop.trim());
+				if ( this.maxConcurrency < 1 ) {
+					this.maxConcurrency = 1;
+				}
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - MaxConcurrency (" + prop
+					+ ") is invalid - using default of " + this.maxConcurrency + ".");
+			}
+		}
+		prop = props.getValue("MinConcurrency");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.minConcurrency = Integer.parseInt(prop.trim());
+				if ( this.minConcurrency < 1 ) {
+					this.minConcurrency = 1;
+				}
+				if ( this.minConcurrency > this.maxConcurrency ) {
+					this.minConcurrency = this.maxConcurrency;
+				}
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - MinConcurrency (" + prop
+					+ ") is invalid - using default of " + this.minConcurrency + ".");
+			}
+		}
+		// All requests go through the limiter so that the server is not overloaded.
+		this.concurrencyLimiter = new AimdConcurrencyLimiter ( this.minConcurrency, this.maxConcurrency );
+		this.httpTransport.setConcurrencyLimiter ( this.concurrencyLimiter );
+		prop = props.getValue("ValuesWindowDays");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				this.valuesWindowDays = Integer.parseInt(prop.trim());
+				if ( this.valuesWindowDays < 0 ) {
+					this.valuesWindowDays = 0;
+				}
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - ValuesWindowDays (" + prop
+					+ ") is invalid - using default of " + this.valuesWindowDays + ".");
+			}
+		}
+		prop = props.getValue("DeltaRead");
+		if ( (prop != null) && prop.equalsIgnoreCase("true") ) {
+			// Overlap to read again before the last retained value, to read revised values.
+			int deltaReadOverlapMinutes = 1440;
+			prop = props.getValue("DeltaReadOverlapMinutes");
+			if ( (prop != null) && !prop.isEmpty() ) {
+				try {
+					deltaReadOverlapMinutes = Integer.parseInt(prop.trim());
+				}
+				catch ( NumberFormatException e ) {
+					Message.printWarning(2, routine, "Datastore \"" + name + "\" - DeltaReadOverlapMinutes (" + prop
+						+ ") is invalid - using default of " + deltaReadOverlapMinutes + " minutes.");
+				}
+			}
+			this.deltaReadCache = new KiWISDeltaReadCache ( deltaReadOverlapMinutes );
+		}
+		prop = props.getValue("Offline");
+		if ( (prop != null) && prop.equalsIgnoreCase("true") ) {
+			Message.printStatus(2, routine, "Datastore \"" + name + "\" - detected Offline=true, web services will not be used.");
+			this.offline = true;
+			this.httpTransport.setOffline ( true );
+		}
+		String replayDirectory = props.getValue("ReplayDirectory");
+		String recordDirectory = props.getValue("RecordDirectory");
+		if ( (replayDirectory != null) && !replayDirectory.trim().isEmpty() ) {
+			// Replay recorded responses rather than sending requests.
+			boolean replayLatency = false;
+			prop = props.getValue("ReplayLatency");
+			if ( (prop != null) && prop.equalsIgnoreCase("true") ) {
+				replayLatency = true;
+			}
+			File directory = getRecordingDirectory ( replayDirectory.trim() );
+			Message.printStatus(2, routine, "Datastore \"" + name + "\" - replaying responses from \"" + directory
+				+ "\" (ReplayLatency=" + replayLatency + "), web services will not be used.");
+			if ( !directory.isDirectory() ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - ReplayDirectory (" + directory
+					+ ") does not exist - requests will fail.");
+			}
+			try {
+				this.httpTransport.setReplay ( new HttpRecording(directory.toPath(), false), replayLatency );
+			}
+			catch ( IOException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - error using ReplayDirectory (" + directory
+					+ ") (" + e + ").");
+			}
+			if ( (recordDirectory != null) && !recordDirectory.trim().isEmpty() ) {
+				Message.printWarning(2, routine, "Datastore \"" + name
+					+ "\" - RecordDirectory is ignored because ReplayDirectory is specified.");
+			}
+		}
+		else if ( (recordDirectory != null) && !recordDirectory.trim().isEmpty() ) {
+			// Record responses so that they can be replayed later.
+			File directory = getRecordingDirectory ( recordDirectory.trim() );
+			Message.printStatus(2, routine, "Datastore \"" + name + "\" - recording responses in \"" + directory + "\".");
+			try {
+				this.httpTransport.setRecording ( new HttpRecording(directory.toPath(), true) );
+			}
+			catch ( IOException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - error creating RecordDirectory (" + directory
+					+ ") (" + e + ") - responses will not be recorded.");
+			}
+		}
+		prop = props.getValue("ValueStore");
+		if ( ((prop != null) && prop.equalsIgnoreCase("true")) || this.offline ) {
+			// The value store is required when offline.
+			this.valueStore = new KiWISValueStore ( getValueStoreDirectory(name), serviceRootURI.toString() );
+		}
+		prop = props.getValue("ValueCacheMB");
+		if ( (prop != null) && !prop.isEmpty() ) {
+			try {
+				int valueCacheMB = Integer.parseInt(prop.trim());
+				if ( valueCacheMB > 0 ) {
+					this.valueCache = new KiWISValueCache ( valueCacheMB*1024L*1024L );
+				}
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(2, routine, "Datastore \"" + name + "\" - ValueCacheMB (" + prop
+					+ ") is invalid - using default of 0 (no cache).");
+			}
+		}
+		prop = props.getValue("ReadGlobalData");
+		if ( (prop != null) && prop.equalsIgnoreCase("Startup") ) {
+			this.readGlobalDataAtStartup = true;
+		}
 	    setName ( name );
 	    setDescription ( description );
 	    setServiceRootURI ( serviceRootURI );
@@ -154,10 +479,54 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 
 	    // Read global data used throughout the session:
 	    // - in particular a cache of the TimeSeriesCatalog used for further queries
+	    // - the data are read in a background thread so that TSTool startup is not delayed
+	    // - by default the data are not read until first used so that unused datastores do not make requests
 
-	    readGlobalData();
+	    if ( this.readGlobalDataAtStartup ) {
+	    	startReadGlobalData();
+	    }
 	}
 	
+	/**
+	 * Adjust an original (requested) period date/time consistent with the adjustments made to data value timestamps,
+	 * other than the interpolation type adjustment, which is handled separately:
+	 * - 1Day time series timestamps at midnight are shifted to the previous day, unless reading day as 24 hour
+	 * - 24Hour time series being read as 1Day are shifted to the previous day
+	 * - irregular interval output uses the requested precision
+	 * @param dateTime the DateTime to adjust, will be modified on output
+	 * @param isRegularIntervalReq whether the requested time series is regular interval
+	 * @param intervalBaseReq requested time series interval base
+	 * @param intervalMultReq requested time series interval multiplier
+	 * @param readDayAs24Hour whether 1Day time series are being read as 24Hour
+	 * @param read24HourAsDay whether 24Hour time series are being read as 1Day
+	 * @param irregularInterval the irregular interval for output, or null if not requested
+	 */
+	private void adjustOriginalPeriodDateTime ( DateTime dateTime, boolean isRegularIntervalReq,
+		int intervalBaseReq, int intervalMultReq,
+		boolean readDayAs24Hour, boolean read24HourAsDay, TimeInterval irregularInterval ) {
+		if ( isRegularIntervalReq && (intervalBaseReq == TimeInterval.DAY) && (intervalMultReq == 1) ) {
+			if ( readDayAs24Hour ) {
+				// Parsed date/time will already include the correct hour so just need to set the precision.
+				dateTime.setPrecision(DateTime.PRECISION_HOUR);
+			}
+			else if ( (irregularInterval == null) || (irregularInterval.getIrregularIntervalPrecision() == TimeInterval.DAY) ) {
+				// By default, 1Day time series are shifted to the previous day.
+				dateTime.setPrecision(DateTime.PRECISION_DAY);
+				dateTime.addDay(-1);
+				dateTime.setHour(0); // Should not be used.
+			}
+		}
+		else if ( isRegularIntervalReq && (intervalBaseReq == TimeInterval.HOUR) && (intervalMultReq == 24) && read24HourAsDay ) {
+			// 24Hour in KiWIS but want 1Day output.
+			dateTime.setPrecision(DateTime.PRECISION_DAY);
+			dateTime.addDay(-1);
+			dateTime.setHour(0); // Should not be used.
+		}
+		if ( irregularInterval != null ) {
+			dateTime.setPrecision(irregularInterval.getIrregularIntervalPrecision());
+		}
+	}
+
 	/**
 	 * Adjust a date/time for the interpolation type:
 	 * - TSTool uses date/time at the end of interval for regular time series
@@ -319,10 +688,11 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 	 * Convert the KiWIS ts_spacing, which uses ISO 8601 duration notation, to a TSTool interval.
 	 * See: https://en.wikipedia.org/wiki/ISO_8601
 	 * Only simple P or PT strings with one duration part is handled.
+	 * This is package-private so that it can be called by the benchmarks.
 	 * @param tsSpacing KiWIS 'ts_spacing' value as ISO duration (e.g., P1D for daily).
 	 * @return equivalent TSTool interval
 	 */
-	private String convertSpacingToInterval ( String tsSpacing ) {
+	String convertSpacingToInterval ( String tsSpacing ) {
 		boolean converted = false;
 		String interval = null;
 		
@@ -413,44 +783,65 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 	
 	/**
 	 * Get the list of location identifier (station_no) strings used in the UI.
-	 * The list is determined from the cached list of time series catalog.
+	 * The list is determined from the index of the cached list of time series catalog.
 	 * @param dataType to match, or * or null to return all, should be a value of stationparameter_no
-	 * @return a unique sorted list of the location identifiers (station_no)
+	 * @return a unique sorted list of the location identifiers (station_no), which should not be modified
 	 */
 	public List<String> getLocIdStrings ( String dataType ) {
+		waitForGlobalData ( this.tscatalogListReady );
 		if ( (dataType == null) || dataType.isEmpty() || dataType.equals("*") ) {
-			// Return the cached list of all locations.
-			return this.locIdList;
+			// Return the list of all locations.
+			dataType = null;
 		}
-		else {
-			// Get the list of locations from the cached list of time series catalog
-			List<String> locIdList = new ArrayList<>();
-			String stationNo = null;
-			String stationParameterNo = null;
-			boolean found = false;
-			for ( TimeSeriesCatalog tscatalog : this.tscatalogList ) {
-				stationNo = tscatalog.getStationNo();
-				stationParameterNo = tscatalog.getStationParameterNo();
-				
-				if ( !stationParameterNo.equals(dataType) ) {
-					// Requested data type does not match.
-					continue;
-				}
+		return this.tscatalogIndex.getLocIds(dataType);
+	}
 
-				found = false;
-				for ( String locId2 : locIdList ) {
-					if ( locId2.equals(stationNo) ) {
-						found = true;
-						break;
-					}
-				}
-				if ( !found ) {
-					locIdList.add(stationNo);
-				}
-			}
-			Collections.sort(locIdList, String.CASE_INSENSITIVE_ORDER);
-			return locIdList;
+	/**
+	 * Return the default maximum number of concurrent requests when reading multiple time series.
+	 * @return the default maximum number of concurrent requests when reading multiple time series
+	 */
+	public int getMaxConcurrency () {
+		return this.maxConcurrency;
+	}
+
+	/**
+	 * Return the limiter for concurrent requests.
+	 * @return the limiter for concurrent requests
+	 */
+	public AimdConcurrencyLimiter getConcurrencyLimiter () {
+		return this.concurrencyLimiter;
+	}
+
+	/**
+	 * Return the statistics for web service requests and transferring values into time series.
+	 * @return the statistics
+	 */
+	public KiWISMetrics getMetrics () {
+		return this.metrics;
+	}
+
+	/**
+	 * Return the list of statistics for the datastore, including the request statistics
+	 * and the statistics for the value cache, request coalescer, and concurrency limiter.
+	 * @return the list of statistics
+	 */
+	public List<KiWISMetrics.Statistic> getStatistics () {
+		List<KiWISMetrics.Statistic> statistics = this.metrics.getStatistics();
+		String category = "ValueCache";
+		if ( this.valueCache != null ) {
+			statistics.add(new KiWISMetrics.Statistic(category, "HitCount", this.valueCache.getHitCount(), "count"));
+			statistics.add(new KiWISMetrics.Statistic(category, "MissCount", this.valueCache.getMissCount(), "count"));
+			statistics.add(new KiWISMetrics.Statistic(category, "EvictionCount", this.valueCache.getEvictionCount(), "count"));
+			statistics.add(new KiWISMetrics.Statistic(category, "EntryCount", this.valueCache.size(), "count"));
+			statistics.add(new KiWISMetrics.Statistic(category, "Bytes", this.valueCache.getBytes(), "bytes"));
 		}
+		category = "RequestCoalescer";
+		statistics.add(new KiWISMetrics.Statistic(category, "RequestCount", this.requestCoalescer.getRequestCount(), "count"));
+		statistics.add(new KiWISMetrics.Statistic(category, "CoalescedCount", this.requestCoalescer.getCoalescedCount(), "count"));
+		category = "ConcurrencyLimiter";
+		statistics.add(new KiWISMetrics.Statistic(category, "Limit", this.concurrencyLimiter.getLimit(), "count"));
+		statistics.add(new KiWISMetrics.Statistic(category, "DecreaseCount", this.concurrencyLimiter.getDecreaseCount(), "count"));
+		return statistics;
 	}
 
 	/**
@@ -469,7 +860,16 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 	}
 
 	/**
-	 * Return the site list, currently not cached.
+	 * Return the lookup table for the global quality codes, used to set time series data flags.
+	 * @return the lookup table for the global quality codes
+	 */
+	public KiWISQualityCodeTable getQualityCodeTable () {
+		waitForGlobalData ( this.qualityCodeListReady );
+		return this.qualityCodeTable;
+	}
+
+	/**
+	 * Return the quality code list.
 	 * @param readData if true, read the quality codes, if false return the global data
 	 */
 	public List<QualityCode> getQualityCodes ( boolean readData ) throws IOException {
@@ -477,22 +877,25 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 			return readQualityCodes();
 		}
 		else {
+			waitForGlobalData ( this.qualityCodeListReady );
 			return this.qualityCodeList;
 		}
 	}
 
 	/**
-	 * Return the site list, currently not cached.
+	 * Return the global site list.
 	 */
 	public List<Site> getSiteList () throws IOException {
-		return readSiteList();
+		waitForGlobalData ( this.siteListReady );
+		return this.siteList;
 	}
 	
 	/**
-	 * Return the station list, currently not cached.
+	 * Return the global station list.
 	 */
 	public List<Station> getStationList () throws IOException {
-		return readStationList();
+		waitForGlobalData ( this.stationListReady );
+		return this.stationList;
 	}
 
 	/**
@@ -507,6 +910,10 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
     		Integer kiwisTsid = null;
     		String kiwisTsPath = null;
 			this.tscatalogList = readTimeSeriesCatalog(dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath);
+			createCatalogChoiceLists();
+		}
+		else {
+			waitForGlobalData ( this.tscatalogListReady );
 		}
 		return this.tscatalogList;
 	}
@@ -544,26 +951,18 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 			doCheckDataType = true;
 		}
 		
-		// Use the cached time series catalog read at startup.
+		// Use the index of the cached time series catalog read at startup:
+		// - the intervals are sorted
+		// - TODO smalers need to sort by time
 		List<TimeSeriesCatalog> tscatalogList = getTimeSeriesCatalog(false);
 		Message.printStatus(2, routine, "  Have " + tscatalogList.size() + " cached time series from the catalog.");
-		for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
-			if ( doCheckDataType ) {
-				// Only check the first part of the data type, which is the 'stationparameter_no'.
-				if ( !dataType.equals(tscatalog.getStationParameterNo())) {
-					// Data type does not match 'stationparameter_no'.
-					continue;
-				}
-			}
-			// Only add the interval if not already in the list.
-			if ( !StringUtil.isInList(dataIntervals, tscatalog.getDataInterval())) {
-				dataIntervals.add(tscatalog.getDataInterval());
-			}
+		if ( doCheckDataType ) {
+			// Only check the first part of the data type, which is the 'stationparameter_no'.
+			dataIntervals.addAll(this.tscatalogIndex.getDataIntervals(dataType));
+		}
+		else {
+			dataIntervals.addAll(this.tscatalogIndex.getDataIntervals(null));
 		}
-		
-		// Sort the intervals:
-		// - TODO smalers need to sort by time
-		Collections.sort(dataIntervals,String.CASE_INSENSITIVE_ORDER);
 
 		if ( includeWildcards ) {
 			// Always allow querying list of time series for all intervals:
@@ -612,21 +1011,13 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 			Message.printWarning(3, routine, e );
 		}
 
-		// Create the data type list.
-		boolean found = false;
-		String stationParameterNo = null;
+		// Create the data type list:
+		// - use a set to check for distinct values
+		Set<String> dataTypeSet = new HashSet<>();
 		if ( parameterList != null ) {
 			for ( Parameter p : parameterList ) {
-				stationParameterNo = p.getStationParameterNo();
-				found = false;
-				for ( String dataType : dataTypes ) {
-					//if ( stationParameterName.equals(dataType) ) {
-					if ( stationParameterNo.equals(dataType) ) {
-						found = true;
-						break;
-					}
-				}
-				if ( !found ) {
+				//if ( dataTypeSet.add(p.getStationParameterName()) ) {
+				if ( dataTypeSet.add(p.getStationParameterNo()) ) {
 					//Message.printStatus(2, routine, "Adding parameter name \"" + p.getStationParameterName() + "\"");
 					//dataTypes.add(p.getStationParameterName());
 					dataTypes.add(p.getStationParameterNo());
@@ -748,77 +1139,133 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 	}
 
 	/**
-	 * Get the list of time series short name strings used in the UI.
-	 * The list is determined from the cached list of time series catalog.
-	 * @param dataType the data type (stationparameter_no) to match
-	 * @param locId the location ID (station_no) to match
+	 * Return the maximum number of time series to read in one 'getTimeseriesValues' request.
+	 * @return the maximum number of time series to read in one 'getTimeseriesValues' request
 	 */
-	public List<String> getTsShortNameStrings ( String dataType, String locId ) {
-		String routine = getClass().getSimpleName() + "getTsShortNameStrings";
-		if ( ((dataType == null) || dataType.isEmpty() || dataType.equals("*")) && ((locId == null) || locId.isEmpty()) ) {
-			// Return the cached list of all time series short names.
-			if ( Message.isDebugOn ) {
-				Message.printStatus(2, routine, "Returning all " + this.tsShortNameList.size() + " tsShortName for dataType=" + dataType
-					+ " locId=" + locId);
-			}
-			return this.tsShortNameList;
+	public int getValuesBatchSize () {
+		return this.valuesBatchSize;
+	}
+
+	/**
+	 * Get the URL for the 'getTimeseriesValues' service.
+	 * @param format the response format (e.g., "csv")
+	 * @param kiwisTsids the KiWIS 'ts_id', or a comma-separated list of 'ts_id' to read multiple time series
+	 * @param readStart start of read, or null to read all data
+	 * @param readEnd end of read, or null to read all data
+	 * @return the request URL
+	 */
+	private StringBuilder getTimeSeriesValuesUrl ( String format, String kiwisTsids, DateTime readStart, DateTime readEnd ) {
+		// Note that when requesting additional fields with 'returnfields', aLL fields to be returned must be specified,
+		// not just additional fields above the default.
+		StringBuilder requestUrl = new StringBuilder(
+			getServiceRootURI() + COMMON_REQUEST_PARAMETERS + "&request=getTimeseriesValues&format=" + format
+				+ "&ts_id=" + kiwisTsids
+				+ "&returnfields="
+				+ URLEncoder.encode("Timestamp,Value,Quality Code,Interpolation Type",StandardCharsets.UTF_8));
+		
+		// Add where for period to query using ISO format "YYYY-MM-DD hh:mm:ss":
+		// - no T between date and time?
+		// - must URLencode the string
+		
+		if ( readStart != null ) {
+			requestUrl.append("&from=" + URLEncoder.encode(readStart.toString(DateTime.FORMAT_YYYY_MM_DD_HH_mm),StandardCharsets.UTF_8));
 		}
-		else {
-			// Only return the list of names that match the requested data type and/or location.
-			String stationNo;
-			String stationParameterNo;
-			String tsShortName;
-			tsShortNameList = new ArrayList<>();
-			boolean found;
-			boolean checkLocId = true;
-			boolean checkDataType = true;
-			if ( (dataType == null) || dataType.isEmpty() || dataType.equals("*") ) {
-				checkDataType = false;
+		if ( readEnd != null ) {
+			requestUrl.append("&to=" + URLEncoder.encode(readEnd.toString(DateTime.FORMAT_YYYY_MM_DD_HH_mm),StandardCharsets.UTF_8));
+		}
+		if ( (readStart == null) && (readEnd == null) ) {
+			// Request all data.
+			requestUrl.append("&period=complete");
+		}
+		return requestUrl;
+	}
+
+	/**
+	 * Get the windows used to read time series values for a period (see ValuesWindowDays configuration property).
+	 * Adjacent windows share the boundary date/time, and duplicate values are removed when the windows are merged.
+	 * If the read start or end is not specified, the coverage of the time series is read to determine the period.
+	 * @param kiwisTsid the KiWIS 'ts_id'
+	 * @param readStart start of read, or null to read all data
+	 * @param readEnd end of read, or null to read all data
+	 * @return the list of windows, each an array with the start and end, with one window containing
+	 * the requested start and end if the period does not need to be split
+	 */
+	private List<DateTime[]> getTimeSeriesValuesWindows ( Integer kiwisTsid, DateTime readStart, DateTime readEnd ) {
+		String routine = getClass().getSimpleName() + ".getTimeSeriesValuesWindows";
+		List<DateTime[]> windows = new ArrayList<>();
+		DateTime periodStart = readStart;
+		DateTime periodEnd = readEnd;
+		if ( (this.valuesWindowDays > 0) && ((periodStart == null) || (periodEnd == null)) ) {
+			// Determine the period from the time series coverage.
+			DateTime [] coverage = null;
+			try {
+				coverage = readTimeSeriesCoverage ( kiwisTsid );
 			}
-			if ( (locId == null) || locId.isEmpty() || locId.equals("*") ) {
-				checkLocId = false;
+			catch ( IOException e ) {
+				Message.printWarning(3, routine, "Error reading coverage for ts_id=" + kiwisTsid
+					+ " - reading values with one request (" + e + ").");
 			}
-			for ( TimeSeriesCatalog tscatalog : this.tscatalogList ) {
-				stationNo = tscatalog.getStationNo();
-				stationParameterNo = tscatalog.getStationParameterNo();
-				tsShortName = tscatalog.getTsShortName();
-				
-				if ( checkLocId ) {
-					if ( !stationNo.equals(locId) ) {
-						// Requested location does not match.
-						continue;
-					}
-				}
-
-				if ( checkDataType ) {
-					if ( !stationParameterNo.equals(dataType) ) {
-						// Requested location does not match.
-						continue;
-					}
+			if ( coverage != null ) {
+				if ( periodStart == null ) {
+					periodStart = coverage[0];
 				}
-
-				found = false;
-				for ( String tsShortName2 : tsShortNameList ) {
-					if ( tsShortName2.equals(tsShortName) ) {
-						found = true;
-						break;
-					}
-				}
-				if ( !found ) {
-					tsShortNameList.add(tsShortName);
+				if ( periodEnd == null ) {
+					periodEnd = coverage[1];
 				}
 			}
-			Collections.sort(tsShortNameList,String.CASE_INSENSITIVE_ORDER);
-			if ( Message.isDebugOn ) {
-				Message.printStatus(2, routine, "Found " + tsShortNameList.size() + " tsShortName for dataType=" + dataType
-					+ " locId=" + locId);
+		}
+		if ( (this.valuesWindowDays <= 0) || (periodStart == null) || (periodEnd == null) ) {
+			// Read the requested period with one request.
+			windows.add(new DateTime[] { readStart, readEnd });
+			return windows;
+		}
+		DateTime windowStart = new DateTime(periodStart);
+		while ( true ) {
+			DateTime windowEnd = new DateTime(windowStart);
+			windowEnd.addDay(this.valuesWindowDays);
+			if ( !windowEnd.lessThan(periodEnd) ) {
+				windows.add(new DateTime[] { windowStart, new DateTime(periodEnd) });
+				break;
 			}
-			return tsShortNameList;
+			windows.add(new DateTime[] { windowStart, windowEnd });
+			windowStart = new DateTime(windowEnd);
+		}
+		if ( windows.size() == 1 ) {
+			// Use the requested period, which may use period=complete.
+			windows.set(0, new DateTime[] { readStart, readEnd });
+		}
+		return windows;
+	}
+
+	/**
+	 * Get the list of time series short name strings used in the UI.
+	 * The list is determined from the index of the cached list of time series catalog.
+	 * @param dataType the data type (stationparameter_no) to match
+	 * @param locId the location ID (station_no) to match
+	 * @return a unique sorted list of time series short names, which should not be modified
+	 */
+	public List<String> getTsShortNameStrings ( String dataType, String locId ) {
+		String routine = getClass().getSimpleName() + ".getTsShortNameStrings";
+		waitForGlobalData ( this.tscatalogListReady );
+		// Only return the list of names that match the requested data type and/or location:
+		// - null matches all
+		if ( (dataType == null) || dataType.isEmpty() || dataType.equals("*") ) {
+			dataType = null;
 		}
+		if ( (locId == null) || locId.isEmpty() || locId.equals("*") ) {
+			locId = null;
+		}
+		List<String> tsShortNameList = this.tscatalogIndex.getTsShortNames(dataType, locId);
+		if ( Message.isDebugOn ) {
+			Message.printStatus(2, routine, "Found " + tsShortNameList.size() + " tsShortName for dataType=" + dataType
+				+ " locId=" + locId);
+		}
+		return tsShortNameList;
 	}
 
 	/**
 	 * Lookup the quality code text from the numeric key.
+	 * This searches the list and is intended for occasional use - use getQualityCodeTable() to look up many values.
 	 * @param qualityCodeList list of quality codes
 	 * @param key the numeric quality code key (as a string)
 	 * @return the text quality code matching the key, the key if not matched, or an empty string if the key is null
@@ -848,107 +1295,397 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 	}
 
 	/**
-	 * Read global data that should be kept in memory to increase performance.
-	 * This is called from the constructor.
-	 * The following data are read and are available with get() methods:
-	 * <ul>
-	 * <li>TimeSeriesCatalog - cache used to find time series without re-requesting from the web service</li>
-	 * </ul>
-	 * If an error is detected, set on the datastore so that TSTool View / Datastores will show the error.
-	 * This is usually an issue with a misconfigured datastore.
+	 * Create a TimeSeriesCatalog from a KiWIS TimeSeries object.
+	 * @param timeSeries the KiWIS time series object from the 'getTimeseriesList' service
+	 * @param dataInterval the TSTool data interval corresponding to the 'ts_spacing'
+	 * @return a new TimeSeriesCatalog
 	 */
-	public void readGlobalData () {
-		String routine = getClass().getSimpleName() + ".readGlobalData";
-		Message.printWarning ( 2, routine, "Reading global data for datastore \"" + getName() + "\"." );
-
-		try {
-			this.qualityCodeList = readQualityCodes();
-			Message.printStatus(2, routine, "Read " + this.qualityCodeList.size() + " quality codes." );
-			if ( Message.isDebugOn ) {
-				for ( QualityCode qc : this.qualityCodeList ) {
-					Message.printStatus(2, routine, "Quality code: " + qc );
-				}
-			}
+	private TimeSeriesCatalog createTimeSeriesCatalog ( TimeSeries timeSeries, String dataInterval ) {
+		String stationParameterNo;
+		String tsShortName;
+		TimeSeriesCatalog tscatalog = new TimeSeriesCatalog();
+
+		// Standard properties expected by TSTool:
+		// - match the KiWIS 'ts_path' as much as possible since it is unique for retrieving time series values
+		stationParameterNo = timeSeries.getStationParameterNo();
+		tsShortName = timeSeries.getTsShortName();
+		if ( (stationParameterNo.indexOf("-") >= 0) || (stationParameterNo.indexOf(".") >= 0) ) {
+			stationParameterNo = "'" + stationParameterNo + "'";
 		}
-		catch ( Exception e ) {
-			Message.printWarning(3, routine, "Error reading global quality codes (" + e + ")");
-			Message.printWarning(3, routine, e );
+		if ( (tsShortName.indexOf("-") >= 0) || (tsShortName.indexOf(".") >= 0) ) {
+			tsShortName = "'" + tsShortName + "'";
 		}
+		tscatalog.setDataType(stationParameterNo + "-" + tsShortName);
+		tscatalog.setDataInterval(dataInterval);
+		tscatalog.setDataUnits(timeSeries.getTsUnitSymbol()); // Symbol = abbreviation?
+
+		// Standard and additional properties returned by the web service (see 'returnFields').
+		tscatalog.setCatchmentId( (timeSeries.getCatchmentId() == null) ? null : Integer.valueOf(timeSeries.getCatchmentId()));
+		tscatalog.setCatchmentName(timeSeries.getCatchmentName());
+
+		tscatalog.setStationId( (timeSeries.getStationId() == null) ? null : Integer.valueOf(timeSeries.getStationId()));
+		tscatalog.setStationLongName(timeSeries.getStationLongName());
+		tscatalog.setStationLatitude(timeSeries.getStationLatitude());
+		tscatalog.setStationLongitude(timeSeries.getStationLongitude());
+		tscatalog.setStationName(timeSeries.getStationName());
+		tscatalog.setStationNo(timeSeries.getStationNo());
+
+		tscatalog.setStationParameterLongName(timeSeries.getStationParameterLongName());
+		tscatalog.setStationParameterName(timeSeries.getStationParameterName());
+		tscatalog.setStationParameterNo(timeSeries.getStationParameterNo());
+
+		tscatalog.setSiteId( (timeSeries.getSiteId() == null) ? null : Integer.valueOf(timeSeries.getSiteId()));
+		tscatalog.setSiteName(timeSeries.getSiteName());
+		tscatalog.setSiteNo(timeSeries.getSiteNo());
+		
+		tscatalog.setParameterTypeId( (timeSeries.getParameterTypeId() == null) ? null : Integer.valueOf(timeSeries.getParameterTypeId()));
+		tscatalog.setParameterTypeName(timeSeries.getParameterTypeName());
+
+		tscatalog.setTsId( (timeSeries.getTsId() == null) ? null : Integer.valueOf(timeSeries.getTsId()));
+		tscatalog.setTsName(timeSeries.getTsName());
+		tscatalog.setTsPath(timeSeries.getTsPath());
+		tscatalog.setTsShortName(timeSeries.getTsShortName());
+		tscatalog.setTsSpacing(timeSeries.getTsSpacing());
+		tscatalog.setTsTypeId( (timeSeries.getTsTypeId() == null) ? null : Integer.valueOf(timeSeries.getTsTypeId()));
+		tscatalog.setTsTypeName(timeSeries.getTsTypeName());
+		tscatalog.setTsUnitName(timeSeries.getTsUnitName());
+		tscatalog.setTsUnitNameAbs(timeSeries.getTsUnitNameAbs());
+		tscatalog.setTsUnitSymbol(timeSeries.getTsUnitSymbol());
+		tscatalog.setTsUnitSymbolAbs(timeSeries.getTsUnitSymbolAbs());
+		
+		return tscatalog;
+	}
 
-		try {
-			this.siteList = readSiteList();
-			Message.printStatus(2, routine, "Read " + this.siteList.size() + " sites." );
-		}
-		catch ( Exception e ) {
-			Message.printWarning(3, routine, "Error reading global site list (" + e + ")");
-			Message.printWarning(3, routine, e );
+	/**
+	 * Create the index used to look up time series and create the lists of location ID and time series short name
+	 * used in the ReadKiWIS command editor, from the global time series catalog.
+	 */
+	private void createCatalogChoiceLists () {
+		// Set the index after it is complete because a background refresh may be running.
+		this.tscatalogIndex = new KiWISTimeSeriesCatalogIndex(this.tscatalogList);
+	}
+
+	/**
+	 * Return the global data snapshot file for the datastore.
+	 * The file is saved in the user's TSTool files:
+	 * <pre>
+	 * ~/.tstool/cache/kiwis/DatastoreName-global-data.bin
+	 * </pre>
+	 * @return the global data snapshot file for the datastore
+	 */
+	private File getGlobalDataSnapshotFile () {
+		// Datastore names can contain any characters so replace characters that are not safe for file names.
+		String fileName = getName().replaceAll("[^A-Za-z0-9._-]", "_") + "-global-data.bin";
+		return new File ( System.getProperty("user.home") + File.separator + ".tstool"
+			+ File.separator + "cache" + File.separator + "kiwis" + File.separator + fileName );
+	}
+
+	/**
+	 * Return the folder for recorded web service responses (see RecordDirectory and ReplayDirectory properties).
+	 * A relative path is relative to the KiWIS cache folder in the user's TSTool files:
+	 * <pre>
+	 * ~/.tstool/cache/kiwis/
+	 * </pre>
+	 * @param directory the folder from the datastore property
+	 * @return the folder for recorded web service responses
+	 */
+	private File getRecordingDirectory ( String directory ) {
+		File file = new File ( directory );
+		if ( file.isAbsolute() ) {
+			return file;
 		}
+		return new File ( System.getProperty("user.home") + File.separator + ".tstool"
+			+ File.separator + "cache" + File.separator + "kiwis" + File.separator + directory );
+	}
 
-		try {
-			this.stationList = readStationList();
-			Message.printStatus(2, routine, "Read " + this.stationList.size() + " stations." );
+	/**
+	 * Return the value cache key for a time series and period (see ValueCacheMB configuration property).
+	 * The period is formatted consistent with the 'from' and 'to' request parameters.
+	 * Values are only cached if the period ends more than a day before the current time,
+	 * because values near the current time may still be added or revised and cached values are not refreshed,
+	 * for example if a command file that reads the most recent values is run more than once in a TSTool session.
+	 * The day allows for the difference between the time zone of the period and the computer.
+	 * @param kiwisTsid the KiWIS 'ts_id'
+	 * @param readStart start of read, or null if not specified
+	 * @param readEnd end of read, or null if not specified
+	 * @return the value cache key, or null if the value cache is not used or the values should not be cached
+	 */
+	private String getValueCacheKey ( Integer kiwisTsid, DateTime readStart, DateTime readEnd ) {
+		if ( (this.valueCache == null) || (readEnd == null) ) {
+			// Not caching or the period ends with the most recent value.
+			return null;
 		}
-		catch ( Exception e ) {
-			Message.printWarning(3, routine, "Error reading global station list (" + e + ")");
-			Message.printWarning(3, routine, e );
+		long nowLocalMillis = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC)*1000L;
+		if ( KiWISTimestampParser.toLocalMillis(readEnd) > (nowLocalMillis - 86400000L) ) {
+			// The period ends near or after the current time.
+			return null;
+		}
+		return KiWISValueCache.getKey ( kiwisTsid,
+			(readStart == null) ? null : readStart.toString(DateTime.FORMAT_YYYY_MM_DD_HH_mm),
+			(readEnd == null) ? null : readEnd.toString(DateTime.FORMAT_YYYY_MM_DD_HH_mm) );
+	}
+
+	/**
+	 * Return the value store folder for the datastore.
+	 * The folder is in the user's TSTool files:
+	 * <pre>
+	 * ~/.tstool/cache/kiwis/DatastoreName-values/
+	 * </pre>
+	 * @param name the datastore name
+	 * @return the value store folder for the datastore
+	 */
+	private File getValueStoreDirectory ( String name ) {
+		// Datastore names can contain any characters so replace characters that are not safe for file names.
+		String folderName = name.replaceAll("[^A-Za-z0-9._-]", "_") + "-values";
+		return new File ( System.getProperty("user.home") + File.separator + ".tstool"
+			+ File.separator + "cache" + File.separator + "kiwis" + File.separator + folderName );
+	}
+
+	/**
+	 * Indicate that all global datasets are available, for example after reading the snapshot file
+	 * or if reading global data failed unexpectedly.
+	 * Datasets that are already available are not changed.
+	 */
+	private void completeGlobalData () {
+		this.qualityCodeListReady.complete(null);
+		this.siteListReady.complete(null);
+		this.stationListReady.complete(null);
+		this.tscatalogListReady.complete(null);
+	}
+
+	/**
+	 * Start reading global data in a background thread, if not already started.
+	 */
+	private void startReadGlobalData () {
+		if ( !this.globalDataReadStarted.compareAndSet(false, true) ) {
+			// Already started.
+			return;
+		}
+		Thread thread = new Thread ( () -> {
+			try {
+				readGlobalData();
+			}
+			finally {
+				// Make sure that code waiting on global data does not wait forever.
+				completeGlobalData();
+			}
+		}, "KiWIS-" + getName() + "-readGlobalData" );
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Wait for a global dataset to be available, starting to read the global data if not already started.
+	 * @param ready the future for the global dataset
+	 */
+	private void waitForGlobalData ( CompletableFuture<Void> ready ) {
+		String routine = getClass().getSimpleName() + ".waitForGlobalData";
+		startReadGlobalData();
+		if ( !ready.isDone() ) {
+			Message.printStatus(2, routine, "Waiting for global data for datastore \"" + getName() + "\".");
+			ready.join();
+		}
+	}
+
+	/**
+	 * Read global data that should be kept in memory to increase performance.
+	 * This is called in a background thread, either from the constructor (ReadGlobalData=Startup)
+	 * or when global data are first used (see startReadGlobalData).
+	 * The following data are read and are available with get() methods:
+	 * <ul>
+	 * <li>QualityCode - used to convert quality codes to time series data flags</li>
+	 * <li>Site and Station - cache of site and station lists</li>
+	 * <li>TimeSeriesCatalog - cache used to find time series without re-requesting from the web service</li>
+	 * </ul>
+	 * If the global data snapshot file exists (see MetadataCache and MetadataCacheTTL configuration properties),
+	 * the global data are initialized from the snapshot and, if the snapshot is older than the time to live,
+	 * the global data are refreshed from web services in a background thread.
+	 * Otherwise, the global data are read from web services and the snapshot file is written.
+	 * If offline (Offline configuration property), only the snapshot is used.
+	 * If an error is detected, set on the datastore so that TSTool View / Datastores will show the error.
+	 * This is usually an issue with a misconfigured datastore.
+	 */
+	public void readGlobalData () {
+		String routine = getClass().getSimpleName() + ".readGlobalData";
+		Message.printWarning ( 2, routine, "Reading global data for datastore \"" + getName() + "\"." );
+
+		if ( this.metadataCache || this.offline ) {
+			File snapshotFile = getGlobalDataSnapshotFile();
+			KiWISGlobalDataSnapshot snapshot = null;
+			try {
+				snapshot = KiWISGlobalDataSnapshot.read(snapshotFile, getServiceRootURI().toString());
+			}
+			catch ( Exception e ) {
+				Message.printWarning(3, routine, "Error reading global data snapshot \"" + snapshotFile + "\" (" + e + ")");
+				Message.printWarning(3, routine, e );
+			}
+			if ( snapshot != null ) {
+				this.qualityCodeList = snapshot.getQualityCodeList();
+				this.qualityCodeTable = new KiWISQualityCodeTable(this.qualityCodeList);
+				this.siteList = snapshot.getSiteList();
+				this.stationList = snapshot.getStationList();
+				this.tscatalogList = snapshot.getTimeSeriesCatalogList();
+				createCatalogChoiceLists();
+				completeGlobalData();
+				long ageSeconds = (System.currentTimeMillis() - snapshot.getCreationTime())/1000;
+				Message.printStatus(2, routine, "Read " + this.qualityCodeList.size() + " quality codes, "
+					+ this.siteList.size() + " sites, " + this.stationList.size() + " stations, and "
+					+ this.tscatalogList.size() + " time series catalog from snapshot \"" + snapshotFile
+					+ "\" (age " + ageSeconds + " seconds).");
+				if ( (ageSeconds > this.metadataCacheTTL) && !this.offline ) {
+					// Use the snapshot data now and refresh from web services without delaying startup.
+					Message.printStatus(2, routine, "Snapshot is older than MetadataCacheTTL (" + this.metadataCacheTTL
+						+ " seconds) - refreshing global data in the background.");
+					Thread thread = new Thread ( () -> refreshGlobalData(), "KiWIS-" + getName() + "-readGlobalData" );
+					thread.setDaemon(true);
+					thread.start();
+				}
+				return;
+			}
+		}
+
+		if ( this.offline ) {
+			// Global data cannot be read so time series can only be read if the catalog is not needed.
+			Message.printWarning(2, routine, "Datastore \"" + getName()
+				+ "\" is offline and no global data snapshot is available - global data are not available.");
+			return;
 		}
 
-		// The time series catalog COULD be used more throughout TSTool, such as when reading time series.
-		// However, the initial implementation of readTimeSeries reads the list each time.
-		// The cached list is used to create choices for the UI in order to ensure fast performance.
-		// Therefore the slowdown is only at TSTool startup.
+		// No snapshot is available so read from web services:
+		// - each global dataset is available as soon as it has been read
+		refreshGlobalData();
+	}
+
+	/**
+	 * Read global data from web services and, if all data were read successfully,
+	 * write the global data snapshot file.
+	 */
+	private void refreshGlobalData () {
+		String routine = getClass().getSimpleName() + ".refreshGlobalData";
+		boolean allRead = readGlobalDataFromWebServices();
+		if ( allRead && this.metadataCache ) {
+			File snapshotFile = getGlobalDataSnapshotFile();
+			try {
+				KiWISGlobalDataSnapshot.write(snapshotFile, getServiceRootURI().toString(),
+					this.qualityCodeList, this.siteList, this.stationList, this.tscatalogList);
+				Message.printStatus(2, routine, "Wrote global data snapshot \"" + snapshotFile + "\".");
+			}
+			catch ( Exception e ) {
+				Message.printWarning(3, routine, "Error writing global data snapshot \"" + snapshotFile + "\" (" + e + ")");
+				Message.printWarning(3, routine, e );
+			}
+		}
+	}
+
+	/**
+	 * Read global data from web services.
+	 * The quality codes, sites, stations, and time series catalog are independent so they are requested concurrently
+	 * and the total time is close to the time for the slowest request.
+	 * Each global dataset is marked as available when its request completes so that code waiting on
+	 * one dataset is not delayed by the others.
+	 * The global data are only reset if successfully read so that previous data (e.g., from a snapshot) remain in use.
+	 * @return true if all global data were read without error, false if any errors occurred
+	 */
+	private boolean readGlobalDataFromWebServices () {
+		String routine = getClass().getSimpleName() + ".readGlobalDataFromWebServices";
+		AtomicBoolean allRead = new AtomicBoolean(true);
+
+		// Use one thread for each request.
+		ExecutorService executor = Executors.newFixedThreadPool(4, runnable -> {
+			Thread thread = new Thread(runnable, "KiWIS-" + getName() + "-readGlobalData");
+			thread.setDaemon(true);
+			return thread;
+		});
 		try {
-    		String dataTypeReq = null;
-    		String dataIntervalReq = null;
-    		InputFilter_JPanel ifp = null;
-    		Integer kiwisTsid = null;
-    		String kiwisTsPath = null;
-    		// Read the catalog for all time series.
-			this.tscatalogList = readTimeSeriesCatalog(dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath );
-			Message.printStatus(2, routine, "Read " + this.stationList.size() + " time series catalog." );
-			
-			// Loop through and create the lists of location ID and time series short name used in the ReadKiWIS command editor.
-			
-			String stationNo;
-			String tsShortName;
-			this.locIdList = new ArrayList<>();
-			this.tsShortNameList = new ArrayList<>();
-			boolean found;
-			for ( TimeSeriesCatalog tscatalog : this.tscatalogList ) {
-				stationNo = tscatalog.getStationNo();
-				tsShortName = tscatalog.getTsShortName();
-				
-				found = false;
-				for ( String stationNo2 : this.locIdList ) {
-					if ( stationNo2.equals(stationNo) ) {
-						found = true;
-						break;
+			CompletableFuture<Void> qualityCodeFuture = CompletableFuture.runAsync(() -> {
+				try {
+					List<QualityCode> qualityCodeList = readQualityCodes();
+					// Set the table before the list so that the table is available when the list is available.
+					this.qualityCodeTable = new KiWISQualityCodeTable(qualityCodeList);
+					this.qualityCodeList = qualityCodeList;
+					Message.printStatus(2, routine, "Read " + this.qualityCodeList.size() + " quality codes." );
+					if ( Message.isDebugOn ) {
+						for ( QualityCode qc : this.qualityCodeList ) {
+							Message.printStatus(2, routine, "Quality code: " + qc );
+						}
 					}
 				}
-				if ( !found ) {
-					this.locIdList.add(stationNo);
+				catch ( Exception e ) {
+					Message.printWarning(3, routine, "Error reading global quality codes (" + e + ")");
+					Message.printWarning(3, routine, e );
+					allRead.set(false);
+				}
+				finally {
+					this.qualityCodeListReady.complete(null);
 				}
+			}, executor);
 
-				found = false;
-				for ( String tsShortName2 : this.tsShortNameList ) {
-					if ( tsShortName2.equals(tsShortName) ) {
-						found = true;
-						break;
-					}
+			CompletableFuture<Void> siteFuture = CompletableFuture.runAsync(() -> {
+				try {
+					this.siteList = readSiteList();
+					Message.printStatus(2, routine, "Read " + this.siteList.size() + " sites." );
 				}
-				if ( !found ) {
-					this.tsShortNameList.add(tsShortName);
+				catch ( Exception e ) {
+					Message.printWarning(3, routine, "Error reading global site list (" + e + ")");
+					Message.printWarning(3, routine, e );
+					allRead.set(false);
 				}
-			}
+				finally {
+					this.siteListReady.complete(null);
+				}
+			}, executor);
+
+			CompletableFuture<Void> stationFuture = CompletableFuture.runAsync(() -> {
+				try {
+					this.stationList = readStationList();
+					Message.printStatus(2, routine, "Read " + this.stationList.size() + " stations." );
+				}
+				catch ( Exception e ) {
+					Message.printWarning(3, routine, "Error reading global station list (" + e + ")");
+					Message.printWarning(3, routine, e );
+					allRead.set(false);
+				}
+				finally {
+					this.stationListReady.complete(null);
+				}
+			}, executor);
+
+			// The time series catalog COULD be used more throughout TSTool, such as when reading time series.
+			// However, the initial implementation of readTimeSeries reads the list each time.
+			// The cached list is used to create choices for the UI in order to ensure fast performance.
+			CompletableFuture<Void> tscatalogFuture = CompletableFuture.runAsync(() -> {
+				try {
+    				String dataTypeReq = null;
+    				String dataIntervalReq = null;
+    				InputFilter_JPanel ifp = null;
+    				Integer kiwisTsid = null;
+    				String kiwisTsPath = null;
+    				// Read the catalog for all time series:
+    				// - throw an exception on error so that previously read catalog is not replaced with an empty list
+    				boolean throwErrors = true;
+					this.tscatalogList = readTimeSeriesCatalog(dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath, throwErrors );
+					Message.printStatus(2, routine, "Read " + this.tscatalogList.size() + " time series catalog." );
+			
+					// Create the lists of location ID and time series short name used in the ReadKiWIS command editor.
+					createCatalogChoiceLists();
+				}
+				catch ( Exception e ) {
+					Message.printWarning(3, routine, "Error reading global time series catalog list (" + e + ")");
+					Message.printWarning(3, routine, e );
+					allRead.set(false);
+				}
+				finally {
+					this.tscatalogListReady.complete(null);
+				}
+			}, executor);
 
-			// Sort the lists.
-			Collections.sort(this.locIdList,String.CASE_INSENSITIVE_ORDER);
-			Collections.sort(this.tsShortNameList,String.CASE_INSENSITIVE_ORDER);
+			// Wait for all requests to complete.
+			CompletableFuture.allOf(qualityCodeFuture, siteFuture, stationFuture, tscatalogFuture).join();
 		}
-		catch ( Exception e ) {
-			Message.printWarning(3, routine, "Error reading global time series catalog list (" + e + ")");
-			Message.printWarning(3, routine, e );
+		finally {
+			executor.shutdown();
 		}
+		return allRead.get();
 	}
 
 	/**
@@ -960,15 +1697,9 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 			+ "&request=getParameterList&format=objson"
 			+ "&returnFields=parametertype_id,parametertype_name,station_name,station_no,stationparameter_name,stationparameter_no";
 		Message.printStatus(2, routine, "Reading parameter list from: " + requestUrl);
-		List<Parameter> parameterList = new ArrayList<>();
-		String arrayName = null;
-		JsonNode jsonNode = JacksonToolkit.getInstance().getJsonNodeFromWebServiceUrl(requestUrl, arrayName);
-		Message.printStatus(2, routine, "  Read " + jsonNode.size() + " items.");
-		if ( (jsonNode != null) && (jsonNode.size() > 0) ) {
-			for(int i = 0; i < jsonNode.size(); i++) {
-				parameterList.add((Parameter)JacksonToolkit.getInstance().treeToValue(jsonNode.get(i), Parameter.class));
-			}
-		}
+		// Stream the response and bind each object directly rather than creating a JsonNode tree.
+		List<Parameter> parameterList = JacksonToolkit.getInstance().readListFromWebServiceUrl(this.httpTransport, requestUrl, Parameter.class);
+		Message.printStatus(2, routine, "  Read " + parameterList.size() + " items.");
 		return parameterList;
 	}
 
@@ -979,15 +1710,9 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 		String routine = getClass().getSimpleName() + ".readParameterTypeList";
 		String requestUrl = getServiceRootURI() + COMMON_REQUEST_PARAMETERS + "&request=getParameterTypeList&format=objson";
 		Message.printStatus(2, routine, "Reading parameter type list from: " + requestUrl);
-		List<ParameterType> parameterTypeList = new ArrayList<>();
-		String arrayName = null;
-		JsonNode jsonNode = JacksonToolkit.getInstance().getJsonNodeFromWebServiceUrl(requestUrl, arrayName);
-		Message.printStatus(2, routine, "  Read " + jsonNode.size() + " items.");
-		if ( (jsonNode != null) && (jsonNode.size() > 0) ) {
-			for(int i = 0; i < jsonNode.size(); i++) {
-				parameterTypeList.add((ParameterType)JacksonToolkit.getInstance().treeToValue(jsonNode.get(i), ParameterType.class));
-			}
-		}
+		// Stream the response and bind each object directly rather than creating a JsonNode tree.
+		List<ParameterType> parameterTypeList = JacksonToolkit.getInstance().readListFromWebServiceUrl(this.httpTransport, requestUrl, ParameterType.class);
+		Message.printStatus(2, routine, "  Read " + parameterTypeList.size() + " items.");
 		return parameterTypeList;
 	}
 
@@ -1011,15 +1736,9 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 		String routine = getClass().getSimpleName() + ".readQualityCodes";
 		String requestUrl = getServiceRootURI() + COMMON_REQUEST_PARAMETERS + "&request=getQualityCodes&format=json";
 		Message.printStatus(2, routine, "Reading quality codes from: " + requestUrl);
-		List<QualityCode> qualityCodeList = new ArrayList<>();
-		String arrayName = null;
-		JsonNode jsonNode = JacksonToolkit.getInstance().getJsonNodeFromWebServiceUrl(requestUrl, arrayName);
-		Message.printStatus(2, routine, "  Read " + jsonNode.size() + " items.");
-		if ( (jsonNode != null) && (jsonNode.size() > 0) ) {
-			for(int i = 0; i < jsonNode.size(); i++) {
-				qualityCodeList.add((QualityCode)JacksonToolkit.getInstance().treeToValue(jsonNode.get(i), QualityCode.class));
-			}
-		}
+		// Stream the response and bind each object directly rather than creating a JsonNode tree.
+		List<QualityCode> qualityCodeList = JacksonToolkit.getInstance().readListFromWebServiceUrl(this.httpTransport, requestUrl, QualityCode.class);
+		Message.printStatus(2, routine, "  Read " + qualityCodeList.size() + " items.");
 		return qualityCodeList;
 	}
 
@@ -1030,15 +1749,9 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 		String routine = getClass().getSimpleName() + ".readSiteList";
 		String requestUrl = getServiceRootURI() + COMMON_REQUEST_PARAMETERS + "&request=getSiteList&format=objson";
 		Message.printStatus(2, routine, "Reading site list from: " + requestUrl);
-		List<Site> siteList = new ArrayList<>();
-		String arrayName = null;
-		JsonNode jsonNode = JacksonToolkit.getInstance().getJsonNodeFromWebServiceUrl(requestUrl, arrayName);
-		Message.printStatus(2, routine, "  Read " + jsonNode.size() + " items.");
-		if ( (jsonNode != null) && (jsonNode.size() > 0) ) {
-			for(int i = 0; i < jsonNode.size(); i++) {
-				siteList.add((Site)JacksonToolkit.getInstance().treeToValue(jsonNode.get(i), Site.class));
-			}
-		}
+		// Stream the response and bind each object directly rather than creating a JsonNode tree.
+		List<Site> siteList = JacksonToolkit.getInstance().readListFromWebServiceUrl(this.httpTransport, requestUrl, Site.class);
+		Message.printStatus(2, routine, "  Read " + siteList.size() + " items.");
 		return siteList;
 	}
 
@@ -1049,15 +1762,9 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 		String routine = getClass().getSimpleName() + ".readStationist";
 		String requestUrl = getServiceRootURI() + COMMON_REQUEST_PARAMETERS + "&request=getStationList&format=objson";
 		Message.printStatus(2, routine, "Reading station list from: " + requestUrl);
-		List<Station> stationList = new ArrayList<>();
-		String arrayName = null;
-		JsonNode jsonNode = JacksonToolkit.getInstance().getJsonNodeFromWebServiceUrl(requestUrl, arrayName);
-		Message.printStatus(2, routine, "  Read " + jsonNode.size() + " items.");
-		if ( (jsonNode != null) && (jsonNode.size() > 0) ) {
-			for(int i = 0; i < jsonNode.size(); i++) {
-				stationList.add((Station)JacksonToolkit.getInstance().treeToValue(jsonNode.get(i), Station.class));
-			}
-		}
+		// Stream the response and bind each object directly rather than creating a JsonNode tree.
+		List<Station> stationList = JacksonToolkit.getInstance().readListFromWebServiceUrl(this.httpTransport, requestUrl, Station.class);
+		Message.printStatus(2, routine, "  Read " + stationList.size() + " items.");
 		return stationList;
 	}
 
@@ -1099,6 +1806,25 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
      * @return the time series or null if not read
      */
     public TS readTimeSeries ( String tsidReq, DateTime readStart, DateTime readEnd,
+    	boolean readData, HashMap<String,Object> readProperties ) throws Exception {
+    	return readTimeSeries ( tsidReq, null, readStart, readEnd, readData, readProperties );
+    }
+
+    /**
+     * Read a single time series given its time series identifier.
+     * The KiWIS time series is determined from the time series catalog if provided,
+     * or the global time series catalog if available,
+     * or otherwise by reading the catalog for the single time series from the web service.
+     * @param tsidReq requested time series identifier.
+     * The output time series may be different depending on the requested properties.
+     * @param tscatalogReq time series catalog for the time series if already known (e.g., from a list of matching time series),
+     * or null to look up the time series catalog from the identifier
+     * @param readStart start of read, will be set to 'periodStart' service parameter.
+     * @param readEnd end of read, will be set to 'periodEnd' service parameter.
+     * @param readProperties additional properties to control the query, as for readTimeSeries() without tscatalogReq
+     * @return the time series or null if not read
+     */
+    public TS readTimeSeries ( String tsidReq, TimeSeriesCatalog tscatalogReq, DateTime readStart, DateTime readEnd,
     	boolean readData, HashMap<String,Object> readProperties ) throws Exception {
     	String routine = getClass().getSimpleName() + ".readTimeSeries";
 
@@ -1176,13 +1902,34 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
     	String locType = tsidentReq.getLocationType();
     	Integer kiwisTsid = null; // KiWIS ts_id, used if location type is used.
     	String kiwisTsPath = null; // KiWIS ts_path, used if location type is NOT used.
-    	// Time series catalog for the single matching time series.
- 		TimeSeriesCatalog tscatalog = null;
-    	if ( locType.equalsIgnoreCase("ts_id") ) {
+    	// Time series catalog for the single matching time series:
+    	// - use the global catalog index only if the global catalog has been read, to avoid waiting for a large read
+    	// - if offline, the catalog can only be found in the global catalog so wait for the snapshot to be read
+ 		TimeSeriesCatalog tscatalog = tscatalogReq;
+ 		KiWISTimeSeriesCatalogIndex tscatalogIndex = null;
+ 		if ( this.offline && (tscatalog == null) ) {
+ 			waitForGlobalData(this.tscatalogListReady);
+ 		}
+ 		if ( this.tscatalogListReady.isDone() ) {
+ 			tscatalogIndex = this.tscatalogIndex;
+ 		}
+    	if ( tscatalog != null ) {
+    		// Time series catalog was provided by the calling code.
+    		kiwisTsid = tscatalog.getTsId();
+    	}
+    	else if ( locType.equalsIgnoreCase("ts_id") ) {
     		// KiWIS ts_id uniquely identifies the time series:
     		// - the location is like ts_id:ts_id  (where first 5 characters are 'ts_id:'
     		kiwisTsid = Integer.valueOf(tsidentReq.getMainLocation());
-    		// Read the time series list for the single time series.
+    		if ( tscatalogIndex != null ) {
+    			tscatalog = tscatalogIndex.lookupTimeSeriesCatalog(kiwisTsid);
+    		}
+    	}
+    	if ( tscatalog != null ) {
+    		// Time series catalog is known so no need to read.
+    	}
+    	else if ( locType.equalsIgnoreCase("ts_id") ) {
+    		// Did not find in the global catalog so read the time series list for the single time series.
     		String dataTypeReq = null;
     		String dataIntervalReq = null;
     		InputFilter_JPanel ifp = null;
@@ -1216,12 +1963,22 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
     		}
     		String stationParameterNo = parts.get(0);
     		String tsShortName = parts.get(1);
-    		// Read the catalog matching the KiWIS 'ts_path'.
+    		if ( tscatalogIndex != null ) {
+    			tscatalog = tscatalogIndex.lookupTimeSeriesCatalog(stationNo, stationParameterNo, tsShortName);
+    		}
+    		// Read the catalog matching the KiWIS 'ts_path' if not found in the global catalog.
     		String dataTypeReq = null;
     		String dataIntervalReq = null;
     		InputFilter_JPanel ifp = null;
     		kiwisTsPath = "*/" + stationNo + "/" + stationParameterNo + "/" + tsShortName;
-    		List<TimeSeriesCatalog> tslist = readTimeSeriesCatalog(dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath );
+    		List<TimeSeriesCatalog> tslist = null;
+    		if ( tscatalog != null ) {
+    			tslist = new ArrayList<>();
+    			tslist.add(tscatalog);
+    		}
+    		else {
+    			tslist = readTimeSeriesCatalog(dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath );
+    		}
     		if ( tslist.size() == 0 ) {
     			// Did not match any time series.
     			throw new RuntimeException ( "No time series found matching TSID = " + tsidentReq );
@@ -1329,367 +2086,279 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 		setTimeSeriesProperties ( ts, tscatalog );
     	
     	if ( readData ) {
-    		// Also read the time series values.
+    		// Also read the time series values:
+    		// - if the value store is used (ValueStore=True or Offline=True), only read periods that are not in the store
+    		// - if values were retained from a previous read (DeltaRead=True), only read new values
+    		// - a long period may be split into windows that are read concurrently (see ValuesWindowDays)
     		StringBuilder valuesUrl = new StringBuilder();
-    		List<TimeSeriesValue> timeSeriesValueList = readTimeSeriesValues (
-    			kiwisTsid, kiwisTsPath, readStart, readEnd, readProperties,
-    			valuesUrl );
-    		
-    		String dataFlag = null;
-    		DateTime dateTime = null;
-    		double value;
-    		int interpolationTypeNum = -1;
-    		InterpolationType interpolationType = null;
-    		String valueString;
-    		int duration = -1;
-    		List<QualityCode> qualityCodeList = this.getQualityCodes(false);
-    		int badDateTimeCount = 0;
-    		int badValueCount = 0;
-    		int badInterpolationTypeCount = 0;
-    		int notInsertedCount = 0;
-    		// Count of how many values are adjusted from beginning to end of interval.
-    		int timeAdjustCount = 0;
-    		// Count of how many daily values have non-zero hour.
-    		int dayNonZeroHourCount = 0;
-   			int valueErrorCount = 0;
-    		if ( timeSeriesValueList.size() > 0 ) {
-    			// Set the period based on data from the first and last values:
-    			// - this values may be adjusted below
-    			ts.setDate1(DateTime.parse(timeSeriesValueList.get(0).getTimestamp()));
-    			ts.setDate2(DateTime.parse(timeSeriesValueList.get(timeSeriesValueList.size() - 1).getTimestamp()));
-
-    			// Check the time series values up front to see if any date/times will be adjusted from
-    			// beginning to end of the interval.  TSTool uses interval-ending values.
-    			// Must do this up front in order to adjust the time series period for regular interval time series
-    			// so that all queried values will be saved in the time series.
-    			interpolationType = InterpolationType.UNKNOWN;
-    			for ( TimeSeriesValue tsValue : timeSeriesValueList ) {
-    				if ( tsValue.getInterpolationType().getTimestampPos() == -1 ) {
-    					// Save the interpolation type that triggered the adjustment.
-    					interpolationType = tsValue.getInterpolationType();
-    					++timeAdjustCount;
-    					// Can break since only need to know if one time is adjusted.
-    					break;
-    				}
+    		KiWISTimeSeriesValueColumns columns = null;
+    		long readStartNanos = System.nanoTime();
+    		DateTime deltaStart = null;
+    		if ( (this.deltaReadCache != null) && (this.valueStore == null) ) {
+    			deltaStart = this.deltaReadCache.getDeltaReadStart ( kiwisTsid, readStart, readEnd );
+    		}
+    		if ( deltaStart != null ) {
+    			Message.printStatus(2, routine, "Reading values for ts_id=" + kiwisTsid + " starting at " + deltaStart
+    				+ " and merging with retained values (delta read).");
+    			KiWISTimeSeriesValueColumns deltaColumns = readTimeSeriesValuesColumnar ( kiwisTsid, deltaStart, readEnd, null, valuesUrl );
+    			columns = this.deltaReadCache.merge ( kiwisTsid, readStart, deltaStart, deltaColumns );
+    		}
+    		else if ( this.valueStore != null ) {
+    			columns = readTimeSeriesValuesWithStore ( kiwisTsid, readStart, readEnd, valuesUrl );
+    		}
+    		else {
+    			columns = readTimeSeriesValuesPeriod ( kiwisTsid, readStart, readEnd, valuesUrl );
+    			if ( this.deltaReadCache != null ) {
+    				this.deltaReadCache.put ( kiwisTsid, readStart, columns );
     			}
+    		}
+    		ts.setProperty("ts.GetTimeSeriesValuesReadMs", Long.valueOf((System.nanoTime() - readStartNanos)/1000000L));
+    		setTimeSeriesValues ( ts, intervalBaseReq, intervalMultReq, irregularInterval, readDayAs24Hour, read24HourAsDay,
+    			columns, valuesUrl.toString() );
+    	}
 
-    			// If any times will be adjusted from beginning to end of the interval, also adjust the periods:
-    			// - only need to adjust if regular interval time series (KiWIS has non-blank ts_spacing)
-    			// - the data value timestamps are shifted similarly before adding data to the time series
-    			if ( timeAdjustCount > 0 ) {
-    				if ( isRegularIntervalReq ) {
-    					// Regular interval time series.
-    					DateTime date1 = ts.getDate1();
-    					adjustTimeForInterpolationType(intervalBaseReq, intervalMultReq, date1, interpolationType);
-    					ts.setDate1(date1);
-    					DateTime date2 = ts.getDate2();
-    					adjustTimeForInterpolationType(intervalBaseReq, intervalMultReq, date2, interpolationType);
-    					ts.setDate2(date2);
-    					DateTime date1Original = ts.getDate1Original();
-    					if ( date1Original != null ) {
-    						adjustTimeForInterpolationType(intervalBaseReq, intervalMultReq, date1Original, interpolationType);
-    						ts.setDate1Original(date1Original);
-    					}
-    					DateTime date2Original = ts.getDate2Original();
-    					if ( date2Original != null ) {
-    						adjustTimeForInterpolationType(intervalBaseReq, intervalMultReq, date2Original, interpolationType);
-    						ts.setDate2Original(date2Original);
-    					}
-    				}
-    			}
+    	return ts;
+    }
 
-    			// The following if blocks match the logic inside the loop where values are transfered.
+    /**
+     * Read a list of time series given their time series identifiers.
+     * The time series metadata are read for each time series and the data values are read using
+     * 'getTimeseriesValues' requests for batches of time series (see ValuesBatchSize configuration property),
+     * with the response for each batch split into the separate time series.
+     * This is much faster than reading each time series separately when many time series are read.
+     * @param tsidList list of time series identifiers to read
+     * @param readStart start of read, will be set to 'periodStart' service parameter.
+     * @param readEnd end of read, will be set to 'periodEnd' service parameter.
+     * @param readData whether to read data values (if false, only read time series metadata)
+     * @param readProperties additional properties to control the query, as for readTimeSeries()
+     * @param problems list of problems, one for each time series that could not be read,
+     * or null if problems are only logged
+     * @return the list of time series, in the same order as the identifiers,
+     * with null for time series that could not be read
+     */
+    public List<TS> readTimeSeriesList ( List<String> tsidList, DateTime readStart, DateTime readEnd,
+    	boolean readData, HashMap<String,Object> readProperties, List<String> problems ) {
+    	return readTimeSeriesList ( tsidList, null, readStart, readEnd, readData, readProperties, problems );
+    }
 
-    			if ( isRegularIntervalReq && (intervalBaseReq == TimeInterval.DAY) && (intervalMultReq == 1) ) {
-    				if ( readDayAs24Hour ) {
-    					// Since KiWIS timestamp already includes hour, don't need to do anything,
-    					// other than the output time series needs to have its interval changed above (above).
-    					// Parsed date/time will already include the correct hour so just need to set the precision.
-   						DateTime date1 = ts.getDate1();
-   						date1.setPrecision(DateTime.PRECISION_HOUR);
-    					ts.setDate1(date1);
-   						DateTime date2 = ts.getDate2();
-   						date2.setPrecision(DateTime.PRECISION_HOUR);
-    					ts.setDate2(date2);
-    					Message.printStatus(2,routine,"After adjusting period precision for ReadDayAs24Hour, date1="
-    						+ ts.getDate1() + " date2=" + ts.getDate2());
-    					// Original period is probably null but try to set.
-   						DateTime date1Original = ts.getDate1Original();
-   						if ( date1Original != null ) {
-   							date1Original.setPrecision(DateTime.PRECISION_HOUR);
-    						ts.setDate1Original(date1Original);
-   						}
-   						DateTime date2Original = ts.getDate2Original();
-   						if ( date2Original != null ) {
-   							date2Original.setPrecision(DateTime.PRECISION_HOUR);
-    						ts.setDate2Original(date2Original);
-   						}
-    				}
-    				else {
-    					// By default, 1Day time series are shifted.
-    					// - KiWIS timestamp is at midnight (hour zero of next day)
-    					// - adjust the KiWIS timestamp to previous day (time will be discarded).
-    					// - do not do the adjustment if irregular interval other than if IrregDay is requested
-    					// - TODO smalers 2023-01-18 will need to handle month and year when enabled
-    					if ( (irregularInterval == null) ||
-    						((irregularInterval != null) && (irregularInterval.getIrregularIntervalPrecision() == TimeInterval.DAY)) ) {
-    						DateTime date1 = ts.getDate1();
-   							date1.setPrecision(DateTime.PRECISION_DAY);
-    						date1.addDay(-1);
-    						date1.setHour(0); // Should not be used.
-    						ts.setDate1(date1);
-   							DateTime date2 = ts.getDate2();
-   							date2.setPrecision(DateTime.PRECISION_DAY);
-    						date2.addDay(-1);
-    						date2.setHour(0); // Should not be used.
-    						ts.setDate2(date2);
-    						Message.printStatus(2,routine,"After adjusting period precision for default day handling, date1="
-    							+ ts.getDate1() + " date2=" + ts.getDate2());
-    						// Original period is probably null but try to set.
-   							DateTime date1Original = ts.getDate1Original();
-   							if ( date1Original != null ) {
-   								date1Original.setPrecision(DateTime.PRECISION_DAY);
-   								date1Original.addDay(-1);
-    							date1Original.setHour(0); // Should not be used.
-    							ts.setDate1Original(date1Original);
-   							}
-   							DateTime date2Original = ts.getDate2Original();
-   							if ( date2Original != null ) {
-   								date2Original.setPrecision(DateTime.PRECISION_DAY);
-   								date2Original.addDay(-1);
-    							date2Original.setHour(0); // Should not be used.
-    							ts.setDate2Original(date2Original);
-   							}
-    					}
-    				}
+    /**
+     * Read a list of time series given their time series identifiers and time series catalog.
+     * This is the same as readTimeSeriesList() without the time series catalog,
+     * but the KiWIS time series do not need to be looked up from the identifiers.
+     * @param tsidList list of time series identifiers to read
+     * @param tscatalogList list of time series catalog corresponding to the identifiers,
+     * or null to look up the time series catalog from the identifiers
+     * @param readStart start of read, will be set to 'periodStart' service parameter.
+     * @param readEnd end of read, will be set to 'periodEnd' service parameter.
+     * @param readData whether to read data values (if false, only read time series metadata)
+     * @param readProperties additional properties to control the query, as for readTimeSeries()
+     * @param problems list of problems, one for each time series that could not be read,
+     * or null if problems are only logged
+     * @return the list of time series, in the same order as the identifiers,
+     * with null for time series that could not be read
+     */
+    public List<TS> readTimeSeriesList ( List<String> tsidList, List<TimeSeriesCatalog> tscatalogList,
+    	DateTime readStart, DateTime readEnd, boolean readData, HashMap<String,Object> readProperties, List<String> problems ) {
+    	String routine = getClass().getSimpleName() + ".readTimeSeriesList";
+    	if ( readProperties == null ) {
+    		// Create an empty hashmap if necessary to avoid checking for null below.
+    		readProperties = new HashMap<>();
+    	}
+    	if ( problems == null ) {
+    		problems = new ArrayList<>();
+    	}
+
+    	// Read the time series without data, which validates the identifier and resolves the KiWIS 'ts_id'.
+    	List<TS> tslist = new ArrayList<>(tsidList.size());
+    	for ( int i = 0; i < tsidList.size(); i++ ) {
+    		String tsid = tsidList.get(i);
+    		TimeSeriesCatalog tscatalog = null;
+    		if ( tscatalogList != null ) {
+    			tscatalog = tscatalogList.get(i);
+    		}
+    		try {
+    			tslist.add ( readTimeSeries ( tsid, tscatalog, readStart, readEnd, false, readProperties ) );
+    		}
+    		catch ( Exception e ) {
+    			String message = "Error reading time series \"" + tsid + "\" (" + e + ").";
+    			Message.printWarning(3, routine, message);
+    			Message.printWarning(3, routine, e);
+    			problems.add(message);
+    			tslist.add(null);
+    		}
+    	}
+    	if ( !readData ) {
+    		return tslist;
+    	}
+
+    	// Get the properties that control how data values are handled, consistent with readTimeSeries().
+    	TimeInterval irregularInterval = null;
+    	boolean read24HourAsDay = false;
+    	boolean readDayAs24Hour = false;
+    	Object object = readProperties.get("IrregularInterval");
+    	if ( object != null ) {
+    		irregularInterval = TimeInterval.parseInterval((String)object);
+    	}
+    	object = readProperties.get("Read24HourAsDay");
+    	if ( (object != null) && ((String)object).equalsIgnoreCase("true") ) {
+   			read24HourAsDay = true;
+    	}
+    	object = readProperties.get("ReadDayAs24Hour");
+    	if ( (object != null) && ((String)object).equalsIgnoreCase("true") ) {
+   			readDayAs24Hour = true;
+    	}
+
+    	// Read the data values in batches:
+    	// - the position in the list is saved for each 'ts_id'
+    	// - if the same 'ts_id' is requested more than once (unusual), the duplicate is read separately
+    	// - if values were retained from a previous read (DeltaRead=True), the time series is read separately
+    	//   so that only new values are read
+    	// - similarly, if values are in the value store (ValueStore=True or Offline=True), the time series is read separately
+    	//   so that only periods that are not in the store are read, and values that are read in batches are saved in the store
+    	// - if the period is split into windows (ValuesWindowDays > 0), each time series is read separately
+    	//   so that the windows are read concurrently and retried
+    	// - if values are in the value cache (ValueCacheMB > 0), the time series is read separately to use the cached values,
+    	//   and values that are read in batches are added to the cache
+    	List<Integer> separatePositions = new ArrayList<>();
+    	for ( int iStart = 0; iStart < tslist.size(); iStart += this.valuesBatchSize ) {
+    		int iEnd = Math.min(iStart + this.valuesBatchSize, tslist.size());
+    		Map<Integer,Integer> tsIdPositionMap = new LinkedHashMap<>();
+    		for ( int i = iStart; i < iEnd; i++ ) {
+    			TS ts = tslist.get(i);
+    			if ( ts == null ) {
+    				continue;
     			}
-    			else if ( isRegularIntervalReq && (intervalBaseReq == TimeInterval.HOUR) && (intervalMultReq == 24) && read24HourAsDay ) {
-    				// 24Hour in KiWIS but want 1Day output:
-    				// - adjust the KiWIS timestamp to previous day (time will be discarded).
-   					DateTime date1 = ts.getDate1();
-   					date1.setPrecision(DateTime.PRECISION_DAY);
-    				date1.addDay(-1);
-    				date1.setHour(0); // Should not be used.
-    				ts.setDate1(date1);
-   					DateTime date2 = ts.getDate2();
-   					date2.setPrecision(DateTime.PRECISION_DAY);
-    				date2.addDay(-1);
-    				date2.setHour(0); // Should not be used.
-    				ts.setDate2(date2);
-    				Message.printStatus(2,routine,"After adjusting period precision for Read24HourAsDay, date1="
-    					+ ts.getDate1() + " date2=" + ts.getDate2());
-    				// Original period is probably null but try to set.
-   					DateTime date1Original = ts.getDate1Original();
-   					date1Original.setPrecision(DateTime.PRECISION_DAY);
-   					if ( date1Original != null ) {
-   						date1Original.addDay(-1);
-    					date1Original.setHour(0); // Should not be used.
-    					ts.setDate1Original(date1Original);
-   					}
-   					DateTime date2Original = ts.getDate2Original();
-   					date2Original.setPrecision(DateTime.PRECISION_DAY);
-   					if ( date2Original != null ) {
-   						date2Original.addDay(-1);
-    					date2Original.setHour(0); // Should not be used.
-    					ts.setDate2Original(date2Original);
-   					}
+    			Integer kiwisTsid = (Integer)ts.getProperty("ts_id");
+    			String valueCacheKey = getValueCacheKey ( kiwisTsid, readStart, readEnd );
+    			if ( tsIdPositionMap.containsKey(kiwisTsid) ) {
+    				separatePositions.add(i);
     			}
-
-    			if ( irregularInterval != null ) {
-    				// Adjust the precision on the period date/times:
-    				// - copies of the dates are returned so have to reset
-   					DateTime date1 = ts.getDate1();
-    				date1.setPrecision(irregularInterval.getIrregularIntervalPrecision());
-    				ts.setDate1(date1);
-   					DateTime date2 = ts.getDate2();
-    				date2.setPrecision(irregularInterval.getIrregularIntervalPrecision());
-    				ts.setDate2(date2);
-    				Message.printStatus(2,routine,"After adjusting period precision for irregular interval ("
-    					+ irregularInterval + "), date1=" + ts.getDate1() + " date2=" + ts.getDate2());
-    				// Original period is probably null but try to set.
-   					DateTime date1Original = ts.getDate1Original();
-   					if ( date1Original != null ) {
-   						date1Original.setPrecision(irregularInterval.getIrregularIntervalPrecision());
-   						ts.setDate1Original(date1Original);
-   					}
-   					DateTime date2Original = ts.getDate2Original();
-   					if ( date2Original != null ) {
-   						date2Original.setPrecision(irregularInterval.getIrregularIntervalPrecision());
-    					ts.setDate2Original(date2Original);
-   					}
+    			else if ( (this.deltaReadCache != null) && (this.valueStore == null)
+    				&& (this.deltaReadCache.getDeltaReadStart(kiwisTsid, readStart, readEnd) != null) ) {
+    				separatePositions.add(i);
     			}
-    			
-    			// If reading day interval, convert midnight hour 0 of the next day to day precision of the previous day,
-    			// for example:
-    			//   2023-01-01 00:00:00 -> 2022-12-31
-    			// Time series that use timestamps with time intervals can remain as is.
-
-    			// Allocate the time series data array:
-    			// - do this after adjusting the period for timestamps
-    			// - irregular interval does not allocate an array up front
-    			ts.allocateDataSpace();
-    			
-    			// Transfer the TimeSeriesValue list to the TS data.
-    			
-    			Message.printStatus(2,routine, "Transferring " + timeSeriesValueList.size() + " time series values.");
-    			timeAdjustCount = 0;
-    			for ( TimeSeriesValue tsValue : timeSeriesValueList ) {
-    				if ( Message.isDebugOn ) {
-    					Message.printStatus(2,routine, "  Processing timestamp=" + tsValue.getTimestamp()
-    						+ " value=" + tsValue.getValue() + " quality code=" + tsValue.getQualityCode()
-    						+ " interpolation type number=" + tsValue.getInterpolationTypeNum()
-    						+ " interpolation type=" + tsValue.getInterpolationType() );
-    				}
-    				try {
-    					try {
-    						dateTime = DateTime.parse(tsValue.getTimestamp());
-    					}
-    					catch ( Exception e ) {
-    						Message.printWarning(3, routine, "  Error parsing date/time: " + tsValue.getTimestamp());
-    						++badDateTimeCount;
-    						continue;
-    					}
-    					valueString = tsValue.getValue();
-    					if ( (valueString != null) && !valueString.isEmpty() ) {
-    						try {
-    							value = Double.parseDouble(tsValue.getValue());
-    						}
-    						catch ( NumberFormatException e ) {
-    							Message.printWarning(3, routine, "  Error parsing " + tsValue.getTimestamp() + " data value: " + tsValue.getValue());
-    							++badValueCount;
-    							continue;
-    						}
-    						// Get the interpolation type enumeration.
-    						interpolationType = tsValue.getInterpolationType();
-    						if ( interpolationType == InterpolationType.UNKNOWN ) {
-    							Message.printWarning(3, routine, "  Unknown interpolation type " + interpolationTypeNum
-    								+ " at " + tsValue.getTimestamp() + " - skipping value." );
-    							++badInterpolationTypeCount;
-    							continue;
-    						}
-    						// Adjust the date/time based on the interpolation type:
-    						// - only need to do this for regular interval time series
-    						// - only values that have timestamp at the beginning of an interval are adjusted
-    						// - keep a count that is added as a time series property
-    						if ( isRegularIntervalReq ) {
-    							timeAdjustCount += adjustTimeForInterpolationType(intervalBaseReq, intervalMultReq, dateTime, interpolationType);
-    						}
-	
-    						// Look up the data flag from the quality code integer.
-    						dataFlag = lookupQualityCode(qualityCodeList, tsValue.getQualityCode());
-	
-    						// Also check daily interval time series:
-    						// - if the hour is not zero, count and add as a property later
-    						// - time zone is ignored so -0700, -0600, etc. does not come into play
-    						// - if the count is non-zero, generate an exception because need to handle as 24Hour or irregular
-    						if ( isRegularIntervalReq && (intervalBaseReq == TimeInterval.DAY) && (intervalMultReq == 1) ) {
-    							if ( dateTime.getHour() != 0 ) {
-    								// Any day interval values with non-zero hour will result in an exception because TSTool does
-    								// not have a clean way to handle, for example, 7AM to 7AM time series.
-    								// The IrregularInterval=IrregDay parameter should be specified and uses have to deal with the data.
-    								++dayNonZeroHourCount;
-    							}
-    							if ( readDayAs24Hour ) {
-    								// Since KiWIS timestamp already includes hour, don't need to do anything,
-    								// other than the output time series needs to have its interval changed above (above).
-    								dateTime.setPrecision(DateTime.PRECISION_HOUR);
-    							}
-    							else {
-    								// By default, 1Day time series are shifted.
-    								// - KiWIS timestamp is at midnight (hour zero of next day)
-    								// - adjust the KiWIS timestamp to previous day (time will be discarded).
-    								// - do not do the adjustment if irregular interval other than if IrregDay is requested
-    								// - TODO smalers 2023-01-18 will need to handle month and year when enabled
-    								if ( (irregularInterval == null) ||
-    									((irregularInterval != null) && (irregularInterval.getIrregularIntervalPrecision() == TimeInterval.DAY)) ) {
-    									dateTime.addDay(-1);
-    									dateTime.setHour(0); // Should not be used.
-    									dateTime.setPrecision(DateTime.PRECISION_DAY);
-    								}
-    							}
-    						}
-    						else if ( isRegularIntervalReq && (intervalBaseReq == TimeInterval.HOUR) && (intervalMultReq == 24) && read24HourAsDay ) {
-    							// 24Hour in KiWIS but want 1Day output:
-    							// - adjustment will not occur if IrregularInterval was specified
-    							// - adjust the KiWIS timestamp to previous day (time will be discarded).
-    							dateTime.addDay(-1);
-    							dateTime.setHour(0); // Should not be used.
-    							dateTime.setPrecision(DateTime.PRECISION_DAY);
-    						}
-
-    						if ( irregularInterval != null ) {
-    							// Irregular interval output was requested:
-    							// - don't need to do adjustments below for day and 24Hour
-    							// - set the precision based on what was requested
-    							dateTime.setPrecision(irregularInterval.getIrregularIntervalPrecision());
-    						}
-    					
-    						// Set the data value in the time series:
-    						// - the date/time will be copied if necessary and the precision set to be consistent with the time series
-    						if ( Message.isDebugOn ) {
-    							Message.printStatus(2, routine, "  Setting " + dateTime + " value=" + value
-    								+ " flag=\"" + dataFlag + "\" for interpolationType=" + interpolationType );
-    						}
-    						if ( ts.setDataValue(dateTime, value, dataFlag, duration) == 0 ) {
-    							// Track points that are not inserted because may be an issue with the period due to
-    							// adjusted date/times not aligning with the allocated period.
-    							++notInsertedCount;
-    						}
-    					}
+    			else if ( (this.valueStore != null) && (this.offline || this.valueStore.getFile(kiwisTsid).exists()) ) {
+    				separatePositions.add(i);
+    			}
+    			else if ( this.valuesWindowDays > 0 ) {
+    				separatePositions.add(i);
+    			}
+    			else if ( (valueCacheKey != null) && this.valueCache.contains(valueCacheKey) ) {
+    				separatePositions.add(i);
+    			}
+    			else {
+    				tsIdPositionMap.put(kiwisTsid, i);
+    			}
+    		}
+    		if ( tsIdPositionMap.isEmpty() ) {
+    			continue;
+    		}
+    		StringBuilder kiwisTsids = new StringBuilder();
+    		for ( Integer kiwisTsid : tsIdPositionMap.keySet() ) {
+    			if ( kiwisTsids.length() > 0 ) {
+    				kiwisTsids.append(",");
+    			}
+    			kiwisTsids.append(kiwisTsid);
+    		}
+    		String valuesUrl = getTimeSeriesValuesUrl ( "csv", kiwisTsids.toString(), readStart, readEnd ).toString();
+    		Message.printStatus(2, routine, "Reading values for " + tsIdPositionMap.size() + " time series from: " + valuesUrl);
+    		// Wait for the quality codes before the response is opened:
+    		// - the response holds a concurrency limiter permit until it is closed,
+    		//   and reading the global data needs permits, which would deadlock if all permits are held by batch reads
+    		getQualityCodeTable();
+    		// Read the values for all blocks and close the response before the values are used:
+    		// - the response holds a request permit until it is closed
+    		// - the request parse time only includes reading the blocks
+    		// - each block has its own columns because the values for the batch are retained until the response is read
+    		Map<Integer,KiWISTimeSeriesValueColumns> blockColumnsMap = new LinkedHashMap<>();
+    		Map<Integer,Long> blockReadNanosMap = new HashMap<>();
+    		try ( KiWISTimeSeriesValueReader valueReader =
+    			new KiWISTimeSeriesValueReader(this.httpTransport.getInputStream(valuesUrl)) ) {
+    			Integer blockTsId;
+    			while ( (blockTsId = valueReader.nextBlock()) != null ) {
+    				if ( !tsIdPositionMap.containsKey(blockTsId) || blockColumnsMap.containsKey(blockTsId) ) {
+    					// Not expected.
+    					Message.printWarning(3, routine, "Response includes ts_id " + blockTsId + " that was not requested - skipping.");
+    					continue;
     				}
-    				catch ( Throwable e ) {
-    					// Catch a Throwable:
-    					// - Exception may not be general enough
-    					// - if the plugin code and TSTool code are incompatible, may get unexpected errors
-						++valueErrorCount;
-						Message.printWarning(3, routine, "  Error processing value (" + e + ")." );
-						if ( valueErrorCount <= 50 ) {
-							Message.printWarning(3, routine, e );
-						}
+    				// Read the values for the block:
+    				// - an error reading the stream is handled below for all time series that have not been read
+    				KiWISTimeSeriesValueColumns blockColumns = new KiWISTimeSeriesValueColumns();
+    				long blockStartNanos = System.nanoTime();
+    				valueReader.readColumns(blockColumns);
+    				blockReadNanosMap.put(blockTsId, System.nanoTime() - blockStartNanos);
+    				blockColumnsMap.put(blockTsId, blockColumns);
+    			}
+    		}
+    		catch ( Exception e ) {
+    			// Error reading the batch so the time series that were not read are errors.
+    			String message = "Error reading time series values (" + e + ").";
+    			Message.printWarning(3, routine, message);
+    			Message.printWarning(3, routine, e);
+    			for ( Map.Entry<Integer,Integer> entry : tsIdPositionMap.entrySet() ) {
+    				if ( !blockColumnsMap.containsKey(entry.getKey()) ) {
+    					Integer pos = entry.getValue();
+    					problems.add("Error reading time series values for \"" + tsidList.get(pos) + "\" (" + e + ").");
+    					tslist.set(pos, null);
     				}
     			}
-    			if ( badDateTimeCount > 0 ) {
-    				//problems.add("Time series had " + badDateTimeCount + " bad timestamps.  See the log file.");
-    				String message = "  Time series had " + badDateTimeCount + " bad timestamps.  See the log file.";
-    				Message.printWarning(3,routine,message);
-    				throw new Exception (message);
+    			tsIdPositionMap.keySet().retainAll(blockColumnsMap.keySet());
+    		}
+    		for ( Map.Entry<Integer,KiWISTimeSeriesValueColumns> blockEntry : blockColumnsMap.entrySet() ) {
+    			Integer blockTsId = blockEntry.getKey();
+    			KiWISTimeSeriesValueColumns blockColumns = blockEntry.getValue();
+    			this.metrics.addValues(valuesUrl, blockColumns.size());
+    			if ( this.deltaReadCache != null ) {
+    				this.deltaReadCache.put(blockTsId, readStart, blockColumns);
+    			}
+    			if ( this.valueStore != null ) {
+    				writeTimeSeriesValuesToStore ( blockTsId, readStart, readEnd, blockColumns );
     			}
-    			if ( badValueCount > 0 ) {
-    				//problems.add("Time series had " + badValueCount + " bad data values.  See the log file.");
-    				String message = "  Time series had " + badValueCount + " bad data values.  See the log file.";
-    				Message.printWarning(3,routine,message);
-    				throw new Exception(message);
+    			String valueCacheKey = getValueCacheKey ( blockTsId, readStart, readEnd );
+    			if ( valueCacheKey != null ) {
+    				this.valueCache.put ( valueCacheKey, blockColumns );
     			}
-    			if ( badInterpolationTypeCount > 0 ) {
-    				String message = "  Time series had " + badInterpolationTypeCount + " bad interpolation types.  See the log file.";
-    				//problems.add("Time series had " + badInterpolationTypeCount + " bad interpolation types.  See the log file.");
-    				Message.printWarning(3,routine,message);
-    				throw new Exception (message);
+    			Integer pos = tsIdPositionMap.remove(blockTsId);
+    			TS ts = tslist.get(pos);
+    			try {
+    				TSIdent tsidentReq = TSIdent.parseIdentifier(tsidList.get(pos));
+    				// The read time is for the block of the shared response.
+    				ts.setProperty("ts.GetTimeSeriesValuesReadMs", Long.valueOf(blockReadNanosMap.get(blockTsId)/1000000L));
+    				setTimeSeriesValues ( ts, tsidentReq.getIntervalBase(), tsidentReq.getIntervalMult(), irregularInterval,
+    					readDayAs24Hour, read24HourAsDay, blockColumns, valuesUrl );
     			}
-    			if ( valueErrorCount > 0 ) {
-    				String message = "  Time series had " + valueErrorCount + " errors setting values.  See the log file.";
-    				//problems.add("Time series had " + badDateTimeCount + " bad timestamps.  See the log file.");
-    				Message.printWarning(3,routine,message);
+    			catch ( Exception e ) {
+    				String message = "Error reading time series values for \"" + tsidList.get(pos) + "\" (" + e + ").";
+    				Message.printWarning(3, routine, message);
+    				Message.printWarning(3, routine, e);
+    				problems.add(message);
+    				tslist.set(pos, null);
     			}
     		}
-    		
-    		// Set additional time series properties to help understand the data.
-    		ts.setProperty("ts.TimestampsAdjustedToIntervalEndCount", Integer.valueOf(timeAdjustCount));
-    		ts.setProperty("ts.DayNonZeroHourCount", Integer.valueOf(dayNonZeroHourCount));
-    		ts.setProperty("ts.NotInsertedCount", Integer.valueOf(notInsertedCount));
-    		ts.setProperty("ts.GetTimeSeriesValuesUrl", valuesUrl.toString());
-    		ts.setProperty("ts.SetDataValueErrorCount", Integer.valueOf(valueErrorCount));
-    		
-    		// In order to avoid confusion, throw exceptions for cases that may be misinterpreted.
-    		if ( (intervalBaseReq == TimeInterval.DAY) && (intervalMultReq == 1) && (dayNonZeroHourCount > 0)) {
-    			// Daily time series but 
-    			throw new Exception ("KiWIS day interval time series had " + dayNonZeroHourCount
-    				+ " values at non-zero hour.  Use ReadKiWIS(IrregularInterval=IrregHour) to "
-    				+ "represent daily time series that are offset from midnight.");
+    		for ( Integer pos : tsIdPositionMap.values() ) {
+    			// Time series that were not in the response have no data.
+    			Message.printStatus(2, routine, "No values were returned for \"" + tsidList.get(pos) + "\".");
+    			tslist.get(pos).setProperty("ts.GetTimeSeriesValuesUrl", valuesUrl);
     		}
     	}
-
-    	return ts;
+    	for ( Integer pos : separatePositions ) {
+    		// Use the matched catalog so that the time series does not need to be looked up again.
+    		TimeSeriesCatalog tscatalog = null;
+    		if ( tscatalogList != null ) {
+    			tscatalog = tscatalogList.get(pos);
+    		}
+    		try {
+    			tslist.set(pos, readTimeSeries ( tsidList.get(pos), tscatalog, readStart, readEnd, true, readProperties ) );
+    		}
+    		catch ( Exception e ) {
+    			String message = "Error reading time series \"" + tsidList.get(pos) + "\" (" + e + ").";
+    			Message.printWarning(3, routine, message);
+    			Message.printWarning(3, routine, e);
+    			problems.add(message);
+    			tslist.set(pos, null);
+    		}
+    	}
+    	return tslist;
     }
 
 	/**
@@ -1704,6 +2373,24 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 	 */
 	public List<TimeSeriesCatalog> readTimeSeriesCatalog ( String dataTypeReq, String dataIntervalReq, InputFilter_JPanel ifp,
 		Integer kiwisTsid, String kiwisTsPath ) {
+		boolean throwErrors = false;
+		return readTimeSeriesCatalog ( dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath, throwErrors );
+	}
+
+	/**
+	 * Read time series catalog, which uses the "/getTimeseriesList" web service query.
+	 * @param dataTypeReq Requested data type (e.g., "DischargeRiver") or "*" to read all data types,
+	 *        or null to use default of "*".
+	 * @param dataIntervalReq Requested data interval (e.g., "IrregSecond") or "*" to read all intervals,
+	 *        or null to use default of "*".
+	 * @param ifp input filter panel with "where" conditions
+	 * @param kiwisTsid the KiWIS 'ts_id' to match, or null to ignore
+	 * @param kiwisTsPath the KiWIS 'ts_path' to match, or null to ignore, can have * for the site_no part
+	 * @param throwErrors if true, throw a RuntimeException if the web service request fails,
+	 *        if false, log the error and return an empty list
+	 */
+	private List<TimeSeriesCatalog> readTimeSeriesCatalog ( String dataTypeReq, String dataIntervalReq, InputFilter_JPanel ifp,
+		Integer kiwisTsid, String kiwisTsPath, boolean throwErrors ) {
 		String routine = getClass().getSimpleName() + ".readTimeSeriesCatalog";
 
 		// Note that when requesting additional fields with 'returnfields', aLL fields to be returned must be specified,
@@ -1781,103 +2468,173 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 		}
 		
 		Message.printStatus(2, routine, "Reading time series list from: " + requestUrl);
-		List<TimeSeries> timeSeriesList = new ArrayList<>();
-		String arrayName = null;
-		JsonNode jsonNode = null;
+
+		// Convert the KiWIS TimeSeries objects to TimeSeriesCatalog as they are read:
+		// - also filter on the data interval, which is not a web service parameter
+		// - the TimeSeries objects are not saved in a list
+		boolean doCheckInterval = false;
+		if ( (dataIntervalReq != null) && !dataIntervalReq.isEmpty() && !dataIntervalReq.equals("*") ) {
+			doCheckInterval = true;
+		}
+		final boolean doCheckIntervalFinal = doCheckInterval;
+		List<TimeSeriesCatalog> tscatalogList = new ArrayList<>();
 		try {
-			jsonNode = JacksonToolkit.getInstance().getJsonNodeFromWebServiceUrl(requestUrl.toString(), arrayName);
+			// If the same request is in progress for another caller (e.g., the same time series is read concurrently),
+			// use the list from that request:
+			// - the shared list is not modified because the items are added to the list for this call
+			List<TimeSeriesCatalog> readList = this.requestCoalescer.execute ( requestUrl.toString(), () -> {
+				List<TimeSeriesCatalog> requestList = new ArrayList<>();
+				Consumer<TimeSeries> consumer = timeSeries -> {
+					String dataInterval = convertSpacingToInterval(timeSeries.getTsSpacing());
+					if ( doCheckIntervalFinal && !dataIntervalReq.equals(dataInterval) ) {
+						return;
+					}
+					// Matched the filters so add to the list.
+					requestList.add(createTimeSeriesCatalog(timeSeries, dataInterval));
+				};
+				int count = JacksonToolkit.getInstance().readArrayFromWebServiceUrl(this.httpTransport, requestUrl.toString(),
+					TimeSeries.class, consumer);
+				Message.printStatus(2, routine, "  Read " + count + " items.");
+				return requestList;
+			}, null );
+			tscatalogList.addAll(readList);
 		}
 		catch ( Exception e ) {
 			Message.printWarning(3,routine,"Error reading time series catalog (" + e + ").");
 			Message.printWarning(3,routine,e);
-		}
-		if ( (jsonNode != null) && (jsonNode.size() > 0) ) {
-			Message.printStatus(2, routine, "  Read " + jsonNode.size() + " items.");
-			for ( int i = 0; i < jsonNode.size(); i++ ) {
-				timeSeriesList.add((TimeSeries)JacksonToolkit.getInstance().treeToValue(jsonNode.get(i), TimeSeries.class));
+			if ( throwErrors ) {
+				throw new RuntimeException ( e );
 			}
-		}
-		else {
-			Message.printStatus(2, routine, "  Read 0 items.");
+			// Return an empty list rather than a partial list.
+			tscatalogList.clear();
 		}
 		
-		// Convert the KiWIS TimeSeries objects to TimeSeriesCatalog:
-		// - also filter on the data interval, which is not a web service parameter
-		boolean doCheckInterval = false;
-		if ( (dataIntervalReq != null) && !dataIntervalReq.isEmpty() && !dataIntervalReq.equals("*") ) {
-			doCheckInterval = true;
-		}
-		List<TimeSeriesCatalog> tscatalogList = new ArrayList<>();
-		String stationParameterNo;
-		String tsShortName;
-		String dataInterval;
-		for ( TimeSeries timeSeries : timeSeriesList ) {
-			dataInterval = convertSpacingToInterval(timeSeries.getTsSpacing());
-			if ( doCheckInterval ) {
-				if ( !dataIntervalReq.equals(dataInterval) ) {
+		return tscatalogList;
+	}
+
+	/**
+	 * Read the coverage (period of record) for a time series using the "getTimeseriesList" service,
+	 * used to split a read of all data into windows.
+	 * @param kiwisTsid the KiWIS 'ts_id'
+	 * @return the coverage start and end, in the time zone of the web service response,
+	 * or null if the coverage is not available (e.g., no data)
+	 * @throws IOException if the request fails
+	 */
+	private DateTime [] readTimeSeriesCoverage ( Integer kiwisTsid ) throws IOException {
+		String routine = getClass().getSimpleName() + ".readTimeSeriesCoverage";
+		String requestUrl = getServiceRootURI() + COMMON_REQUEST_PARAMETERS + "&request=getTimeseriesList&format=csv"
+			+ "&ts_id=" + kiwisTsid + "&returnfields=" + URLEncoder.encode("ts_id,coverage",StandardCharsets.UTF_8);
+		Message.printStatus(2, routine, "Reading time series coverage from: " + requestUrl);
+		try ( BufferedReader reader = new BufferedReader(
+			new InputStreamReader(this.httpTransport.getInputStream(requestUrl), StandardCharsets.UTF_8)) ) {
+			String line;
+			int fromPos = -1;
+			int toPos = -1;
+			boolean headerRead = false;
+			while ( (line = reader.readLine()) != null ) {
+				if ( line.trim().isEmpty() ) {
 					continue;
 				}
+				if ( !headerRead ) {
+					// First line is the header with field names, which may start with #.
+					if ( line.charAt(0) == '#' ) {
+						line = line.substring(1);
+					}
+					String [] fieldNames = line.split(";", -1);
+					for ( int i = 0; i < fieldNames.length; i++ ) {
+						if ( fieldNames[i].trim().equals("from") ) {
+							fromPos = i;
+						}
+						else if ( fieldNames[i].trim().equals("to") ) {
+							toPos = i;
+						}
+					}
+					headerRead = true;
+					continue;
+				}
+				else if ( line.charAt(0) == '#' ) {
+					// Comment.
+					continue;
+				}
+				String [] values = line.split(";", -1);
+				if ( (fromPos < 0) || (toPos < 0) || (values.length <= Math.max(fromPos, toPos)) ) {
+					return null;
+				}
+				KiWISTimestampParser parser = new KiWISTimestampParser();
+				int [] ymd = new int[3];
+				DateTime [] coverage = new DateTime[2];
+				String [] timestamps = { values[fromPos].trim(), values[toPos].trim() };
+				for ( int i = 0; i < 2; i++ ) {
+					if ( !parser.parse(timestamps[i]) ) {
+						// Empty if the time series has no data.
+						return null;
+					}
+					coverage[i] = new DateTime(DateTime.PRECISION_MILLISECOND);
+					KiWISTimestampParser.setDateTimeFields(coverage[i], parser.getTime(), parser.getUtcOffset(), ymd);
+				}
+				return coverage;
 			}
-
-			// Matched the filters so continue adding.
-			
-			TimeSeriesCatalog tscatalog = new TimeSeriesCatalog();
-
-			// Standard properties expected by TSTool:
-			// - match the KiWIS 'ts_path' as much as possible since it is unique for retrieving time series values
-			stationParameterNo = timeSeries.getStationParameterNo();
-			tsShortName = timeSeries.getTsShortName();
-			if ( (stationParameterNo.indexOf("-") >= 0) || (stationParameterNo.indexOf(".") >= 0) ) {
-				stationParameterNo = "'" + stationParameterNo + "'";
-			}
-			if ( (tsShortName.indexOf("-") >= 0) || (tsShortName.indexOf(".") >= 0) ) {
-				tsShortName = "'" + tsShortName + "'";
-			}
-			tscatalog.setDataType(stationParameterNo + "-" + tsShortName);
-			tscatalog.setDataInterval(dataInterval);
-			tscatalog.setDataUnits(timeSeries.getTsUnitSymbol()); // Symbol = abbreviation?
-
-			// Standard and additional properties returned by the web service (see 'returnFields').
-			tscatalog.setCatchmentId( (timeSeries.getCatchmentId() == null) ? null : Integer.valueOf(timeSeries.getCatchmentId()));
-			tscatalog.setCatchmentName(timeSeries.getCatchmentName());
-
-			tscatalog.setStationId( (timeSeries.getStationId() == null) ? null : Integer.valueOf(timeSeries.getStationId()));
-			tscatalog.setStationLongName(timeSeries.getStationLongName());
-			tscatalog.setStationLatitude(timeSeries.getStationLatitude());
-			tscatalog.setStationLongitude(timeSeries.getStationLongitude());
-			tscatalog.setStationName(timeSeries.getStationName());
-			tscatalog.setStationNo(timeSeries.getStationNo());
-
-			tscatalog.setStationParameterLongName(timeSeries.getStationParameterLongName());
-			tscatalog.setStationParameterName(timeSeries.getStationParameterName());
-			tscatalog.setStationParameterNo(timeSeries.getStationParameterNo());
-
-			tscatalog.setSiteId( (timeSeries.getSiteId() == null) ? null : Integer.valueOf(timeSeries.getSiteId()));
-			tscatalog.setSiteName(timeSeries.getSiteName());
-			tscatalog.setSiteNo(timeSeries.getSiteNo());
-			
-			tscatalog.setParameterTypeId( (timeSeries.getParameterTypeId() == null) ? null : Integer.valueOf(timeSeries.getParameterTypeId()));
-			tscatalog.setParameterTypeName(timeSeries.getParameterTypeName());
-
-			tscatalog.setTsId( (timeSeries.getTsId() == null) ? null : Integer.valueOf(timeSeries.getTsId()));
-			tscatalog.setTsName(timeSeries.getTsName());
-			tscatalog.setTsPath(timeSeries.getTsPath());
-			tscatalog.setTsShortName(timeSeries.getTsShortName());
-			tscatalog.setTsSpacing(timeSeries.getTsSpacing());
-			tscatalog.setTsTypeId( (timeSeries.getTsTypeId() == null) ? null : Integer.valueOf(timeSeries.getTsTypeId()));
-			tscatalog.setTsTypeName(timeSeries.getTsTypeName());
-			tscatalog.setTsUnitName(timeSeries.getTsUnitName());
-			tscatalog.setTsUnitNameAbs(timeSeries.getTsUnitNameAbs());
-			tscatalog.setTsUnitSymbol(timeSeries.getTsUnitSymbol());
-			tscatalog.setTsUnitSymbolAbs(timeSeries.getTsUnitSymbolAbs());
-			
-			// Save the catalog in the list.
-			tscatalogList.add(tscatalog);
 		}
-		
-		return tscatalogList;
+		return null;
 	}
 
+    /**
+     * Read time series values into columns of primitive values.
+     * This avoids creating an object for each value and is used when reading time series.
+     * The values are parsed from the response stream as they are read,
+     * to avoid saving the response and a list of all values in memory.
+     * If the same request is in progress for another caller, the values from that request are used.
+     * @param kiwisTsid the KiWIS 'ts_id'
+     * @param readStart start of read, will be set to 'periodStart' service parameter.
+     * @param readEnd end of read, will be set to 'periodEnd' service parameter.
+     * @param columns columns to reuse, which are cleared before reading, or null to create new columns
+     * @param url StringBuilder to save the request URL, or null if not used
+     * @return the columns containing the values, which may be empty
+     */
+    public KiWISTimeSeriesValueColumns readTimeSeriesValuesColumnar ( Integer kiwisTsid, DateTime readStart, DateTime readEnd,
+    	KiWISTimeSeriesValueColumns columns, StringBuilder url ) throws IOException {
+    	String routine = getClass().getSimpleName() + ".readTimeSeriesValuesColumnar";
+    	String requestUrl = getTimeSeriesValuesUrl ( "csv", "" + kiwisTsid, readStart, readEnd ).toString();
+		// Pass back the URL to the calling code so it can be added as a time series property.
+		if ( url != null ) {
+			url.append(requestUrl);
+		}
+    	// Use values from the value cache if available (ValueCacheMB configuration property).
+    	final String cacheKey = getValueCacheKey ( kiwisTsid, readStart, readEnd );
+    	KiWISTimeSeriesValueColumns readColumns = null;
+    	if ( cacheKey != null ) {
+    		readColumns = this.valueCache.get(cacheKey);
+    	}
+    	if ( readColumns != null ) {
+    		Message.printStatus(2, routine, "Using " + readColumns.size() + " cached time series values for: " + requestUrl);
+    	}
+    	else {
+    		Message.printStatus(2, routine, "Reading time series values from: " + requestUrl);
+    		// Parse the rows from the response stream:
+    		// - timeouts are set by the ConnectTimeout and ReadTimeout configuration properties
+    		// - each caller gets its own copy if the values are shared with concurrent callers
+    		readColumns = this.requestCoalescer.execute ( requestUrl, () -> {
+    			KiWISTimeSeriesValueColumns requestColumns = new KiWISTimeSeriesValueColumns();
+    			try ( KiWISTimeSeriesValueReader valueReader =
+    				new KiWISTimeSeriesValueReader(this.httpTransport.getInputStream(requestUrl)) ) {
+    				valueReader.readColumns(requestColumns);
+    				Message.printStatus(2, routine, "  Read " + valueReader.getValueCount() + " time series values.");
+    			}
+    			this.metrics.addValues(requestUrl, requestColumns.size());
+    			if ( cacheKey != null ) {
+    				this.valueCache.put ( cacheKey, requestColumns );
+    			}
+    			return requestColumns;
+    		}, KiWISTimeSeriesValueColumns::copy );
+    	}
+    	if ( columns == null ) {
+    		return readColumns;
+    	}
+    	columns.clear();
+    	columns.append(readColumns);
+    	return columns;
+    }
+
     /**
      * Read time series values.
      * @param kiwisTsid the KiWIS 'ts_id' when the TSID uses location type.
@@ -1897,35 +2654,10 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
     	String routine = getClass().getSimpleName() + ".readTimeSeriesValues";
     	List<TimeSeriesValue> timeSeriesValues = new ArrayList<>();
 
-		// Note that when requesting additional fields with 'returnfields', aLL fields to be returned must be specified,
-		// not just additional fields above the default.
-
-
 		//String format="dajson";
 		String format="csv";
 
-		StringBuilder requestUrl = new StringBuilder(
-			getServiceRootURI() + COMMON_REQUEST_PARAMETERS + "&request=getTimeseriesValues&format=" + format
-				+ "&ts_id=" + kiwisTsid
-				+ "&returnfields="
-				+ URLEncoder.encode("Timestamp,Value,Quality Code,Interpolation Type",StandardCharsets.UTF_8.toString()));
-		
-		// Add where for period to query using ISO format "YYYY-MM-DD hh:mm:ss":
-		// - no T between date and time?
-		// - must URLencode the string
-		
-		if ( readStart != null ) {
-			//requestUrl.append("&from=" + readStart);
-			requestUrl.append("&from=" + URLEncoder.encode(readStart.toString(DateTime.FORMAT_YYYY_MM_DD_HH_mm),StandardCharsets.UTF_8.toString()));
-		}
-		if ( readEnd != null ) {
-			//requestUrl.append("&to=" + readEnd);
-			requestUrl.append("&to=" + URLEncoder.encode(readEnd.toString(DateTime.FORMAT_YYYY_MM_DD_HH_mm),StandardCharsets.UTF_8.toString()));
-		}
-		if ( (readStart == null) && (readEnd == null) ) {
-			// Request all data.
-			requestUrl.append("&period=complete");
-		}
+		StringBuilder requestUrl = getTimeSeriesValuesUrl ( format, "" + kiwisTsid, readStart, readEnd );
 		
 		// Pass back the URL to the calling code so it can be added as a time series property.
 		if ( url != null ) {
@@ -1944,75 +2676,17 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 			#Timestamp;Value
 			2022-12-30T18:00:00.000-07:00;84.88
 			*/
-			// Read the URI content into a string:
-			// - break by newlines and then process
-			String outputFile = null;
-			StringBuilder outputString = new StringBuilder();
-			// Set timeout to 5 minutes.
-			int connectTimeout = 300000;
-			int readTimeout = 300000;
-			// URL-encode the URL so that for example space is replaced by %20
-			IOUtil.getUriContent(requestUrl.toString(), outputFile, outputString, connectTimeout, readTimeout);
-			BufferedReader reader = new BufferedReader(new StringReader(outputString.toString()));
-			String line = null;
-			String delim = ";";
-			List<String> tokens = null;
-			TimeSeriesValue timeSeriesValue = null;
-			int valueCount = 0;
-			boolean fieldCountWarned = false;
-			String interpolationType;
-			while ( (line = reader.readLine()) != null ) {
-				if ( line.isEmpty() ) {
-					// Totally empty line.
-					continue;
-				}
-				else if ( line.trim().isEmpty() ) {
-					// Empty after removing whitespace.
-					continue;
-				}
-				else if ( line.charAt(0) == '#' ) {
-					// Comment.
-					continue;
-				}
-
-				// Split the line by semicolons.
-				tokens = StringUtil.breakStringList(line, delim, 0);
-				// Make sure the number of requested fields matches:
-				// - see the request URL for fields that should be included
-				if ( tokens.size() == 4 ) {
-					// Create a new value object.
-					timeSeriesValue = new TimeSeriesValue();
-					// Transfer the values from response to the value object.
-					timeSeriesValue.setTimestamp(tokens.get(0));
-					timeSeriesValue.setValue(tokens.get(1));
-					timeSeriesValue.setQualityCode(tokens.get(2));
-					interpolationType = tokens.get(3).trim();
-					//Message.printStatus(2, routine, "interpolationType=" + interpolationType);
-					//if ( interpolationType.isEmpty() ) {
-					//	timeSeriesValue.setInterpolationType(InterpolationType.MISSING_INTERPOLATION);
-					//}
-					//else
-					if ( StringUtil.isInteger(interpolationType) ) {
-						// If interpolation type is missing, set to missing.
-						timeSeriesValue.setInterpolationType(Integer.parseInt(interpolationType));
-					}
-					else {
-						// Interpolation type will be set to unknown and will cause an error when time series values are processed.
-					}
+			// Parse the rows from the response stream:
+			// - timeouts are set by the ConnectTimeout and ReadTimeout configuration properties
+			try ( KiWISTimeSeriesValueReader valueReader =
+				new KiWISTimeSeriesValueReader(this.httpTransport.getInputStream(requestUrl.toString())) ) {
+				TimeSeriesValue timeSeriesValue;
+				while ( (timeSeriesValue = valueReader.next()) != null ) {
 					// Add the value object to the list to return.
 					timeSeriesValues.add(timeSeriesValue);
-					++valueCount;
-				}
-				else {
-					if ( !fieldCountWarned ) {
-						// Warn once to help with troubleshooting:
-						// - probably added a field the request but did not change token size check above
-						Message.printWarning(3, routine, "  Time series values list has the wrong number of fields.");
-						fieldCountWarned = true;
-					}
 				}
+				Message.printStatus(2, routine, "  Read " + valueReader.getValueCount() + " time series values.");
 			}
-			Message.printStatus(2, routine, "  Read " + valueCount + " time series values.");
 		}
 		else if ( format.equals("dajson") ) {
 			// format=dajson returns the following, which is somewhat difficult to handle so use csv.
@@ -2027,7 +2701,7 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 			JsonNode jsonNode = null;
 			String arrayName = null;
 			try {
-				jsonNode = JacksonToolkit.getInstance().getJsonNodeFromWebServiceUrl(requestUrl.toString(), arrayName);
+				jsonNode = JacksonToolkit.getInstance().getJsonNodeFromWebServiceUrl(this.httpTransport, requestUrl.toString(), arrayName);
 			}
 			catch ( Exception e ) {
 				Message.printWarning(3,routine,"Error reading time series values (" + e + ").");
@@ -2068,6 +2742,243 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
 	    return readTimeSeriesCatalog ( dataTypeReq, dataIntervalReq, ifp, kiwisTsid, kiwisTsPath );
 	}
 
+    /**
+     * Read time series values for a period, splitting the period into windows that are read concurrently
+     * if the period is long (see ValuesWindowDays configuration property).
+     * @param kiwisTsid the KiWIS 'ts_id'
+     * @param readStart start of read, or null to read all data
+     * @param readEnd end of read, or null to read all data
+     * @param url StringBuilder to save the request URL(s)
+     * @return the columns containing the values
+     * @throws IOException if the values cannot be read
+     */
+    private KiWISTimeSeriesValueColumns readTimeSeriesValuesPeriod ( Integer kiwisTsid, DateTime readStart, DateTime readEnd,
+    	StringBuilder url ) throws IOException {
+		List<DateTime[]> windows = getTimeSeriesValuesWindows ( kiwisTsid, readStart, readEnd );
+		if ( windows.size() > 1 ) {
+			return readTimeSeriesValuesWindowed ( kiwisTsid, windows, url );
+		}
+		else {
+			return readTimeSeriesValuesColumnar ( kiwisTsid, readStart, readEnd, null, url );
+		}
+    }
+
+    /**
+     * Read one window of time series values, retrying if the read fails.
+     * @param kiwisTsid the KiWIS 'ts_id'
+     * @param windowStart start of the window
+     * @param windowEnd end of the window
+     * @param url StringBuilder to save the request URL
+     * @return the columns containing the values for the window
+     * @throws IOException if the read fails for all attempts
+     */
+    private KiWISTimeSeriesValueColumns readTimeSeriesValuesWindow ( Integer kiwisTsid, DateTime windowStart, DateTime windowEnd,
+    	StringBuilder url ) throws IOException {
+    	String routine = getClass().getSimpleName() + ".readTimeSeriesValuesWindow";
+    	for ( int attempt = 1; ; attempt++ ) {
+    		url.setLength(0);
+    		try {
+    			return readTimeSeriesValuesColumnar ( kiwisTsid, windowStart, windowEnd, null, url );
+    		}
+    		catch ( IOException e ) {
+    			if ( attempt >= VALUES_WINDOW_READ_ATTEMPTS ) {
+    				throw e;
+    			}
+    			this.metrics.incrementRetryCount(url.toString());
+    			Message.printWarning(3, routine, "Error reading time series values for ts_id=" + kiwisTsid
+    				+ " window " + windowStart + " to " + windowEnd + " - retrying (" + e + ").");
+    		}
+    	}
+    }
+
+    /**
+     * Read time series values for a period that is split into windows, reading the windows concurrently
+     * up to the MaxConcurrency configuration property.
+     * The windows are merged in order and values that are duplicated at the window boundaries are removed.
+     * Each window is retried if it fails, without reading the other windows again.
+     * @param kiwisTsid the KiWIS 'ts_id'
+     * @param windows the windows to read, from getTimeSeriesValuesWindows()
+     * @param url StringBuilder to save the request URLs, separated by spaces
+     * @return the columns containing the values
+     * @throws IOException if a window cannot be read
+     */
+    private KiWISTimeSeriesValueColumns readTimeSeriesValuesWindowed ( Integer kiwisTsid, List<DateTime[]> windows,
+    	StringBuilder url ) throws IOException {
+    	String routine = getClass().getSimpleName() + ".readTimeSeriesValuesWindowed";
+    	int threadCount = Math.max(1, Math.min(this.maxConcurrency, windows.size()));
+    	Message.printStatus(2, routine, "Reading time series values for ts_id=" + kiwisTsid + " using " + windows.size()
+    		+ " windows of " + this.valuesWindowDays + " days and " + threadCount + " threads.");
+    	ExecutorService executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+    		Thread thread = new Thread(runnable, "KiWIS-" + getName() + "-readTimeSeriesValues");
+    		thread.setDaemon(true);
+    		return thread;
+    	});
+    	try {
+    		List<Future<KiWISTimeSeriesValueColumns>> futures = new ArrayList<>();
+    		List<StringBuilder> windowUrls = new ArrayList<>();
+    		for ( DateTime [] window : windows ) {
+    			StringBuilder windowUrl = new StringBuilder();
+    			windowUrls.add(windowUrl);
+    			futures.add(executor.submit(() -> readTimeSeriesValuesWindow ( kiwisTsid, window[0], window[1], windowUrl )));
+    		}
+    		// Merge the windows in order.
+    		KiWISTimeSeriesValueColumns columns = null;
+    		for ( int i = 0; i < futures.size(); i++ ) {
+    			KiWISTimeSeriesValueColumns windowColumns = null;
+    			try {
+    				windowColumns = futures.get(i).get();
+    			}
+    			catch ( ExecutionException e ) {
+    				if ( e.getCause() instanceof IOException ) {
+    					throw (IOException)e.getCause();
+    				}
+    				throw new IOException ( "Error reading time series values for ts_id=" + kiwisTsid, e.getCause() );
+    			}
+    			catch ( InterruptedException e ) {
+    				Thread.currentThread().interrupt();
+    				throw new IOException ( "Interrupted reading time series values for ts_id=" + kiwisTsid, e );
+    			}
+    			if ( columns == null ) {
+    				columns = windowColumns;
+    			}
+    			else {
+    				columns.append(windowColumns);
+    			}
+    			if ( url != null ) {
+    				if ( url.length() > 0 ) {
+    					url.append(" ");
+    				}
+    				url.append(windowUrls.get(i));
+    			}
+    		}
+    		return columns;
+    	}
+    	finally {
+    		executor.shutdownNow();
+    	}
+    }
+
+    /**
+     * Read time series values using the value store (ValueStore and Offline configuration properties).
+     * Only the periods that are not in the store are read from web services,
+     * and the values that are read are saved in the store.
+     * If offline, only the values in the store are returned.
+     * @param kiwisTsid the KiWIS 'ts_id'
+     * @param readStart start of read, or null to read all data
+     * @param readEnd end of read, or null to read all data
+     * @param url StringBuilder to save the request URL(s), separated by spaces
+     * @return the columns containing the values for the requested period
+     * @throws IOException if values cannot be read from web services
+     */
+    private KiWISTimeSeriesValueColumns readTimeSeriesValuesWithStore ( Integer kiwisTsid, DateTime readStart, DateTime readEnd,
+    	StringBuilder url ) throws IOException {
+    	String routine = getClass().getSimpleName() + ".readTimeSeriesValuesWithStore";
+    	// Periods in the store use the local time of the response, consistent with the 'from' and 'to' parameters.
+    	long startLocal = (readStart == null) ? Long.MIN_VALUE : KiWISTimestampParser.toLocalMillis(readStart);
+    	long endLocal = (readEnd == null) ? Long.MAX_VALUE : KiWISTimestampParser.toLocalMillis(readEnd);
+    	// Only one thread reads and updates a time series at a time so that updates are not lost.
+    	synchronized ( this.valueStore.getLock(kiwisTsid) ) {
+    		KiWISValueStore.Series series = null;
+    		try {
+    			series = this.valueStore.read(kiwisTsid);
+    		}
+    		catch ( IOException e ) {
+    			// Treat as not in the store and read from web services.
+    			series = resetValueStoreSeries ( kiwisTsid, e );
+    		}
+    		List<long[]> missingRanges = series.getMissingRanges(startLocal, endLocal);
+    		if ( this.offline ) {
+    			if ( !missingRanges.isEmpty() ) {
+    				Message.printWarning(3, routine, "Datastore is offline - " + missingRanges.size()
+    					+ " period(s) for ts_id=" + kiwisTsid + " are not in the value store and will be missing.");
+    			}
+    		}
+    		else if ( !missingRanges.isEmpty() ) {
+    			Message.printStatus(2, routine, "Reading " + missingRanges.size() + " period(s) for ts_id=" + kiwisTsid
+    				+ " that are not in the value store.");
+    			int [] ymd = new int[3];
+    			for ( long [] missingRange : missingRanges ) {
+    				DateTime rangeStart = null;
+    				if ( missingRange[0] != Long.MIN_VALUE ) {
+    					rangeStart = new DateTime(DateTime.PRECISION_MILLISECOND);
+    					KiWISTimestampParser.setDateTimeFields(rangeStart, missingRange[0], 0, ymd);
+    				}
+    				DateTime rangeEnd = null;
+    				if ( missingRange[1] != Long.MAX_VALUE ) {
+    					rangeEnd = new DateTime(DateTime.PRECISION_MILLISECOND);
+    					KiWISTimestampParser.setDateTimeFields(rangeEnd, missingRange[1], 0, ymd);
+    				}
+    				StringBuilder rangeUrl = new StringBuilder();
+    				KiWISTimeSeriesValueColumns rangeColumns = readTimeSeriesValuesPeriod ( kiwisTsid, rangeStart, rangeEnd, rangeUrl );
+    				if ( url.length() > 0 ) {
+    					url.append(" ");
+    				}
+    				url.append(rangeUrl);
+    				try {
+    					series.merge ( missingRange[0], missingRange[1], rangeColumns );
+    				}
+    				catch ( IOException e ) {
+    					// Saved values cannot be decoded so read the period again without the saved values.
+    					resetValueStoreSeries ( kiwisTsid, e );
+    					url.setLength(0);
+    					return readTimeSeriesValuesWithStore ( kiwisTsid, readStart, readEnd, url );
+    				}
+    			}
+    			try {
+    				this.valueStore.write(series);
+    			}
+    			catch ( IOException e ) {
+    				// The values were read so continue.
+    				Message.printWarning(3, routine, "Error writing value store file \"" + this.valueStore.getFile(kiwisTsid)
+    					+ "\" (" + e + ")");
+    			}
+    		}
+    		try {
+    			return series.getValues(startLocal, endLocal);
+    		}
+    		catch ( IOException e ) {
+    			// Saved values cannot be decoded so read the period again without the saved values.
+    			resetValueStoreSeries ( kiwisTsid, e );
+    			url.setLength(0);
+    			return readTimeSeriesValuesWithStore ( kiwisTsid, readStart, readEnd, url );
+    		}
+    	}
+    }
+
+    /**
+     * Save time series values that were read from web services in the value store.
+     * Errors are logged and otherwise ignored because the values have been read.
+     * @param kiwisTsid the KiWIS 'ts_id'
+     * @param readStart start of read, or null if all data were read
+     * @param readEnd end of read, or null if all data were read
+     * @param columns the values that were read
+     */
+    private void writeTimeSeriesValuesToStore ( Integer kiwisTsid, DateTime readStart, DateTime readEnd,
+    	KiWISTimeSeriesValueColumns columns ) {
+    	String routine = getClass().getSimpleName() + ".writeTimeSeriesValuesToStore";
+    	long startLocal = (readStart == null) ? Long.MIN_VALUE : KiWISTimestampParser.toLocalMillis(readStart);
+    	long endLocal = (readEnd == null) ? Long.MAX_VALUE : KiWISTimestampParser.toLocalMillis(readEnd);
+    	synchronized ( this.valueStore.getLock(kiwisTsid) ) {
+    		try {
+    			KiWISValueStore.Series series = null;
+    			try {
+    				series = this.valueStore.read(kiwisTsid);
+    				series.merge ( startLocal, endLocal, columns );
+    			}
+    			catch ( IOException e ) {
+    				// Saved values cannot be read so save only the values that were read.
+    				series = resetValueStoreSeries ( kiwisTsid, e );
+    				series.merge ( startLocal, endLocal, columns );
+    			}
+    			this.valueStore.write(series);
+    		}
+    		catch ( IOException e ) {
+    			Message.printWarning(3, routine, "Error writing value store file \"" + this.valueStore.getFile(kiwisTsid)
+    				+ "\" (" + e + ")");
+    		}
+    	}
+    }
+
     /**
      * Read the version from the web service, used when processing #@require commands in TSTool.
      * TODO smalers 2023-01-03 need to figure out if a version is available.
@@ -2076,6 +2987,340 @@ public class KiWISDataStore extends AbstractWebServiceDataStore implements DataS
     	return "";
     }
 
+    /**
+     * Delete a value store file that cannot be read or decoded, for example because it is corrupt,
+     * so that the values are read from web services and the file is rebuilt.
+     * @param kiwisTsid the KiWIS 'ts_id'
+     * @param e the exception reading or decoding the file
+     * @return an empty series for the time series
+     * @throws IOException if the empty series cannot be created (should not happen because the file was deleted)
+     */
+    private KiWISValueStore.Series resetValueStoreSeries ( Integer kiwisTsid, IOException e ) throws IOException {
+    	String routine = getClass().getSimpleName() + ".resetValueStoreSeries";
+    	File file = this.valueStore.getFile(kiwisTsid);
+    	Message.printWarning(3, routine, "Error reading value store file \"" + file + "\" (" + e + ") - ignoring saved values.");
+    	file.delete();
+    	return this.valueStore.read(kiwisTsid);
+    }
+
+    /**
+     * Set the time series values from columns of values that were read from the response stream,
+     * so that the response and a list of value objects are not saved in memory.
+     * The time series period is reset to the period of the values.
+     * This is package-private so that the value-transfer loop can be benchmarked without web service requests.
+     * @param ts the time series to set values in, with metadata already set by readTimeSeries()
+     * @param intervalBaseReq requested time series interval base
+     * @param intervalMultReq requested time series interval multiplier
+     * @param irregularInterval the irregular interval for output, or null if not requested
+     * @param readDayAs24Hour whether 1Day time series are being read as 24Hour
+     * @param read24HourAsDay whether 24Hour time series are being read as 1Day
+     * @param columns the time series values
+     * @param valuesUrl the URL used to read the values, set as a time series property
+     * @throws Exception if values cannot be set, for example daily values with non-zero hour
+     */
+    void setTimeSeriesValues ( TS ts, int intervalBaseReq, int intervalMultReq, TimeInterval irregularInterval,
+    	boolean readDayAs24Hour, boolean read24HourAsDay, KiWISTimeSeriesValueColumns columns, String valuesUrl )
+    	throws Exception {
+    	String routine = getClass().getSimpleName() + ".setTimeSeriesValues";
+    	long startNanos = System.nanoTime();
+    	KiWISTimeSeriesEvent event = new KiWISTimeSeriesEvent();
+    	event.begin();
+    	boolean isRegularIntervalReq = TimeInterval.isRegularInterval(intervalBaseReq);
+    	String dataFlag = null;
+    	DateTime dateTime = null;
+    	double value;
+    	InterpolationType interpolationType = null;
+    	int qualityCode;
+    	int duration = -1;
+    	KiWISQualityCodeTable qualityCodeTable = getQualityCodeTable();
+    	// Values that could not be parsed were counted when the values were read.
+    	int badDateTimeCount = columns.getBadDateTimeCount();
+    	int badValueCount = columns.getBadValueCount();
+    	int badInterpolationTypeCount = columns.getBadInterpolationTypeCount();
+    	int notInsertedCount = 0;
+    	// Count of how many values are adjusted from beginning to end of interval.
+    	int timeAdjustCount = 0;
+    	// Interpolation type for the first value that was adjusted from beginning to end of interval,
+    	// used to adjust the original period.
+    	InterpolationType timeAdjustInterpolationType = null;
+    	// Count of how many daily values have non-zero hour.
+    	int dayNonZeroHourCount = 0;
+   		int valueErrorCount = 0;
+   		// Period for values that have been set, used to set the time series period:
+   		// - regular interval time series data space is allocated for the first value and is extended as necessary
+   		// - references to date/times are saved for the period so a date/time is only reused if it is not referenced
+   		boolean isRegularIntervalOut = TimeInterval.isRegularInterval(ts.getDataIntervalBase());
+   		DateTime valueDate1 = null;
+   		DateTime valueDate2 = null;
+   		DateTime allocatedDate2 = null;
+   		// Date/time that can be reused for the next value:
+   		// - regular interval time series copy the date/time when setting a value so one object can be reused
+   		// - irregular interval time series save the date/time for each value so a new date/time is created
+   		DateTime scratchDateTime = null;
+   		// Previous end of period date/time that is no longer referenced and can be reused.
+   		DateTime releasedDateTime = null;
+    	int valueCount = columns.size();
+    	double [] values = columns.getValues();
+    	int [] qualityCodes = columns.getQualityCodes();
+    	for ( int iValue = 0; iValue < valueCount; iValue++ ) {
+    		dateTime = null;
+    		releasedDateTime = null;
+    		try {
+    			// Values that could not be parsed or were missing were skipped when the values were read.
+    			if ( scratchDateTime != null ) {
+    				dateTime = scratchDateTime;
+    				scratchDateTime = null;
+    				columns.setDateTime(iValue, dateTime);
+    			}
+    			else {
+    				dateTime = columns.createDateTime(iValue);
+    			}
+    			value = values[iValue];
+    			qualityCode = qualityCodes[iValue];
+    			interpolationType = columns.getInterpolationType(iValue);
+    			if ( Message.isDebugOn ) {
+    				Message.printStatus(2,routine, "  Processing timestamp=" + dateTime
+    					+ " value=" + value + " quality code=" + qualityCode
+    					+ " interpolation type=" + interpolationType );
+    			}
+    			// Adjust the date/time based on the interpolation type:
+    			// - only need to do this for regular interval time series
+    			// - only values that have timestamp at the beginning of an interval are adjusted
+    			// - keep a count that is added as a time series property
+    			if ( isRegularIntervalReq ) {
+    				if ( adjustTimeForInterpolationType(intervalBaseReq, intervalMultReq, dateTime, interpolationType) > 0 ) {
+    					++timeAdjustCount;
+    					if ( timeAdjustInterpolationType == null ) {
+    						timeAdjustInterpolationType = interpolationType;
+    					}
+    				}
+    			}
+
+    			// Look up the data flag from the quality code integer.
+    			if ( qualityCode == KiWISTimeSeriesValueColumns.NO_QUALITY_CODE ) {
+    				dataFlag = "";
+    			}
+    			else {
+    				dataFlag = qualityCodeTable.lookup(qualityCode);
+    			}
+
+    			// Also check daily interval time series:
+    			// - if the hour is not zero, count and add as a property later
+    			// - time zone is ignored so -0700, -0600, etc. does not come into play
+    			// - if the count is non-zero, generate an exception because need to handle as 24Hour or irregular
+    			if ( isRegularIntervalReq && (intervalBaseReq == TimeInterval.DAY) && (intervalMultReq == 1) ) {
+    				if ( dateTime.getHour() != 0 ) {
+    					// Any day interval values with non-zero hour will result in an exception because TSTool does
+    					// not have a clean way to handle, for example, 7AM to 7AM time series.
+    					// The IrregularInterval=IrregDay parameter should be specified and uses have to deal with the data.
+    					++dayNonZeroHourCount;
+    				}
+    				if ( readDayAs24Hour ) {
+    					// Since KiWIS timestamp already includes hour, don't need to do anything,
+    					// other than the output time series needs to have its interval changed above (above).
+    					dateTime.setPrecision(DateTime.PRECISION_HOUR);
+    				}
+    				else {
+    					// By default, 1Day time series are shifted.
+    					// - KiWIS timestamp is at midnight (hour zero of next day)
+    					// - adjust the KiWIS timestamp to previous day (time will be discarded).
+    					// - do not do the adjustment if irregular interval other than if IrregDay is requested
+    					// - TODO smalers 2023-01-18 will need to handle month and year when enabled
+    					if ( (irregularInterval == null) ||
+    						((irregularInterval != null) && (irregularInterval.getIrregularIntervalPrecision() == TimeInterval.DAY)) ) {
+    						dateTime.addDay(-1);
+    						dateTime.setHour(0); // Should not be used.
+    						dateTime.setPrecision(DateTime.PRECISION_DAY);
+    					}
+    				}
+    			}
+    			else if ( isRegularIntervalReq && (intervalBaseReq == TimeInterval.HOUR) && (intervalMultReq == 24) && read24HourAsDay ) {
+    				// 24Hour in KiWIS but want 1Day output:
+    				// - adjustment will not occur if IrregularInterval was specified
+    				// - adjust the KiWIS timestamp to previous day (time will be discarded).
+    				dateTime.addDay(-1);
+    				dateTime.setHour(0); // Should not be used.
+    				dateTime.setPrecision(DateTime.PRECISION_DAY);
+    			}
+
+    			if ( irregularInterval != null ) {
+    				// Irregular interval output was requested:
+    				// - don't need to do adjustments below for day and 24Hour
+    				// - set the precision based on what was requested
+    				dateTime.setPrecision(irregularInterval.getIrregularIntervalPrecision());
+    			}
+    			
+    			// Make sure that the time series period includes the date/time:
+    			// - regular interval time series data space is extended in chunks to avoid copying data for every value
+    			// - irregular interval time series period is set after all values are set
+    			if ( valueDate1 == null ) {
+    				// First value.
+    				valueDate1 = dateTime;
+    				valueDate2 = dateTime;
+    				ts.setDate1(dateTime);
+    				if ( isRegularIntervalOut ) {
+    					allocatedDate2 = new DateTime(dateTime);
+    					allocatedDate2.addInterval(ts.getDataIntervalBase(), ts.getDataIntervalMult()*ALLOCATE_INTERVAL_COUNT);
+    					ts.setDate2(allocatedDate2);
+    				}
+    				else {
+    					ts.setDate2(dateTime);
+    				}
+    				ts.allocateDataSpace();
+    			}
+    			else {
+    				if ( dateTime.lessThan(valueDate1) ) {
+    					// Values are not expected to be out of order but handle.
+    					valueDate1 = dateTime;
+    					if ( isRegularIntervalOut ) {
+    						ts.changePeriodOfRecord(valueDate1, allocatedDate2);
+    					}
+    				}
+    				if ( dateTime.greaterThan(valueDate2) ) {
+    					if ( valueDate2 != valueDate1 ) {
+    						releasedDateTime = valueDate2;
+    					}
+    					valueDate2 = dateTime;
+    					if ( isRegularIntervalOut && dateTime.greaterThan(allocatedDate2) ) {
+    						// Extend the period by at least the number of values so far so that the number of
+    						// times the data are copied is proportional to the log of the number of values.
+    						allocatedDate2 = new DateTime(dateTime);
+    						allocatedDate2.addInterval(ts.getDataIntervalBase(),
+    							ts.getDataIntervalMult()*Math.max(ALLOCATE_INTERVAL_COUNT, valueCount));
+    						ts.changePeriodOfRecord(valueDate1, allocatedDate2);
+    					}
+    				}
+    			}
+
+    			// Set the data value in the time series:
+    			// - the date/time will be copied if necessary and the precision set to be consistent with the time series
+    			if ( Message.isDebugOn ) {
+    				Message.printStatus(2, routine, "  Setting " + dateTime + " value=" + value
+    					+ " flag=\"" + dataFlag + "\" for interpolationType=" + interpolationType );
+    			}
+    			if ( ts.setDataValue(dateTime, value, dataFlag, duration) == 0 ) {
+    				// Track points that are not inserted because may be an issue with the period due to
+    				// adjusted date/times not aligning with the allocated period.
+    				++notInsertedCount;
+    			}
+    		}
+    		catch ( Throwable e ) {
+    			// Catch a Throwable:
+    			// - Exception may not be general enough
+    			// - if the plugin code and TSTool code are incompatible, may get unexpected errors
+				++valueErrorCount;
+				Message.printWarning(3, routine, "  Error processing value (" + e + ")." );
+				if ( valueErrorCount <= 50 ) {
+					Message.printWarning(3, routine, e );
+				}
+    		}
+    		if ( isRegularIntervalOut && (dateTime != null) ) {
+    			// Reuse the date/time for the next value if it is not referenced by the period.
+    			if ( (dateTime != valueDate1) && (dateTime != valueDate2) ) {
+    				scratchDateTime = dateTime;
+    			}
+    			else if ( (releasedDateTime != null) && (releasedDateTime != valueDate1) ) {
+    				scratchDateTime = releasedDateTime;
+    			}
+    		}
+    	}
+    	Message.printStatus(2,routine, "Read " + valueCount + " time series values.");
+    	if ( event.shouldCommit() ) {
+    		event.tsid = ts.getIdentifierString();
+    		event.values = valueCount;
+    		event.badDateTimeCount = badDateTimeCount;
+    		event.badValueCount = badValueCount;
+    		event.badInterpolationTypeCount = badInterpolationTypeCount;
+    		event.notInsertedCount = notInsertedCount;
+    		event.valueErrorCount = valueErrorCount;
+    		event.commit();
+    	}
+
+    	if ( valueDate1 != null ) {
+    		// Set the period to the values that were set:
+    		// - regular interval time series data space may have been extended past the last value
+    		if ( isRegularIntervalOut ) {
+    			ts.changePeriodOfRecord(valueDate1, valueDate2);
+    		}
+    		else {
+    			ts.setDate1(valueDate1);
+    			ts.setDate2(valueDate2);
+    		}
+
+    		// Adjust the original period (requested period) consistent with the data values.
+    		if ( (timeAdjustInterpolationType != null) && isRegularIntervalReq ) {
+    			DateTime date1Original = ts.getDate1Original();
+    			if ( date1Original != null ) {
+    				adjustTimeForInterpolationType(intervalBaseReq, intervalMultReq, date1Original, timeAdjustInterpolationType);
+    				ts.setDate1Original(date1Original);
+    			}
+    			DateTime date2Original = ts.getDate2Original();
+    			if ( date2Original != null ) {
+    				adjustTimeForInterpolationType(intervalBaseReq, intervalMultReq, date2Original, timeAdjustInterpolationType);
+    				ts.setDate2Original(date2Original);
+    			}
+    		}
+    		DateTime date1Original = ts.getDate1Original();
+    		if ( date1Original != null ) {
+    			adjustOriginalPeriodDateTime(date1Original, isRegularIntervalReq, intervalBaseReq, intervalMultReq,
+    				readDayAs24Hour, read24HourAsDay, irregularInterval);
+    			ts.setDate1Original(date1Original);
+    		}
+    		DateTime date2Original = ts.getDate2Original();
+    		if ( date2Original != null ) {
+    			adjustOriginalPeriodDateTime(date2Original, isRegularIntervalReq, intervalBaseReq, intervalMultReq,
+    				readDayAs24Hour, read24HourAsDay, irregularInterval);
+    			ts.setDate2Original(date2Original);
+    		}
+    		Message.printStatus(2,routine,"Period after setting values, date1=" + ts.getDate1() + " date2=" + ts.getDate2()
+    			+ " date1Original=" + ts.getDate1Original() + " date2Original=" + ts.getDate2Original());
+    	}
+
+    	// Check the problem counts even if no values were set, for example if all timestamps were bad.
+    	if ( badDateTimeCount > 0 ) {
+    		//problems.add("Time series had " + badDateTimeCount + " bad timestamps.  See the log file.");
+    		String message = "  Time series had " + badDateTimeCount + " bad timestamps.  See the log file.";
+    		Message.printWarning(3,routine,message);
+    		throw new Exception (message);
+    	}
+    	if ( badValueCount > 0 ) {
+    		//problems.add("Time series had " + badValueCount + " bad data values.  See the log file.");
+    		String message = "  Time series had " + badValueCount + " bad data values.  See the log file.";
+    		Message.printWarning(3,routine,message);
+    		throw new Exception(message);
+    	}
+    	if ( badInterpolationTypeCount > 0 ) {
+    		String message = "  Time series had " + badInterpolationTypeCount + " bad interpolation types.  See the log file.";
+    		//problems.add("Time series had " + badInterpolationTypeCount + " bad interpolation types.  See the log file.");
+    		Message.printWarning(3,routine,message);
+    		throw new Exception (message);
+    	}
+    	if ( valueErrorCount > 0 ) {
+    		String message = "  Time series had " + valueErrorCount + " errors setting values.  See the log file.";
+    		//problems.add("Time series had " + badDateTimeCount + " bad timestamps.  See the log file.");
+    		Message.printWarning(3,routine,message);
+    	}
+    	
+    	// Set additional time series properties to help understand the data.
+    	ts.setProperty("ts.TimestampsAdjustedToIntervalEndCount", Integer.valueOf(timeAdjustCount));
+    	ts.setProperty("ts.DayNonZeroHourCount", Integer.valueOf(dayNonZeroHourCount));
+    	ts.setProperty("ts.NotInsertedCount", Integer.valueOf(notInsertedCount));
+    	ts.setProperty("ts.GetTimeSeriesValuesUrl", valuesUrl);
+    	ts.setProperty("ts.SetDataValueErrorCount", Integer.valueOf(valueErrorCount));
+    	long setNanos = System.nanoTime() - startNanos;
+    	ts.setProperty("ts.SetTimeSeriesValuesMs", Long.valueOf(setNanos/1000000L));
+    	ts.setProperty("ts.GetTimeSeriesValuesCount", Integer.valueOf(columns.size()));
+    	this.metrics.addTimeSeries(columns.size(), setNanos);
+    	
+    	// In order to avoid confusion, throw exceptions for cases that may be misinterpreted.
+    	if ( (intervalBaseReq == TimeInterval.DAY) && (intervalMultReq == 1) && (dayNonZeroHourCount > 0)) {
+    		// Daily time series but 
+    		throw new Exception ("KiWIS day interval time series had " + dayNonZeroHourCount
+    			+ " values at non-zero hour.  Use ReadKiWIS(IrregularInterval=IrregHour) to "
+    			+ "represent daily time series that are offset from midnight.");
+    	}
+    }
+
     /**
      * Set the time series properties from the TimeSeriesCatalog.
      */
@@ -0,0 +1,182 @@
+// KiWISDeltaReadCache - time series values retained for incremental (delta) reads
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import RTi.Util.Time.DateTime;
+
+/**
+ * Time series values that have been read, retained by KiWIS 'ts_id' so that a later read of the same time series
+ * only needs to request values after the last retained timestamp (DeltaRead configuration property).
+ * This is useful when the same time series are read repeatedly for a rolling period,
+ * such as in operational workflows that run every few minutes.
+ * A delta read requests values starting at the last retained timestamp minus an overlap,
+ * so that recently revised values are read again, and the new values replace the retained values after that time.
+ * Date/times for the read period are compared using the local time of the web service response,
+ * consistent with how the 'from' and 'to' service parameters are specified.
+ */
+public class KiWISDeltaReadCache {
+
+	/**
+	 * Retained values for a time series.
+	 */
+	private static class Entry {
+		/**
+		 * Start of the period that was read, local time in milliseconds, or Long.MIN_VALUE if all data were read.
+		 */
+		private final long readStartLocal;
+
+		/**
+		 * Values that were read, which are not modified after being retained.
+		 */
+		private final KiWISTimeSeriesValueColumns columns;
+
+		private Entry ( long readStartLocal, KiWISTimeSeriesValueColumns columns ) {
+			this.readStartLocal = readStartLocal;
+			this.columns = columns;
+		}
+	}
+
+	/**
+	 * Overlap before the last retained value to read again, milliseconds.
+	 */
+	private final long overlapMillis;
+
+	/**
+	 * Retained values by KiWIS 'ts_id'.
+	 */
+	private final ConcurrentHashMap<Integer,Entry> entryMap = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 * @param overlapMinutes overlap before the last retained value to read again, minutes
+	 */
+	public KiWISDeltaReadCache ( int overlapMinutes ) {
+		this.overlapMillis = Math.max(0, overlapMinutes)*60000L;
+	}
+
+	/**
+	 * Clear all retained values.
+	 */
+	public void clear () {
+		this.entryMap.clear();
+	}
+
+	/**
+	 * Determine the start of a delta read for a time series.
+	 * A delta read can be used if values have been retained for the time series,
+	 * the retained period includes the requested start, and the requested end is not before the last retained value.
+	 * @param kiwisTsid the KiWIS 'ts_id'
+	 * @param readStart start of read, or null to read all data
+	 * @param readEnd end of read, or null to read all data
+	 * @return the start for the delta read, in the local time of the web service response,
+	 * or null if all values for the requested period must be read
+	 */
+	public DateTime getDeltaReadStart ( Integer kiwisTsid, DateTime readStart, DateTime readEnd ) {
+		Entry entry = this.entryMap.get(kiwisTsid);
+		if ( (entry == null) || (entry.columns.size() == 0) ) {
+			return null;
+		}
+		long readStartLocal = (readStart == null) ? Long.MIN_VALUE : KiWISTimestampParser.toLocalMillis(readStart);
+		if ( readStartLocal < entry.readStartLocal ) {
+			// Requested period starts before the retained period.
+			return null;
+		}
+		int last = entry.columns.size() - 1;
+		long lastLocal = entry.columns.getTimes()[last] + entry.columns.getUtcOffsets()[last]*1000L;
+		if ( (readEnd != null) && (KiWISTimestampParser.toLocalMillis(readEnd) < lastLocal) ) {
+			// Requested period ends before the last retained value so read the full period.
+			return null;
+		}
+		if ( (lastLocal - this.overlapMillis) < readStartLocal ) {
+			// Overlap extends before the requested start.
+			return null;
+		}
+		DateTime deltaStart = new DateTime(DateTime.PRECISION_MILLISECOND);
+		KiWISTimestampParser.setDateTimeFields(deltaStart, entry.columns.getTimes()[last] - this.overlapMillis,
+			entry.columns.getUtcOffsets()[last], new int[3]);
+		return deltaStart;
+	}
+
+	/**
+	 * Merge values from a delta read with the retained values and retain the result.
+	 * Retained values before the requested start and at or after the delta read start are discarded,
+	 * and the delta read values are added.
+	 * @param kiwisTsid the KiWIS 'ts_id'
+	 * @param readStart start of read, or null if all data were requested
+	 * @param deltaStart start of the delta read, from getDeltaReadStart()
+	 * @param deltaColumns values from the delta read
+	 * @return the merged values, which should not be modified
+	 */
+	public KiWISTimeSeriesValueColumns merge ( Integer kiwisTsid, DateTime readStart, DateTime deltaStart,
+		KiWISTimeSeriesValueColumns deltaColumns ) {
+		Entry entry = this.entryMap.get(kiwisTsid);
+		if ( entry == null ) {
+			// Retained values were cleared after getDeltaReadStart() was called, which is unlikely.
+			put ( kiwisTsid, readStart, deltaColumns );
+			return deltaColumns;
+		}
+		long readStartLocal = (readStart == null) ? Long.MIN_VALUE : KiWISTimestampParser.toLocalMillis(readStart);
+		long deltaStartLocal = KiWISTimestampParser.toLocalMillis(deltaStart);
+		KiWISTimeSeriesValueColumns retained = entry.columns;
+		long [] times = retained.getTimes();
+		int [] utcOffsets = retained.getUtcOffsets();
+		KiWISTimeSeriesValueColumns merged = new KiWISTimeSeriesValueColumns(retained.size() + deltaColumns.size());
+		for ( int i = 0; i < retained.size(); i++ ) {
+			long local = times[i] + utcOffsets[i]*1000L;
+			if ( local < readStartLocal ) {
+				continue;
+			}
+			if ( local >= deltaStartLocal ) {
+				break;
+			}
+			merged.add(times[i], utcOffsets[i], retained.getValues()[i], retained.getQualityCodes()[i],
+				retained.getInterpolationType(i));
+		}
+		merged.append(deltaColumns);
+		put ( kiwisTsid, readStart, merged );
+		return merged;
+	}
+
+	/**
+	 * Retain the values that were read for a time series, replacing previously retained values.
+	 * @param kiwisTsid the KiWIS 'ts_id'
+	 * @param readStart start of read, or null if all data were requested
+	 * @param columns the values that were read, which should not be modified after calling this method
+	 */
+	public void put ( Integer kiwisTsid, DateTime readStart, KiWISTimeSeriesValueColumns columns ) {
+		long readStartLocal = (readStart == null) ? Long.MIN_VALUE : KiWISTimestampParser.toLocalMillis(readStart);
+		this.entryMap.put(kiwisTsid, new Entry(readStartLocal, columns));
+	}
+
+	/**
+	 * Return the number of time series with retained values.
+	 * @return the number of time series with retained values
+	 */
+	public int size () {
+		return this.entryMap.size();
+	}
+
+}
@@ -0,0 +1,495 @@
+// KiWISGlobalDataSnapshot - binary snapshot of KiWIS global data, used to speed up datastore startup
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openwaterfoundation.tstool.plugin.kiwis.dao.QualityCode;
+import org.openwaterfoundation.tstool.plugin.kiwis.dao.Site;
+import org.openwaterfoundation.tstool.plugin.kiwis.dao.Station;
+import org.openwaterfoundation.tstool.plugin.kiwis.dao.TimeSeriesCatalog;
+
+/**
+ * Binary snapshot of the KiWIS global data (quality codes, sites, stations, and time series catalog).
+ * The snapshot is written after the global data are read from web services and is read into memory
+ * when the datastore is initialized, so that startup does not depend on the web service response time.
+ * The file layout is:
+ * <pre>
+ * int magic, int format version, long creation time (ms), string table index for the service root URI
+ * int string count, then for each string:  int byte count, UTF-8 bytes
+ * int quality code count, then the quality codes
+ * int site count, then the sites
+ * int station count, then the stations
+ * int time series catalog count, then the time series catalog
+ * </pre>
+ * Strings in the object sections are written as indices into the string table (-1 for null),
+ * which keeps the file compact because the catalog repeats many strings (station names, units, etc.)
+ * and results in shared String instances when read.
+ * Null Integer values are written as Integer.MIN_VALUE and null Double values are written as NaN.
+ */
+public class KiWISGlobalDataSnapshot {
+
+	/**
+	 * Magic number at the start of the file ("KWGD").
+	 */
+	private static final int MAGIC = 0x4B574744;
+
+	/**
+	 * Snapshot format version, increment if the layout changes so that old files are ignored.
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Value written for a null Integer.
+	 */
+	private static final int NULL_INTEGER = Integer.MIN_VALUE;
+
+	/**
+	 * Time that the snapshot was created, milliseconds since 1970.
+	 */
+	private long creationTime = 0;
+
+	/**
+	 * Quality code list.
+	 */
+	private List<QualityCode> qualityCodeList = new ArrayList<>();
+
+	/**
+	 * Site list.
+	 */
+	private List<Site> siteList = new ArrayList<>();
+
+	/**
+	 * Station list.
+	 */
+	private List<Station> stationList = new ArrayList<>();
+
+	/**
+	 * Time series catalog list.
+	 */
+	private List<TimeSeriesCatalog> tscatalogList = new ArrayList<>();
+
+	/**
+	 * Constructor, only used when reading.
+	 */
+	private KiWISGlobalDataSnapshot () {
+	}
+
+	/**
+	 * Return the creation time for the snapshot.
+	 * @return the creation time for the snapshot, milliseconds since 1970
+	 */
+	public long getCreationTime () {
+		return this.creationTime;
+	}
+
+	/**
+	 * Return the quality code list.
+	 * @return the quality code list
+	 */
+	public List<QualityCode> getQualityCodeList () {
+		return this.qualityCodeList;
+	}
+
+	/**
+	 * Return the site list.
+	 * @return the site list
+	 */
+	public List<Site> getSiteList () {
+		return this.siteList;
+	}
+
+	/**
+	 * Return the station list.
+	 * @return the station list
+	 */
+	public List<Station> getStationList () {
+		return this.stationList;
+	}
+
+	/**
+	 * Return the time series catalog list.
+	 * @return the time series catalog list
+	 */
+	public List<TimeSeriesCatalog> getTimeSeriesCatalogList () {
+		return this.tscatalogList;
+	}
+
+	/**
+	 * Read a snapshot file.
+	 * The file is read into memory rather than memory-mapped so that the file is not locked
+	 * and can be replaced when the snapshot is refreshed (a mapped file cannot be replaced on Windows until unmapped).
+	 * @param file the snapshot file to read
+	 * @param serviceRootUri the datastore service root URI, which must match the URI used to create the snapshot
+	 * @return the snapshot, or null if the file does not exist, is an old format, or is for a different service root URI
+	 * @throws IOException if the file cannot be read, for example if it is truncated
+	 */
+	public static KiWISGlobalDataSnapshot read ( File file, String serviceRootUri ) throws IOException {
+		if ( !file.exists() ) {
+			return null;
+		}
+		KiWISGlobalDataSnapshot snapshot = new KiWISGlobalDataSnapshot();
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+			if ( (buffer.getInt() != MAGIC) || (buffer.getInt() != FORMAT_VERSION) ) {
+				// Not a snapshot file or written by a different plugin version.
+				return null;
+			}
+			snapshot.creationTime = buffer.getLong();
+			int serviceRootUriIndex = buffer.getInt();
+
+			// Read the string table.
+			int stringCount = buffer.getInt();
+			String [] strings = new String[stringCount];
+			byte [] bytes = new byte[256];
+			for ( int i = 0; i < stringCount; i++ ) {
+				int byteCount = buffer.getInt();
+				if ( byteCount > bytes.length ) {
+					bytes = new byte[byteCount];
+				}
+				buffer.get(bytes, 0, byteCount);
+				strings[i] = new String(bytes, 0, byteCount, StandardCharsets.UTF_8);
+			}
+			if ( !serviceRootUri.equals(strings[serviceRootUriIndex]) ) {
+				// Snapshot is for a different web service.
+				return null;
+			}
+
+			// Read the quality codes.
+			int count = buffer.getInt();
+			snapshot.qualityCodeList = new ArrayList<>(count);
+			for ( int i = 0; i < count; i++ ) {
+				QualityCode qualityCode = new QualityCode();
+				qualityCode.setKey(readInteger(buffer));
+				qualityCode.setCode(readString(buffer, strings));
+				qualityCode.setDescription(readString(buffer, strings));
+				qualityCode.setColor(readString(buffer, strings));
+				snapshot.qualityCodeList.add(qualityCode);
+			}
+
+			// Read the sites.
+			count = buffer.getInt();
+			snapshot.siteList = new ArrayList<>(count);
+			for ( int i = 0; i < count; i++ ) {
+				Site site = new Site();
+				site.setSiteId(readString(buffer, strings));
+				site.setSiteName(readString(buffer, strings));
+				site.setSiteNo(readString(buffer, strings));
+				snapshot.siteList.add(site);
+			}
+
+			// Read the stations.
+			count = buffer.getInt();
+			snapshot.stationList = new ArrayList<>(count);
+			for ( int i = 0; i < count; i++ ) {
+				Station station = new Station();
+				station.setStationId(readString(buffer, strings));
+				station.setStationLatitude(readString(buffer, strings));
+				station.setStationLongitude(readString(buffer, strings));
+				station.setStationName(readString(buffer, strings));
+				station.setStationNo(readString(buffer, strings));
+				snapshot.stationList.add(station);
+			}
+
+			// Read the time series catalog, in the same order as written.
+			count = buffer.getInt();
+			snapshot.tscatalogList = new ArrayList<>(count);
+			for ( int i = 0; i < count; i++ ) {
+				TimeSeriesCatalog tscatalog = new TimeSeriesCatalog();
+				tscatalog.setDataInterval(readString(buffer, strings));
+				tscatalog.setDataType(readString(buffer, strings));
+				tscatalog.setDataUnits(readString(buffer, strings));
+				tscatalog.setCatchmentId(readInteger(buffer));
+				tscatalog.setCatchmentName(readString(buffer, strings));
+				tscatalog.setCatchmentNo(readString(buffer, strings));
+				tscatalog.setParameterTypeId(readInteger(buffer));
+				tscatalog.setParameterTypeName(readString(buffer, strings));
+				tscatalog.setSiteId(readInteger(buffer));
+				tscatalog.setSiteName(readString(buffer, strings));
+				tscatalog.setSiteNo(readString(buffer, strings));
+				tscatalog.setStationId(readInteger(buffer));
+				tscatalog.setStationLatitude(readDouble(buffer));
+				tscatalog.setStationLongitude(readDouble(buffer));
+				tscatalog.setStationLongName(readString(buffer, strings));
+				tscatalog.setStationName(readString(buffer, strings));
+				// Also sets the location ID.
+				tscatalog.setStationNo(readString(buffer, strings));
+				tscatalog.setStationParameterLongName(readString(buffer, strings));
+				tscatalog.setStationParameterName(readString(buffer, strings));
+				tscatalog.setStationParameterNo(readString(buffer, strings));
+				tscatalog.setTsId(readInteger(buffer));
+				tscatalog.setTsName(readString(buffer, strings));
+				tscatalog.setTsPath(readString(buffer, strings));
+				tscatalog.setTsShortName(readString(buffer, strings));
+				tscatalog.setTsSpacing(readString(buffer, strings));
+				tscatalog.setTsTypeId(readInteger(buffer));
+				tscatalog.setTsTypeName(readString(buffer, strings));
+				tscatalog.setTsUnitName(readString(buffer, strings));
+				tscatalog.setTsUnitNameAbs(readString(buffer, strings));
+				tscatalog.setTsUnitSymbol(readString(buffer, strings));
+				tscatalog.setTsUnitSymbolAbs(readString(buffer, strings));
+				snapshot.tscatalogList.add(tscatalog);
+			}
+		}
+		catch ( RuntimeException e ) {
+			// Buffer underflow, bad string index, etc. indicates a truncated or corrupt file.
+			throw new IOException ( "Snapshot file \"" + file + "\" is corrupt (" + e + ").", e );
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Read a nullable Integer.
+	 */
+	private static Integer readInteger ( ByteBuffer buffer ) {
+		int i = buffer.getInt();
+		if ( i == NULL_INTEGER ) {
+			return null;
+		}
+		return Integer.valueOf(i);
+	}
+
+	/**
+	 * Read a nullable Double.
+	 */
+	private static Double readDouble ( ByteBuffer buffer ) {
+		double d = buffer.getDouble();
+		if ( Double.isNaN(d) ) {
+			return null;
+		}
+		return Double.valueOf(d);
+	}
+
+	/**
+	 * Read a nullable string as an index into the string table.
+	 */
+	private static String readString ( ByteBuffer buffer, String [] strings ) {
+		int i = buffer.getInt();
+		if ( i < 0 ) {
+			return null;
+		}
+		return strings[i];
+	}
+
+	/**
+	 * Write a snapshot file.
+	 * The file is written to a temporary file and then moved so that a partial file is never read.
+	 * @param file the snapshot file to write, the parent folder will be created if necessary
+	 * @param serviceRootUri the datastore service root URI
+	 * @param qualityCodeList the quality code list to write
+	 * @param siteList the site list to write
+	 * @param stationList the station list to write
+	 * @param tscatalogList the time series catalog list to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write ( File file, String serviceRootUri,
+		List<QualityCode> qualityCodeList, List<Site> siteList, List<Station> stationList,
+		List<TimeSeriesCatalog> tscatalogList ) throws IOException {
+		// Create the string table:
+		// - the map value is the index in the table
+		Map<String,Integer> stringMap = new LinkedHashMap<>();
+		addString(stringMap, serviceRootUri);
+		for ( QualityCode qualityCode : qualityCodeList ) {
+			addString(stringMap, qualityCode.getCode());
+			addString(stringMap, qualityCode.getDescription());
+			addString(stringMap, qualityCode.getColor());
+		}
+		for ( Site site : siteList ) {
+			addString(stringMap, site.getSiteId());
+			addString(stringMap, site.getSiteName());
+			addString(stringMap, site.getSiteNo());
+		}
+		for ( Station station : stationList ) {
+			addString(stringMap, station.getStationId());
+			addString(stringMap, station.getStationLatitude());
+			addString(stringMap, station.getStationLongitude());
+			addString(stringMap, station.getStationName());
+			addString(stringMap, station.getStationNo());
+		}
+		for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
+			addString(stringMap, tscatalog.getDataInterval());
+			addString(stringMap, tscatalog.getDataType());
+			addString(stringMap, tscatalog.getDataUnits());
+			addString(stringMap, tscatalog.getCatchmentName());
+			addString(stringMap, tscatalog.getCatchmentNo());
+			addString(stringMap, tscatalog.getParameterTypeName());
+			addString(stringMap, tscatalog.getSiteName());
+			addString(stringMap, tscatalog.getSiteNo());
+			addString(stringMap, tscatalog.getStationLongName());
+			addString(stringMap, tscatalog.getStationName());
+			addString(stringMap, tscatalog.getStationNo());
+			addString(stringMap, tscatalog.getStationParameterLongName());
+			addString(stringMap, tscatalog.getStationParameterName());
+			addString(stringMap, tscatalog.getStationParameterNo());
+			addString(stringMap, tscatalog.getTsName());
+			addString(stringMap, tscatalog.getTsPath());
+			addString(stringMap, tscatalog.getTsShortName());
+			addString(stringMap, tscatalog.getTsSpacing());
+			addString(stringMap, tscatalog.getTsTypeName());
+			addString(stringMap, tscatalog.getTsUnitName());
+			addString(stringMap, tscatalog.getTsUnitNameAbs());
+			addString(stringMap, tscatalog.getTsUnitSymbol());
+			addString(stringMap, tscatalog.getTsUnitSymbolAbs());
+		}
+
+		File folder = file.getParentFile();
+		if ( (folder != null) && !folder.exists() ) {
+			folder.mkdirs();
+		}
+		Path tmpPath = new File(file.getPath() + ".tmp").toPath();
+		try ( OutputStream os = Files.newOutputStream(tmpPath);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 65536)) ) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(System.currentTimeMillis());
+			writeString(out, stringMap, serviceRootUri);
+
+			out.writeInt(stringMap.size());
+			for ( String s : stringMap.keySet() ) {
+				byte [] bytes = s.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+
+			out.writeInt(qualityCodeList.size());
+			for ( QualityCode qualityCode : qualityCodeList ) {
+				writeInteger(out, qualityCode.getKey());
+				writeString(out, stringMap, qualityCode.getCode());
+				writeString(out, stringMap, qualityCode.getDescription());
+				writeString(out, stringMap, qualityCode.getColor());
+			}
+
+			out.writeInt(siteList.size());
+			for ( Site site : siteList ) {
+				writeString(out, stringMap, site.getSiteId());
+				writeString(out, stringMap, site.getSiteName());
+				writeString(out, stringMap, site.getSiteNo());
+			}
+
+			out.writeInt(stationList.size());
+			for ( Station station : stationList ) {
+				writeString(out, stringMap, station.getStationId());
+				writeString(out, stringMap, station.getStationLatitude());
+				writeString(out, stringMap, station.getStationLongitude());
+				writeString(out, stringMap, station.getStationName());
+				writeString(out, stringMap, station.getStationNo());
+			}
+
+			// Write the time series catalog, in the same order as read.
+			out.writeInt(tscatalogList.size());
+			for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
+				writeString(out, stringMap, tscatalog.getDataInterval());
+				writeString(out, stringMap, tscatalog.getDataType());
+				writeString(out, stringMap, tscatalog.getDataUnits());
+				writeInteger(out, tscatalog.getCatchmentId());
+				writeString(out, stringMap, tscatalog.getCatchmentName());
+				writeString(out, stringMap, tscatalog.getCatchmentNo());
+				writeInteger(out, tscatalog.getParameterTypeId());
+				writeString(out, stringMap, tscatalog.getParameterTypeName());
+				writeInteger(out, tscatalog.getSiteId());
+				writeString(out, stringMap, tscatalog.getSiteName());
+				writeString(out, stringMap, tscatalog.getSiteNo());
+				writeInteger(out, tscatalog.getStationId());
+				writeDouble(out, tscatalog.getStationLatitude());
+				writeDouble(out, tscatalog.getStationLongitude());
+				writeString(out, stringMap, tscatalog.getStationLongName());
+				writeString(out, stringMap, tscatalog.getStationName());
+				writeString(out, stringMap, tscatalog.getStationNo());
+				writeString(out, stringMap, tscatalog.getStationParameterLongName());
+				writeString(out, stringMap, tscatalog.getStationParameterName());
+				writeString(out, stringMap, tscatalog.getStationParameterNo());
+				writeInteger(out, tscatalog.getTsId());
+				writeString(out, stringMap, tscatalog.getTsName());
+				writeString(out, stringMap, tscatalog.getTsPath());
+				writeString(out, stringMap, tscatalog.getTsShortName());
+				writeString(out, stringMap, tscatalog.getTsSpacing());
+				writeInteger(out, tscatalog.getTsTypeId());
+				writeString(out, stringMap, tscatalog.getTsTypeName());
+				writeString(out, stringMap, tscatalog.getTsUnitName());
+				writeString(out, stringMap, tscatalog.getTsUnitNameAbs());
+				writeString(out, stringMap, tscatalog.getTsUnitSymbol());
+				writeString(out, stringMap, tscatalog.getTsUnitSymbolAbs());
+			}
+		}
+		// Replace the previous snapshot, which is not open because it is read into memory.
+		Files.move(tmpPath, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Add a string to the string table if not already in the table.
+	 */
+	private static void addString ( Map<String,Integer> stringMap, String s ) {
+		if ( (s != null) && !stringMap.containsKey(s) ) {
+			stringMap.put(s, Integer.valueOf(stringMap.size()));
+		}
+	}
+
+	/**
+	 * Write a nullable Double.
+	 */
+	private static void writeDouble ( DataOutputStream out, Double d ) throws IOException {
+		if ( d == null ) {
+			out.writeDouble(Double.NaN);
+		}
+		else {
+			out.writeDouble(d.doubleValue());
+		}
+	}
+
+	/**
+	 * Write a nullable Integer.
+	 */
+	private static void writeInteger ( DataOutputStream out, Integer i ) throws IOException {
+		if ( i == null ) {
+			out.writeInt(NULL_INTEGER);
+		}
+		else {
+			out.writeInt(i.intValue());
+		}
+	}
+
+	/**
+	 * Write a nullable string as an index into the string table.
+	 */
+	private static void writeString ( DataOutputStream out, Map<String,Integer> stringMap, String s ) throws IOException {
+		if ( s == null ) {
+			out.writeInt(-1);
+		}
+		else {
+			out.writeInt(stringMap.get(s).intValue());
+		}
+	}
+}
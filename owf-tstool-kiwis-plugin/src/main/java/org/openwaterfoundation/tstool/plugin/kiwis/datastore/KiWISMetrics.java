@@ -0,0 +1,305 @@
+// KiWISMetrics - request and time series read statistics for a datastore
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openwaterfoundation.tstool.plugin.kiwis.util.HttpTransport;
+import org.openwaterfoundation.tstool.plugin.kiwis.util.WebUtil;
+
+/**
+ * Statistics for the web service requests made by a datastore and for transferring values into time series,
+ * used to understand performance.
+ * Request statistics are accumulated for each request type (the 'request' URL parameter, e.g., 'getTimeseriesValues'),
+ * including a histogram of the request time (from sending the request until the response is closed).
+ * The request time is split into the time waiting for response bytes (transfer)
+ * and the remaining time processing the response (parse).
+ * The metrics are thread-safe.
+ */
+public class KiWISMetrics implements HttpTransport.RequestListener {
+
+	/**
+	 * Number of request time histogram buckets:
+	 * - bucket 0 is less than 1 ms and bucket i is 2^(i-1) to 2^i ms
+	 * - the last bucket includes all longer times
+	 */
+	private static final int HISTOGRAM_BUCKET_COUNT = 24;
+
+	/**
+	 * Request type used if the URL does not include the 'request' parameter.
+	 */
+	private static final String UNKNOWN_REQUEST_TYPE = "unknown";
+
+	/**
+	 * Statistics for one request type.
+	 */
+	private static class RequestStats {
+		private long requestCount = 0;
+		private long errorCount = 0;
+		private long retryCount = 0;
+		private long bytes = 0;
+		private long valueCount = 0;
+		private long headerNanos = 0;
+		private long transferNanos = 0;
+		private long parseNanos = 0;
+		private long requestNanos = 0;
+		private long maxRequestNanos = 0;
+		private final long [] histogram = new long[HISTOGRAM_BUCKET_COUNT];
+
+		/**
+		 * Return the request time in milliseconds for a percentile,
+		 * as the upper limit of the histogram bucket that contains the percentile.
+		 * @param percentile percentile 0 to 100
+		 */
+		private double getRequestMsPercentile ( double percentile ) {
+			if ( this.requestCount == 0 ) {
+				return 0.0;
+			}
+			long target = (long)Math.ceil(this.requestCount*percentile/100.0);
+			long count = 0;
+			for ( int i = 0; i < HISTOGRAM_BUCKET_COUNT - 1; i++ ) {
+				count += this.histogram[i];
+				if ( count >= target ) {
+					// Don't report more than the maximum.
+					return Math.min((double)(1L << i), this.maxRequestNanos/1.0e6);
+				}
+			}
+			return this.maxRequestNanos/1.0e6;
+		}
+	}
+
+	/**
+	 * Statistics for each request type, sorted by request type.
+	 */
+	private final Map<String,RequestStats> requestStatsMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+	/**
+	 * Number of time series that values were transferred into.
+	 */
+	private long timeSeriesCount = 0;
+
+	/**
+	 * Number of values transferred into time series.
+	 */
+	private long timeSeriesValueCount = 0;
+
+	/**
+	 * Time transferring values into time series, nanoseconds.
+	 */
+	private long timeSeriesNanos = 0;
+
+	/**
+	 * A statistic, used to list the statistics.
+	 */
+	public static class Statistic {
+		private final String category;
+		private final String name;
+		private final double value;
+		private final String units;
+
+		/**
+		 * Constructor.
+		 * @param category category for the statistic (e.g., request type)
+		 * @param name name of the statistic
+		 * @param value value of the statistic
+		 * @param units units for the value
+		 */
+		public Statistic ( String category, String name, double value, String units ) {
+			this.category = category;
+			this.name = name;
+			this.value = value;
+			this.units = units;
+		}
+
+		/**
+		 * Return the category.
+		 * @return the category
+		 */
+		public String getCategory () {
+			return this.category;
+		}
+
+		/**
+		 * Return the statistic name.
+		 * @return the statistic name
+		 */
+		public String getName () {
+			return this.name;
+		}
+
+		/**
+		 * Return the units.
+		 * @return the units
+		 */
+		public String getUnits () {
+			return this.units;
+		}
+
+		/**
+		 * Return the value.
+		 * @return the value
+		 */
+		public double getValue () {
+			return this.value;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 */
+	public KiWISMetrics () {
+	}
+
+	/**
+	 * Add the number of values that were read by a request.
+	 * @param url the request URL, used to determine the request type
+	 * @param valueCount the number of values
+	 */
+	public synchronized void addValues ( String url, long valueCount ) {
+		getRequestStats(url).valueCount += valueCount;
+	}
+
+	/**
+	 * Add the time to transfer values into a time series.
+	 * @param valueCount the number of values
+	 * @param nanos the time to transfer the values, nanoseconds
+	 */
+	public synchronized void addTimeSeries ( long valueCount, long nanos ) {
+		++this.timeSeriesCount;
+		this.timeSeriesValueCount += valueCount;
+		this.timeSeriesNanos += nanos;
+	}
+
+	/**
+	 * Return the request type for a URL, from the 'request' URL parameter.
+	 * @param url the request URL
+	 * @return the request type (e.g., "getTimeseriesValues")
+	 */
+	public static String getRequestType ( String url ) {
+		String requestType = WebUtil.getUrlQueryParameter ( url, "request" );
+		if ( (requestType == null) || requestType.isEmpty() ) {
+			return UNKNOWN_REQUEST_TYPE;
+		}
+		return requestType;
+	}
+
+	/**
+	 * Return the statistics for the request type of a URL, creating if necessary.
+	 * Must be called when synchronized.
+	 * @param url the request URL
+	 */
+	private RequestStats getRequestStats ( String url ) {
+		return this.requestStatsMap.computeIfAbsent(getRequestType(url), requestType -> new RequestStats());
+	}
+
+	/**
+	 * Return the statistics as a list, for each request type and then for transferring values into time series.
+	 * @return the list of statistics
+	 */
+	public synchronized List<Statistic> getStatistics () {
+		List<Statistic> statistics = new ArrayList<>();
+		for ( Map.Entry<String,RequestStats> entry : this.requestStatsMap.entrySet() ) {
+			String requestType = entry.getKey();
+			RequestStats stats = entry.getValue();
+			statistics.add(new Statistic(requestType, "RequestCount", stats.requestCount, "count"));
+			statistics.add(new Statistic(requestType, "ErrorCount", stats.errorCount, "count"));
+			statistics.add(new Statistic(requestType, "RetryCount", stats.retryCount, "count"));
+			statistics.add(new Statistic(requestType, "BytesReceived", stats.bytes, "bytes"));
+			statistics.add(new Statistic(requestType, "RequestTimeTotal", stats.requestNanos/1.0e6, "ms"));
+			statistics.add(new Statistic(requestType, "RequestTimeMean",
+				(stats.requestCount == 0) ? 0.0 : stats.requestNanos/1.0e6/stats.requestCount, "ms"));
+			statistics.add(new Statistic(requestType, "RequestTimeP50", stats.getRequestMsPercentile(50.0), "ms"));
+			statistics.add(new Statistic(requestType, "RequestTimeP90", stats.getRequestMsPercentile(90.0), "ms"));
+			statistics.add(new Statistic(requestType, "RequestTimeP99", stats.getRequestMsPercentile(99.0), "ms"));
+			statistics.add(new Statistic(requestType, "RequestTimeMax", stats.maxRequestNanos/1.0e6, "ms"));
+			statistics.add(new Statistic(requestType, "HeaderTimeTotal", stats.headerNanos/1.0e6, "ms"));
+			statistics.add(new Statistic(requestType, "TransferTimeTotal", stats.transferNanos/1.0e6, "ms"));
+			statistics.add(new Statistic(requestType, "ParseTimeTotal", stats.parseNanos/1.0e6, "ms"));
+			if ( stats.valueCount > 0 ) {
+				statistics.add(new Statistic(requestType, "ValueCount", stats.valueCount, "count"));
+				statistics.add(new Statistic(requestType, "ValuesPerSecond",
+					(stats.requestNanos == 0) ? 0.0 : stats.valueCount/(stats.requestNanos/1.0e9), "values/s"));
+			}
+			for ( int i = 0; i < HISTOGRAM_BUCKET_COUNT; i++ ) {
+				if ( stats.histogram[i] > 0 ) {
+					String name = (i == 0) ? "RequestTime<1ms"
+						: (i == (HISTOGRAM_BUCKET_COUNT - 1)) ? "RequestTime>=" + (1L << (i - 1)) + "ms"
+						: "RequestTime" + (1L << (i - 1)) + "-" + (1L << i) + "ms";
+					statistics.add(new Statistic(requestType, name, stats.histogram[i], "count"));
+				}
+			}
+		}
+		String category = "setTimeSeriesValues";
+		statistics.add(new Statistic(category, "TimeSeriesCount", this.timeSeriesCount, "count"));
+		statistics.add(new Statistic(category, "ValueCount", this.timeSeriesValueCount, "count"));
+		statistics.add(new Statistic(category, "TimeTotal", this.timeSeriesNanos/1.0e6, "ms"));
+		statistics.add(new Statistic(category, "ValuesPerSecond",
+			(this.timeSeriesNanos == 0) ? 0.0 : this.timeSeriesValueCount/(this.timeSeriesNanos/1.0e9), "values/s"));
+		return statistics;
+	}
+
+	/**
+	 * Increment the number of retries for a request.
+	 * @param url the request URL, used to determine the request type
+	 */
+	public synchronized void incrementRetryCount ( String url ) {
+		++getRequestStats(url).retryCount;
+	}
+
+	/**
+	 * Add a complete request, called by the HTTP transport.
+	 */
+	@Override
+	public synchronized void requestComplete ( String url, int statusCode, long headerNanos, long bodyNanos,
+		long readWaitNanos, long bytes ) {
+		RequestStats stats = getRequestStats(url);
+		++stats.requestCount;
+		if ( statusCode != 200 ) {
+			++stats.errorCount;
+		}
+		long requestNanos = headerNanos + bodyNanos;
+		stats.bytes += bytes;
+		stats.headerNanos += headerNanos;
+		stats.transferNanos += readWaitNanos;
+		stats.parseNanos += bodyNanos - readWaitNanos;
+		stats.requestNanos += requestNanos;
+		stats.maxRequestNanos = Math.max(stats.maxRequestNanos, requestNanos);
+		// Bucket is the number of bits in the milliseconds.
+		int bucket = 64 - Long.numberOfLeadingZeros(requestNanos/1000000L);
+		++stats.histogram[Math.min(bucket, HISTOGRAM_BUCKET_COUNT - 1)];
+	}
+
+	/**
+	 * Reset all statistics to zero.
+	 */
+	public synchronized void reset () {
+		this.requestStatsMap.clear();
+		this.timeSeriesCount = 0;
+		this.timeSeriesValueCount = 0;
+		this.timeSeriesNanos = 0;
+	}
+}
@@ -0,0 +1,136 @@
+// KiWISQualityCodeTable - lookup table for KiWIS quality codes, used to set time series data flags
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openwaterfoundation.tstool.plugin.kiwis.dao.QualityCode;
+
+/**
+ * Lookup table for KiWIS quality codes, used to set the data flag for each time series value.
+ * Quality code keys are small integers (e.g., 200) so keys in the range 0 to the largest key
+ * are looked up with an array index.
+ * Keys outside of that range are looked up in a map.
+ * The same string instance is returned for each key so that time series data flags share strings.
+ * If a key does not match a quality code, the key as a string is returned, consistent with
+ * KiWISDataStore.lookupQualityCode().
+ * The table is not modified after it is created, other than to save the strings for unknown keys,
+ * so it can be used by multiple threads.
+ */
+public class KiWISQualityCodeTable {
+
+	/**
+	 * Minimum size of the array of codes, so that typical keys without a quality code also use the array.
+	 */
+	private static final int MIN_DENSE_SIZE = 256;
+
+	/**
+	 * Maximum size of the array of codes, larger keys are saved in the map.
+	 */
+	private static final int MAX_DENSE_SIZE = 65536;
+
+	/**
+	 * Quality codes indexed by key, with the key as a string if no quality code is defined.
+	 */
+	private final String [] denseCodes;
+
+	/**
+	 * Quality codes for keys that are not in the array.
+	 */
+	private final Map<Integer,String> sparseCodes = new HashMap<>();
+
+	/**
+	 * Strings for keys that are not in the array and do not match a quality code,
+	 * saved so that a new string is not created for each value.
+	 */
+	private final Map<Integer,String> unknownCodes = new ConcurrentHashMap<>();
+
+	/**
+	 * Create the table from the list of quality codes.
+	 * @param qualityCodeList list of quality codes from the 'getQualityCodes' service
+	 */
+	public KiWISQualityCodeTable ( List<QualityCode> qualityCodeList ) {
+		int maxKey = -1;
+		for ( QualityCode qualityCode : qualityCodeList ) {
+			Integer key = qualityCode.getKey();
+			if ( (key != null) && (key >= 0) && (key < MAX_DENSE_SIZE) && (key > maxKey) ) {
+				maxKey = key;
+			}
+		}
+		this.denseCodes = new String[Math.max(MIN_DENSE_SIZE, maxKey + 1)];
+		for ( int i = 0; i < this.denseCodes.length; i++ ) {
+			this.denseCodes[i] = String.valueOf(i);
+		}
+		// If a key is duplicated, use the first quality code, consistent with KiWISDataStore.lookupQualityCode().
+		boolean [] denseDefined = new boolean[this.denseCodes.length];
+		for ( QualityCode qualityCode : qualityCodeList ) {
+			Integer key = qualityCode.getKey();
+			if ( key == null ) {
+				continue;
+			}
+			if ( (key >= 0) && (key < this.denseCodes.length) ) {
+				if ( !denseDefined[key] ) {
+					this.denseCodes[key] = qualityCode.getCode();
+					denseDefined[key] = true;
+				}
+			}
+			else {
+				this.sparseCodes.putIfAbsent(key, qualityCode.getCode());
+			}
+		}
+	}
+
+	/**
+	 * Look up the quality code text from the numeric key.
+	 * @param key the numeric quality code key
+	 * @return the text quality code matching the key, or the key as a string if not matched
+	 */
+	public String lookup ( int key ) {
+		if ( (key >= 0) && (key < this.denseCodes.length) ) {
+			return this.denseCodes[key];
+		}
+		String code = this.sparseCodes.get(key);
+		if ( code == null ) {
+			code = this.unknownCodes.computeIfAbsent(key, k -> String.valueOf(k));
+		}
+		return code;
+	}
+
+	/**
+	 * Look up the quality code text from the numeric key.
+	 * @param key the numeric quality code key as a string
+	 * @return the text quality code matching the key, the key if not matched, or an empty string if the key is null
+	 * @exception NumberFormatException if the key is not an integer
+	 */
+	public String lookup ( String key ) {
+		if ( key == null ) {
+			return "";
+		}
+		return lookup(Integer.parseInt(key));
+	}
+
+}
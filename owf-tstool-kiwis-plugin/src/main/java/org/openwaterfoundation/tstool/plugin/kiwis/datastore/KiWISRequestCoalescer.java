@@ -0,0 +1,179 @@
+// KiWISRequestCoalescer - share one in-flight request between concurrent callers
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import org.openwaterfoundation.tstool.plugin.kiwis.util.WebUtil;
+
+/**
+ * Coalesce identical web service requests that are in progress at the same time ("single flight").
+ * If a request is made for a URL while the same request is already in progress,
+ * the caller waits for the request in progress and uses its parsed result rather than making another request.
+ * Requests are matched using the normalized URL (see WebUtil.normalizeUrl()).
+ * Results are not retained after the request completes, so this is not a cache.
+ * Because the same result is returned to more than one caller, a copier is used to give each caller its own copy
+ * of a mutable result, and a copy is only made if the result is shared.
+ */
+public class KiWISRequestCoalescer {
+
+	/**
+	 * Request that returns a parsed result.
+	 * @param <T> the result type
+	 */
+	@FunctionalInterface
+	public interface Request<T> {
+		/**
+		 * Make the request and parse the result.
+		 * @return the parsed result
+		 * @throws IOException if the request fails
+		 */
+		T execute () throws IOException;
+	}
+
+	/**
+	 * Request in progress.
+	 */
+	private static class InFlight {
+		/**
+		 * Future that is completed with the result or error.
+		 */
+		private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+		/**
+		 * Number of callers that are waiting on the request in addition to the caller that makes the request,
+		 * only incremented while the request is in the map.
+		 */
+		private final AtomicInteger waiterCount = new AtomicInteger(0);
+	}
+
+	/**
+	 * Requests in progress, by normalized URL.
+	 */
+	private final ConcurrentHashMap<String,InFlight> inFlightMap = new ConcurrentHashMap<>();
+
+	/**
+	 * Number of requests that were made.
+	 */
+	private final AtomicLong requestCount = new AtomicLong(0);
+
+	/**
+	 * Number of requests that used a request in progress rather than making a request.
+	 */
+	private final AtomicLong coalescedCount = new AtomicLong(0);
+
+	/**
+	 * Constructor.
+	 */
+	public KiWISRequestCoalescer () {
+	}
+
+	/**
+	 * Make a request, or wait for the same request if it is in progress.
+	 * @param url the request URL, which is normalized to match requests
+	 * @param request the request to execute if the same request is not in progress
+	 * @param copier function to copy a shared result so that each caller can modify its result,
+	 * or null if the result is not modified by callers
+	 * @param <T> the result type
+	 * @return the result, which is a copy if the result was shared with other callers
+	 * @throws IOException if the request fails, including for callers that waited on the request
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute ( String url, Request<T> request, UnaryOperator<T> copier ) throws IOException {
+		String key = WebUtil.normalizeUrl ( url );
+		InFlight created = new InFlight();
+		// Add the request or, if in progress, count the waiter, in one atomic operation,
+		// so that the waiter count is final when the request is removed.
+		InFlight inFlight = this.inFlightMap.compute(key, (k, existing) -> {
+			if ( existing == null ) {
+				return created;
+			}
+			existing.waiterCount.incrementAndGet();
+			return existing;
+		});
+		if ( inFlight != created ) {
+			// Use the request that is in progress.
+			this.coalescedCount.incrementAndGet();
+			T result;
+			try {
+				result = (T)inFlight.future.join();
+			}
+			catch ( CompletionException e ) {
+				Throwable cause = e.getCause();
+				if ( cause instanceof IOException ) {
+					throw new IOException ( cause.getMessage(), cause );
+				}
+				if ( cause instanceof RuntimeException ) {
+					throw (RuntimeException)cause;
+				}
+				throw e;
+			}
+			return ((copier == null) || (result == null)) ? result : copier.apply(result);
+		}
+
+		// Make the request.
+		this.requestCount.incrementAndGet();
+		T result;
+		try {
+			result = request.execute();
+			inFlight.future.complete(result);
+		}
+		catch ( IOException | RuntimeException | Error e ) {
+			inFlight.future.completeExceptionally(e);
+			throw e;
+		}
+		finally {
+			// Remove before checking the waiters so that no more waiters are added.
+			this.inFlightMap.remove(key, inFlight);
+		}
+		if ( (inFlight.waiterCount.get() > 0) && (copier != null) && (result != null) ) {
+			// Waiters are using the result so use a copy.
+			return copier.apply(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Return the number of requests that used a request in progress rather than making a request.
+	 * @return the number of coalesced requests
+	 */
+	public long getCoalescedCount () {
+		return this.coalescedCount.get();
+	}
+
+	/**
+	 * Return the number of requests that were made.
+	 * @return the number of requests
+	 */
+	public long getRequestCount () {
+		return this.requestCount.get();
+	}
+
+}
@@ -0,0 +1,279 @@
+// KiWISTimeSeriesCatalogIndex - index of the KiWIS time series catalog, used to look up time series without web service requests
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openwaterfoundation.tstool.plugin.kiwis.dao.TimeSeriesCatalog;
+
+/**
+ * Index of the global time series catalog, used to look up time series without web service requests.
+ * Time series can be looked up using the KiWIS 'ts_id' or the parts of the 'ts_path' that are used in the TSID
+ * (station_no, stationparameter_no, and ts_shortname).
+ * Sorted lists of distinct values are also created for UI choices,
+ * for all time series and for time series matching a data type (stationparameter_no) and/or location (station_no).
+ * The index is created once when the catalog is read and is not modified after,
+ * so it can be used by multiple threads.
+ * Returned lists cannot be modified.
+ */
+public class KiWISTimeSeriesCatalogIndex {
+
+	/**
+	 * Map of KiWIS 'ts_id' to time series catalog.
+	 */
+	private Map<Integer,TimeSeriesCatalog> tsIdMap = null;
+
+	/**
+	 * Map of "station_no/stationparameter_no/ts_shortname" to time series catalog.
+	 */
+	private Map<String,TimeSeriesCatalog> tsPathMap = null;
+
+	/**
+	 * Keys for 'tsPathMap' that match more than one time series, which are not looked up.
+	 */
+	private Set<String> duplicateTsPathSet = new HashSet<>();
+
+	/**
+	 * Sorted distinct data intervals for all time series.
+	 */
+	private List<String> dataIntervalList = null;
+
+	/**
+	 * Sorted distinct location identifiers (station_no) for all time series.
+	 */
+	private List<String> locIdList = null;
+
+	/**
+	 * Sorted distinct time series short names (ts_shortname) for all time series.
+	 */
+	private List<String> tsShortNameList = null;
+
+	/**
+	 * Map of data type (stationparameter_no) to sorted distinct data intervals.
+	 */
+	private Map<String,List<String>> dataTypeDataIntervalMap = null;
+
+	/**
+	 * Map of data type (stationparameter_no) to sorted distinct location identifiers (station_no).
+	 */
+	private Map<String,List<String>> dataTypeLocIdMap = null;
+
+	/**
+	 * Map of data type (stationparameter_no) to sorted distinct time series short names (ts_shortname).
+	 */
+	private Map<String,List<String>> dataTypeTsShortNameMap = null;
+
+	/**
+	 * Map of location identifier (station_no) to sorted distinct time series short names (ts_shortname).
+	 */
+	private Map<String,List<String>> locIdTsShortNameMap = null;
+
+	/**
+	 * Map of "station_no/stationparameter_no" to sorted distinct time series short names (ts_shortname).
+	 */
+	private Map<String,List<String>> locIdDataTypeTsShortNameMap = null;
+
+	/**
+	 * Create the index for a time series catalog.
+	 * @param tscatalogList time series catalog to index
+	 */
+	public KiWISTimeSeriesCatalogIndex ( List<TimeSeriesCatalog> tscatalogList ) {
+		this.tsIdMap = new HashMap<>(tscatalogList.size()*2);
+		this.tsPathMap = new HashMap<>(tscatalogList.size()*2);
+		Set<String> dataIntervalSet = new HashSet<>();
+		Set<String> locIdSet = new HashSet<>();
+		Set<String> tsShortNameSet = new HashSet<>();
+		Map<String,Set<String>> dataTypeDataIntervalMap = new HashMap<>();
+		Map<String,Set<String>> dataTypeLocIdMap = new HashMap<>();
+		Map<String,Set<String>> dataTypeTsShortNameMap = new HashMap<>();
+		Map<String,Set<String>> locIdTsShortNameMap = new HashMap<>();
+		Map<String,Set<String>> locIdDataTypeTsShortNameMap = new HashMap<>();
+		for ( TimeSeriesCatalog tscatalog : tscatalogList ) {
+			String stationNo = tscatalog.getStationNo();
+			String stationParameterNo = tscatalog.getStationParameterNo();
+			String tsShortName = tscatalog.getTsShortName();
+			String dataInterval = tscatalog.getDataInterval();
+			addToSet(dataIntervalSet, dataInterval);
+			addToSet(locIdSet, stationNo);
+			addToSet(tsShortNameSet, tsShortName);
+			addToMap(dataTypeDataIntervalMap, stationParameterNo, dataInterval);
+			addToMap(dataTypeLocIdMap, stationParameterNo, stationNo);
+			addToMap(dataTypeTsShortNameMap, stationParameterNo, tsShortName);
+			addToMap(locIdTsShortNameMap, stationNo, tsShortName);
+			addToMap(locIdDataTypeTsShortNameMap, stationNo + "/" + stationParameterNo, tsShortName);
+
+			if ( tscatalog.getTsId() != null ) {
+				this.tsIdMap.put(tscatalog.getTsId(), tscatalog);
+			}
+			String key = createTsPathKey(tscatalog.getStationNo(), tscatalog.getStationParameterNo(), tscatalog.getTsShortName());
+			if ( this.tsPathMap.put(key, tscatalog) != null ) {
+				// Multiple time series match so the time series can't be uniquely identified.
+				this.duplicateTsPathSet.add(key);
+			}
+		}
+		for ( String key : this.duplicateTsPathSet ) {
+			this.tsPathMap.remove(key);
+		}
+		this.dataIntervalList = toSortedList(dataIntervalSet);
+		this.locIdList = toSortedList(locIdSet);
+		this.tsShortNameList = toSortedList(tsShortNameSet);
+		this.dataTypeDataIntervalMap = toSortedListMap(dataTypeDataIntervalMap);
+		this.dataTypeLocIdMap = toSortedListMap(dataTypeLocIdMap);
+		this.dataTypeTsShortNameMap = toSortedListMap(dataTypeTsShortNameMap);
+		this.locIdTsShortNameMap = toSortedListMap(locIdTsShortNameMap);
+		this.locIdDataTypeTsShortNameMap = toSortedListMap(locIdDataTypeTsShortNameMap);
+	}
+
+	/**
+	 * Add a value to a map of distinct values.
+	 * @param map map to add to
+	 * @param key the key for the value, ignored if null
+	 * @param value the value to add, ignored if null
+	 */
+	private void addToMap ( Map<String,Set<String>> map, String key, String value ) {
+		if ( (key != null) && (value != null) ) {
+			map.computeIfAbsent(key, k -> new HashSet<>()).add(value);
+		}
+	}
+
+	/**
+	 * Add a value to a set of distinct values.
+	 * @param set set to add to
+	 * @param value the value to add, ignored if null
+	 */
+	private void addToSet ( Set<String> set, String value ) {
+		if ( value != null ) {
+			set.add(value);
+		}
+	}
+
+	/**
+	 * Create the key for the 'ts_path' map.
+	 * @param stationNo KiWIS 'station_no'
+	 * @param stationParameterNo KiWIS 'stationparameter_no'
+	 * @param tsShortName KiWIS 'ts_shortname'
+	 * @return the key for the 'ts_path' map
+	 */
+	private String createTsPathKey ( String stationNo, String stationParameterNo, String tsShortName ) {
+		return stationNo + "/" + stationParameterNo + "/" + tsShortName;
+	}
+
+	/**
+	 * Return the sorted distinct data intervals.
+	 * @param dataType data type (stationparameter_no) to match, or null to return the intervals for all time series
+	 * @return the sorted distinct data intervals, empty if no time series match
+	 */
+	public List<String> getDataIntervals ( String dataType ) {
+		if ( dataType == null ) {
+			return this.dataIntervalList;
+		}
+		return this.dataTypeDataIntervalMap.getOrDefault(dataType, Collections.emptyList());
+	}
+
+	/**
+	 * Return the sorted distinct location identifiers (station_no).
+	 * @param dataType data type (stationparameter_no) to match, or null to return the locations for all time series
+	 * @return the sorted distinct location identifiers, empty if no time series match
+	 */
+	public List<String> getLocIds ( String dataType ) {
+		if ( dataType == null ) {
+			return this.locIdList;
+		}
+		return this.dataTypeLocIdMap.getOrDefault(dataType, Collections.emptyList());
+	}
+
+	/**
+	 * Return the sorted distinct time series short names (ts_shortname).
+	 * @param dataType data type (stationparameter_no) to match, or null to match all data types
+	 * @param locId location identifier (station_no) to match, or null to match all locations
+	 * @return the sorted distinct time series short names, empty if no time series match
+	 */
+	public List<String> getTsShortNames ( String dataType, String locId ) {
+		if ( (dataType == null) && (locId == null) ) {
+			return this.tsShortNameList;
+		}
+		else if ( locId == null ) {
+			return this.dataTypeTsShortNameMap.getOrDefault(dataType, Collections.emptyList());
+		}
+		else if ( dataType == null ) {
+			return this.locIdTsShortNameMap.getOrDefault(locId, Collections.emptyList());
+		}
+		else {
+			return this.locIdDataTypeTsShortNameMap.getOrDefault(locId + "/" + dataType, Collections.emptyList());
+		}
+	}
+
+	/**
+	 * Look up a time series using the KiWIS 'ts_id'.
+	 * @param tsId KiWIS 'ts_id'
+	 * @return the matching time series catalog, or null if not found
+	 */
+	public TimeSeriesCatalog lookupTimeSeriesCatalog ( Integer tsId ) {
+		return this.tsIdMap.get(tsId);
+	}
+
+	/**
+	 * Look up a time series using the 'ts_path' parts that are used in the TSID.
+	 * @param stationNo KiWIS 'station_no'
+	 * @param stationParameterNo KiWIS 'stationparameter_no'
+	 * @param tsShortName KiWIS 'ts_shortname'
+	 * @return the matching time series catalog,
+	 * or null if not found or more than one time series matches
+	 */
+	public TimeSeriesCatalog lookupTimeSeriesCatalog ( String stationNo, String stationParameterNo, String tsShortName ) {
+		return this.tsPathMap.get(createTsPathKey(stationNo, stationParameterNo, tsShortName));
+	}
+
+	/**
+	 * Convert distinct values to a list sorted ignoring case, which cannot be modified.
+	 * @param values distinct values
+	 * @return sorted list that cannot be modified
+	 */
+	private List<String> toSortedList ( Collection<String> values ) {
+		List<String> list = new ArrayList<>(values);
+		Collections.sort(list, String.CASE_INSENSITIVE_ORDER);
+		return Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Convert a map of distinct values to a map of sorted lists.
+	 * @param map map of distinct values
+	 * @return map of sorted lists that cannot be modified
+	 */
+	private Map<String,List<String>> toSortedListMap ( Map<String,Set<String>> map ) {
+		Map<String,List<String>> sortedListMap = new HashMap<>(map.size()*2);
+		for ( Map.Entry<String,Set<String>> entry : map.entrySet() ) {
+			sortedListMap.put(entry.getKey(), toSortedList(entry.getValue()));
+		}
+		return sortedListMap;
+	}
+
+}
@@ -0,0 +1,375 @@
+// KiWISTimeSeriesValueColumns - columnar buffer for getTimeseriesValues values
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.util.Arrays;
+
+import org.openwaterfoundation.tstool.plugin.kiwis.dao.InterpolationType;
+
+import RTi.Util.Time.DateTime;
+
+/**
+ * Columnar buffer for time series values read from the 'getTimeseriesValues' service.
+ * Values are saved in primitive arrays rather than a list of TimeSeriesValue objects,
+ * which avoids creating objects for each value when reading long time series.
+ * The arrays are extended as values are added and the buffer can be cleared and reused for multiple reads.
+ * Use size() to determine the number of values - the arrays may be longer than the number of values.
+ * Counts of values that could not be parsed are also saved, for warning messages and time series properties.
+ */
+public class KiWISTimeSeriesValueColumns {
+
+	/**
+	 * Quality code used when the quality code is not provided.
+	 */
+	public static final int NO_QUALITY_CODE = Integer.MIN_VALUE;
+
+	/**
+	 * Interpolation type enumeration values, indexed by the interpolation type code.
+	 */
+	private static final InterpolationType [] INTERPOLATION_TYPES = InterpolationType.values();
+
+	/**
+	 * Timestamps as milliseconds since 1970-01-01T00:00:00Z.
+	 */
+	private long [] times;
+
+	/**
+	 * Timestamp UTC offsets, seconds, used to create date/times in the web service time zone.
+	 */
+	private int [] utcOffsets;
+
+	/**
+	 * Data values.
+	 */
+	private double [] values;
+
+	/**
+	 * Quality code keys, or NO_QUALITY_CODE if not provided.
+	 */
+	private int [] qualityCodes;
+
+	/**
+	 * Interpolation type codes (InterpolationType ordinal).
+	 */
+	private byte [] interpolationTypes;
+
+	/**
+	 * Number of values.
+	 */
+	private int size = 0;
+
+	/**
+	 * Number of values that were skipped because the timestamp could not be parsed.
+	 */
+	private int badDateTimeCount = 0;
+
+	/**
+	 * Number of values that were skipped because the value could not be parsed.
+	 */
+	private int badValueCount = 0;
+
+	/**
+	 * Number of values that were skipped because the interpolation type is not known.
+	 */
+	private int badInterpolationTypeCount = 0;
+
+	/**
+	 * Most recent UTC offset and corresponding time zone identifier,
+	 * used to avoid formatting the time zone for each value since all values typically use the same offset.
+	 */
+	private int lastZoneOffset = 0;
+	private String lastZoneId = null;
+
+	/**
+	 * Year, month, and day computed for a timestamp, reused to avoid creating an array for each value.
+	 */
+	private final int [] ymd = new int[3];
+
+	/**
+	 * Construct with a default initial capacity.
+	 */
+	public KiWISTimeSeriesValueColumns () {
+		this ( 1024 );
+	}
+
+	/**
+	 * Construct with an initial capacity.
+	 * @param capacity initial number of values that can be saved before the arrays are extended
+	 */
+	public KiWISTimeSeriesValueColumns ( int capacity ) {
+		capacity = Math.max(1, capacity);
+		this.times = new long[capacity];
+		this.utcOffsets = new int[capacity];
+		this.values = new double[capacity];
+		this.qualityCodes = new int[capacity];
+		this.interpolationTypes = new byte[capacity];
+	}
+
+	/**
+	 * Add a value.
+	 * @param time timestamp as milliseconds since 1970-01-01T00:00:00Z
+	 * @param utcOffset timestamp UTC offset, seconds
+	 * @param value data value
+	 * @param qualityCode quality code key, or NO_QUALITY_CODE if not provided
+	 * @param interpolationType interpolation type
+	 */
+	public void add ( long time, int utcOffset, double value, int qualityCode, InterpolationType interpolationType ) {
+		if ( this.size == this.times.length ) {
+			// Double the capacity so that the number of copies is proportional to the log of the number of values.
+			resize ( this.times.length*2 );
+		}
+		this.times[this.size] = time;
+		this.utcOffsets[this.size] = utcOffset;
+		this.values[this.size] = value;
+		this.qualityCodes[this.size] = qualityCode;
+		this.interpolationTypes[this.size] = (byte)interpolationType.ordinal();
+		++this.size;
+	}
+
+	/**
+	 * Append the values from other columns, for example when a period is read in multiple windows.
+	 * Values at the start of the other columns that are not after the last value
+	 * are skipped, so that a value at the boundary of two windows is not duplicated.
+	 * The counts of values that could not be parsed are added.
+	 * @param other the columns to append
+	 */
+	public void append ( KiWISTimeSeriesValueColumns other ) {
+		int first = 0;
+		if ( this.size > 0 ) {
+			long lastTime = this.times[this.size - 1];
+			while ( (first < other.size) && (other.times[first] <= lastTime) ) {
+				++first;
+			}
+		}
+		int count = other.size - first;
+		ensureCapacity ( this.size + count );
+		System.arraycopy(other.times, first, this.times, this.size, count);
+		System.arraycopy(other.utcOffsets, first, this.utcOffsets, this.size, count);
+		System.arraycopy(other.values, first, this.values, this.size, count);
+		System.arraycopy(other.qualityCodes, first, this.qualityCodes, this.size, count);
+		System.arraycopy(other.interpolationTypes, first, this.interpolationTypes, this.size, count);
+		this.size += count;
+		this.badDateTimeCount += other.badDateTimeCount;
+		this.badValueCount += other.badValueCount;
+		this.badInterpolationTypeCount += other.badInterpolationTypeCount;
+	}
+
+	/**
+	 * Clear the values and counts so that the buffer can be reused.  The arrays are retained.
+	 */
+	public void clear () {
+		this.size = 0;
+		this.badDateTimeCount = 0;
+		this.badValueCount = 0;
+		this.badInterpolationTypeCount = 0;
+	}
+
+	/**
+	 * Create a copy of the values and counts, for example when the same values are used by more than one reader.
+	 * @return a copy with arrays sized to the number of values
+	 */
+	public KiWISTimeSeriesValueColumns copy () {
+		KiWISTimeSeriesValueColumns copy = new KiWISTimeSeriesValueColumns(this.size);
+		copy.append(this);
+		return copy;
+	}
+
+	/**
+	 * Create a date/time for a value, in the time zone of the web service response.
+	 * @param i index of the value
+	 * @return a new date/time for the value, with millisecond precision
+	 */
+	public DateTime createDateTime ( int i ) {
+		DateTime dateTime = new DateTime(DateTime.PRECISION_MILLISECOND);
+		setDateTime ( i, dateTime );
+		return dateTime;
+	}
+
+	/**
+	 * Ensure that the arrays can hold at least the requested number of values without being extended,
+	 * for example when the number of rows in a response is known before the values are read.
+	 * @param capacity the number of values that can be saved
+	 */
+	public void ensureCapacity ( int capacity ) {
+		if ( capacity > this.times.length ) {
+			resize ( capacity );
+		}
+	}
+
+	/**
+	 * Format a UTC offset as a time zone identifier, consistent with java.time.ZoneOffset (e.g., "Z", "-07:00").
+	 * @param utcOffset UTC offset, seconds
+	 * @return the time zone identifier
+	 */
+	private static String formatZoneId ( int utcOffset ) {
+		if ( utcOffset == 0 ) {
+			return "Z";
+		}
+		int absOffset = Math.abs(utcOffset);
+		int hours = absOffset/3600;
+		int minutes = (absOffset%3600)/60;
+		int seconds = absOffset%60;
+		StringBuilder b = new StringBuilder();
+		b.append(utcOffset < 0 ? '-' : '+');
+		b.append(hours < 10 ? "0" : "").append(hours).append(':').append(minutes < 10 ? "0" : "").append(minutes);
+		if ( seconds != 0 ) {
+			b.append(':').append(seconds < 10 ? "0" : "").append(seconds);
+		}
+		return b.toString();
+	}
+
+	/**
+	 * Return the number of values that were skipped because the timestamp could not be parsed.
+	 * @return the number of values that were skipped because the timestamp could not be parsed
+	 */
+	public int getBadDateTimeCount () {
+		return this.badDateTimeCount;
+	}
+
+	/**
+	 * Return the number of values that were skipped because the interpolation type is not known.
+	 * @return the number of values that were skipped because the interpolation type is not known
+	 */
+	public int getBadInterpolationTypeCount () {
+		return this.badInterpolationTypeCount;
+	}
+
+	/**
+	 * Return the number of values that were skipped because the value could not be parsed.
+	 * @return the number of values that were skipped because the value could not be parsed
+	 */
+	public int getBadValueCount () {
+		return this.badValueCount;
+	}
+
+	/**
+	 * Return the interpolation type for a value.
+	 * @param i index of the value
+	 * @return the interpolation type for a value
+	 */
+	public InterpolationType getInterpolationType ( int i ) {
+		return INTERPOLATION_TYPES[this.interpolationTypes[i]];
+	}
+
+	/**
+	 * Return the interpolation type codes (InterpolationType ordinal), which may be longer than size().
+	 * @return the interpolation type codes
+	 */
+	public byte [] getInterpolationTypes () {
+		return this.interpolationTypes;
+	}
+
+	/**
+	 * Return the quality code keys, which may be longer than size().
+	 * @return the quality code keys, NO_QUALITY_CODE if not provided
+	 */
+	public int [] getQualityCodes () {
+		return this.qualityCodes;
+	}
+
+	/**
+	 * Return the timestamps as milliseconds since 1970-01-01T00:00:00Z, which may be longer than size().
+	 * @return the timestamps
+	 */
+	public long [] getTimes () {
+		return this.times;
+	}
+
+	/**
+	 * Return the timestamp UTC offsets, seconds, which may be longer than size().
+	 * @return the timestamp UTC offsets
+	 */
+	public int [] getUtcOffsets () {
+		return this.utcOffsets;
+	}
+
+	/**
+	 * Return the data values, which may be longer than size().
+	 * @return the data values
+	 */
+	public double [] getValues () {
+		return this.values;
+	}
+
+	/**
+	 * Increment the number of values that were skipped because the timestamp could not be parsed.
+	 */
+	public void incrementBadDateTimeCount () {
+		++this.badDateTimeCount;
+	}
+
+	/**
+	 * Increment the number of values that were skipped because the interpolation type is not known.
+	 */
+	public void incrementBadInterpolationTypeCount () {
+		++this.badInterpolationTypeCount;
+	}
+
+	/**
+	 * Increment the number of values that were skipped because the value could not be parsed.
+	 */
+	public void incrementBadValueCount () {
+		++this.badValueCount;
+	}
+
+	/**
+	 * Resize the arrays, retaining the values.
+	 * @param capacity the new array length
+	 */
+	private void resize ( int capacity ) {
+		this.times = Arrays.copyOf(this.times, capacity);
+		this.utcOffsets = Arrays.copyOf(this.utcOffsets, capacity);
+		this.values = Arrays.copyOf(this.values, capacity);
+		this.qualityCodes = Arrays.copyOf(this.qualityCodes, capacity);
+		this.interpolationTypes = Arrays.copyOf(this.interpolationTypes, capacity);
+	}
+
+	/**
+	 * Set a date/time to the timestamp for a value, in the time zone of the web service response.
+	 * This allows a date/time to be reused when the caller copies the value,
+	 * for example when setting data in a regular interval time series.
+	 * The fields are computed from the timestamp without creating java.time objects.
+	 * @param i index of the value
+	 * @param dateTime the date/time to set, which is reset to millisecond precision
+	 */
+	public void setDateTime ( int i, DateTime dateTime ) {
+		int utcOffset = this.utcOffsets[i];
+		KiWISTimestampParser.setDateTimeFields(dateTime, this.times[i], utcOffset, this.ymd);
+		if ( (this.lastZoneId == null) || (utcOffset != this.lastZoneOffset) ) {
+			// Format the time zone consistent with java.time.ZoneOffset (e.g., "Z", "-07:00").
+			this.lastZoneOffset = utcOffset;
+			this.lastZoneId = formatZoneId(utcOffset);
+		}
+		dateTime.setTimeZone(this.lastZoneId);
+	}
+
+	/**
+	 * Return the number of values.
+	 * @return the number of values
+	 */
+	public int size () {
+		return this.size;
+	}
+
+}
@@ -0,0 +1,708 @@
+// KiWISTimeSeriesValueReader - read getTimeseriesValues CSV rows from a response stream
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.openwaterfoundation.tstool.plugin.kiwis.dao.InterpolationType;
+import org.openwaterfoundation.tstool.plugin.kiwis.dao.TimeSeriesValue;
+import org.openwaterfoundation.tstool.plugin.kiwis.util.KiWISParseEvent;
+
+import RTi.Util.Message.Message;
+
+/**
+ * Read time series values from a "getTimeseriesValues" CSV response stream, one row at a time.
+ * Rows are parsed as they are read from the stream so that the full response does not need to be saved in memory.
+ * The response is expected to contain the fields "Timestamp,Value,Quality Code,Interpolation Type",
+ * separated by semicolons, for example:
+ * <pre>
+ * #ts_id;957010
+ * #rows;1
+ * #Timestamp;Value;Quality Code;Interpolation Type
+ * 2022-12-30T18:00:00.000-07:00;84.88;200;102
+ * </pre>
+ * If multiple 'ts_id' were requested, the response contains a block for each time series,
+ * each starting with a "#ts_id;" line.
+ * Use nextBlock() to position the reader at the start of each block and next() to read the values for the block.
+ * Use readColumns() instead of next() to read the values into primitive arrays without creating an object for each value.
+ * <p>
+ * The stream is read into a byte buffer and lines and fields are located by scanning for newline and semicolon bytes,
+ * which is safe for UTF-8 because these bytes do not occur in multi-byte characters.
+ * readColumns() parses the timestamp and numbers directly from the buffer,
+ * whereas next() creates strings for the fields.
+ */
+public class KiWISTimeSeriesValueReader implements AutoCloseable {
+
+	/**
+	 * Initial size of the byte buffer, which is extended if a line is longer than the buffer.
+	 */
+	private static final int BUFFER_SIZE = 65536;
+
+	/**
+	 * Powers of ten that can be represented exactly as a double, used by parseDouble().
+	 */
+	private static final double [] POW10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * Comment prefixes that are recognized, as bytes.
+	 */
+	private static final byte [] ROWS_PREFIX = "#rows;".getBytes(StandardCharsets.US_ASCII);
+	private static final byte [] TS_ID_PREFIX = "#ts_id;".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Response stream.
+	 */
+	private InputStream in = null;
+
+	/**
+	 * Buffer for bytes read from the response stream.
+	 */
+	private byte [] buffer = new byte[BUFFER_SIZE];
+
+	/**
+	 * Position of the next unread byte in the buffer.
+	 */
+	private int bufferPos = 0;
+
+	/**
+	 * Position after the last byte in the buffer.
+	 */
+	private int bufferEnd = 0;
+
+	/**
+	 * Position to continue scanning for a newline, to avoid rescanning bytes after the buffer is filled.
+	 */
+	private int scanPos = 0;
+
+	/**
+	 * Whether the end of the response stream has been reached.
+	 */
+	private boolean eof = false;
+
+	/**
+	 * Position of the first byte of the current line and position after the last byte,
+	 * not including the line ending.
+	 */
+	private int lineStart = 0;
+	private int lineEnd = 0;
+
+	/**
+	 * Number of values that have been read.
+	 */
+	private int valueCount = 0;
+
+	/**
+	 * Whether a warning has been printed for a row with the wrong number of fields.
+	 */
+	private boolean fieldCountWarned = false;
+
+	/**
+	 * Whether next() should stop at the end of a block, set when nextBlock() is called.
+	 */
+	private boolean blockMode = false;
+
+	/**
+	 * KiWIS 'ts_id' for the current block, or null if not in a block.
+	 */
+	private Integer blockTsId = null;
+
+	/**
+	 * KiWIS 'ts_id' for the next block, which was read by next() at the end of the previous block.
+	 */
+	private Integer pendingBlockTsId = null;
+
+	/**
+	 * Number of rows from the most recent "#rows;" line that has not been used to size the columns.
+	 */
+	private int pendingRowCount = 0;
+
+	/**
+	 * Positions of the field delimiters in the line found by nextLine().
+	 */
+	private int pos1 = -1;
+	private int pos2 = -1;
+	private int pos3 = -1;
+
+	/**
+	 * Most recent interpolation type number and enumeration,
+	 * used to avoid looking up the enumeration for each value since the interpolation type rarely changes.
+	 */
+	private int lastInterpolationTypeNum = Integer.MIN_VALUE;
+	private InterpolationType lastInterpolationType = InterpolationType.UNKNOWN;
+
+	/**
+	 * Parser for timestamps, used by readColumns().
+	 */
+	private KiWISTimestampParser timestampParser = new KiWISTimestampParser();
+
+	/**
+	 * Constructor.
+	 * @param in input stream for the response, will be closed when this reader is closed
+	 */
+	public KiWISTimeSeriesValueReader ( InputStream in ) {
+		this.in = in;
+	}
+
+	/**
+	 * Close the reader and response stream.
+	 */
+	@Override
+	public void close () throws IOException {
+		this.in.close();
+	}
+
+	/**
+	 * Read more bytes from the response stream into the buffer.
+	 * Bytes that have already been used are discarded and the buffer is extended if it is full.
+	 * @throws IOException if an error occurs reading the stream
+	 */
+	private void fillBuffer () throws IOException {
+		if ( this.bufferPos > 0 ) {
+			// Move the unused bytes to the start of the buffer.
+			int length = this.bufferEnd - this.bufferPos;
+			System.arraycopy(this.buffer, this.bufferPos, this.buffer, 0, length);
+			this.scanPos -= this.bufferPos;
+			this.bufferEnd = length;
+			this.bufferPos = 0;
+		}
+		if ( this.bufferEnd == this.buffer.length ) {
+			// A line is longer than the buffer.
+			this.buffer = Arrays.copyOf(this.buffer, this.buffer.length*2);
+		}
+		int count = this.in.read(this.buffer, this.bufferEnd, this.buffer.length - this.bufferEnd);
+		if ( count < 0 ) {
+			this.eof = true;
+		}
+		else {
+			this.bufferEnd += count;
+		}
+	}
+
+	/**
+	 * Return the KiWIS 'ts_id' for the current block.
+	 * @return the KiWIS 'ts_id' for the current block, or null if a "#ts_id;" line has not been read
+	 */
+	public Integer getBlockTsId () {
+		return this.blockTsId;
+	}
+
+	/**
+	 * Return the number of values that have been read.
+	 * @return the number of values that have been read
+	 */
+	public int getValueCount () {
+		return this.valueCount;
+	}
+
+	/**
+	 * Determine whether the current line is empty or only contains whitespace.
+	 * @return true if the current line is blank
+	 */
+	private boolean isBlankLine () {
+		for ( int i = this.lineStart; i < this.lineEnd; i++ ) {
+			if ( this.buffer[i] > ' ' ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Read the next time series value.
+	 * Comments, blank lines, and lines with the wrong number of fields are skipped.
+	 * @return the next time series value, or null if no more values are available
+	 * @throws IOException if an error occurs reading the stream
+	 */
+	public TimeSeriesValue next () throws IOException {
+		if ( !nextLine() ) {
+			// No more values.
+			return null;
+		}
+
+		// Create a new value object and transfer the values from the response.
+		TimeSeriesValue timeSeriesValue = new TimeSeriesValue();
+		timeSeriesValue.setTimestamp(toString(this.lineStart, this.pos1));
+		timeSeriesValue.setValue(toString(this.pos1 + 1, this.pos2));
+		timeSeriesValue.setQualityCode(toString(this.pos2 + 1, this.pos3));
+		try {
+			timeSeriesValue.setInterpolationType(parseInt(this.buffer, this.pos3 + 1, this.lineEnd));
+		}
+		catch ( NumberFormatException e ) {
+			// Interpolation type will be set to unknown and will cause an error when time series values are processed.
+		}
+		++this.valueCount;
+		return timeSeriesValue;
+	}
+
+	/**
+	 * Position the reader at the start of the next block of values,
+	 * skipping values that have not been read from the current block.
+	 * After calling this method, next() returns null at the end of the block.
+	 * @return the KiWIS 'ts_id' for the block, or null if no more blocks are available
+	 * @throws IOException if an error occurs reading the stream
+	 */
+	public Integer nextBlock () throws IOException {
+		this.blockMode = true;
+		if ( this.pendingBlockTsId != null ) {
+			// The start of the block was read at the end of the previous block.
+			this.blockTsId = this.pendingBlockTsId;
+			this.pendingBlockTsId = null;
+			return this.blockTsId;
+		}
+		while ( readLine() ) {
+			if ( (this.lineEnd > this.lineStart) && (this.buffer[this.lineStart] == '#') ) {
+				Integer tsId = parseBlockTsId ();
+				if ( tsId != null ) {
+					this.blockTsId = tsId;
+					return tsId;
+				}
+			}
+		}
+		// No more blocks.
+		this.blockTsId = null;
+		return null;
+	}
+
+	/**
+	 * Find the next data line, with the positions of the field delimiters set in pos1, pos2, and pos3.
+	 * Comments, blank lines, and lines with the wrong number of fields are skipped.
+	 * @return true if a data line was found, false if no more values are available
+	 * @throws IOException if an error occurs reading the stream
+	 */
+	private boolean nextLine () throws IOException {
+		String routine = getClass().getSimpleName() + ".nextLine";
+		while ( readLine() ) {
+			if ( this.lineEnd == this.lineStart ) {
+				// Totally empty line.
+				continue;
+			}
+			else if ( this.buffer[this.lineStart] == '#' ) {
+				// Comment, which may indicate the start of a block or the number of rows.
+				Integer tsId = parseBlockTsId ();
+				if ( tsId != null ) {
+					if ( this.blockMode && (this.blockTsId != null) ) {
+						// End of the current block:
+						// - save the 'ts_id' for the next call to nextBlock()
+						this.pendingBlockTsId = tsId;
+						this.blockTsId = null;
+						return false;
+					}
+					this.blockTsId = tsId;
+				}
+				else if ( startsWith(ROWS_PREFIX) ) {
+					try {
+						this.pendingRowCount = parseInt(this.buffer, this.lineStart + ROWS_PREFIX.length, this.lineEnd);
+					}
+					catch ( NumberFormatException e ) {
+						// Only used to size the columns so ignore.
+					}
+				}
+				continue;
+			}
+			else if ( isBlankLine() ) {
+				// Empty after removing whitespace.
+				continue;
+			}
+
+			// Find the semicolons that separate the fields:
+			// - make sure the number of requested fields matches
+			// - see the request URL for fields that should be included
+			this.pos1 = -1;
+			this.pos2 = -1;
+			this.pos3 = -1;
+			int delimCount = 0;
+			for ( int i = this.lineStart; i < this.lineEnd; i++ ) {
+				if ( this.buffer[i] == ';' ) {
+					++delimCount;
+					if ( delimCount == 1 ) {
+						this.pos1 = i;
+					}
+					else if ( delimCount == 2 ) {
+						this.pos2 = i;
+					}
+					else if ( delimCount == 3 ) {
+						this.pos3 = i;
+					}
+					else {
+						break;
+					}
+				}
+			}
+			if ( delimCount != 3 ) {
+				if ( !this.fieldCountWarned ) {
+					// Warn once to help with troubleshooting:
+					// - probably added a field the request but did not change field check above
+					Message.printWarning(3, routine, "  Time series values list has the wrong number of fields.");
+					this.fieldCountWarned = true;
+				}
+				continue;
+			}
+			return true;
+		}
+		// No more values.
+		this.blockTsId = null;
+		return false;
+	}
+
+	/**
+	 * Parse the 'ts_id' from a "#ts_id;" line.
+	 * @return the 'ts_id' or null if the current line does not start a block
+	 */
+	private Integer parseBlockTsId () {
+		if ( startsWith(TS_ID_PREFIX) ) {
+			try {
+				return Integer.valueOf(parseInt(this.buffer, this.lineStart + TS_ID_PREFIX.length, this.lineEnd));
+			}
+			catch ( NumberFormatException e ) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parse a double from ASCII bytes.
+	 * Numbers with up to 15 significant digits and a decimal exponent that is a power of ten
+	 * that can be represented exactly (which includes typical measurement values) are computed
+	 * with one multiplication or division, which gives the correctly rounded result.
+	 * Other numbers are parsed with Double.parseDouble().
+	 * @param b bytes to parse
+	 * @param start position of the first byte
+	 * @param end position after the last byte
+	 * @return the parsed number
+	 * @throws NumberFormatException if the bytes are not a number
+	 */
+	static double parseDouble ( byte [] b, int start, int end ) {
+		// Trim whitespace, consistent with Double.parseDouble().
+		while ( (start < end) && (b[start] <= ' ') ) {
+			++start;
+		}
+		while ( (end > start) && (b[end - 1] <= ' ') ) {
+			--end;
+		}
+		int pos = start;
+		boolean negative = false;
+		if ( (pos < end) && ((b[pos] == '-') || (b[pos] == '+')) ) {
+			negative = (b[pos] == '-');
+			++pos;
+		}
+		long mantissa = 0;
+		int significantDigits = 0;
+		int exponent = 0;
+		boolean haveDigit = false;
+		// Integer part.
+		for ( ; pos < end; pos++ ) {
+			int digit = b[pos] - '0';
+			if ( (digit < 0) || (digit > 9) ) {
+				break;
+			}
+			haveDigit = true;
+			if ( (mantissa != 0) || (digit != 0) ) {
+				if ( ++significantDigits > 15 ) {
+					return parseDoubleString ( b, start, end );
+				}
+			}
+			mantissa = mantissa*10 + digit;
+		}
+		// Fraction part.
+		if ( (pos < end) && (b[pos] == '.') ) {
+			++pos;
+			for ( ; pos < end; pos++ ) {
+				int digit = b[pos] - '0';
+				if ( (digit < 0) || (digit > 9) ) {
+					break;
+				}
+				haveDigit = true;
+				if ( (mantissa != 0) || (digit != 0) ) {
+					if ( ++significantDigits > 15 ) {
+						return parseDoubleString ( b, start, end );
+					}
+				}
+				mantissa = mantissa*10 + digit;
+				--exponent;
+			}
+		}
+		if ( !haveDigit ) {
+			// For example "NaN", or not a number.
+			return parseDoubleString ( b, start, end );
+		}
+		// Exponent.
+		if ( (pos < end) && ((b[pos] == 'e') || (b[pos] == 'E')) ) {
+			++pos;
+			boolean negativeExponent = false;
+			if ( (pos < end) && ((b[pos] == '-') || (b[pos] == '+')) ) {
+				negativeExponent = (b[pos] == '-');
+				++pos;
+			}
+			int exponentDigits = 0;
+			int exponentValue = 0;
+			for ( ; pos < end; pos++ ) {
+				int digit = b[pos] - '0';
+				if ( (digit < 0) || (digit > 9) ) {
+					break;
+				}
+				++exponentDigits;
+				if ( exponentValue < 10000 ) {
+					exponentValue = exponentValue*10 + digit;
+				}
+			}
+			if ( exponentDigits == 0 ) {
+				return parseDoubleString ( b, start, end );
+			}
+			exponent += negativeExponent ? -exponentValue : exponentValue;
+		}
+		if ( pos != end ) {
+			// Unexpected characters.
+			return parseDoubleString ( b, start, end );
+		}
+		double value = (double)mantissa;
+		if ( (mantissa != 0) && (exponent != 0) ) {
+			if ( (exponent < -22) || (exponent > 22) ) {
+				return parseDoubleString ( b, start, end );
+			}
+			value = (exponent < 0) ? value/POW10[-exponent] : value*POW10[exponent];
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parse a double from ASCII bytes using Double.parseDouble(), for numbers that are not handled by parseDouble().
+	 * @param b bytes to parse
+	 * @param start position of the first byte
+	 * @param end position after the last byte
+	 * @return the parsed number
+	 * @throws NumberFormatException if the bytes are not a number
+	 */
+	private static double parseDoubleString ( byte [] b, int start, int end ) {
+		return Double.parseDouble(new String(b, start, end - start, StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Parse an integer from ASCII bytes, ignoring surrounding whitespace.
+	 * @param b bytes to parse
+	 * @param start position of the first byte
+	 * @param end position after the last byte
+	 * @return the parsed integer
+	 * @throws NumberFormatException if the bytes are not an integer
+	 */
+	static int parseInt ( byte [] b, int start, int end ) {
+		while ( (start < end) && (b[start] <= ' ') ) {
+			++start;
+		}
+		while ( (end > start) && (b[end - 1] <= ' ') ) {
+			--end;
+		}
+		int pos = start;
+		boolean negative = false;
+		if ( (pos < end) && ((b[pos] == '-') || (b[pos] == '+')) ) {
+			negative = (b[pos] == '-');
+			++pos;
+		}
+		if ( pos == end ) {
+			throw new NumberFormatException("Not an integer: \"" + new String(b, start, end - start, StandardCharsets.US_ASCII) + "\"");
+		}
+		long value = 0;
+		for ( ; pos < end; pos++ ) {
+			int digit = b[pos] - '0';
+			if ( (digit < 0) || (digit > 9) ) {
+				throw new NumberFormatException("Not an integer: \"" + new String(b, start, end - start, StandardCharsets.US_ASCII) + "\"");
+			}
+			value = value*10 + digit;
+			if ( value > ((long)Integer.MAX_VALUE + 1) ) {
+				throw new NumberFormatException("Integer is too large: \"" + new String(b, start, end - start, StandardCharsets.US_ASCII) + "\"");
+			}
+		}
+		if ( negative ) {
+			value = -value;
+		}
+		if ( value > Integer.MAX_VALUE ) {
+			throw new NumberFormatException("Integer is too large: \"" + new String(b, start, end - start, StandardCharsets.US_ASCII) + "\"");
+		}
+		return (int)value;
+	}
+
+	/**
+	 * Read the values into columns, until the end of the current block (if nextBlock() was called) or the end of the stream.
+	 * Values that cannot be parsed are skipped and counted in the columns.
+	 * Values that are empty (missing) are skipped.
+	 * If the response includes a "#rows;" line, the columns are sized for the number of rows before values are added.
+	 * @param columns the columns to add values to, which are not cleared before adding values
+	 * @return the number of data lines that were read, including values that were skipped
+	 * @throws IOException if an error occurs reading the stream
+	 */
+	public int readColumns ( KiWISTimeSeriesValueColumns columns ) throws IOException {
+		String routine = getClass().getSimpleName() + ".readColumns";
+		KiWISParseEvent event = new KiWISParseEvent();
+		event.begin();
+		// The 'ts_id' for the event is saved when the block header is read because it is reset at the end of the block:
+		// - in block mode, nextBlock() has read the header
+		// - otherwise, the header is read by nextLine()
+		Integer eventTsId = this.blockTsId;
+		int count = 0;
+		byte [] b;
+		while ( nextLine() ) {
+			++this.valueCount;
+			++count;
+			if ( eventTsId == null ) {
+				eventTsId = this.blockTsId;
+			}
+			if ( this.pendingRowCount > 0 ) {
+				// Size the columns for the rows in the block.
+				columns.ensureCapacity(columns.size() + this.pendingRowCount);
+				this.pendingRowCount = 0;
+			}
+			// The buffer may be reallocated when a line is read so get the current buffer.
+			b = this.buffer;
+			// Parse the timestamp.
+			if ( !this.timestampParser.parse(b, this.lineStart, this.pos1) ) {
+				Message.printWarning(3, routine, "  Error parsing date/time: " + toString(this.lineStart, this.pos1));
+				columns.incrementBadDateTimeCount();
+				continue;
+			}
+			// Parse the value.
+			if ( this.pos2 == (this.pos1 + 1) ) {
+				// Empty (missing) value.
+				continue;
+			}
+			double value;
+			int qualityCode = KiWISTimeSeriesValueColumns.NO_QUALITY_CODE;
+			try {
+				value = parseDouble(b, this.pos1 + 1, this.pos2);
+				if ( this.pos3 > (this.pos2 + 1) ) {
+					qualityCode = parseInt(b, this.pos2 + 1, this.pos3);
+				}
+			}
+			catch ( NumberFormatException e ) {
+				Message.printWarning(3, routine, "  Error parsing " + toString(this.lineStart, this.pos1) + " data value and quality code: "
+					+ toString(this.pos1 + 1, this.pos3));
+				columns.incrementBadValueCount();
+				continue;
+			}
+			// Parse the interpolation type.
+			InterpolationType interpolationType = InterpolationType.UNKNOWN;
+			try {
+				int interpolationTypeNum = parseInt(b, this.pos3 + 1, this.lineEnd);
+				if ( interpolationTypeNum != this.lastInterpolationTypeNum ) {
+					this.lastInterpolationTypeNum = interpolationTypeNum;
+					this.lastInterpolationType = InterpolationType.valueOf(interpolationTypeNum);
+				}
+				interpolationType = this.lastInterpolationType;
+			}
+			catch ( NumberFormatException e ) {
+				// Handle as unknown below.
+			}
+			if ( interpolationType == InterpolationType.UNKNOWN ) {
+				Message.printWarning(3, routine, "  Unknown interpolation type " + toString(this.pos3 + 1, this.lineEnd).trim()
+					+ " at " + toString(this.lineStart, this.pos1) + " - skipping value." );
+				columns.incrementBadInterpolationTypeCount();
+				continue;
+			}
+			columns.add ( this.timestampParser.getTime(), this.timestampParser.getUtcOffset(), value, qualityCode, interpolationType );
+		}
+		if ( event.shouldCommit() ) {
+			event.format = "csv";
+			event.source = (eventTsId == null) ? "" : ("ts_id=" + eventTsId);
+			event.rows = count;
+			event.commit();
+		}
+		return count;
+	}
+
+	/**
+	 * Read the next line into the buffer, setting lineStart and lineEnd.
+	 * The line ending ("\n" or "\r\n") is not included in the line.
+	 * @return true if a line was read, false if the end of the stream was reached
+	 * @throws IOException if an error occurs reading the stream
+	 */
+	private boolean readLine () throws IOException {
+		while ( true ) {
+			byte [] b = this.buffer;
+			for ( int i = this.scanPos; i < this.bufferEnd; i++ ) {
+				if ( b[i] == '\n' ) {
+					setLine ( this.bufferPos, i );
+					this.bufferPos = i + 1;
+					this.scanPos = this.bufferPos;
+					return true;
+				}
+			}
+			this.scanPos = this.bufferEnd;
+			if ( this.eof ) {
+				if ( this.bufferPos < this.bufferEnd ) {
+					// Last line does not end with a newline.
+					setLine ( this.bufferPos, this.bufferEnd );
+					this.bufferPos = this.bufferEnd;
+					return true;
+				}
+				return false;
+			}
+			fillBuffer();
+		}
+	}
+
+	/**
+	 * Set the current line positions, removing a trailing carriage return.
+	 * @param start position of the first byte of the line
+	 * @param end position after the last byte of the line
+	 */
+	private void setLine ( int start, int end ) {
+		if ( (end > start) && (this.buffer[end - 1] == '\r') ) {
+			--end;
+		}
+		this.lineStart = start;
+		this.lineEnd = end;
+	}
+
+	/**
+	 * Determine whether the current line starts with a prefix.
+	 * @param prefix the prefix to check
+	 * @return true if the current line starts with the prefix
+	 */
+	private boolean startsWith ( byte [] prefix ) {
+		if ( (this.lineEnd - this.lineStart) < prefix.length ) {
+			return false;
+		}
+		for ( int i = 0; i < prefix.length; i++ ) {
+			if ( this.buffer[this.lineStart + i] != prefix[i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Create a string from bytes in the buffer.
+	 * @param start position of the first byte
+	 * @param end position after the last byte
+	 * @return the string
+	 */
+	private String toString ( int start, int end ) {
+		return new String(this.buffer, start, end - start, StandardCharsets.UTF_8);
+	}
+}
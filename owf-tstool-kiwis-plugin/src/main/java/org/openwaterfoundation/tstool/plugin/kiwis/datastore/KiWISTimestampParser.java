@@ -0,0 +1,336 @@
+// KiWISTimestampParser - parse KiWIS ISO-8601 timestamps without creating objects
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.nio.charset.StandardCharsets;
+
+import RTi.Util.Time.DateTime;
+
+/**
+ * Parse KiWIS ISO-8601 timestamps, which have a fixed layout, for example:
+ * <pre>
+ * 2022-12-30T18:00:00.000-07:00
+ * </pre>
+ * The fields are parsed as numbers directly from the response bytes, without regular expressions or substrings,
+ * and the result is milliseconds since 1970-01-01T00:00:00Z and the UTC offset in seconds.
+ * The fraction of a second is optional and the UTC offset can be "Z", "+HH:MM", "+HHMM", or omitted (UTC).
+ * The most recent UTC offset is saved so that it does not need to be parsed for each value,
+ * since all timestamps in a response typically use the same offset.
+ * A parser should only be used by one thread.
+ */
+public class KiWISTimestampParser {
+
+	/**
+	 * Maximum length of a UTC offset (e.g., "+07:00").
+	 */
+	private static final int MAX_OFFSET_LENGTH = 6;
+
+	/**
+	 * Number of days in each month for a non-leap year.
+	 */
+	private static final int [] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+	/**
+	 * Timestamp from the most recent parse, milliseconds since 1970-01-01T00:00:00Z.
+	 */
+	private long time = 0;
+
+	/**
+	 * UTC offset from the most recent parse, seconds.
+	 */
+	private int utcOffset = 0;
+
+	/**
+	 * Text for the most recent UTC offset (e.g., "-07:00") and the offset in seconds.
+	 */
+	private final byte [] lastOffsetText = new byte[MAX_OFFSET_LENGTH];
+	private int lastOffsetLength = 0;
+	private int lastOffset = 0;
+
+	/**
+	 * Constructor.
+	 */
+	public KiWISTimestampParser () {
+	}
+
+	/**
+	 * Convert a number of days since 1970-01-01 to year, month, and day.
+	 * This uses the proleptic Gregorian calendar algorithm by Howard Hinnant.
+	 * @param days number of days since 1970-01-01
+	 * @param ymd array to receive the year, month (1-12), and day (1-31)
+	 */
+	static void civilFromDays ( long days, int [] ymd ) {
+		long z = days + 719468;
+		long era = (z >= 0 ? z : z - 146096) / 146097;
+		long doe = z - era*146097;
+		long yoe = (doe - doe/1460 + doe/36524 - doe/146096) / 365;
+		long doy = doe - (365*yoe + yoe/4 - yoe/100);
+		long mp = (5*doy + 2)/153;
+		int day = (int)(doy - (153*mp + 2)/5 + 1);
+		int month = (int)(mp < 10 ? mp + 3 : mp - 9);
+		int year = (int)(yoe + era*400 + (month <= 2 ? 1 : 0));
+		ymd[0] = year;
+		ymd[1] = month;
+		ymd[2] = day;
+	}
+
+	/**
+	 * Convert a year, month, and day to the number of days since 1970-01-01.
+	 * This uses the proleptic Gregorian calendar algorithm by Howard Hinnant.
+	 * @param year year
+	 * @param month month (1-12)
+	 * @param day day (1-31)
+	 * @return the number of days since 1970-01-01
+	 */
+	static long daysFromCivil ( int year, int month, int day ) {
+		year -= (month <= 2) ? 1 : 0;
+		long era = (year >= 0 ? year : year - 399) / 400;
+		long yoe = year - era*400;
+		long doy = (153*(month + (month > 2 ? -3 : 9)) + 2)/5 + day - 1;
+		long doe = yoe*365 + yoe/4 - yoe/100 + doy;
+		return era*146097 + doe - 719468;
+	}
+
+	/**
+	 * Parse a fixed number of digits.
+	 * @param b bytes to parse
+	 * @param pos position of the first digit
+	 * @param count number of digits
+	 * @return the parsed number, or -1 if a character is not a digit
+	 */
+	private static int digits ( byte [] b, int pos, int count ) {
+		int value = 0;
+		for ( int i = pos; i < (pos + count); i++ ) {
+			int digit = b[i] - '0';
+			if ( (digit < 0) || (digit > 9) ) {
+				return -1;
+			}
+			value = value*10 + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Return the timestamp from the most recent successful parse.
+	 * @return the timestamp, milliseconds since 1970-01-01T00:00:00Z
+	 */
+	public long getTime () {
+		return this.time;
+	}
+
+	/**
+	 * Return the UTC offset from the most recent successful parse.
+	 * @return the UTC offset, seconds
+	 */
+	public int getUtcOffset () {
+		return this.utcOffset;
+	}
+
+	/**
+	 * Determine whether the UTC offset text is the same as the previous offset.
+	 * @param b bytes containing the offset
+	 * @param pos position of the offset sign
+	 * @param length length of the offset text
+	 * @return true if the offset matches the previous offset
+	 */
+	private boolean isLastOffset ( byte [] b, int pos, int length ) {
+		if ( length != this.lastOffsetLength ) {
+			return false;
+		}
+		for ( int i = 0; i < length; i++ ) {
+			if ( b[pos + i] != this.lastOffsetText[i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parse a timestamp from ASCII bytes, for example from a response buffer.
+	 * If successful, the result is available from getTime() and getUtcOffset().
+	 * @param b bytes containing the timestamp
+	 * @param start position of the first character of the timestamp
+	 * @param end position after the last character of the timestamp
+	 * @return true if the timestamp was parsed, false if the timestamp is not valid
+	 */
+	public boolean parse ( byte [] b, int start, int end ) {
+		// Date and time:  yyyy-MM-ddTHH:mm:ss
+		if ( (end - start) < 19 ) {
+			return false;
+		}
+		if ( (b[start + 4] != '-') || (b[start + 7] != '-')
+			|| ((b[start + 10] != 'T') && (b[start + 10] != ' '))
+			|| (b[start + 13] != ':') || (b[start + 16] != ':') ) {
+			return false;
+		}
+		int year = digits(b, start, 4);
+		int month = digits(b, start + 5, 2);
+		int day = digits(b, start + 8, 2);
+		int hour = digits(b, start + 11, 2);
+		int minute = digits(b, start + 14, 2);
+		int second = digits(b, start + 17, 2);
+		if ( (year < 0) || (month < 1) || (month > 12) || (day < 1) || (hour < 0) || (hour > 23)
+			|| (minute < 0) || (minute > 59) || (second < 0) || (second > 59) ) {
+			return false;
+		}
+		int daysInMonth = DAYS_IN_MONTH[month - 1];
+		if ( (month == 2) && ((year % 4) == 0) && (((year % 100) != 0) || ((year % 400) == 0)) ) {
+			daysInMonth = 29;
+		}
+		if ( day > daysInMonth ) {
+			return false;
+		}
+		int pos = start + 19;
+
+		// Optional fraction of a second, only milliseconds are retained.
+		int millis = 0;
+		if ( (pos < end) && (b[pos] == '.') ) {
+			++pos;
+			int scale = 100;
+			int digitCount = 0;
+			while ( pos < end ) {
+				int digit = b[pos] - '0';
+				if ( (digit < 0) || (digit > 9) ) {
+					break;
+				}
+				millis += digit*scale;
+				scale /= 10;
+				++digitCount;
+				++pos;
+			}
+			if ( digitCount == 0 ) {
+				return false;
+			}
+		}
+
+		// Optional UTC offset.
+		int offset = 0;
+		if ( pos == end ) {
+			// No offset so UTC.
+		}
+		else if ( (b[pos] == 'Z') && (pos + 1 == end) ) {
+			// UTC.
+		}
+		else if ( (b[pos] == '+') || (b[pos] == '-') ) {
+			int length = end - pos;
+			if ( isLastOffset(b, pos, length) ) {
+				// Same offset as the previous timestamp.
+				offset = this.lastOffset;
+			}
+			else {
+				int offsetHour;
+				int offsetMinute;
+				if ( (length == 6) && (b[pos + 3] == ':') ) {
+					offsetHour = digits(b, pos + 1, 2);
+					offsetMinute = digits(b, pos + 4, 2);
+				}
+				else if ( length == 5 ) {
+					offsetHour = digits(b, pos + 1, 2);
+					offsetMinute = digits(b, pos + 3, 2);
+				}
+				else if ( length == 3 ) {
+					offsetHour = digits(b, pos + 1, 2);
+					offsetMinute = 0;
+				}
+				else {
+					return false;
+				}
+				if ( (offsetHour < 0) || (offsetHour > 18) || (offsetMinute < 0) || (offsetMinute > 59) ) {
+					return false;
+				}
+				offset = offsetHour*3600 + offsetMinute*60;
+				if ( b[pos] == '-' ) {
+					offset = -offset;
+				}
+				// Save the offset for the next timestamp.
+				System.arraycopy(b, pos, this.lastOffsetText, 0, length);
+				this.lastOffsetLength = length;
+				this.lastOffset = offset;
+			}
+		}
+		else {
+			return false;
+		}
+
+		long localSeconds = daysFromCivil(year, month, day)*86400L + hour*3600 + minute*60 + second;
+		this.time = (localSeconds - offset)*1000L + millis;
+		this.utcOffset = offset;
+		return true;
+	}
+
+	/**
+	 * Set the fields of a date/time to the local time for a timestamp and UTC offset.
+	 * The time zone is not set.
+	 * The precision and fractional seconds are the same as DateTime.parse() for a KiWIS timestamp,
+	 * which includes milliseconds (e.g., "2022-05-13T00:01:00.000-07:00").
+	 * @param dateTime the date/time to set, which is reset to millisecond precision
+	 * @param time timestamp as milliseconds since 1970-01-01T00:00:00Z
+	 * @param utcOffset UTC offset, seconds
+	 * @param ymd array of length 3 used to compute the year, month, and day, passed in to avoid creating an array
+	 */
+	static void setDateTimeFields ( DateTime dateTime, long time, int utcOffset, int [] ymd ) {
+		long utcSeconds = Math.floorDiv(time, 1000L);
+		int millis = (int)(time - utcSeconds*1000L);
+		long localSeconds = utcSeconds + utcOffset;
+		long days = Math.floorDiv(localSeconds, 86400L);
+		int secondOfDay = (int)(localSeconds - days*86400L);
+		civilFromDays(days, ymd);
+		dateTime.setPrecision(DateTime.PRECISION_MILLISECOND);
+		// Set the day first so that the previous day is not checked against the new month.
+		dateTime.setDay(1);
+		dateTime.setYear(ymd[0]);
+		dateTime.setMonth(ymd[1]);
+		dateTime.setDay(ymd[2]);
+		dateTime.setHour(secondOfDay/3600);
+		dateTime.setMinute((secondOfDay%3600)/60);
+		dateTime.setSecond(secondOfDay%60);
+		dateTime.setNanoSecond(millis*1000000);
+	}
+
+	/**
+	 * Parse a timestamp from a string.
+	 * If successful, the result is available from getTime() and getUtcOffset().
+	 * @param s string containing the timestamp
+	 * @return true if the timestamp was parsed, false if the timestamp is not valid
+	 */
+	public boolean parse ( String s ) {
+		if ( s == null ) {
+			return false;
+		}
+		// Timestamps are ASCII so non-ASCII characters will be replaced and cause the parse to fail.
+		byte [] b = s.getBytes(StandardCharsets.US_ASCII);
+		return parse ( b, 0, b.length );
+	}
+
+	/**
+	 * Convert a date/time to milliseconds for the local time, ignoring the time zone.
+	 * @param dateTime date/time to convert
+	 * @return local time in milliseconds since 1970-01-01T00:00:00
+	 */
+	static long toLocalMillis ( DateTime dateTime ) {
+		long days = daysFromCivil(dateTime.getYear(), dateTime.getMonth(), dateTime.getDay());
+		return (days*86400L + dateTime.getHour()*3600L + dateTime.getMinute()*60L + dateTime.getSecond())*1000L;
+	}
+
+}
@@ -0,0 +1,277 @@
+// KiWISValueBlockCodec - compress blocks of time series values for the local value store
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.util.Arrays;
+
+import org.openwaterfoundation.tstool.plugin.kiwis.dao.InterpolationType;
+
+/**
+ * Encode and decode a block of time series values as a compact bit stream, used by the local value store.
+ * The encoding is similar to that used by time series databases:
+ * <ul>
+ * <li> The first value is written in full.</li>
+ * <li> Timestamps are written as the difference between consecutive time steps (delta-of-delta),
+ *      which is a single bit for regular interval data.</li>
+ * <li> The UTC offset, quality code, and interpolation type are written as a single bit if the same as the previous value,
+ *      and in full otherwise.</li>
+ * <li> Values are written as the XOR of the bits with the previous value, using the leading and trailing zero bits
+ *      to write only the bits that changed, which is a single bit if the value does not change.</li>
+ * </ul>
+ * The number of values is not included in the encoded bytes and must be saved by the calling code.
+ */
+public class KiWISValueBlockCodec {
+
+	/**
+	 * Interpolation type enumeration values, indexed by the interpolation type code.
+	 */
+	private static final InterpolationType [] INTERPOLATION_TYPES = InterpolationType.values();
+
+	/**
+	 * Write bits to a growing byte array.
+	 */
+	private static class BitWriter {
+		private byte [] bytes;
+		private int bitPos = 0;
+
+		private BitWriter ( int capacity ) {
+			this.bytes = new byte[Math.max(16, capacity)];
+		}
+
+		private void writeBit ( boolean bit ) {
+			writeBits ( bit ? 1 : 0, 1 );
+		}
+
+		/**
+		 * Write the lowest bits of a value, most significant bit first.
+		 */
+		private void writeBits ( long value, int count ) {
+			if ( ((this.bitPos + count + 7) >>> 3) > this.bytes.length ) {
+				this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length*2, ((this.bitPos + count + 7) >>> 3)));
+			}
+			while ( count > 0 ) {
+				int free = 8 - (this.bitPos & 7);
+				int n = Math.min(free, count);
+				int bits = (int)((value >>> (count - n)) & ((1 << n) - 1));
+				this.bytes[this.bitPos >>> 3] |= (byte)(bits << (free - n));
+				this.bitPos += n;
+				count -= n;
+			}
+		}
+
+		private byte [] toByteArray () {
+			return Arrays.copyOf(this.bytes, (this.bitPos + 7) >>> 3);
+		}
+	}
+
+	/**
+	 * Read bits from a byte array.
+	 */
+	private static class BitReader {
+		private final byte [] bytes;
+		private int bitPos = 0;
+
+		private BitReader ( byte [] bytes ) {
+			this.bytes = bytes;
+		}
+
+		private boolean readBit () {
+			return readBits(1) != 0;
+		}
+
+		/**
+		 * Read bits, most significant bit first.
+		 */
+		private long readBits ( int count ) {
+			long value = 0;
+			while ( count > 0 ) {
+				int free = 8 - (this.bitPos & 7);
+				int n = Math.min(free, count);
+				int bits = ((this.bytes[this.bitPos >>> 3] & 0xff) >>> (free - n)) & ((1 << n) - 1);
+				value = (value << n) | bits;
+				this.bitPos += n;
+				count -= n;
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * Constructor is private because the class only has static methods.
+	 */
+	private KiWISValueBlockCodec () {
+	}
+
+	/**
+	 * Decode a block of values and add to columns.
+	 * @param bytes encoded bytes from encode()
+	 * @param count number of values in the block
+	 * @param columns columns to add the values to
+	 */
+	public static void decode ( byte [] bytes, int count, KiWISTimeSeriesValueColumns columns ) {
+		if ( count <= 0 ) {
+			return;
+		}
+		columns.ensureCapacity(columns.size() + count);
+		BitReader in = new BitReader(bytes);
+		long time = in.readBits(64);
+		int utcOffset = (int)in.readBits(32);
+		int qualityCode = (int)in.readBits(32);
+		int interpolationType = (int)in.readBits(8);
+		long valueBits = in.readBits(64);
+		columns.add(time, utcOffset, Double.longBitsToDouble(valueBits), qualityCode, INTERPOLATION_TYPES[interpolationType]);
+		long delta = 0;
+		int leading = -1;
+		int trailing = 0;
+		for ( int i = 1; i < count; i++ ) {
+			// Timestamp.
+			long deltaOfDelta;
+			if ( !in.readBit() ) {
+				deltaOfDelta = 0;
+			}
+			else if ( !in.readBit() ) {
+				deltaOfDelta = (short)in.readBits(16);
+			}
+			else if ( !in.readBit() ) {
+				deltaOfDelta = (int)in.readBits(32);
+			}
+			else {
+				deltaOfDelta = in.readBits(64);
+			}
+			delta += deltaOfDelta;
+			time += delta;
+			// Attributes.
+			if ( in.readBit() ) {
+				utcOffset = (int)in.readBits(32);
+				qualityCode = (int)in.readBits(32);
+				interpolationType = (int)in.readBits(8);
+			}
+			// Value.
+			if ( in.readBit() ) {
+				if ( in.readBit() ) {
+					leading = (int)in.readBits(5);
+					int length = (int)in.readBits(6) + 1;
+					trailing = 64 - leading - length;
+				}
+				int length = 64 - leading - trailing;
+				valueBits ^= (in.readBits(length) << trailing);
+			}
+			columns.add(time, utcOffset, Double.longBitsToDouble(valueBits), qualityCode, INTERPOLATION_TYPES[interpolationType]);
+		}
+	}
+
+	/**
+	 * Encode a block of values.
+	 * @param columns columns containing the values
+	 * @param start index of the first value to encode
+	 * @param end index after the last value to encode
+	 * @return the encoded bytes
+	 */
+	public static byte [] encode ( KiWISTimeSeriesValueColumns columns, int start, int end ) {
+		long [] times = columns.getTimes();
+		int [] utcOffsets = columns.getUtcOffsets();
+		double [] values = columns.getValues();
+		int [] qualityCodes = columns.getQualityCodes();
+		byte [] interpolationTypes = columns.getInterpolationTypes();
+		BitWriter out = new BitWriter((end - start)*2 + 32);
+		if ( end <= start ) {
+			return out.toByteArray();
+		}
+		out.writeBits(times[start], 64);
+		out.writeBits(utcOffsets[start], 32);
+		out.writeBits(qualityCodes[start], 32);
+		out.writeBits(interpolationTypes[start], 8);
+		long prevValueBits = Double.doubleToRawLongBits(values[start]);
+		out.writeBits(prevValueBits, 64);
+		long prevTime = times[start];
+		long prevDelta = 0;
+		int prevLeading = -1;
+		int prevTrailing = 0;
+		for ( int i = start + 1; i < end; i++ ) {
+			// Timestamp as delta-of-delta:
+			// - 0 for no change, 10 + 16 bits, 110 + 32 bits, 111 + 64 bits
+			long delta = times[i] - prevTime;
+			long deltaOfDelta = delta - prevDelta;
+			if ( deltaOfDelta == 0 ) {
+				out.writeBit(false);
+			}
+			else if ( (deltaOfDelta >= Short.MIN_VALUE) && (deltaOfDelta <= Short.MAX_VALUE) ) {
+				out.writeBits(0b10, 2);
+				out.writeBits(deltaOfDelta, 16);
+			}
+			else if ( (deltaOfDelta >= Integer.MIN_VALUE) && (deltaOfDelta <= Integer.MAX_VALUE) ) {
+				out.writeBits(0b110, 3);
+				out.writeBits(deltaOfDelta, 32);
+			}
+			else {
+				out.writeBits(0b111, 3);
+				out.writeBits(deltaOfDelta, 64);
+			}
+			prevTime = times[i];
+			prevDelta = delta;
+			// Attributes:
+			// - 0 if the same as the previous value, 1 + full attributes otherwise
+			if ( (utcOffsets[i] == utcOffsets[i - 1]) && (qualityCodes[i] == qualityCodes[i - 1])
+				&& (interpolationTypes[i] == interpolationTypes[i - 1]) ) {
+				out.writeBit(false);
+			}
+			else {
+				out.writeBit(true);
+				out.writeBits(utcOffsets[i], 32);
+				out.writeBits(qualityCodes[i], 32);
+				out.writeBits(interpolationTypes[i], 8);
+			}
+			// Value as XOR with the previous value:
+			// - 0 for no change
+			// - 10 + changed bits if within the previous leading and trailing zeros
+			// - 11 + 5 bits leading zeros + 6 bits length - 1 + changed bits
+			long valueBits = Double.doubleToRawLongBits(values[i]);
+			long xor = valueBits ^ prevValueBits;
+			if ( xor == 0 ) {
+				out.writeBit(false);
+			}
+			else {
+				out.writeBit(true);
+				int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+				int trailing = Long.numberOfTrailingZeros(xor);
+				if ( (prevLeading >= 0) && (leading >= prevLeading) && (trailing >= prevTrailing) ) {
+					out.writeBit(false);
+					out.writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+				}
+				else {
+					out.writeBit(true);
+					int length = 64 - leading - trailing;
+					out.writeBits(leading, 5);
+					out.writeBits(length - 1, 6);
+					out.writeBits(xor >>> trailing, length);
+					prevLeading = leading;
+					prevTrailing = trailing;
+				}
+			}
+			prevValueBits = valueBits;
+		}
+		return out.toByteArray();
+	}
+
+}
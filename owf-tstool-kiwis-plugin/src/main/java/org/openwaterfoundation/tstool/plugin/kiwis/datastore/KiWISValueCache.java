@@ -0,0 +1,223 @@
+// KiWISValueCache - bounded in-memory cache of compressed time series values
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded in-memory cache of time series values read with getTimeseriesValues,
+ * used so that reading the same time series and period more than once in a TSTool session
+ * (e.g., for a graph and then a check) does not request the values again.
+ * The values are saved compressed with KiWISValueBlockCodec, which typically uses much less memory than the columns.
+ * The cache is limited to a number of bytes and the least recently used values are removed when the limit is exceeded.
+ * Counts of values that could not be parsed are not retained because they were logged when the values were read.
+ * The cache is thread-safe.
+ */
+public class KiWISValueCache {
+
+	/**
+	 * Estimated bytes used for an entry in addition to the compressed values, for the key, entry, and map.
+	 */
+	private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+	/**
+	 * Compressed values for a time series and period.
+	 */
+	private static class Entry {
+		private final int count;
+		private final byte [] bytes;
+
+		private Entry ( int count, byte [] bytes ) {
+			this.count = count;
+			this.bytes = bytes;
+		}
+
+		/**
+		 * Return the estimated bytes used by the entry.
+		 */
+		private long getSize ( String key ) {
+			return this.bytes.length + 2L*key.length() + ENTRY_OVERHEAD_BYTES;
+		}
+	}
+
+	/**
+	 * Maximum bytes for all entries.
+	 */
+	private final long maxBytes;
+
+	/**
+	 * Entries in least recently used order (access order).
+	 */
+	private final LinkedHashMap<String,Entry> entryMap = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Estimated bytes used by all entries.
+	 */
+	private long bytes = 0;
+
+	/**
+	 * Number of reads that found values in the cache.
+	 */
+	private long hitCount = 0;
+
+	/**
+	 * Number of reads that did not find values in the cache.
+	 */
+	private long missCount = 0;
+
+	/**
+	 * Number of entries that were removed to stay within the maximum bytes.
+	 */
+	private long evictionCount = 0;
+
+	/**
+	 * Constructor.
+	 * @param maxBytes maximum bytes for all entries
+	 */
+	public KiWISValueCache ( long maxBytes ) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Remove all entries.  The counts are not reset.
+	 */
+	public synchronized void clear () {
+		this.entryMap.clear();
+		this.bytes = 0;
+	}
+
+	/**
+	 * Determine whether values are in the cache for a key, without changing the counts or the least recently used order.
+	 * @param key the key, from getKey()
+	 * @return true if values are in the cache for the key
+	 */
+	public synchronized boolean contains ( String key ) {
+		return this.entryMap.containsKey(key);
+	}
+
+	/**
+	 * Return the values for a key, as new columns.
+	 * @param key the key, from getKey()
+	 * @return new columns containing the values, or null if the values are not in the cache
+	 */
+	public KiWISTimeSeriesValueColumns get ( String key ) {
+		Entry entry;
+		synchronized ( this ) {
+			entry = this.entryMap.get(key);
+			if ( entry == null ) {
+				++this.missCount;
+				return null;
+			}
+			++this.hitCount;
+		}
+		// Decode outside of the lock, which is OK because the entry is not modified.
+		KiWISTimeSeriesValueColumns columns = new KiWISTimeSeriesValueColumns(entry.count);
+		KiWISValueBlockCodec.decode(entry.bytes, entry.count, columns);
+		return columns;
+	}
+
+	/**
+	 * Return the estimated bytes used by all entries.
+	 * @return the estimated bytes used by all entries
+	 */
+	public synchronized long getBytes () {
+		return this.bytes;
+	}
+
+	/**
+	 * Return the number of entries that were removed to stay within the maximum bytes.
+	 * @return the number of evictions
+	 */
+	public synchronized long getEvictionCount () {
+		return this.evictionCount;
+	}
+
+	/**
+	 * Return the number of reads that found values in the cache.
+	 * @return the number of cache hits
+	 */
+	public synchronized long getHitCount () {
+		return this.hitCount;
+	}
+
+	/**
+	 * Return the key for a time series and period.
+	 * @param kiwisTsid the KiWIS 'ts_id'
+	 * @param from the 'from' request parameter, or null if not specified
+	 * @param to the 'to' request parameter, or null if not specified
+	 * @return the key
+	 */
+	public static String getKey ( Integer kiwisTsid, String from, String to ) {
+		return kiwisTsid + "|" + ((from == null) ? "" : from) + "|" + ((to == null) ? "" : to);
+	}
+
+	/**
+	 * Return the number of reads that did not find values in the cache.
+	 * @return the number of cache misses
+	 */
+	public synchronized long getMissCount () {
+		return this.missCount;
+	}
+
+	/**
+	 * Add values to the cache, replacing values for the same key,
+	 * and remove the least recently used values if the maximum bytes is exceeded.
+	 * Values that are larger than the maximum bytes are not added.
+	 * @param key the key, from getKey()
+	 * @param columns the values to add, which are compressed so the columns can be modified after the call
+	 */
+	public void put ( String key, KiWISTimeSeriesValueColumns columns ) {
+		// Encode outside of the lock.
+		Entry entry = new Entry(columns.size(), KiWISValueBlockCodec.encode(columns, 0, columns.size()));
+		long entrySize = entry.getSize(key);
+		if ( entrySize > this.maxBytes ) {
+			return;
+		}
+		synchronized ( this ) {
+			Entry previous = this.entryMap.put(key, entry);
+			if ( previous != null ) {
+				this.bytes -= previous.getSize(key);
+			}
+			this.bytes += entrySize;
+			Iterator<Map.Entry<String,Entry>> it = this.entryMap.entrySet().iterator();
+			while ( (this.bytes > this.maxBytes) && it.hasNext() ) {
+				Map.Entry<String,Entry> eldest = it.next();
+				this.bytes -= eldest.getValue().getSize(eldest.getKey());
+				it.remove();
+				++this.evictionCount;
+			}
+		}
+	}
+
+	/**
+	 * Return the number of entries.
+	 * @return the number of entries
+	 */
+	public synchronized int size () {
+		return this.entryMap.size();
+	}
+
+}
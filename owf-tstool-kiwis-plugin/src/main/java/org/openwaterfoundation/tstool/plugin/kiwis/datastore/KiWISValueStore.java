@@ -0,0 +1,579 @@
+// KiWISValueStore - local persistent store of time series values
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.datastore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local persistent store of time series values, used to avoid reading values from web services
+ * that have previously been read (ValueStore configuration property), and to read values when the web service
+ * is not available (Offline configuration property).
+ * Each time series is saved in a separate file named using the KiWIS 'ts_id'.
+ * The values are saved in blocks for fixed time partitions, which are compressed with KiWISValueBlockCodec,
+ * so that only the blocks for a requested period are decoded and only the blocks for new values are rewritten.
+ * The periods that have been read from the web service (coverage) are also saved,
+ * so that only periods that have not been read need to be requested.
+ * Periods are specified using milliseconds for the local time of the web service response,
+ * consistent with how the 'from' and 'to' service parameters are specified,
+ * with Long.MIN_VALUE and Long.MAX_VALUE indicating an open start and end.
+ * The file layout is:
+ * <pre>
+ * int magic, int format version, int byte count and UTF-8 bytes for the service root URI, int ts_id
+ * int coverage count, then for each period:  long start, long end
+ * int block count, then for each block:  long partition, int value count, int byte count, bytes
+ * </pre>
+ */
+public class KiWISValueStore {
+
+	/**
+	 * Magic number at the start of the file ("KWTV").
+	 */
+	private static final int MAGIC = 0x4B575456;
+
+	/**
+	 * Format version, incremented if the file layout changes.
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Length of a time partition (block), milliseconds.
+	 */
+	private static final long PARTITION_MILLIS = 30L*86400000L;
+
+	/**
+	 * Maximum UTC offset, milliseconds, used to find the blocks for local times.
+	 */
+	private static final long MAX_OFFSET_MILLIS = 18L*3600000L;
+
+	/**
+	 * Directory for the time series files.
+	 */
+	private final File directory;
+
+	/**
+	 * Datastore service root URI, which must match the URI in the files.
+	 */
+	private final String serviceRootUri;
+
+	/**
+	 * Locks by 'ts_id', used so that only one thread reads and updates a time series file at a time.
+	 */
+	private final ConcurrentHashMap<Integer,Object> lockMap = new ConcurrentHashMap<>();
+
+	/**
+	 * Encoded block of values for a time partition.
+	 */
+	private static class Block {
+		private final int count;
+		private final byte [] bytes;
+
+		private Block ( int count, byte [] bytes ) {
+			this.count = count;
+			this.bytes = bytes;
+		}
+	}
+
+	/**
+	 * Values and coverage for one time series.
+	 */
+	public static class Series {
+		/**
+		 * KiWIS 'ts_id'.
+		 */
+		private final Integer kiwisTsid;
+
+		/**
+		 * Periods that have been read, sorted and not overlapping, each an array with start and end local time.
+		 */
+		private final List<long[]> coverageList = new ArrayList<>();
+
+		/**
+		 * Blocks by time partition.
+		 */
+		private final TreeMap<Long,Block> blockMap = new TreeMap<>();
+
+		private Series ( Integer kiwisTsid ) {
+			this.kiwisTsid = kiwisTsid;
+		}
+
+		/**
+		 * Add a period that has been read, merging with overlapping periods.
+		 * @param start start of the period, local time
+		 * @param end end of the period, local time
+		 */
+		public void addCoverage ( long start, long end ) {
+			if ( end < start ) {
+				return;
+			}
+			Iterator<long[]> it = this.coverageList.iterator();
+			while ( it.hasNext() ) {
+				long [] coverage = it.next();
+				if ( (coverage[0] <= end) && (coverage[1] >= start) ) {
+					// Overlapping so merge.
+					start = Math.min(start, coverage[0]);
+					end = Math.max(end, coverage[1]);
+					it.remove();
+				}
+			}
+			int pos = 0;
+			while ( (pos < this.coverageList.size()) && (this.coverageList.get(pos)[0] < start) ) {
+				++pos;
+			}
+			this.coverageList.add(pos, new long[] { start, end });
+		}
+
+		/**
+		 * Return the latest local time of the values in the last block, or Long.MIN_VALUE if no values are saved.
+		 * @return the latest local time of the saved values
+		 * @throws IOException if the block cannot be decoded
+		 */
+		public long getLastLocalTime () throws IOException {
+			if ( this.blockMap.isEmpty() ) {
+				return Long.MIN_VALUE;
+			}
+			Block block = this.blockMap.lastEntry().getValue();
+			KiWISTimeSeriesValueColumns columns = new KiWISTimeSeriesValueColumns(block.count);
+			decode(block, columns);
+			return getMaxLocalTime ( columns );
+		}
+
+		/**
+		 * Return the periods within a requested period that have not been read.
+		 * @param start start of the requested period, local time
+		 * @param end end of the requested period, local time
+		 * @return the periods that have not been read, each an array with start and end local time
+		 */
+		public List<long[]> getMissingRanges ( long start, long end ) {
+			List<long[]> missingList = new ArrayList<>();
+			long cursor = start;
+			boolean covered = false;
+			for ( long [] coverage : this.coverageList ) {
+				if ( coverage[1] < cursor ) {
+					continue;
+				}
+				if ( coverage[0] > end ) {
+					break;
+				}
+				if ( coverage[0] > cursor ) {
+					missingList.add(new long[] { cursor, coverage[0] });
+				}
+				if ( coverage[1] >= end ) {
+					covered = true;
+					break;
+				}
+				cursor = coverage[1];
+			}
+			if ( !covered ) {
+				missingList.add(new long[] { cursor, end });
+			}
+			return missingList;
+		}
+
+		/**
+		 * Return the values within a period.
+		 * @param start start of the period, local time
+		 * @param end end of the period, local time
+		 * @return the values in the period
+		 * @throws IOException if a block cannot be decoded
+		 */
+		public KiWISTimeSeriesValueColumns getValues ( long start, long end ) throws IOException {
+			KiWISTimeSeriesValueColumns columns = new KiWISTimeSeriesValueColumns();
+			KiWISTimeSeriesValueColumns blockColumns = new KiWISTimeSeriesValueColumns();
+			for ( Block block : getBlocks(start, end).values() ) {
+				blockColumns.clear();
+				decode(block, blockColumns);
+				addValues(blockColumns, start, end, columns);
+			}
+			return columns;
+		}
+
+		/**
+		 * Return the blocks that may contain values for a period.
+		 * @param start start of the period, local time
+		 * @param end end of the period, local time
+		 * @return the blocks, which are a view of the blocks in the series
+		 */
+		private Map<Long,Block> getBlocks ( long start, long end ) {
+			long startPartition = getPartition ( (start == Long.MIN_VALUE) ? start : (start - MAX_OFFSET_MILLIS) );
+			long endPartition = getPartition ( (end == Long.MAX_VALUE) ? end : (end + MAX_OFFSET_MILLIS) );
+			return this.blockMap.subMap(startPartition, true, endPartition, true);
+		}
+
+		/**
+		 * Merge values that were read from the web service for a period, and add the period to the coverage.
+		 * Saved values from the first to the last value that was read are replaced.
+		 * Saved values outside of these times are retained even if the local time is in the period,
+		 * because the web service interprets the period using its time zone,
+		 * which may be different from the UTC offset of the values (e.g., for daylight saving time).
+		 * The end of the period is only added to the coverage if values after the end are saved,
+		 * otherwise the coverage ends at the latest local time that was read, so that newer values are read later.
+		 * @param start start of the period that was read, local time
+		 * @param end end of the period that was read, local time
+		 * @param readColumns values that were read, which are sorted if not already sorted (see sortByTime())
+		 * @throws IOException if a saved block cannot be decoded
+		 */
+		public void merge ( long start, long end, KiWISTimeSeriesValueColumns readColumns ) throws IOException {
+			readColumns = sortByTime ( readColumns );
+			long coverageEnd = Long.MIN_VALUE;
+			if ( getLastLocalTime() > end ) {
+				coverageEnd = end;
+			}
+			else if ( readColumns.size() > 0 ) {
+				coverageEnd = Math.min(end, getMaxLocalTime(readColumns));
+			}
+			if ( readColumns.size() == 0 ) {
+				// No values to merge.
+				if ( coverageEnd != Long.MIN_VALUE ) {
+					addCoverage ( start, coverageEnd );
+				}
+				return;
+			}
+
+			// Decode the blocks that may be affected, keeping values before the first and after the last value that was read.
+			long firstReadTime = readColumns.getTimes()[0];
+			long lastReadTime = readColumns.getTimes()[readColumns.size() - 1];
+			KiWISTimeSeriesValueColumns saved = new KiWISTimeSeriesValueColumns();
+			KiWISTimeSeriesValueColumns blockColumns = new KiWISTimeSeriesValueColumns();
+			Map<Long,Block> affectedBlocks = this.blockMap.subMap(getPartition(firstReadTime), true, getPartition(lastReadTime), true);
+			for ( Block block : affectedBlocks.values() ) {
+				blockColumns.clear();
+				decode(block, blockColumns);
+				long [] times = blockColumns.getTimes();
+				for ( int i = 0; i < blockColumns.size(); i++ ) {
+					if ( (times[i] < firstReadTime) || (times[i] > lastReadTime) ) {
+						saved.add(times[i], blockColumns.getUtcOffsets()[i], blockColumns.getValues()[i],
+							blockColumns.getQualityCodes()[i], blockColumns.getInterpolationType(i));
+					}
+				}
+			}
+			affectedBlocks.clear();
+
+			// Merge the saved values and the values that were read, which are both sorted by time:
+			// - if the same time is in both, use the value that was read
+			KiWISTimeSeriesValueColumns merged = new KiWISTimeSeriesValueColumns(saved.size() + readColumns.size() + 1);
+			int iSaved = 0;
+			int iRead = 0;
+			while ( (iSaved < saved.size()) || (iRead < readColumns.size()) ) {
+				if ( (iRead < readColumns.size())
+					&& ((iSaved == saved.size()) || (readColumns.getTimes()[iRead] <= saved.getTimes()[iSaved])) ) {
+					if ( (iSaved < saved.size()) && (readColumns.getTimes()[iRead] == saved.getTimes()[iSaved]) ) {
+						++iSaved;
+					}
+					merged.add(readColumns.getTimes()[iRead], readColumns.getUtcOffsets()[iRead], readColumns.getValues()[iRead],
+						readColumns.getQualityCodes()[iRead], readColumns.getInterpolationType(iRead));
+					++iRead;
+				}
+				else {
+					merged.add(saved.getTimes()[iSaved], saved.getUtcOffsets()[iSaved], saved.getValues()[iSaved],
+						saved.getQualityCodes()[iSaved], saved.getInterpolationType(iSaved));
+					++iSaved;
+				}
+			}
+
+			// Encode the merged values into blocks by partition.
+			int blockStart = 0;
+			long [] times = merged.getTimes();
+			for ( int i = 1; i <= merged.size(); i++ ) {
+				if ( (i == merged.size()) || (getPartition(times[i]) != getPartition(times[blockStart])) ) {
+					this.blockMap.put(getPartition(times[blockStart]),
+						new Block(i - blockStart, KiWISValueBlockCodec.encode(merged, blockStart, i)));
+					blockStart = i;
+				}
+			}
+
+			if ( coverageEnd != Long.MIN_VALUE ) {
+				addCoverage ( start, coverageEnd );
+			}
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * @param directory directory for the time series files
+	 * @param serviceRootUri datastore service root URI, used to check that files are for the same web service
+	 */
+	public KiWISValueStore ( File directory, String serviceRootUri ) {
+		this.directory = directory;
+		this.serviceRootUri = serviceRootUri;
+	}
+
+	/**
+	 * Add values within a period to columns.
+	 * @param from values to add
+	 * @param start start of the period, local time
+	 * @param end end of the period, local time
+	 * @param to columns to add values to
+	 */
+	private static void addValues ( KiWISTimeSeriesValueColumns from, long start, long end, KiWISTimeSeriesValueColumns to ) {
+		long [] times = from.getTimes();
+		int [] utcOffsets = from.getUtcOffsets();
+		for ( int i = 0; i < from.size(); i++ ) {
+			long local = times[i] + utcOffsets[i]*1000L;
+			if ( (local >= start) && (local <= end) ) {
+				to.add(times[i], utcOffsets[i], from.getValues()[i], from.getQualityCodes()[i], from.getInterpolationType(i));
+			}
+		}
+	}
+
+	/**
+	 * Decode a block of values and add to columns.
+	 * @param block the block to decode
+	 * @param columns columns to add the values to
+	 * @throws IOException if the block cannot be decoded, for example if the file is corrupt
+	 */
+	private static void decode ( Block block, KiWISTimeSeriesValueColumns columns ) throws IOException {
+		try {
+			KiWISValueBlockCodec.decode(block.bytes, block.count, columns);
+		}
+		catch ( RuntimeException e ) {
+			throw new IOException ( "Value store block is corrupt (" + e + ").", e );
+		}
+	}
+
+	/**
+	 * Return the file for a time series.
+	 * @param kiwisTsid the KiWIS 'ts_id'
+	 * @return the file for the time series
+	 */
+	public File getFile ( Integer kiwisTsid ) {
+		return new File(this.directory, kiwisTsid + ".bin");
+	}
+
+	/**
+	 * Return the lock object for a time series, which should be used to synchronize reading and updating the time series.
+	 * @param kiwisTsid the KiWIS 'ts_id'
+	 * @return the lock object for the time series
+	 */
+	public Object getLock ( Integer kiwisTsid ) {
+		return this.lockMap.computeIfAbsent(kiwisTsid, key -> new Object());
+	}
+
+	/**
+	 * Return the latest local time of values, which may not be the last value if the UTC offset changes.
+	 * @param columns the values, which must not be empty
+	 * @return the latest local time
+	 */
+	private static long getMaxLocalTime ( KiWISTimeSeriesValueColumns columns ) {
+		long [] times = columns.getTimes();
+		int [] utcOffsets = columns.getUtcOffsets();
+		long maxLocal = Long.MIN_VALUE;
+		for ( int i = 0; i < columns.size(); i++ ) {
+			maxLocal = Math.max(maxLocal, times[i] + utcOffsets[i]*1000L);
+		}
+		return maxLocal;
+	}
+
+	/**
+	 * Return the time partition for a timestamp.
+	 * @param time timestamp, milliseconds
+	 * @return the time partition
+	 */
+	private static long getPartition ( long time ) {
+		return Math.floorDiv(time, PARTITION_MILLIS);
+	}
+
+	/**
+	 * Read the saved values and coverage for a time series.
+	 * @param kiwisTsid the KiWIS 'ts_id'
+	 * @return the series, which is empty if the file does not exist, is an old format, or is for a different web service
+	 * @throws IOException if the file cannot be read, for example if it is truncated or corrupt
+	 */
+	public Series read ( Integer kiwisTsid ) throws IOException {
+		Series series = new Series(kiwisTsid);
+		File file = getFile(kiwisTsid);
+		if ( !file.exists() ) {
+			return series;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		try {
+			if ( (buffer.getInt() != MAGIC) || (buffer.getInt() != FORMAT_VERSION) ) {
+				// Not a value store file or written by a different plugin version.
+				return series;
+			}
+			byte [] uriBytes = new byte[readCount(buffer, 1)];
+			buffer.get(uriBytes);
+			if ( !this.serviceRootUri.equals(new String(uriBytes, StandardCharsets.UTF_8)) || (buffer.getInt() != kiwisTsid) ) {
+				// File is for a different web service.
+				return series;
+			}
+			int coverageCount = readCount(buffer, 16);
+			for ( int i = 0; i < coverageCount; i++ ) {
+				series.coverageList.add(new long[] { buffer.getLong(), buffer.getLong() });
+			}
+			int blockCount = readCount(buffer, 16);
+			for ( int i = 0; i < blockCount; i++ ) {
+				long partition = buffer.getLong();
+				int count = buffer.getInt();
+				byte [] bytes = new byte[readCount(buffer, 1)];
+				buffer.get(bytes);
+				series.blockMap.put(partition, new Block(count, bytes));
+			}
+		}
+		catch ( RuntimeException e ) {
+			// Buffer underflow, bad count, etc. indicates a truncated or corrupt file.
+			throw new IOException ( "Value store file \"" + file + "\" is corrupt (" + e + ").", e );
+		}
+		return series;
+	}
+
+	/**
+	 * Read a count of items or bytes, checking that the count is consistent with the remaining bytes.
+	 * @param buffer buffer to read from
+	 * @param itemBytes minimum number of bytes for each item
+	 * @return the count
+	 * @throws IllegalStateException if the count is negative or larger than the remaining bytes allow
+	 */
+	private static int readCount ( ByteBuffer buffer, int itemBytes ) {
+		int count = buffer.getInt();
+		if ( (count < 0) || (count > (buffer.remaining()/itemBytes)) ) {
+			throw new IllegalStateException ( "Count " + count + " is invalid for " + buffer.remaining() + " remaining bytes" );
+		}
+		return count;
+	}
+
+	/**
+	 * Return values sorted by time, consistent with setting the values in a time series in the order that they were read:
+	 * <ul>
+	 * <li> values with a decreasing time are moved to the sorted position</li>
+	 * <li> if a later value has the same time and UTC offset, the earlier value is replaced</li>
+	 * <li> values with the same time and a different UTC offset are retained, in the order that they were read,
+	 *      because the local times are different</li>
+	 * </ul>
+	 * @param columns values that were read
+	 * @return the columns if already sorted with no repeated time, otherwise sorted columns
+	 */
+	static KiWISTimeSeriesValueColumns sortByTime ( KiWISTimeSeriesValueColumns columns ) {
+		long [] times = columns.getTimes();
+		int [] utcOffsets = columns.getUtcOffsets();
+		int size = columns.size();
+		boolean sorted = true;
+		for ( int i = 1; i < size; i++ ) {
+			if ( times[i] <= times[i - 1] ) {
+				sorted = false;
+				break;
+			}
+		}
+		if ( sorted ) {
+			return columns;
+		}
+		// The sort is stable so values with the same time remain in the order that they were read.
+		Integer [] order = new Integer[size];
+		for ( int i = 0; i < size; i++ ) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (i1, i2) -> Long.compare(times[i1], times[i2]));
+		KiWISTimeSeriesValueColumns sortedColumns = new KiWISTimeSeriesValueColumns(size);
+		for ( int iOrder = 0; iOrder < size; iOrder++ ) {
+			int i = order[iOrder];
+			boolean replaced = false;
+			for ( int iLater = iOrder + 1; (iLater < size) && (times[order[iLater]] == times[i]); iLater++ ) {
+				if ( utcOffsets[order[iLater]] == utcOffsets[i] ) {
+					replaced = true;
+					break;
+				}
+			}
+			if ( !replaced ) {
+				sortedColumns.add(times[i], utcOffsets[i], columns.getValues()[i], columns.getQualityCodes()[i],
+					columns.getInterpolationType(i));
+			}
+		}
+		return sortedColumns;
+	}
+
+	/**
+	 * Write the saved values and coverage for a time series, replacing the previous file.
+	 * @param series the series to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write ( Series series ) throws IOException {
+		File file = getFile(series.kiwisTsid);
+		File folder = file.getParentFile();
+		if ( !folder.exists() && !folder.mkdirs() ) {
+			throw new IOException ( "Unable to create folder \"" + folder + "\"." );
+		}
+		// Write to a unique temporary file and then rename so that a partial file is never read,
+		// including by another process that uses the same value store.
+		Path tmpPath = Files.createTempFile(folder.toPath(), file.getName(), ".tmp");
+		try {
+			write ( series, tmpPath );
+			try {
+				Files.move(tmpPath, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch ( AtomicMoveNotSupportedException e ) {
+				Files.move(tmpPath, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally {
+			Files.deleteIfExists(tmpPath);
+		}
+	}
+
+	/**
+	 * Write the saved values and coverage for a time series to a file.
+	 * @param series the series to write
+	 * @param path the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	private void write ( Series series, Path path ) throws IOException {
+		try ( OutputStream fout = Files.newOutputStream(path);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fout, 65536)) ) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			byte [] uriBytes = this.serviceRootUri.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(uriBytes.length);
+			out.write(uriBytes);
+			out.writeInt(series.kiwisTsid);
+			out.writeInt(series.coverageList.size());
+			for ( long [] coverage : series.coverageList ) {
+				out.writeLong(coverage[0]);
+				out.writeLong(coverage[1]);
+			}
+			out.writeInt(series.blockMap.size());
+			for ( Map.Entry<Long,Block> entry : series.blockMap.entrySet() ) {
+				out.writeLong(entry.getKey());
+				out.writeInt(entry.getValue().count);
+				out.writeInt(entry.getValue().bytes.length);
+				out.write(entry.getValue().bytes);
+			}
+		}
+	}
+
+}
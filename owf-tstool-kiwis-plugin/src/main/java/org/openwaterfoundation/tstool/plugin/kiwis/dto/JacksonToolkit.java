@@ -23,16 +23,27 @@ NoticeEnd */
 package org.openwaterfoundation.tstool.plugin.kiwis.dto;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.openwaterfoundation.tstool.plugin.kiwis.util.HttpTransport;
+import org.openwaterfoundation.tstool.plugin.kiwis.util.KiWISParseEvent;
+import org.openwaterfoundation.tstool.plugin.kiwis.util.WebUtil;
+
 import RTi.Util.Message.Message;
 
 /**
@@ -62,16 +73,78 @@ public class JacksonToolkit {
 	 * Lazy initialization of a singleton class instance
 	 * @return instance of JacksonToolkit class
 	 */
-	public static JacksonToolkit getInstance() {
+	public static synchronized JacksonToolkit getInstance() {
 		if ( instance == null ) {
 			instance = new JacksonToolkit();
 		}
 		return instance;
 	}
 	
+	/**
+	 * Commit a parse event if it is enabled in the Java Flight Recorder recording.
+	 * @param event the event, which was started before the request
+	 * @param url the requested URL, used for the request type
+	 * @param rows the number of rows (array elements) that were parsed
+	 */
+	private void commitParseEvent ( KiWISParseEvent event, String url, long rows ) {
+		if ( event.shouldCommit() ) {
+			String requestType = WebUtil.getUrlQueryParameter(url, "request");
+			event.format = "json";
+			event.source = (requestType == null) ? "" : requestType;
+			event.rows = rows;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Given a url to Web Services this method retrieves the JSON response from
+	 * web services using the HTTP transport and converts that to a JsonNode from the Jackson Library.
+	 * This version should be used by datastores so that connections are reused and responses are compressed.
+	 * @param transport HTTP transport used for the request
+	 * @param url web service URL to query
+	 * @param element element name corresponding to the JSON node, typically the name of an array of objects
+	 * @return JsonNode of returned value from web services request.
+	 * @throws JsonParseException if a JSON parse error
+	 * @throws JsonMappingException if a JSON mapping error
+	 * @throws IOException typically a timeout or error response
+	 */
+	public JsonNode getJsonNodeFromWebServiceUrl(HttpTransport transport, String url, String element)
+		throws JsonParseException, JsonMappingException, IOException {
+		String routine = getClass().getSimpleName() + ".getJsonNodeFromWebServicesUrl";
+		JsonNode results = null;
+		KiWISParseEvent event = new KiWISParseEvent();
+		event.begin();
+		try ( InputStream in = transport.getInputStream(url) ) {
+			JsonNode rootNode = this.mapper.readTree(in);
+			results = rootNode;
+			// For now return the root node.
+			if ( (element != null) && !element.isEmpty() ) {
+				// Position the node at the requested name.
+				results = rootNode.path(element);
+			}
+			commitParseEvent ( event, url, results.size() );
+		}
+		catch ( JsonParseException e ) {
+			Message.printWarning(2, routine, "Error parsing JSON response from \"" + url + "\" (" + e + ").");
+			throw e;
+		}
+		catch ( JsonMappingException e ) {
+			Message.printWarning(2, routine, "Error mapping JSON response from \"" + url + "\" (" + e + ").");
+			throw e;
+		}
+		catch ( IOException e ) {
+			Message.printWarning(2, routine, "IOException (" + e + ").");
+			throw e;
+		}
+		
+		return results;
+	}
+
 	/**
 	 * Given a url to Web Services this method retrieves the JSON response from
 	 * web services and converts that to a JsonNode from the Jackson Library.
+	 * A new connection is used for each request.
+	 * Use the version that is passed an HttpTransport to reuse connections.
 	 * @param url web service URL to query
 	 * @param element element name corresponding to the JSON node, typically the name of an array of objects
 	 * @return JsonNode of returned value from web services request.
@@ -124,6 +197,104 @@ public class JacksonToolkit {
 		return results;
 	}
 
+	/**
+	 * Read a JSON array of objects from a web service URL using the HTTP transport,
+	 * and pass each object to a consumer as it is read.
+	 * The response is parsed with a streaming parser and each array element is bound directly to the requested class,
+	 * so that a JsonNode tree for the full response is not created.
+	 * This reduces memory use for large responses, such as the time series list for a large system.
+	 * An element that cannot be bound to the requested class (e.g., a field has the wrong type) is logged and skipped,
+	 * so that one bad element does not cause the full list to fail.
+	 * @param transport HTTP transport used for the request
+	 * @param url web service URL to query
+	 * @param objClass the class to deserialize each array element to
+	 * @param consumer the consumer that is called for each object
+	 * @return the number of objects that were read, not including skipped elements
+	 * @throws JsonParseException if a JSON parse error
+	 * @throws JsonMappingException if a JSON mapping error other than for an array element
+	 * @throws IOException typically a timeout or error response
+	 */
+	public <T> int readArrayFromWebServiceUrl ( HttpTransport transport, String url, Class<T> objClass, Consumer<T> consumer )
+		throws JsonParseException, JsonMappingException, IOException {
+		String routine = getClass().getSimpleName() + ".readArrayFromWebServiceUrl";
+		int count = 0;
+		int skipCount = 0;
+		KiWISParseEvent event = new KiWISParseEvent();
+		event.begin();
+		try ( InputStream in = transport.getInputStream(url);
+			JsonParser parser = this.mapper.getFactory().createParser(in) ) {
+			JsonToken token = parser.nextToken();
+			if ( token == null ) {
+				// Empty response.
+				return count;
+			}
+			if ( token != JsonToken.START_ARRAY ) {
+				throw new JsonParseException ( parser, "Expecting JSON array for response from \"" + url + "\"." );
+			}
+			JsonStreamContext arrayContext = parser.getParsingContext();
+			while ( (token = parser.nextToken()) != JsonToken.END_ARRAY ) {
+				if ( token == null ) {
+					throw new JsonParseException ( parser, "Unexpected end of JSON array for response from \"" + url + "\"." );
+				}
+				// Bind the array element (typically an object) directly to the requested class.
+				T obj;
+				try {
+					obj = this.mapper.readValue(parser, objClass);
+				}
+				catch ( JsonMappingException e ) {
+					Message.printWarning(3, routine, "Error mapping array element " + (count + skipCount + 1)
+						+ " from \"" + url + "\" - skipping (" + e + ").");
+					++skipCount;
+					// Skip the rest of the element so that the next element can be read.
+					while ( parser.getParsingContext() != arrayContext ) {
+						if ( parser.nextToken() == null ) {
+							throw new JsonParseException ( parser, "Unexpected end of JSON array for response from \"" + url + "\"." );
+						}
+					}
+					continue;
+				}
+				consumer.accept ( obj );
+				++count;
+			}
+			if ( skipCount > 0 ) {
+				Message.printWarning(2, routine, "Skipped " + skipCount + " array elements that could not be mapped from \""
+					+ url + "\".");
+			}
+			commitParseEvent ( event, url, count );
+		}
+		catch ( JsonParseException e ) {
+			Message.printWarning(2, routine, "Error parsing JSON response from \"" + url + "\" (" + e + ").");
+			throw e;
+		}
+		catch ( JsonMappingException e ) {
+			Message.printWarning(2, routine, "Error mapping JSON response from \"" + url + "\" (" + e + ").");
+			throw e;
+		}
+		catch ( IOException e ) {
+			Message.printWarning(2, routine, "IOException (" + e + ").");
+			throw e;
+		}
+		return count;
+	}
+
+	/**
+	 * Read a JSON array of objects from a web service URL using the HTTP transport.
+	 * See readArrayFromWebServiceUrl() for the streaming implementation.
+	 * @param transport HTTP transport used for the request
+	 * @param url web service URL to query
+	 * @param objClass the class to deserialize each array element to
+	 * @return the list of objects, may be empty
+	 * @throws JsonParseException if a JSON parse error
+	 * @throws JsonMappingException if a JSON mapping error
+	 * @throws IOException typically a timeout or error response
+	 */
+	public <T> List<T> readListFromWebServiceUrl ( HttpTransport transport, String url, Class<T> objClass )
+		throws JsonParseException, JsonMappingException, IOException {
+		List<T> list = new ArrayList<>();
+		readArrayFromWebServiceUrl ( transport, url, objClass, list::add );
+		return list;
+	}
+
 	/**
 	 * Checks to see if the request string returns a response 200 or an error 404.
 	 * @param urlString String representing the URL request from web services.
@@ -0,0 +1,221 @@
+// AimdConcurrencyLimiter - adaptive limit on concurrent requests
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.util;
+
+/**
+ * Adaptive limit on the number of concurrent requests to a web service,
+ * using additive increase and multiplicative decrease (AIMD).
+ * The limit is increased by about one for each round of successful requests,
+ * and is decreased by a factor if a request fails or is slow, which indicates that the server is overloaded.
+ * A request is slow if the time to receive the response headers is much longer than the lowest recent time.
+ * The limit is kept between the minimum and maximum.
+ * Callers must call acquire() before a request and release() when the response has been read,
+ * and call onSuccess() or onOverload() when the response headers are received or the request fails.
+ * The limiter is thread-safe.
+ */
+public class AimdConcurrencyLimiter {
+
+	/**
+	 * Factor to decrease the limit when the server is overloaded.
+	 */
+	private static final double DECREASE_FACTOR = 0.5;
+
+	/**
+	 * A response is slow if its latency is more than this multiple of the baseline latency.
+	 */
+	private static final double LATENCY_TOLERANCE = 3.0;
+
+	/**
+	 * A response is only slow if its latency is more than this, nanoseconds,
+	 * so that variation in very fast responses does not decrease the limit.
+	 */
+	private static final long MIN_SLOW_LATENCY_NANOS = 1000000000L;
+
+	/**
+	 * Fraction that the baseline latency moves toward a longer latency for each response,
+	 * so that the baseline adjusts if the server becomes slower.
+	 */
+	private static final double BASELINE_DRIFT = 0.01;
+
+	/**
+	 * Minimum concurrent requests.
+	 */
+	private final int minLimit;
+
+	/**
+	 * Maximum concurrent requests.
+	 */
+	private final int maxLimit;
+
+	/**
+	 * Current limit, fractional so that it can be increased by less than one for each response.
+	 */
+	private double limit;
+
+	/**
+	 * Number of requests that are in progress.
+	 */
+	private int inFlight = 0;
+
+	/**
+	 * Baseline (lowest recent) latency, nanoseconds, or zero if no responses have been received.
+	 */
+	private long baselineLatencyNanos = 0;
+
+	/**
+	 * Time of the last decrease (System.nanoTime()), used so that the limit is only decreased once
+	 * for requests that were in progress at the same time.
+	 */
+	private long lastDecreaseNanos = 0;
+
+	/**
+	 * Whether the limit has been decreased.
+	 */
+	private boolean decreased = false;
+
+	/**
+	 * Number of times that the limit was decreased.
+	 */
+	private long decreaseCount = 0;
+
+	/**
+	 * Constructor.
+	 * The initial limit is the maximum, so that the limit is only decreased if the server is overloaded.
+	 * @param minLimit minimum concurrent requests, at least 1
+	 * @param maxLimit maximum concurrent requests, at least the minimum
+	 */
+	public AimdConcurrencyLimiter ( int minLimit, int maxLimit ) {
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.limit = this.maxLimit;
+	}
+
+	/**
+	 * Wait until a request can be made without exceeding the limit.
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public synchronized void acquire () throws InterruptedException {
+		while ( this.inFlight >= (int)this.limit ) {
+			wait();
+		}
+		++this.inFlight;
+	}
+
+	/**
+	 * Decrease the limit, if not already decreased for requests in progress at the same time.
+	 * @param startNanos time that the request was started (System.nanoTime())
+	 */
+	private void decrease ( long startNanos ) {
+		if ( this.decreased && ((startNanos - this.lastDecreaseNanos) < 0) ) {
+			// Request started before the last decrease so was affected by the same overload.
+			return;
+		}
+		this.limit = Math.max(this.minLimit, this.limit*DECREASE_FACTOR);
+		this.lastDecreaseNanos = System.nanoTime();
+		this.decreased = true;
+		++this.decreaseCount;
+	}
+
+	/**
+	 * Return the number of times that the limit was decreased.
+	 * @return the number of decreases
+	 */
+	public synchronized long getDecreaseCount () {
+		return this.decreaseCount;
+	}
+
+	/**
+	 * Return the number of requests in progress.
+	 * @return the number of requests in progress
+	 */
+	public synchronized int getInFlight () {
+		return this.inFlight;
+	}
+
+	/**
+	 * Return the current limit.
+	 * @return the current limit on concurrent requests
+	 */
+	public synchronized int getLimit () {
+		return (int)this.limit;
+	}
+
+	/**
+	 * Return the maximum limit.
+	 * @return the maximum concurrent requests
+	 */
+	public int getMaxLimit () {
+		return this.maxLimit;
+	}
+
+	/**
+	 * Return the minimum limit.
+	 * @return the minimum concurrent requests
+	 */
+	public int getMinLimit () {
+		return this.minLimit;
+	}
+
+	/**
+	 * Indicate that a request failed in a way that indicates that the server is overloaded
+	 * (e.g., timeout or HTTP status 429 or 5xx), which decreases the limit.
+	 * @param startNanos time that the request was started (System.nanoTime())
+	 */
+	public synchronized void onOverload ( long startNanos ) {
+		decrease ( startNanos );
+	}
+
+	/**
+	 * Indicate that the response headers for a request were received,
+	 * which increases the limit unless the response was slow.
+	 * @param startNanos time that the request was started (System.nanoTime())
+	 * @param latencyNanos time to receive the response headers, nanoseconds
+	 */
+	public synchronized void onSuccess ( long startNanos, long latencyNanos ) {
+		if ( (this.baselineLatencyNanos == 0) || (latencyNanos < this.baselineLatencyNanos) ) {
+			this.baselineLatencyNanos = latencyNanos;
+		}
+		else {
+			this.baselineLatencyNanos += (long)((latencyNanos - this.baselineLatencyNanos)*BASELINE_DRIFT);
+		}
+		if ( (latencyNanos > MIN_SLOW_LATENCY_NANOS) && (latencyNanos > this.baselineLatencyNanos*LATENCY_TOLERANCE) ) {
+			// Slow response so the server is likely overloaded.
+			decrease ( startNanos );
+		}
+		else if ( this.limit < this.maxLimit ) {
+			// Increase by about one for each round of requests at the current limit.
+			this.limit = Math.min(this.maxLimit, this.limit + 1.0/this.limit);
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Indicate that a request has completed, including reading the response, so that another request can be made.
+	 */
+	public synchronized void release () {
+		--this.inFlight;
+		notifyAll();
+	}
+
+}
@@ -0,0 +1,449 @@
+// HttpRecording - recorded web service responses, used to record and replay requests
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.util;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.OffsetDateTime;
+import java.util.Properties;
+import java.util.zip.GZIPOutputStream;
+
+import RTi.Util.Message.Message;
+
+/**
+ * Recorded web service responses in a folder, used by HttpTransport to record responses and replay them
+ * without making web service requests, for example to compare performance of code versions without network variability.
+ * Each response is saved using a key that is the SHA-256 hash of the normalized URL (see WebUtil.normalizeUrl()),
+ * with the following files:
+ * <ul>
+ * <li> key.properties - the URL, response size, time to receive the response headers,
+ *      and time spent waiting for the response body</li>
+ * <li> key.gz - the response body, after decompression by the transport, compressed with gzip</li>
+ * </ul>
+ * Only complete responses with HTTP status 200 are recorded.
+ * If the same URL is requested more than once when recording, the last response is saved.
+ */
+public class HttpRecording {
+
+	/**
+	 * Folder for the recorded responses.
+	 */
+	private final Path directory;
+
+	/**
+	 * Recorded response, read from the properties file.
+	 */
+	public static class RecordedResponse {
+		private final Path bodyFile;
+		private final long headerNanos;
+		private final long readWaitNanos;
+		private final long contentBytes;
+
+		private RecordedResponse ( Path bodyFile, long headerNanos, long readWaitNanos, long contentBytes ) {
+			this.bodyFile = bodyFile;
+			this.headerNanos = headerNanos;
+			this.readWaitNanos = readWaitNanos;
+			this.contentBytes = contentBytes;
+		}
+
+		/**
+		 * Return the file containing the gzip-compressed response body.
+		 * @return the file containing the gzip-compressed response body
+		 */
+		public Path getBodyFile () {
+			return this.bodyFile;
+		}
+
+		/**
+		 * Return the number of bytes in the response body, after decompression by the transport.
+		 * @return the number of bytes in the response body
+		 */
+		public long getContentBytes () {
+			return this.contentBytes;
+		}
+
+		/**
+		 * Return the time from sending the request until the response headers were received, nanoseconds.
+		 * @return the time to receive the response headers, nanoseconds
+		 */
+		public long getHeaderNanos () {
+			return this.headerNanos;
+		}
+
+		/**
+		 * Return the time spent waiting for response body bytes, nanoseconds,
+		 * which does not include the time that the calling code spent processing the bytes.
+		 * @return the time spent waiting for response body bytes, nanoseconds
+		 */
+		public long getReadWaitNanos () {
+			return this.readWaitNanos;
+		}
+	}
+
+	/**
+	 * Input stream that saves the bytes that are read, and when closed, saves the recorded response.
+	 * Parsers such as Jackson stop reading at the end of the content, before the end of the stream is detected,
+	 * so the remaining bytes are read when the stream is closed, so that the complete response is saved.
+	 * The response is not saved if an error occurred reading the response.
+	 * Errors saving the response are logged and do not cause the read to fail.
+	 */
+	private class RecordingInputStream extends FilterInputStream {
+		private final String url;
+		private final long headerNanos;
+		private final Path tempFile;
+		private OutputStream out;
+		private long bytes = 0;
+		private long readWaitNanos = 0;
+		private boolean eof = false;
+		private boolean readError = false;
+		private boolean closed = false;
+
+		private RecordingInputStream ( InputStream in, String url, long headerNanos ) throws IOException {
+			super(in);
+			this.url = url;
+			this.headerNanos = headerNanos;
+			this.tempFile = Files.createTempFile(directory, "recording", ".tmp");
+			this.out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(this.tempFile), 65536), 65536);
+		}
+
+		@Override
+		public int read () throws IOException {
+			long startNanos = System.nanoTime();
+			int b;
+			try {
+				b = super.read();
+			}
+			catch ( IOException e ) {
+				this.readError = true;
+				throw e;
+			}
+			this.readWaitNanos += System.nanoTime() - startNanos;
+			if ( b < 0 ) {
+				this.eof = true;
+			}
+			else {
+				++this.bytes;
+				write ( new byte [] { (byte)b }, 0, 1 );
+			}
+			return b;
+		}
+
+		@Override
+		public int read ( byte [] b, int off, int len ) throws IOException {
+			long startNanos = System.nanoTime();
+			int n;
+			try {
+				n = super.read(b, off, len);
+			}
+			catch ( IOException e ) {
+				this.readError = true;
+				throw e;
+			}
+			this.readWaitNanos += System.nanoTime() - startNanos;
+			if ( n < 0 ) {
+				this.eof = true;
+			}
+			else if ( n > 0 ) {
+				this.bytes += n;
+				write ( b, off, n );
+			}
+			return n;
+		}
+
+		@Override
+		public void close () throws IOException {
+			if ( this.closed ) {
+				return;
+			}
+			this.closed = true;
+			String routine = getClass().getSimpleName() + ".close";
+			if ( (this.out != null) && !this.eof && !this.readError ) {
+				// Read the remaining bytes, for example whitespace after the JSON content, so that the response can be saved.
+				byte [] buffer = new byte[8192];
+				try {
+					while ( read(buffer, 0, buffer.length) >= 0 ) {
+						// The bytes are recorded by read().
+					}
+				}
+				catch ( IOException e ) {
+					Message.printStatus(2, routine, "Error reading the end of the response for \"" + this.url + "\" (" + e + ").");
+				}
+			}
+			try {
+				super.close();
+			}
+			finally {
+				try {
+					if ( this.out != null ) {
+						this.out.close();
+					}
+					if ( (this.out != null) && this.eof && !this.readError ) {
+						save ( this.url, this.tempFile, this.headerNanos, this.readWaitNanos, this.bytes );
+					}
+					else {
+						// The response could not be completely read so do not save a partial response.
+						Message.printStatus(2, routine, "Response was not completely read - not recording \"" + this.url + "\".");
+					}
+				}
+				catch ( IOException e ) {
+					Message.printWarning(3, routine, "Error recording response for \"" + this.url + "\" (" + e + ").");
+				}
+				finally {
+					Files.deleteIfExists(this.tempFile);
+				}
+			}
+		}
+
+		/**
+		 * Write bytes to the recording.  If an error occurs, recording stops but the response can still be read.
+		 */
+		private void write ( byte [] b, int off, int len ) {
+			if ( this.out == null ) {
+				return;
+			}
+			try {
+				this.out.write(b, off, len);
+			}
+			catch ( IOException e ) {
+				Message.printWarning(3, getClass().getSimpleName() + ".write",
+					"Error recording response for \"" + this.url + "\" (" + e + ").");
+				try {
+					this.out.close();
+				}
+				catch ( IOException e2 ) {
+					// Ignore since already have an error.
+				}
+				this.out = null;
+			}
+		}
+	}
+
+	/**
+	 * Input stream that waits while reading so that the time spent waiting for response body bytes
+	 * is the same as when the response was recorded.
+	 * The wait is distributed in proportion to the bytes that are read, similar to reading from the network,
+	 * and does not depend on how long the calling code takes to process the bytes.
+	 */
+	private static class PacedInputStream extends FilterInputStream {
+		private final long readWaitNanos;
+		private final long contentBytes;
+		private long bytes = 0;
+		private long waitedNanos = 0;
+
+		private PacedInputStream ( InputStream in, long readWaitNanos, long contentBytes ) {
+			super(in);
+			this.readWaitNanos = readWaitNanos;
+			this.contentBytes = Math.max(1, contentBytes);
+		}
+
+		/**
+		 * Wait for the recorded time for the bytes that have been read, less the time that has already been waited.
+		 */
+		private void pace () throws IOException {
+			long dueNanos = (long)(this.readWaitNanos*((double)this.bytes/this.contentBytes));
+			long waitNanos = dueNanos - this.waitedNanos;
+			if ( waitNanos > 1000000L ) {
+				long startNanos = System.nanoTime();
+				try {
+					Thread.sleep(waitNanos/1000000L);
+				}
+				catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException ( "Interrupted while replaying the response." );
+				}
+				this.waitedNanos += System.nanoTime() - startNanos;
+			}
+		}
+
+		@Override
+		public int read () throws IOException {
+			int b = super.read();
+			if ( b >= 0 ) {
+				++this.bytes;
+			}
+			pace();
+			return b;
+		}
+
+		@Override
+		public int read ( byte [] b, int off, int len ) throws IOException {
+			int n = super.read(b, off, len);
+			if ( n > 0 ) {
+				this.bytes += n;
+			}
+			pace();
+			return n;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * @param directory folder for the recorded responses
+	 * @param create whether to create the folder if it does not exist, used when recording
+	 * @throws IOException if the folder cannot be created
+	 */
+	public HttpRecording ( Path directory, boolean create ) throws IOException {
+		this.directory = directory;
+		if ( create ) {
+			Files.createDirectories(directory);
+		}
+	}
+
+	/**
+	 * Find the recorded response for a URL.
+	 * @param url the requested URL
+	 * @return the recorded response, or null if a response was not recorded for the URL
+	 * @throws IOException if the recorded response cannot be read
+	 */
+	public RecordedResponse find ( String url ) throws IOException {
+		String normalizedUrl = WebUtil.normalizeUrl(url);
+		String key = getKey ( normalizedUrl );
+		Properties props = new Properties();
+		try ( Reader reader = Files.newBufferedReader(this.directory.resolve(key + ".properties"), StandardCharsets.UTF_8) ) {
+			props.load(reader);
+		}
+		catch ( NoSuchFileException e ) {
+			return null;
+		}
+		if ( !normalizedUrl.equals(props.getProperty("NormalizedUrl")) ) {
+			// Should not happen unless the file was edited.
+			return null;
+		}
+		Path bodyFile = this.directory.resolve(key + ".gz");
+		if ( !Files.exists(bodyFile) ) {
+			return null;
+		}
+		try {
+			return new RecordedResponse ( bodyFile, Long.parseLong(props.getProperty("HeaderNanos", "0")),
+				Long.parseLong(props.getProperty("ReadWaitNanos", "0")), Long.parseLong(props.getProperty("ContentBytes", "0")) );
+		}
+		catch ( NumberFormatException e ) {
+			throw new IOException ( "Recorded response properties are invalid for \"" + url + "\".", e );
+		}
+	}
+
+	/**
+	 * Return the folder for the recorded responses.
+	 * @return the folder for the recorded responses
+	 */
+	public Path getDirectory () {
+		return this.directory;
+	}
+
+	/**
+	 * Return the key for a normalized URL, used for the file names.
+	 * @param normalizedUrl the normalized URL
+	 * @return the key, the SHA-256 hash of the URL as hexadecimal
+	 */
+	private String getKey ( String normalizedUrl ) {
+		try {
+			byte [] hash = MessageDigest.getInstance("SHA-256").digest(normalizedUrl.getBytes(StandardCharsets.UTF_8));
+			StringBuilder b = new StringBuilder(hash.length*2);
+			for ( byte h : hash ) {
+				b.append(Character.forDigit((h >> 4) & 0xF, 16));
+				b.append(Character.forDigit(h & 0xF, 16));
+			}
+			return b.toString();
+		}
+		catch ( NoSuchAlgorithmException e ) {
+			// Should not happen since SHA-256 is required for all Java implementations.
+			throw new RuntimeException ( e );
+		}
+	}
+
+	/**
+	 * Wrap a response body input stream so that the response is recorded when the stream is closed.
+	 * @param url the requested URL
+	 * @param in the response body input stream, after decompression
+	 * @param headerNanos time from sending the request until the response headers were received, nanoseconds
+	 * @return the input stream to read
+	 */
+	public InputStream record ( String url, InputStream in, long headerNanos ) {
+		try {
+			return new RecordingInputStream ( in, url, headerNanos );
+		}
+		catch ( IOException e ) {
+			Message.printWarning(3, getClass().getSimpleName() + ".record",
+				"Error starting recording for \"" + url + "\" (" + e + ") - not recording.");
+			return in;
+		}
+	}
+
+	/**
+	 * Wrap a recorded response body input stream so that the time waiting for the body is the same as when recorded.
+	 * @param in the recorded response body input stream, after decompression
+	 * @param response the recorded response
+	 * @return the input stream to read
+	 */
+	public InputStream replayLatency ( InputStream in, RecordedResponse response ) {
+		return new PacedInputStream ( in, response.getReadWaitNanos(), response.getContentBytes() );
+	}
+
+	/**
+	 * Save a recorded response.
+	 * @param url the requested URL
+	 * @param tempFile temporary file containing the gzip-compressed response body
+	 * @param headerNanos time from sending the request until the response headers were received, nanoseconds
+	 * @param readWaitNanos time spent waiting for response body bytes, nanoseconds
+	 * @param contentBytes number of bytes in the response body, after decompression
+	 * @throws IOException if the response cannot be saved
+	 */
+	private void save ( String url, Path tempFile, long headerNanos, long readWaitNanos, long contentBytes ) throws IOException {
+		String normalizedUrl = WebUtil.normalizeUrl(url);
+		String key = getKey ( normalizedUrl );
+		Properties props = new Properties();
+		props.setProperty("Url", url);
+		props.setProperty("NormalizedUrl", normalizedUrl);
+		props.setProperty("HeaderNanos", "" + headerNanos);
+		props.setProperty("ReadWaitNanos", "" + readWaitNanos);
+		props.setProperty("ContentBytes", "" + contentBytes);
+		props.setProperty("Recorded", OffsetDateTime.now().toString());
+		// Move the body first so that a properties file always has a complete body.
+		Files.move(tempFile, this.directory.resolve(key + ".gz"), StandardCopyOption.REPLACE_EXISTING);
+		Path propsTempFile = Files.createTempFile(this.directory, "recording", ".tmp");
+		try {
+			try ( Writer writer = Files.newBufferedWriter(propsTempFile, StandardCharsets.UTF_8) ) {
+				props.store(writer, "Recorded KiWIS web service response");
+			}
+			Files.move(propsTempFile, this.directory.resolve(key + ".properties"), StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally {
+			Files.deleteIfExists(propsTempFile);
+		}
+	}
+
+}
@@ -0,0 +1,670 @@
+// HttpTransport - HTTP client shared by all requests for a datastore
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+import RTi.Util.Message.Message;
+
+/**
+ * HTTP transport used for all web service requests for a datastore.
+ * A single HttpClient is used so that connections are reused (keep-alive) rather than
+ * paying connection setup and TLS handshake costs for each request,
+ * HTTP/2 is used if the server supports it, and compressed (gzip) responses are requested.
+ * The read timeout applies to receiving the response headers and to each read of the response body,
+ * similar to a socket read timeout.
+ * The HttpClient is thread-safe and can be used for concurrent requests.
+ * If a concurrency limiter is set, each request waits for the limiter and holds a permit until the response
+ * body is closed, and the limiter is adjusted based on the response latency and errors.
+ * If a request listener is set, it is notified with the timing and size of each request.
+ * Each request is recorded as a KiWISRequestEvent if enabled for Java Flight Recorder.
+ * Responses can be recorded to a folder, and recorded responses can be replayed instead of sending requests,
+ * optionally with the recorded latency (see HttpRecording).
+ */
+public class HttpTransport {
+
+	/**
+	 * HTTP client used for all requests.
+	 */
+	private final HttpClient httpClient;
+
+	/**
+	 * Timeout to receive the response headers and each read of the response body, used for each request.
+	 */
+	private final Duration readTimeout;
+
+	/**
+	 * Response body streams that are open, checked by the read timeout watchdog.
+	 */
+	private static final Set<BodyTimeoutInputStream> openBodyStreams = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Watchdog that checks for response body reads that have timed out, created when first needed.
+	 */
+	private static ScheduledExecutorService readTimeoutWatchdog = null;
+
+	/**
+	 * Whether the transport is offline, in which case requests fail without being sent.
+	 */
+	private volatile boolean offline = false;
+
+	/**
+	 * Limiter for concurrent requests, or null if not limited.
+	 */
+	private volatile AimdConcurrencyLimiter concurrencyLimiter = null;
+
+	/**
+	 * Listener for requests, used to collect request statistics.
+	 */
+	private volatile RequestListener requestListener = null;
+
+	/**
+	 * Recording that responses are saved to, or null if not recording.
+	 */
+	private volatile HttpRecording recording = null;
+
+	/**
+	 * Recording that responses are replayed from instead of sending requests, or null if not replaying.
+	 */
+	private volatile HttpRecording replay = null;
+
+	/**
+	 * Whether to reproduce the recorded latency when replaying.
+	 */
+	private volatile boolean replayLatency = false;
+
+	/**
+	 * Listener that is notified when each request is complete,
+	 * which is when the response body is closed or the request fails without a response.
+	 */
+	public interface RequestListener {
+		/**
+		 * Called when a request is complete.
+		 * @param url the requested URL
+		 * @param statusCode the HTTP status code, or -1 if no response was received
+		 * @param headerNanos time from sending the request until the response headers were received, nanoseconds
+		 * @param bodyNanos time from receiving the response headers until the body was closed, nanoseconds
+		 * @param readWaitNanos time within 'bodyNanos' that was spent waiting for response bytes, nanoseconds
+		 * @param bytes number of response body bytes received, before decompression
+		 */
+		void requestComplete ( String url, int statusCode, long headerNanos, long bodyNanos, long readWaitNanos, long bytes );
+	}
+
+	/**
+	 * Response body input stream that counts the bytes that are received and the time spent waiting for them,
+	 * and when closed, notifies the request listener and releases the concurrency limiter permit.
+	 */
+	private static class ResponseInputStream extends FilterInputStream {
+		private final String url;
+		private final int statusCode;
+		private final long headerNanos;
+		private final long bodyStartNanos = System.nanoTime();
+		private final AimdConcurrencyLimiter limiter;
+		private final RequestListener listener;
+		private final KiWISRequestEvent event;
+		private final AtomicBoolean closed = new AtomicBoolean(false);
+		private long bytes = 0;
+		private long readWaitNanos = 0;
+
+		private ResponseInputStream ( InputStream in, String url, int statusCode, long headerNanos,
+			AimdConcurrencyLimiter limiter, RequestListener listener, KiWISRequestEvent event ) {
+			super(in);
+			this.url = url;
+			this.statusCode = statusCode;
+			this.headerNanos = headerNanos;
+			this.limiter = limiter;
+			this.listener = listener;
+			this.event = event;
+		}
+
+		@Override
+		public int read () throws IOException {
+			long startNanos = System.nanoTime();
+			int b = super.read();
+			this.readWaitNanos += System.nanoTime() - startNanos;
+			if ( b >= 0 ) {
+				++this.bytes;
+			}
+			return b;
+		}
+
+		@Override
+		public int read ( byte [] b, int off, int len ) throws IOException {
+			long startNanos = System.nanoTime();
+			int n = super.read(b, off, len);
+			this.readWaitNanos += System.nanoTime() - startNanos;
+			if ( n > 0 ) {
+				this.bytes += n;
+			}
+			return n;
+		}
+
+		@Override
+		public void close () throws IOException {
+			try {
+				super.close();
+			}
+			finally {
+				if ( this.closed.compareAndSet(false, true) ) {
+					if ( this.limiter != null ) {
+						this.limiter.release();
+					}
+					if ( this.listener != null ) {
+						this.listener.requestComplete(this.url, this.statusCode, this.headerNanos,
+							System.nanoTime() - this.bodyStartNanos, this.readWaitNanos, this.bytes);
+					}
+					if ( this.event != null ) {
+						commitRequestEvent(this.event, this.url, this.statusCode, this.bytes);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Response body input stream that fails a read that waits longer than the read timeout.
+	 * The request timeout only applies until the response headers are received,
+	 * so reading the body would otherwise wait indefinitely if the server stops sending.
+	 * The watchdog closes the stream if a read has timed out, which causes the blocked read to throw an exception.
+	 * The HttpClient body stream ignores thread interrupts so closing the stream is used to end the read.
+	 */
+	private static class BodyTimeoutInputStream extends FilterInputStream {
+		private final String url;
+		private final long timeoutNanos;
+		private final AtomicBoolean closed = new AtomicBoolean(false);
+		// The following are synchronized on the stream since they are also used by the watchdog.
+		private boolean reading = false;
+		private long readStartNanos = 0;
+		private boolean readTimedOut = false;
+
+		private BodyTimeoutInputStream ( InputStream in, String url, long timeoutNanos ) {
+			super(in);
+			this.url = url;
+			this.timeoutNanos = timeoutNanos;
+			openBodyStreams.add(this);
+			startReadTimeoutWatchdog();
+		}
+
+		/**
+		 * Start a read, which the watchdog will end if it takes longer than the timeout.
+		 * @throws IOException if an earlier read timed out
+		 */
+		private synchronized void beginRead () throws IOException {
+			if ( this.readTimedOut ) {
+				throw toTimeoutException ( null );
+			}
+			this.reading = true;
+			this.readStartNanos = System.nanoTime();
+		}
+
+		/**
+		 * Called by the watchdog to end the read if it has timed out.
+		 * @param nowNanos the current System.nanoTime()
+		 */
+		private void checkReadTimeout ( long nowNanos ) {
+			synchronized ( this ) {
+				if ( !this.reading || this.readTimedOut || ((nowNanos - this.readStartNanos) <= this.timeoutNanos) ) {
+					return;
+				}
+				this.readTimedOut = true;
+			}
+			// Close outside of the lock because the read that is ended calls endRead().
+			try {
+				close();
+			}
+			catch ( IOException e ) {
+				// Ignore - the read will fail.
+			}
+		}
+
+		@Override
+		public void close () throws IOException {
+			if ( this.closed.compareAndSet(false, true) ) {
+				openBodyStreams.remove(this);
+			}
+			super.close();
+		}
+
+		/**
+		 * End a read.
+		 */
+		private synchronized void endRead () {
+			this.reading = false;
+		}
+
+		@Override
+		public int read () throws IOException {
+			beginRead();
+			try {
+				return super.read();
+			}
+			catch ( IOException e ) {
+				throw toTimeoutException(e);
+			}
+			finally {
+				endRead();
+			}
+		}
+
+		@Override
+		public int read ( byte [] b, int off, int len ) throws IOException {
+			beginRead();
+			try {
+				return super.read(b, off, len);
+			}
+			catch ( IOException e ) {
+				throw toTimeoutException(e);
+			}
+			finally {
+				endRead();
+			}
+		}
+
+		/**
+		 * Return the exception to throw for a read that failed.
+		 * @param e the exception from the read, or null if none
+		 * @return a timeout exception if the watchdog ended the read, otherwise the original exception
+		 */
+		private synchronized IOException toTimeoutException ( IOException e ) {
+			if ( this.readTimedOut ) {
+				HttpTimeoutException e2 = new HttpTimeoutException ( "Timed out after "
+					+ TimeUnit.NANOSECONDS.toSeconds(this.timeoutNanos) + " seconds reading the response for \"" + this.url + "\"." );
+				if ( e != null ) {
+					e2.initCause(e);
+				}
+				return e2;
+			}
+			return e;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * @param connectTimeoutSeconds timeout to connect to the server, seconds
+	 * @param readTimeoutSeconds timeout to receive the response headers after the request is sent,
+	 * and for each read of the response body, seconds
+	 */
+	public HttpTransport ( int connectTimeoutSeconds, int readTimeoutSeconds ) {
+		this.readTimeout = Duration.ofSeconds(readTimeoutSeconds);
+		this.httpClient = HttpClient.newBuilder()
+			// HTTP/2 is negotiated if the server supports it, otherwise HTTP/1.1 is used.
+			.version(HttpClient.Version.HTTP_2)
+			.followRedirects(HttpClient.Redirect.NORMAL)
+			.connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+			.build();
+	}
+
+	/**
+	 * Commit a request event if it is enabled in the Java Flight Recorder recording.
+	 * @param event the event, which was started when the request was sent
+	 * @param url the requested URL
+	 * @param statusCode the HTTP status code, or -1 if no response was received
+	 * @param bytes the number of response body bytes received
+	 */
+	private static void commitRequestEvent ( KiWISRequestEvent event, String url, int statusCode, long bytes ) {
+		if ( event.shouldCommit() ) {
+			String requestType = WebUtil.getUrlQueryParameter(url, "request");
+			event.requestType = (requestType == null) ? "" : requestType;
+			event.url = url;
+			event.statusCode = statusCode;
+			event.bytes = bytes;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Create the request for a URL.
+	 * @param url URL to request
+	 * @return the request
+	 */
+	private HttpRequest createRequest ( String url ) {
+		return HttpRequest.newBuilder(URI.create(url))
+			.timeout(this.readTimeout)
+			.header("Accept-Encoding", "gzip")
+			.GET()
+			.build();
+	}
+
+	/**
+	 * Request a URL and return the response body as an input stream,
+	 * which is decompressed if the server returned a compressed response.
+	 * The calling code must close the stream, which allows the connection to be reused.
+	 * @param url URL to request
+	 * @return the response body input stream
+	 * @throws IOException if the request fails or the response status is not 200
+	 */
+	public InputStream getInputStream ( String url ) throws IOException {
+		String routine = getClass().getSimpleName() + ".getInputStream";
+		if ( this.replay != null ) {
+			return replay ( url );
+		}
+		long startNanos = System.nanoTime();
+		HttpResponse<InputStream> response = send ( url );
+		InputStream in = new BodyTimeoutInputStream ( response.body(), url, this.readTimeout.toNanos() );
+		if ( response.statusCode() != 200 ) {
+			// Read the error response so that it can be included in the message.
+			String content = "";
+			try ( InputStream errorIn = wrapInputStream(response, in) ) {
+				content = new String(errorIn.readAllBytes(), StandardCharsets.UTF_8);
+			}
+			catch ( IOException e ) {
+				// Just use the status code.
+			}
+			finally {
+				// Make sure that the response is closed if it could not be wrapped.
+				in.close();
+			}
+			String message = "Request returned HTTP status " + response.statusCode() + " for \"" + url + "\"";
+			if ( !content.isEmpty() ) {
+				message += ": " + content;
+			}
+			Message.printWarning(3, routine, message);
+			throw new IOException ( message );
+		}
+		try {
+			HttpRecording recording = this.recording;
+			if ( recording != null ) {
+				// Record the decompressed response so that the recording does not depend on the server compression.
+				return recording.record ( url, wrapInputStream(response, in), System.nanoTime() - startNanos );
+			}
+			return wrapInputStream ( response, in );
+		}
+		catch ( IOException | RuntimeException e ) {
+			// For example, the gzip header could not be read:
+			// - close the response so that the concurrency limiter permit is released and the listener is notified
+			try {
+				in.close();
+			}
+			catch ( IOException e2 ) {
+				e.addSuppressed(e2);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Request a URL and return the response body as a string.
+	 * @param url URL to request
+	 * @return the response body
+	 * @throws IOException if the request fails or the response status is not 200
+	 */
+	public String getString ( String url ) throws IOException {
+		try ( InputStream in = getInputStream(url) ) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Checks to see if the request string returns a response 200.
+	 * @param url URL to request
+	 * @return true if request came back okay, with a response 200, false otherwise.
+	 */
+	public boolean httpResponse200 ( String url ) {
+		HttpRecording replay = this.replay;
+		if ( replay != null ) {
+			try {
+				return replay.find(url) != null;
+			}
+			catch ( IOException e ) {
+				return false;
+			}
+		}
+		try {
+			HttpResponse<InputStream> response = send ( url );
+			// Close the body so the connection can be reused.
+			response.body().close();
+			return response.statusCode() == 200;
+		}
+		catch ( IOException e ) {
+			return false;
+		}
+	}
+
+	/**
+	 * Return a recorded response instead of sending the request.
+	 * The request listener and Java Flight Recorder event are notified as for a request,
+	 * with the size of the recorded (compressed) response.
+	 * @param url URL to request
+	 * @return the recorded response body input stream
+	 * @throws IOException if a response was not recorded for the URL
+	 */
+	private InputStream replay ( String url ) throws IOException {
+		HttpRecording replay = this.replay;
+		HttpRecording.RecordedResponse recordedResponse = replay.find ( url );
+		if ( recordedResponse == null ) {
+			String message = "No recorded response in \"" + replay.getDirectory() + "\" for \"" + url + "\".";
+			Message.printWarning(3, getClass().getSimpleName() + ".replay", message);
+			throw new IOException ( message );
+		}
+		KiWISRequestEvent event = new KiWISRequestEvent();
+		if ( event.isEnabled() ) {
+			event.begin();
+		}
+		else {
+			event = null;
+		}
+		long startNanos = System.nanoTime();
+		if ( this.replayLatency && (recordedResponse.getHeaderNanos() > 0) ) {
+			try {
+				Thread.sleep(recordedResponse.getHeaderNanos()/1000000L, (int)(recordedResponse.getHeaderNanos() % 1000000L));
+			}
+			catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new IOException ( "Request was interrupted for \"" + url + "\".", e );
+			}
+		}
+		InputStream in = new ResponseInputStream ( Files.newInputStream(recordedResponse.getBodyFile()), url, 200,
+			System.nanoTime() - startNanos, null, this.requestListener, event );
+		try {
+			in = new GZIPInputStream(in, 65536);
+		}
+		catch ( IOException e ) {
+			in.close();
+			throw e;
+		}
+		if ( this.replayLatency ) {
+			in = replay.replayLatency ( in, recordedResponse );
+		}
+		return in;
+	}
+
+	/**
+	 * Send a request.
+	 * @param url URL to request
+	 * @return the response, with body as an input stream that must be closed
+	 * @throws IOException if the request fails
+	 */
+	private HttpResponse<InputStream> send ( String url ) throws IOException {
+		if ( this.offline ) {
+			throw new IOException ( "Datastore is offline - not requesting \"" + url + "\"." );
+		}
+		AimdConcurrencyLimiter limiter = this.concurrencyLimiter;
+		RequestListener listener = this.requestListener;
+		// Only use the event if enabled for Java Flight Recorder.
+		KiWISRequestEvent event = new KiWISRequestEvent();
+		if ( !event.isEnabled() ) {
+			event = null;
+		}
+		if ( (limiter == null) && (listener == null) && (event == null) ) {
+			try {
+				return this.httpClient.send(createRequest(url), HttpResponse.BodyHandlers.ofInputStream());
+			}
+			catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new IOException ( "Request was interrupted for \"" + url + "\".", e );
+			}
+		}
+
+		// Wait for a permit, which is released when the response body is closed.
+		if ( limiter != null ) {
+			try {
+				limiter.acquire();
+			}
+			catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new IOException ( "Request was interrupted for \"" + url + "\".", e );
+			}
+		}
+		long startNanos = System.nanoTime();
+		if ( event != null ) {
+			event.begin();
+		}
+		KiWISRequestEvent requestEvent = event;
+		HttpResponse<InputStream> response = null;
+		try {
+			response = this.httpClient.send(createRequest(url), responseInfo -> {
+				// Called when the response headers have been received.
+				long headerNanos = System.nanoTime() - startNanos;
+				return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(),
+					in -> new ResponseInputStream(in, url, responseInfo.statusCode(), headerNanos, limiter, listener, requestEvent));
+			});
+		}
+		catch ( InterruptedException e ) {
+			if ( limiter != null ) {
+				limiter.release();
+			}
+			Thread.currentThread().interrupt();
+			throw new IOException ( "Request was interrupted for \"" + url + "\".", e );
+		}
+		catch ( IOException | RuntimeException e ) {
+			// Timeouts and connection errors indicate that the server may be overloaded.
+			if ( limiter != null ) {
+				limiter.release();
+				limiter.onOverload(startNanos);
+			}
+			if ( listener != null ) {
+				listener.requestComplete(url, -1, System.nanoTime() - startNanos, 0, 0, 0);
+			}
+			if ( event != null ) {
+				commitRequestEvent(event, url, -1, 0);
+			}
+			throw e;
+		}
+		if ( limiter != null ) {
+			int statusCode = response.statusCode();
+			if ( (statusCode == 429) || (statusCode >= 500) ) {
+				limiter.onOverload(startNanos);
+			}
+			else {
+				limiter.onSuccess(startNanos, System.nanoTime() - startNanos);
+			}
+		}
+		return response;
+	}
+
+	/**
+	 * Start the watchdog that checks for response body reads that have timed out, if not already started.
+	 * The watchdog is shared by all transports and checks once per second, which is sufficient for timeouts in seconds.
+	 */
+	private static synchronized void startReadTimeoutWatchdog () {
+		if ( readTimeoutWatchdog == null ) {
+			readTimeoutWatchdog = Executors.newSingleThreadScheduledExecutor ( runnable -> {
+				Thread thread = new Thread(runnable, "KiWIS-read-timeout-watchdog");
+				thread.setDaemon(true);
+				return thread;
+			});
+			readTimeoutWatchdog.scheduleWithFixedDelay ( () -> {
+				long nowNanos = System.nanoTime();
+				for ( BodyTimeoutInputStream in : openBodyStreams ) {
+					in.checkReadTimeout(nowNanos);
+				}
+			}, 1, 1, TimeUnit.SECONDS );
+		}
+	}
+
+	/**
+	 * Set the limiter for concurrent requests.
+	 * @param concurrencyLimiter the limiter, or null to not limit concurrent requests
+	 */
+	public void setConcurrencyLimiter ( AimdConcurrencyLimiter concurrencyLimiter ) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	/**
+	 * Set the recording that responses are saved to.
+	 * @param recording the recording, or null to not record responses
+	 */
+	public void setRecording ( HttpRecording recording ) {
+		this.recording = recording;
+	}
+
+	/**
+	 * Set the recording that responses are replayed from instead of sending requests.
+	 * Requests that were not recorded fail.
+	 * @param replay the recording, or null to send requests
+	 * @param replayLatency whether to reproduce the recorded latency:
+	 * the time to receive the response headers and the time spent waiting for the response body
+	 */
+	public void setReplay ( HttpRecording replay, boolean replayLatency ) {
+		this.replay = replay;
+		this.replayLatency = replayLatency;
+	}
+
+	/**
+	 * Set the listener that is notified when each request is complete.
+	 * @param requestListener the listener, or null to not notify
+	 */
+	public void setRequestListener ( RequestListener requestListener ) {
+		this.requestListener = requestListener;
+	}
+
+	/**
+	 * Set whether the transport is offline, in which case requests fail without being sent.
+	 * @param offline whether the transport is offline
+	 */
+	public void setOffline ( boolean offline ) {
+		this.offline = offline;
+	}
+
+	/**
+	 * Wrap the response input stream to decompress if the response is compressed.
+	 * @param response the HTTP response
+	 * @param in the response body input stream
+	 * @return the input stream to read
+	 */
+	private InputStream wrapInputStream ( HttpResponse<InputStream> response, InputStream in ) throws IOException {
+		String contentEncoding = response.headers().firstValue("Content-Encoding").orElse("");
+		if ( contentEncoding.equalsIgnoreCase("gzip") ) {
+			return new GZIPInputStream(in, 65536);
+		}
+		return in;
+	}
+}
@@ -0,0 +1,61 @@
+// KiWISParseEvent - Java Flight Recorder event for parsing a web service response
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for parsing a KiWIS web service response.
+ * Responses are parsed as they are received so the duration includes waiting for response bytes,
+ * which is shown by the overlapping request event.
+ */
+@Name("org.openwaterfoundation.tstool.plugin.kiwis.Parse")
+@Label("KiWIS Parse")
+@Description("Parse a KiWIS web service response.")
+@Category({"TSTool", "KiWIS"})
+@StackTrace(false)
+public class KiWISParseEvent extends jdk.jfr.Event {
+
+	/**
+	 * Response format ("csv" or "json").
+	 */
+	@Label("Format")
+	public String format;
+
+	/**
+	 * What was parsed, such as the request type or the KiWIS 'ts_id' for a block of values.
+	 */
+	@Label("Source")
+	public String source;
+
+	/**
+	 * Number of rows (CSV lines or JSON array elements) that were parsed.
+	 */
+	@Label("Rows")
+	public long rows;
+}
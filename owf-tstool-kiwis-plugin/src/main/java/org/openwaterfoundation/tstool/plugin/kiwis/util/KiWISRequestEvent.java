@@ -0,0 +1,70 @@
+// KiWISRequestEvent - Java Flight Recorder event for a web service request
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for a KiWIS web service request,
+ * from sending the request until the response body is closed.
+ * Stack traces are not recorded so that the event is inexpensive,
+ * and the event is not committed if it is not enabled in the recording.
+ */
+@Name("org.openwaterfoundation.tstool.plugin.kiwis.Request")
+@Label("KiWIS Request")
+@Description("KiWIS web service request, from sending the request until the response body is closed.")
+@Category({"TSTool", "KiWIS"})
+@StackTrace(false)
+public class KiWISRequestEvent extends jdk.jfr.Event {
+
+	/**
+	 * Request type, from the 'request' URL parameter (e.g., "getTimeseriesValues").
+	 */
+	@Label("Request Type")
+	public String requestType;
+
+	/**
+	 * Request URL.
+	 */
+	@Label("URL")
+	public String url;
+
+	/**
+	 * HTTP status code, or -1 if no response was received.
+	 */
+	@Label("Status Code")
+	public int statusCode;
+
+	/**
+	 * Response body bytes received, before decompression.
+	 */
+	@Label("Bytes Received")
+	@DataAmount(DataAmount.BYTES)
+	public long bytes;
+}
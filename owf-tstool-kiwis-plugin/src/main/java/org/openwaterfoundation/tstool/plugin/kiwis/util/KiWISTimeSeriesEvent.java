@@ -0,0 +1,83 @@
+// KiWISTimeSeriesEvent - Java Flight Recorder event for setting time series values
+
+
+/* NoticeStart
+
+OWF TSTool KiWIS Plugin
+Copyright (C) 2022-2023 Open Water Foundation
+
+OWF TSTool KiWIS Plugin is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    OWF TSTool KiWIS Plugin is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with OWF TSTool KiWIS Plugin.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package org.openwaterfoundation.tstool.plugin.kiwis.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for transferring values that were read from KiWIS web services into a time series.
+ */
+@Name("org.openwaterfoundation.tstool.plugin.kiwis.TimeSeries")
+@Label("KiWIS Time Series Values")
+@Description("Transfer values read from KiWIS web services into a time series.")
+@Category({"TSTool", "KiWIS"})
+@StackTrace(false)
+public class KiWISTimeSeriesEvent extends jdk.jfr.Event {
+
+	/**
+	 * Time series identifier.
+	 */
+	@Label("TSID")
+	public String tsid;
+
+	/**
+	 * Number of values that were read.
+	 */
+	@Label("Values")
+	public int values;
+
+	/**
+	 * Number of values with timestamps that could not be parsed.
+	 */
+	@Label("Bad Timestamps")
+	public int badDateTimeCount;
+
+	/**
+	 * Number of values that could not be parsed.
+	 */
+	@Label("Bad Values")
+	public int badValueCount;
+
+	/**
+	 * Number of values with interpolation types that could not be parsed.
+	 */
+	@Label("Bad Interpolation Types")
+	public int badInterpolationTypeCount;
+
+	/**
+	 * Number of values that were not inserted into the time series (e.g., outside the period).
+	 */
+	@Label("Not Inserted")
+	public int notInsertedCount;
+
+	/**
+	 * Number of errors setting values.
+	 */
+	@Label("Set Value Errors")
+	public int valueErrorCount;
+}
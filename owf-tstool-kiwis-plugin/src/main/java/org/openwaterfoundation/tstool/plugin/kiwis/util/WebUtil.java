@@ -22,6 +22,8 @@ NoticeEnd */
 
 package org.openwaterfoundation.tstool.plugin.kiwis.util;
 
+import java.util.Arrays;
+
 import RTi.Util.GUI.InputFilter;
 import RTi.Util.Message.Message;
 
@@ -51,6 +53,73 @@ public class WebUtil {
 		urlString.append(paramValue);
 	}
 
+	/**
+	 * Return the value of a URL query parameter.
+	 * The value is returned as it occurs in the URL, without decoding.
+	 * @param url the URL to search
+	 * @param paramName the query parameter name, matched ignoring case
+	 * @return the query parameter value, or null if the parameter is not found
+	 */
+	public static String getUrlQueryParameter ( String url, String paramName ) {
+		int pos = url.indexOf('?');
+		if ( pos < 0 ) {
+			return null;
+		}
+		++pos;
+		int nameLength = paramName.length();
+		while ( pos < url.length() ) {
+			int end = url.indexOf('&', pos);
+			if ( end < 0 ) {
+				end = url.length();
+			}
+			if ( ((end - pos) > nameLength) && (url.charAt(pos + nameLength) == '=')
+				&& url.regionMatches(true, pos, paramName, 0, nameLength) ) {
+				return url.substring(pos + nameLength + 1, end);
+			}
+			pos = end + 1;
+		}
+		return null;
+	}
+
+	/**
+	 * Normalize a request URL so that equivalent requests match:
+	 * the scheme and host are converted to lower case and the query parameters are sorted.
+	 * Parameter values are not decoded.
+	 * @param url request URL
+	 * @return the normalized URL
+	 */
+	public static String normalizeUrl ( String url ) {
+		int queryPos = url.indexOf('?');
+		String base = (queryPos < 0) ? url : url.substring(0, queryPos);
+		// Convert the scheme and host to lower case, but not the path.
+		int hostPos = base.indexOf("://");
+		if ( hostPos >= 0 ) {
+			int pathPos = base.indexOf('/', hostPos + 3);
+			if ( pathPos < 0 ) {
+				pathPos = base.length();
+			}
+			base = base.substring(0, pathPos).toLowerCase() + base.substring(pathPos);
+		}
+		if ( queryPos < 0 ) {
+			return base;
+		}
+		String [] parameters = url.substring(queryPos + 1).split("&");
+		Arrays.sort(parameters);
+		StringBuilder b = new StringBuilder(url.length());
+		b.append(base);
+		char separator = '?';
+		for ( String parameter : parameters ) {
+			if ( parameter.isEmpty() ) {
+				// Ignore empty parameters, for example from "&&".
+				continue;
+			}
+			b.append(separator);
+			b.append(parameter);
+			separator = '&';
+		}
+		return b.toString();
+	}
+
 	/**
 	 * Format a URL query parameter clause give an input filter and operator.
 	 * Wildcards are generally allowed in KiWIS for string query parameters but not strings that